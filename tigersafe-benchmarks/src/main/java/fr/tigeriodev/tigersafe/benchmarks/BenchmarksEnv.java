@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+
+import fr.tigeriodev.tigersafe.GlobalConfig;
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.CipherSelfTest;
+import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.data.PasswordEntry;
+import fr.tigeriodev.tigersafe.data.SafeData;
+import fr.tigeriodev.tigersafe.data.TOTP;
+import fr.tigeriodev.tigersafe.logs.ConsoleLogger;
+import fr.tigeriodev.tigersafe.logs.Logs;
+
+/**
+ * Environment shared by benchmarks, which must be initialized (with {@link #init()}) in the forked JVM
+ * before any use of TigerSafe classes.
+ */
+public final class BenchmarksEnv {
+    
+    private static File tempDir = null;
+    
+    private BenchmarksEnv() {}
+    
+    public static synchronized void init() throws IOException {
+        if (tempDir != null) {
+            return;
+        }
+        Logs.setLoggerFactory(
+                (displayName, initLevel) -> new ConsoleLogger(displayName, initLevel)
+        );
+        tempDir = Files.createTempDirectory("tigersafe-benchmarks").toFile();
+        tempDir.deleteOnExit();
+        CipherSelfTest.setPassesFile(
+                newTempFile(CipherSelfTest.PASSES_FILE_NAME),
+                newTempFile(CipherSelfTest.KEY_FILE_NAME)
+        );
+        File userGlobalConfigFile = newTempFile("global-config.properties");
+        GlobalConfig.initFile(userGlobalConfigFile);
+        GlobalConfig.setInstance(new GlobalConfig(userGlobalConfigFile), false, false);
+        for (Cipher cipher : CiphersManager.getCiphers()) {
+            cipher.checkWorkingAsync();
+        }
+        CiphersManager.waitAllWorkingChecks();
+    }
+    
+    /**
+     * @param fileName
+     * @return a not existing file in the temp directory of benchmarks, deleted on exit.
+     * @throws IOException
+     */
+    public static File newTempFile(String fileName) throws IOException {
+        File res = new File(tempDir, fileName);
+        Files.deleteIfExists(res.toPath());
+        res.deleteOnExit();
+        return res;
+    }
+    
+    /**
+     * @param entriesNum
+     * @return safe data with entriesNum password entries of realistic sizes, one out of ten having a TOTP.
+     */
+    public static SafeData newSafeData(int entriesNum) {
+        PasswordEntry.Data[] pwEntriesData = new PasswordEntry.Data[entriesNum];
+        for (int i = 0; i < entriesNum; i++) {
+            pwEntriesData[i] = new PasswordEntry.Data(
+                    "Entry name " + i,
+                    ("p@ssw0rd-" + i + "-Xq7!zR2#").toCharArray(),
+                    Instant.ofEpochSecond(1700000000L + i),
+                    "https://site" + i + ".example.com/login",
+                    "Some information about entry " + i + ", e.g. the user name.",
+                    i % 10 == 0
+                            ? new TOTP(
+                                    ("totpKey" + i).getBytes(StandardCharsets.UTF_8),
+                                    "label" + i,
+                                    "issuer" + i,
+                                    TOTP.Algorithm.SHA1,
+                                    6,
+                                    30
+                            )
+                            : null
+            );
+        }
+        return new SafeData(pwEntriesData);
+    }
+    
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the standard JMH command line options (e.g. a benchmark name regex,
+ * -p entriesNum=100), writing results in JSON (by default in jmh-results.json) to track regressions
+ * between releases.
+ * Usage: mvn -P benchmarks install -DskipTests, then java -jar tigersafe-benchmarks/target/benchmarks.jar [JMH options].
+ */
+public final class BenchmarksRunner {
+    
+    public static final String DEFAULT_RESULT_FILE = "jmh-results.json";
+    /**
+     * Same as tigersafe.core.jvmArgs, but for the class path used by forked benchmark JVMs.
+     */
+    static final String[] CORE_JVM_ARGS = {
+            "--add-opens=java.base/com.sun.crypto.provider=ALL-UNNAMED",
+            "--add-opens=java.base/javax.crypto.spec=ALL-UNNAMED",
+            "--add-opens=java.base/java.lang=ALL-UNNAMED",
+            "-XX:+UseG1GC"
+    };
+    
+    private BenchmarksRunner() {}
+    
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions cmdOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder optionsBuilder =
+                new OptionsBuilder().parent(cmdOptions).jvmArgsPrepend(CORE_JVM_ARGS);
+        if (!cmdOptions.getResultFormat().hasValue()) {
+            optionsBuilder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cmdOptions.getResult().hasValue()) {
+            optionsBuilder.result(DEFAULT_RESULT_FILE);
+        }
+        new Runner(optionsBuilder.build()).run();
+    }
+    
+}
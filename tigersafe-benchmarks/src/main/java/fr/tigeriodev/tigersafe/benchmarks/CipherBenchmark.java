@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.utils.RandomUtils;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Xms1g", "-Xmx1g"
+})
+public class CipherBenchmark {
+    
+    /**
+     * Number of IVs used in turn, because some implementations (e.g. GCM) refuse to encrypt twice in a row with the same key and IV.
+     */
+    private static final int IVS_NUM = 64;
+    
+    @Param({
+            "AES_CTR", "AES_GCM", "ChaCha20", "ChaCha20-Poly1305"
+    })
+    public String cipherName;
+    
+    @Param({
+            "64", "4096", "1048576"
+    })
+    public int dataLen;
+    
+    private Cipher cipher;
+    private SecretKey key;
+    private byte[][] ivs;
+    private byte[][] encryptedBytes;
+    private byte[] plainBytes;
+    private byte[] readBuf;
+    private int ivInd = 0;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException, GeneralSecurityException {
+        BenchmarksEnv.init();
+        cipher = CiphersManager.getCipherByName(cipherName);
+        key = cipher.newKey();
+        plainBytes = RandomUtils.newRandomBytesOfLen(dataLen);
+        ivs = new byte[IVS_NUM][];
+        encryptedBytes = new byte[IVS_NUM][];
+        for (int i = 0; i < IVS_NUM; i++) {
+            ivs[i] = cipher.newIv();
+            encryptedBytes[i] = cipher.encryptBytes(plainBytes, key, ivs[i]);
+        }
+        readBuf = new byte[4096];
+    }
+    
+    private int nextIvInd() {
+        int res = ivInd;
+        ivInd = (ivInd + 1) % IVS_NUM;
+        return res;
+    }
+    
+    @Benchmark
+    public byte[] encryptBytes() throws GeneralSecurityException {
+        return cipher.encryptBytes(plainBytes, key, ivs[nextIvInd()]);
+    }
+    
+    @Benchmark
+    public byte[] decryptBytes() throws GeneralSecurityException {
+        int i = nextIvInd();
+        return cipher.decryptBytes(encryptedBytes[i], key, ivs[i]);
+    }
+    
+    @Benchmark
+    public void encryptStream(Blackhole bh) throws GeneralSecurityException, IOException {
+        try (
+                OutputStream encryptionOut = cipher
+                        .newEncryptionStream(key, ivs[nextIvInd()], OutputStream.nullOutputStream())
+        ) {
+            encryptionOut.write(plainBytes);
+            bh.consume(encryptionOut);
+        }
+    }
+    
+    @Benchmark
+    public int decryptStream() throws GeneralSecurityException, IOException {
+        int i = nextIvInd();
+        int res = 0;
+        try (
+                InputStream decryptionIn = cipher
+                        .newDecryptionStream(new ByteArrayInputStream(encryptedBytes[i]), key, ivs[i])
+        ) {
+            int readLen;
+            while ((readLen = decryptionIn.read(readBuf)) != -1) {
+                res += readLen;
+            }
+        }
+        return res;
+    }
+    
+}
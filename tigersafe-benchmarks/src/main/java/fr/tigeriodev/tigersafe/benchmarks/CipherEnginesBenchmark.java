@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.utils.RandomUtils;
+
+/**
+ * Operations whose cost is dominated by the JCA engines (javax ciphers, key generators) rather than by
+ * the data, e.g. the small header blocks of a safe file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Xms1g", "-Xmx1g"
+})
+public class CipherEnginesBenchmark {
+    
+    /**
+     * Approximate length of a small header block.
+     */
+    private static final int BLOCK_LEN = 32;
+    
+    @Param({
+            "AES_CTR", "AES_GCM", "ChaCha20", "ChaCha20-Poly1305"
+    })
+    public String cipherName;
+    
+    private Cipher cipher;
+    private SecretKey key;
+    private byte[] iv;
+    private byte[] plainBytes;
+    private byte[] encryptedBytes;
+    private byte[] readBuf;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException, GeneralSecurityException {
+        BenchmarksEnv.init();
+        cipher = CiphersManager.getCipherByName(cipherName);
+        key = cipher.newKey();
+        iv = cipher.newIv();
+        plainBytes = RandomUtils.newRandomBytesOfLen(BLOCK_LEN);
+        encryptedBytes = cipher.encryptBytes(plainBytes, key, iv);
+        readBuf = new byte[BLOCK_LEN];
+    }
+    
+    @Benchmark
+    public SecretKey newKey() throws GeneralSecurityException {
+        return cipher.newKey();
+    }
+    
+    @Benchmark
+    public byte[] encryptBlock() throws GeneralSecurityException {
+        return cipher.encryptBytes(plainBytes, key, iv);
+    }
+    
+    @Benchmark
+    public byte[] decryptBlock() throws GeneralSecurityException {
+        return cipher.decryptBytes(encryptedBytes, key, iv);
+    }
+    
+    @Benchmark
+    public void encryptBlockStream(Blackhole bh) throws GeneralSecurityException, IOException {
+        try (
+                OutputStream encryptionOut =
+                        cipher.newEncryptionStream(key, iv, OutputStream.nullOutputStream())
+        ) {
+            encryptionOut.write(plainBytes);
+            bh.consume(encryptionOut);
+        }
+    }
+    
+    @Benchmark
+    public int decryptBlockStream() throws GeneralSecurityException, IOException {
+        try (
+                InputStream decryptionIn = cipher
+                        .newDecryptionStream(new ByteArrayInputStream(encryptedBytes), key, iv)
+        ) {
+            return decryptionIn.readNBytes(readBuf, 0, BLOCK_LEN);
+        }
+    }
+    
+}
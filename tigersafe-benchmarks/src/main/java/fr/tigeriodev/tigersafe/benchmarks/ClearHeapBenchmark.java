@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+
+/**
+ * Heap clearing with the heap configuration of the TigerSafe runtime (tigersafe.runtime.jvmArgs and tigersafe.jvmArgs).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Xms128m", "-Xmx128m", "-XX:+AlwaysPreTouch", "-XX:+UseG1GC"
+})
+public class ClearHeapBenchmark {
+    
+    @Param({
+            "5000000"
+    })
+    public int margin;
+    
+    /**
+     * Approximate amount of memory used by live small objects, which are traversed by each full GC.
+     */
+    @Param({
+            "0", "40000000"
+    })
+    public int liveBytesNum;
+    
+    private byte[][] liveObjs;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarksEnv.init();
+        liveObjs = new byte[liveBytesNum / 128][];
+        for (int i = 0; i < liveObjs.length; i++) {
+            liveObjs[i] = new byte[100 + (i % 50)];
+        }
+    }
+    
+    @Benchmark
+    public MemUtils.ClearHeapReport clearHeap() {
+        return MemUtils.clearHeap(margin);
+    }
+    
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class KeyDerivationBenchmark {
+    
+    @Param({
+            "AES_CTR", "AES_GCM", "ChaCha20", "ChaCha20-Poly1305"
+    })
+    public String cipherName;
+    
+    private Cipher cipher;
+    private char[] password;
+    private byte[] salt;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException, GeneralSecurityException {
+        BenchmarksEnv.init();
+        cipher = CiphersManager.getCipherByName(cipherName);
+        password = "benchmarkSafePassword".toCharArray();
+        salt = cipher.newDerivationSalt();
+    }
+    
+    @Benchmark
+    public void getDerivatedKeyFrom(Blackhole bh) throws GeneralSecurityException {
+        SecretKey key = cipher.getDerivatedKeyFrom(password, salt);
+        bh.consume(key);
+        MemUtils.tryDestroyKey(key);
+    }
+    
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tigeriodev.tigersafe.logs.AsyncLoggerFactory;
+import fr.tigeriodev.tigersafe.logs.LogRecord;
+import fr.tigeriodev.tigersafe.logs.Logger;
+import fr.tigeriodev.tigersafe.logs.Logs;
+import fr.tigeriodev.tigersafe.logs.RotatingFileLogSink;
+
+/**
+ * Cost of debug logs in production mode, i.e. with loggers at WARN level and disabled unsafe loggers.
+ * Should be run with -prof gc to check that disabled logs do not allocate.
+ * Also compares the cost of enabled debug logs (e.g. while profiling) for the logging thread, when written
+ * to a file by an {@link AsyncLoggerFactory} or synchronously.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggerBenchmark {
+    
+    /**
+     * Writes to its sink on the logging thread.
+     */
+    private static final class SyncFileLogger extends Logger {
+        
+        private final RotatingFileLogSink sink;
+        
+        SyncFileLogger(RotatingFileLogSink sink) {
+            super(fr.tigeriodev.tigersafe.logs.Level.DEBUG);
+            this.sink = sink;
+        }
+        
+        @Override
+        protected synchronized void print(fr.tigeriodev.tigersafe.logs.Level level, String msg,
+                Throwable thrown) {
+            try {
+                sink.write(
+                        new LogRecord(
+                                level,
+                                "SyncFileLogger",
+                                Thread.currentThread().getName(),
+                                System.currentTimeMillis(),
+                                System.nanoTime(),
+                                msg,
+                                thrown
+                        )
+                );
+                sink.flush();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        
+    }
+    
+    private Logger log;
+    private Logger methLog;
+    private Logger unsafeLog;
+    private AsyncLoggerFactory asyncLoggerFactory;
+    private Logger asyncFileLog;
+    private RotatingFileLogSink syncSink;
+    private Logger syncFileLog;
+    private int val = 0;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarksEnv.init();
+        log = Logs.newLogger(LoggerBenchmark.class, fr.tigeriodev.tigersafe.logs.Level.WARN);
+        methLog = log.newChildForMeth("methLog");
+        unsafeLog = Logs.newUnsafeLogger(LoggerBenchmark.class);
+        asyncLoggerFactory = new AsyncLoggerFactory(newSink("asyncLogs.log"));
+        asyncFileLog = asyncLoggerFactory
+                .newLogger("asyncFileLog", fr.tigeriodev.tigersafe.logs.Level.DEBUG);
+        syncSink = newSink("syncLogs.log");
+        syncFileLog = new SyncFileLogger(syncSink);
+    }
+    
+    /**
+     * @param fileName
+     * @return a sink which keeps a single file, to bound the disk usage.
+     * @throws IOException
+     */
+    private static RotatingFileLogSink newSink(String fileName) throws IOException {
+        return new RotatingFileLogSink(
+                BenchmarksEnv.newTempFile(fileName),
+                RotatingFileLogSink.DEFAULT_MAX_FILE_BYTES,
+                1
+        );
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        asyncLoggerFactory.close();
+        syncSink.close();
+    }
+    
+    @Benchmark
+    public int baseline() {
+        return ++val;
+    }
+    
+    @Benchmark
+    public int disabledDebug() {
+        int cur = ++val;
+        log.debug(() -> "val = " + cur);
+        return cur;
+    }
+    
+    @Benchmark
+    public int methLogDisabledDebug() {
+        int cur = ++val;
+        methLog.debug(() -> "val = " + cur);
+        return cur;
+    }
+    
+    @Benchmark
+    public int methLogIfDisabledDebug() {
+        int cur = ++val;
+        log.newChildForMethIf(fr.tigeriodev.tigersafe.logs.Level.DEBUG, "methLogIf")
+                .debug(() -> "val = " + cur);
+        return cur;
+    }
+    
+    @Benchmark
+    public int unsafeDebug() {
+        int cur = ++val;
+        unsafeLog.newChildForMethIf(fr.tigeriodev.tigersafe.logs.Level.DEBUG, "unsafe")
+                .debug(() -> "val = " + cur);
+        return cur;
+    }
+    
+    /**
+     * NB: Debug records are dropped when the buffer is full, i.e. when they are logged faster than written.
+     */
+    @Benchmark
+    public int asyncFileEnabledDebug() {
+        int cur = ++val;
+        asyncFileLog.debug(() -> "val = " + cur);
+        return cur;
+    }
+    
+    @Benchmark
+    public int syncFileEnabledDebug() {
+        int cur = ++val;
+        syncFileLog.debug(() -> "val = " + cur);
+        return cur;
+    }
+    
+    /**
+     * Walks the stack on each call, for comparison.
+     */
+    @Benchmark
+    public int curMethDisabledDebug() {
+        int cur = ++val;
+        log.newChildFromCurMeth().debug(() -> "val = " + cur);
+        return cur;
+    }
+    
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemUtilsBenchmark {
+    
+    static class WipedObj {
+        
+        long l = 1;
+        int i = 1;
+        boolean bool = true;
+        char[] chars = new char[16];
+        byte[] bytes = new byte[16];
+        WipedObj inner = null;
+        
+    }
+    
+    private final char[] strChars = "some sensitive name".toCharArray();
+    private WipedObj obj;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarksEnv.init();
+        obj = new WipedObj();
+        obj.inner = new WipedObj();
+    }
+    
+    @Benchmark
+    public String tryClearString() {
+        String str = new String(strChars);
+        MemUtils.tryClearString(str);
+        return str;
+    }
+    
+    /**
+     * Same as a password entry data destruction (name, site and info).
+     */
+    @Benchmark
+    public String tryClearStrings() {
+        String name = new String(strChars);
+        String site = new String(strChars);
+        String info = new String(strChars);
+        MemUtils.tryClearStrings(name, site, info);
+        return info;
+    }
+    
+    @Benchmark
+    public WipedObj tryClearPrimitives() {
+        MemUtils.tryClearPrimitives(obj, true);
+        return obj;
+    }
+    
+}
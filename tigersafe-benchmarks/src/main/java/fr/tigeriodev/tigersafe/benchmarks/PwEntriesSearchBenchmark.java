@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.DestroyFailedException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tigeriodev.tigersafe.GlobalConfig;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
+import fr.tigeriodev.tigersafe.data.PasswordEntry;
+import fr.tigeriodev.tigersafe.data.SafeDataManager;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+
+/**
+ * Filtering of the password entries by name, as done by the passwords tab for each typed key, either by
+ * scanning all the password entries (previous implementation) or with the search index of the data manager.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Xms1g", "-Xmx1g"
+})
+public class PwEntriesSearchBenchmark {
+    
+    @Param({
+            "50000"
+    })
+    public int entriesNum;
+    
+    @Param({
+            "e", "name 4242", "1234"
+    })
+    public String nameFilter;
+    
+    private SafeDataManager dm;
+    
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchmarksEnv.init();
+        GlobalConfig.getInstance()
+                .setKeyDerivationTargetMillis(GlobalConfig.KEY_DERIVATION_MIN_TARGET_MILLIS);
+        GlobalConfig.getInstance()
+                .setKeyDerivationMinIterationsNum(KeyDerivation.MIN_ITERATIONS_NUM);
+        File safeFile = BenchmarksEnv.newTempFile("search-" + entriesNum + ".dat");
+        dm = new SafeDataManager(safeFile, "benchmarkSafePassword".toCharArray());
+        dm.importData(BenchmarksEnv.newSafeData(entriesNum));
+        dm.searchPwEntries(nameFilter, ""); // builds the index
+    }
+    
+    @Benchmark
+    public List<PasswordEntry> linearScan() {
+        List<PasswordEntry> res = new ArrayList<>();
+        String filterNameLow = nameFilter.toLowerCase();
+        for (PasswordEntry pwEntry : dm.getPwEntries()) {
+            String pwEntryName = pwEntry.getCurrentName();
+            String pwEntryNameLow = pwEntryName.toLowerCase();
+            boolean nameMatch = pwEntryNameLow.contains(filterNameLow);
+            if (pwEntryNameLow != pwEntryName) {
+                MemUtils.tryClearString(pwEntryNameLow);
+            }
+            if (nameMatch) {
+                res.add(pwEntry);
+            }
+        }
+        return res;
+    }
+    
+    @Benchmark
+    public List<PasswordEntry> indexedSearch() {
+        return dm.searchPwEntries(nameFilter, "");
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws DestroyFailedException {
+        dm.destroy();
+    }
+    
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.DestroyFailedException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tigeriodev.tigersafe.GlobalConfig;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
+import fr.tigeriodev.tigersafe.data.SafeData;
+import fr.tigeriodev.tigersafe.data.SafeDataManager;
+import fr.tigeriodev.tigersafe.data.SafeFileManager;
+
+/**
+ * Destruction of a loaded safe (wiping of the names, sites and infos of all its entries).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Xms1g", "-Xmx1g"
+})
+public class SafeDataManagerDestroyBenchmark {
+    
+    @Param({
+            "10000", "100000"
+    })
+    public int entriesNum;
+    
+    private final char[] safePw = "benchmarkSafePassword".toCharArray();
+    private File safeFile;
+    private SafeDataManager dm;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException, GeneralSecurityException, DestroyFailedException {
+        BenchmarksEnv.init();
+        GlobalConfig.getInstance()
+                .setKeyDerivationTargetMillis(GlobalConfig.KEY_DERIVATION_MIN_TARGET_MILLIS);
+        GlobalConfig.getInstance()
+                .setKeyDerivationMinIterationsNum(KeyDerivation.MIN_ITERATIONS_NUM);
+        safeFile = BenchmarksEnv.newTempFile("destroyed-safe-" + entriesNum + ".dat");
+        SafeData safeData = BenchmarksEnv.newSafeData(entriesNum);
+        SafeFileManager.write(safeFile, safePw, safeData);
+        safeData.destroy();
+    }
+    
+    @Setup(Level.Invocation)
+    public void loadSafe() throws IOException, GeneralSecurityException, DestroyFailedException {
+        dm = new SafeDataManager(safeFile, safePw);
+        dm.loadSafeFile();
+    }
+    
+    @Benchmark
+    public SafeDataManager destroy() throws DestroyFailedException {
+        dm.destroy();
+        return dm;
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        safeFile.delete();
+    }
+    
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.DestroyFailedException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tigeriodev.tigersafe.ciphers.DerivedKeyCache;
+import fr.tigeriodev.tigersafe.data.SafeData;
+import fr.tigeriodev.tigersafe.data.SafeFileManager;
+import fr.tigeriodev.tigersafe.data.SafeFileManager.ReadMode;
+
+/**
+ * Safe file reading of multi-MB safes, by read mode, excluding the key derivation of the safe password
+ * (cached), so that only the file access and the decryption of the blocks are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Xms1g", "-Xmx1g"
+})
+public class SafeFileReadBenchmark {
+    
+    @Param({
+            "20000", "100000"
+    })
+    public int entriesNum;
+    
+    @Param({
+            "1", "2"
+    })
+    public short fileVer;
+    
+    @Param({
+            "STREAM", "MAPPED"
+    })
+    public ReadMode readMode;
+    
+    private char[] safePw;
+    private DerivedKeyCache keyCache;
+    private File readFile;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException, GeneralSecurityException, DestroyFailedException {
+        BenchmarksEnv.init();
+        safePw = "benchmarkSafePassword".toCharArray();
+        keyCache = new DerivedKeyCache(
+                TimeUnit.DAYS.toMillis(1),
+                DerivedKeyCache.DEFAULT_MAX_ENTRIES
+        );
+        readFile = BenchmarksEnv
+                .newTempFile("read-mode-safe-" + entriesNum + "-" + fileVer + ".dat");
+        SafeData safeData = BenchmarksEnv.newSafeData(entriesNum);
+        SafeFileManager.write(readFile, safePw, safeData, keyCache, fileVer);
+        safeData.destroy();
+    }
+    
+    @Benchmark
+    public SafeData read() throws IOException, GeneralSecurityException, DestroyFailedException {
+        SafeData res = SafeFileManager.read(readFile, safePw, keyCache, readMode);
+        res.destroy();
+        return res;
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws DestroyFailedException {
+        keyCache.destroy();
+        readFile.delete();
+    }
+    
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.DestroyFailedException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tigeriodev.tigersafe.GlobalConfig;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
+import fr.tigeriodev.tigersafe.data.SafeData;
+import fr.tigeriodev.tigersafe.data.SafeDataManager;
+import fr.tigeriodev.tigersafe.data.SafeFileManager;
+
+/**
+ * Whole safe file update of a loaded safe (writing and verification), with either the digest or the
+ * deep verification of the written file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Xms1g", "-Xmx1g"
+})
+public class SafeFileUpdateBenchmark {
+    
+    @Param({
+            "1000", "10000"
+    })
+    public int entriesNum;
+    
+    @Param({
+            "false", "true"
+    })
+    public boolean deepVerification;
+    
+    private File safeFile;
+    private SafeDataManager dm;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException, GeneralSecurityException, DestroyFailedException {
+        BenchmarksEnv.init();
+        // The safe key derivation (for the new salt of each write) must not hide the verification cost.
+        GlobalConfig.getInstance()
+                .setKeyDerivationTargetMillis(GlobalConfig.KEY_DERIVATION_MIN_TARGET_MILLIS);
+        GlobalConfig.getInstance()
+                .setKeyDerivationMinIterationsNum(KeyDerivation.MIN_ITERATIONS_NUM);
+        GlobalConfig.getInstance().setSafeFileDeepVerification(deepVerification);
+        char[] safePw = "benchmarkSafePassword".toCharArray();
+        safeFile = BenchmarksEnv.newTempFile("updated-safe-" + entriesNum + ".dat");
+        SafeData safeData = BenchmarksEnv.newSafeData(entriesNum);
+        SafeFileManager.write(safeFile, safePw, safeData);
+        safeData.destroy();
+        dm = new SafeDataManager(safeFile, safePw);
+        dm.loadSafeFile();
+    }
+    
+    @Benchmark
+    public File updateSafeFile()
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        dm.updateSafeFile();
+        return safeFile;
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws DestroyFailedException {
+        dm.destroy();
+        safeFile.delete();
+    }
+    
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.DestroyFailedException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tigeriodev.tigersafe.GlobalConfig;
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
+import fr.tigeriodev.tigersafe.data.SafeData;
+import fr.tigeriodev.tigersafe.data.SafeSerializationManager;
+
+/**
+ * Serialization (export) then deserialization (import) of safe data.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {
+        "-Xms1g", "-Xmx1g"
+})
+public class SafeSerializationBenchmark {
+    
+    @Param({
+            "AES_GCM", "ChaCha20-Poly1305"
+    })
+    public String cipherName;
+    
+    @Param({
+            "100", "10000", "50000"
+    })
+    public int entriesNum;
+    
+    @Param({
+            "2", "3"
+    })
+    public short serialVer;
+    
+    private Cipher cipher;
+    private char[] serialPw;
+    private SafeData safeData;
+    private File serialFile;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarksEnv.init();
+        // Fastest key derivation, so that the serialization itself dominates
+        GlobalConfig.getInstance()
+                .setKeyDerivationTargetMillis(GlobalConfig.KEY_DERIVATION_MIN_TARGET_MILLIS);
+        GlobalConfig.getInstance()
+                .setKeyDerivationMinIterationsNum(KeyDerivation.MIN_ITERATIONS_NUM);
+        cipher = CiphersManager.getCipherByName(cipherName);
+        serialPw = "benchmarkSerialPassword".toCharArray();
+        safeData = BenchmarksEnv.newSafeData(entriesNum);
+        serialFile = BenchmarksEnv.newTempFile("serial-" + entriesNum + ".dat");
+    }
+    
+    @Setup(Level.Invocation)
+    public void deleteSerialFile() {
+        serialFile.delete();
+    }
+    
+    @Benchmark
+    public File export() throws IOException, GeneralSecurityException, DestroyFailedException {
+        SafeSerializationManager.write(serialFile, cipher, serialPw, serialVer, safeData);
+        return serialFile;
+    }
+    
+    @Benchmark
+    public SafeData roundTrip()
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        SafeSerializationManager.write(serialFile, cipher, serialPw, serialVer, safeData);
+        SafeData res = SafeSerializationManager.read(serialFile, cipher, serialPw);
+        res.destroy();
+        return res;
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws DestroyFailedException {
+        safeData.destroy();
+        serialFile.delete();
+    }
+    
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tigeriodev.tigersafe.data.TOTP;
+import fr.tigeriodev.tigersafe.utils.RandomUtils;
+import fr.tigeriodev.tigersafe.utils.TOTPUtils;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TOTPBenchmark {
+    
+    @Param({
+            "HmacSHA1", "HmacSHA256", "HmacSHA512"
+    })
+    public String crypto;
+    
+    private byte[] keyBytes;
+    private long intervalInd;
+    private TOTP totp;
+    private char[] code;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException, NoSuchAlgorithmException {
+        BenchmarksEnv.init();
+        keyBytes = RandomUtils.newRandomBytesOfLen(20);
+        intervalInd = System.currentTimeMillis() / 30000L;
+        totp = new TOTP(
+                keyBytes.clone(),
+                "",
+                "",
+                TOTP.Algorithm.valueOf(crypto.substring("Hmac".length())),
+                6,
+                30
+        );
+        code = new char[6];
+    }
+    
+    /**
+     * New HMAC for each code.
+     */
+    @Benchmark
+    public String generateTOTP() {
+        return TOTPUtils.generateTOTP(keyBytes, intervalInd++, 6, crypto);
+    }
+    
+    /**
+     * HMAC of the TOTP reused.
+     */
+    @Benchmark
+    public String newCode() {
+        return totp.newCode(intervalInd++);
+    }
+    
+    /**
+     * HMAC of the TOTP reused, and code written in a reused array.
+     */
+    @Benchmark
+    public char[] writeCode() {
+        totp.writeCode(intervalInd++, code, 0);
+        return code;
+    }
+    
+}
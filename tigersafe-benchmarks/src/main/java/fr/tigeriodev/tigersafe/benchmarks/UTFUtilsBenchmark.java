@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fr.tigeriodev.tigersafe.utils.CodecContext;
+import fr.tigeriodev.tigersafe.utils.UTFUtils;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UTFUtilsBenchmark {
+    
+    @Param({
+            "16", "256", "4096"
+    })
+    public int charsLen;
+    
+    /**
+     * true for only ASCII chars, false for mixed 1, 2 and 3 bytes chars.
+     */
+    @Param({
+            "true", "false"
+    })
+    public boolean ascii;
+    
+    private char[] chars;
+    private int utflen;
+    private ByteArrayOutputStream bytesOut;
+    private DataOutputStream dataOut;
+    private ByteArrayInputStream bytesIn;
+    private DataInputStream dataIn;
+    private CodecContext ctx;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarksEnv.init();
+        chars = new char[charsLen];
+        for (int i = 0; i < charsLen; i++) {
+            chars[i] = ascii
+                    ? (char) ('!' + i % 94)
+                    : switch (i % 3) {
+                        case 0 -> (char) ('a' + i % 26);
+                        case 1 -> (char) (0xE0 + i % 32);
+                        default -> (char) (0x4E00 + i % 1024);
+                    };
+        }
+        ctx = CodecContext.acquire();
+        utflen = UTFUtils.getUTFLen(chars);
+        bytesOut = new ByteArrayOutputStream(utflen);
+        dataOut = new DataOutputStream(bytesOut);
+        UTFUtils.writeChars(chars, utflen, dataOut, ctx);
+        bytesIn = new ByteArrayInputStream(bytesOut.toByteArray());
+        dataIn = new DataInputStream(bytesIn);
+    }
+    
+    @Benchmark
+    public int writeChars() throws IOException {
+        bytesOut.reset();
+        UTFUtils.writeChars(chars, utflen, dataOut, ctx);
+        return bytesOut.size();
+    }
+    
+    @Benchmark
+    public char[] readChars() throws IOException {
+        bytesIn.reset();
+        return UTFUtils.readChars(utflen, dataIn, ctx);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+    
+}
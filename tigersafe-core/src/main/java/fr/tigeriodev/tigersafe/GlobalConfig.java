@@ -24,6 +24,8 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumMap;
@@ -37,12 +39,15 @@
 
 import fr.tigeriodev.tigersafe.ciphers.Cipher;
 import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
 
 public final class GlobalConfig {
     
     public static final int PW_GENERATION_MIN_LEN = 1;
     public static final int PW_GENERATION_MAX_LEN = 10000;
+    public static final int KEY_DERIVATION_MIN_TARGET_MILLIS = 50;
+    public static final int KEY_DERIVATION_MAX_TARGET_MILLIS = 60000;
     
     public static final String LANGUAGE_KEY = "language";
     public static final String CUSTOM_LANGUAGE_FILE_KEY = "customLanguageFile";
@@ -51,6 +56,10 @@ public final class GlobalConfig {
     public static final String PW_GENERATION_CUSTOM_CHARS_KEY = "PasswordGeneration.customChars";
     public static final String PW_GENERATION_MIN_LEN_KEY = "PasswordGeneration.minLength";
     public static final String PW_GENERATION_MAX_LEN_KEY = "PasswordGeneration.maxLength";
+    public static final String SAFE_JOURNAL_ENABLED_KEY = "SafeJournal.enabled";
+    public static final String SAFE_FILE_DEEP_VERIFICATION_KEY = "SafeFile.deepVerification";
+    public static final String KEY_DERIVATION_TARGET_MILLIS_KEY = "KeyDerivation.targetMillis";
+    public static final String KEY_DERIVATION_MIN_ITERATIONS_KEY = "KeyDerivation.minIterations";
     
     private static final int ENCODING_STR_COL_RADIX = 32;
     
@@ -111,6 +120,10 @@ public static Properties getDefaultProperties() throws IOException {
     private Set<String> pwGenerationCustomChars;
     private int pwGenerationMinLen;
     private int pwGenerationMaxLen;
+    private boolean safeJournalEnabled;
+    private boolean safeFileDeepVerification;
+    private int keyDerivationTargetMillis;
+    private int keyDerivationMinIterationsNum;
     
     public GlobalConfig(File userGlobalConfigFile)
             throws IOException, IllegalArgumentException, InvalidConfigPropertyValueException {
@@ -153,6 +166,17 @@ public GlobalConfig(File userGlobalConfigFile)
                 deserializeProp(PW_GENERATION_MIN_LEN_KEY, this::deserializePwGenerationLen);
         pwGenerationMaxLen =
                 deserializeProp(PW_GENERATION_MAX_LEN_KEY, this::deserializePwGenerationLen);
+        safeJournalEnabled = deserializeProp(SAFE_JOURNAL_ENABLED_KEY, this::deserializeBoolean);
+        safeFileDeepVerification =
+                deserializeProp(SAFE_FILE_DEEP_VERIFICATION_KEY, this::deserializeBoolean);
+        keyDerivationTargetMillis = deserializeProp(
+                KEY_DERIVATION_TARGET_MILLIS_KEY,
+                this::deserializeKeyDerivationTargetMillis
+        );
+        keyDerivationMinIterationsNum = deserializeProp(
+                KEY_DERIVATION_MIN_ITERATIONS_KEY,
+                this::deserializeKeyDerivationMinIterationsNum
+        );
     }
     
     public Lang getLang() {
@@ -342,6 +366,97 @@ public void setPwGenerationCustomChars(Set<String> newVal) {
         setProp(PW_GENERATION_CUSTOM_CHARS_KEY, serializedNewVal);
     }
     
+    private String serializeBoolean(boolean val) {
+        return Boolean.toString(val);
+    }
+    
+    private boolean deserializeBoolean(String serialized) {
+        if ("true".equals(serialized)) {
+            return true;
+        } else if ("false".equals(serialized)) {
+            return false;
+        } else {
+            throw new IllegalArgumentException("Invalid boolean: " + serialized + ".");
+        }
+    }
+    
+    /**
+     * @return true if saving changes should append them to the encrypted journal of the safe file when possible,
+     * instead of always rewriting the whole safe file.
+     */
+    public boolean isSafeJournalEnabled() {
+        return safeJournalEnabled;
+    }
+    
+    public void setSafeJournalEnabled(boolean newVal) {
+        safeJournalEnabled = newVal;
+        setProp(SAFE_JOURNAL_ENABLED_KEY, serializeBoolean(newVal));
+    }
+    
+    /**
+     * @return true if a written safe file should be verified by fully loading it and comparing all its entries
+     * with the written ones, instead of only comparing keyed digests of the written and read entries.
+     */
+    public boolean isSafeFileDeepVerification() {
+        return safeFileDeepVerification;
+    }
+    
+    public void setSafeFileDeepVerification(boolean newVal) {
+        safeFileDeepVerification = newVal;
+        setProp(SAFE_FILE_DEEP_VERIFICATION_KEY, serializeBoolean(newVal));
+    }
+    
+    private int deserializeKeyDerivationTargetMillis(String serialized) {
+        int res = Integer.parseInt(serialized);
+        return CheckUtils
+                .inRange(res, KEY_DERIVATION_MIN_TARGET_MILLIS, KEY_DERIVATION_MAX_TARGET_MILLIS);
+    }
+    
+    /**
+     * @return the target duration of the derivation of the key of new safe files from the safe password,
+     * on the current host.
+     */
+    public int getKeyDerivationTargetMillis() {
+        return keyDerivationTargetMillis;
+    }
+    
+    public void setKeyDerivationTargetMillis(int newVal) {
+        String serializedNewVal = Integer.toString(newVal);
+        keyDerivationTargetMillis = deserializeKeyDerivationTargetMillis(serializedNewVal);
+        setProp(KEY_DERIVATION_TARGET_MILLIS_KEY, serializedNewVal);
+    }
+    
+    private int deserializeKeyDerivationMinIterationsNum(String serialized) {
+        return KeyDerivation.checkIterationsNum(Integer.parseInt(serialized));
+    }
+    
+    /**
+     * @return the minimum iterations number of the derivation of the key of new safe files from the safe password,
+     * regardless of the host.
+     */
+    public int getKeyDerivationMinIterationsNum() {
+        return keyDerivationMinIterationsNum;
+    }
+    
+    public void setKeyDerivationMinIterationsNum(int newVal) {
+        String serializedNewVal = Integer.toString(newVal);
+        keyDerivationMinIterationsNum = deserializeKeyDerivationMinIterationsNum(serializedNewVal);
+        setProp(KEY_DERIVATION_MIN_ITERATIONS_KEY, serializedNewVal);
+    }
+    
+    /**
+     * @param cipher
+     * @return the iterations number of the derivation of keys by cipher, calibrated for the configured target
+     * duration on the current host, and at least the configured minimum.
+     * @throws NoSuchAlgorithmException
+     * @throws InvalidKeySpecException
+     */
+    public int getKeyDerivationIterationsNum(Cipher cipher)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        return KeyDerivation
+                .calibrate(cipher, keyDerivationTargetMillis, keyDerivationMinIterationsNum);
+    }
+    
     public <T> T deserializeProp(String key, Function<String, T> deserializer)
             throws InvalidConfigPropertyValueException {
         try {
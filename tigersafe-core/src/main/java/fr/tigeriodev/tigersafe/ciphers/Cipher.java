@@ -20,9 +20,13 @@
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.SecretKey;
 
@@ -35,6 +39,14 @@ public final class Cipher implements CipherImpl {
     
     private static final Logger log = Logs.newLogger(Cipher.class);
     
+    /**
+     * Bounded amount of threads used to check the ciphers concurrently.
+     */
+    public static final int CHECK_WORKERS_NUM =
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors()));
+    
+    private static final ExecutorService checkWorkers = newCheckWorkers();
+    
     private final String name;
     private final CipherImpl impl;
     private volatile WorkingStatus workingStatus = WorkingStatus.UNCHECKED;
@@ -66,25 +78,35 @@ public void checkWorkingAsync() {
             workingStatus = WorkingStatus.PENDING_CHECK;
             
             log.debug(() -> "Start checking " + name + " cipher...");
-            Thread thread = new Thread(() -> {
+            checkWorkers.execute(() -> {
                 boolean isWorking = false;
                 try {
-                    CipherImpl.checkWorking(impl);
+                    CipherSelfTest.Mode mode = CipherSelfTest.check(name, impl);
                     isWorking = true;
-                    log.debug(() -> name + " cipher is working");
+                    log.debug(() -> name + " cipher is working (" + mode + " check)");
                 } catch (Exception ex) {
                     log.warn(() -> name + " cipher is not working: ", ex);
-                }
-                
-                synchronized (impl) {
-                    workingStatus = isWorking ? WorkingStatus.WORKING : WorkingStatus.NOT_WORKING;
-                    impl.notifyAll();
+                } finally {
+                    synchronized (impl) {
+                        workingStatus =
+                                isWorking ? WorkingStatus.WORKING : WorkingStatus.NOT_WORKING;
+                        impl.notifyAll();
+                    }
                 }
             });
-            thread.start();
         }
     }
     
+    private static ExecutorService newCheckWorkers() {
+        AtomicInteger threadsNum = new AtomicInteger();
+        return Executors.newFixedThreadPool(CHECK_WORKERS_NUM, runnable -> {
+            Thread thread =
+                    new Thread(runnable, "tigersafe-cipher-check-" + threadsNum.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
     public void waitWorkingCheck() {
         if (isChecked()) {
             return;
@@ -178,10 +200,10 @@ public byte[] newDerivationSalt() throws NoSuchAlgorithmException {
     }
     
     @Override
-    public SecretKey getDerivatedKeyFrom(char[] password, byte[] salt)
+    public SecretKey getDerivatedKeyFrom(char[] password, byte[] salt, int iterationsNum)
             throws NoSuchAlgorithmException, InvalidKeySpecException {
         ensureWorkingOrUnchecked();
-        return impl.getDerivatedKeyFrom(password, salt);
+        return impl.getDerivatedKeyFrom(password, salt, iterationsNum);
     }
     
     @Override
@@ -198,6 +220,13 @@ public byte[] decryptBytes(byte[] encryptedBytes, SecretKey key, byte[] iv)
         return impl.decryptBytes(encryptedBytes, key, iv);
     }
     
+    @Override
+    public int decryptBuffer(ByteBuffer encrypted, SecretKey key, byte[] iv, ByteBuffer dest)
+            throws GeneralSecurityException {
+        ensureWorkingOrUnchecked();
+        return impl.decryptBuffer(encrypted, key, iv, dest);
+    }
+    
     @Override
     public OutputStream newEncryptionStream(SecretKey key, byte[] iv, OutputStream out)
             throws GeneralSecurityException {
@@ -22,6 +22,7 @@
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
@@ -60,7 +61,15 @@ public interface CipherImpl {
     
     byte[] newDerivationSalt() throws NoSuchAlgorithmException;
     
-    SecretKey getDerivatedKeyFrom(char[] password, byte[] salt)
+    /**
+     * Same as {@link #getDerivatedKeyFrom(char[], byte[], int)} with {@link KeyDerivation#LEGACY_ITERATIONS_NUM}.
+     */
+    default SecretKey getDerivatedKeyFrom(char[] password, byte[] salt)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        return getDerivatedKeyFrom(password, salt, KeyDerivation.LEGACY_ITERATIONS_NUM);
+    }
+    
+    SecretKey getDerivatedKeyFrom(char[] password, byte[] salt, int iterationsNum)
             throws NoSuchAlgorithmException, InvalidKeySpecException;
     
     byte[] encryptBytes(byte[] plainBytes, SecretKey key, byte[] iv)
@@ -69,6 +78,19 @@ byte[] encryptBytes(byte[] plainBytes, SecretKey key, byte[] iv)
     byte[] decryptBytes(byte[] encryptedBytes, SecretKey key, byte[] iv)
             throws GeneralSecurityException;
     
+    /**
+     * Decrypts the remaining bytes of encrypted directly into dest, without intermediate copy of the
+     * encrypted bytes (e.g. when encrypted is a MappedByteBuffer).
+     * @param encrypted
+     * @param key
+     * @param iv
+     * @param dest should have at least {@code encrypted.remaining()} remaining bytes.
+     * @return the number of plain bytes written into dest.
+     * @throws GeneralSecurityException
+     */
+    int decryptBuffer(ByteBuffer encrypted, SecretKey key, byte[] iv, ByteBuffer dest)
+            throws GeneralSecurityException;
+    
     OutputStream newEncryptionStream(SecretKey key, byte[] iv, OutputStream out)
             throws GeneralSecurityException;
     
@@ -77,7 +99,21 @@ InputStream newDecryptionStream(InputStream in, SecretKey key, byte[] iv)
     
     int getEncryptedLen(int plainLen);
     
+    /**
+     * Same as {@link #checkWorking(CipherImpl, int)} with {@link KeyDerivation#LEGACY_ITERATIONS_NUM}.
+     */
     public static void checkWorking(CipherImpl cipherImpl) throws Exception {
+        checkWorking(cipherImpl, KeyDerivation.LEGACY_ITERATIONS_NUM);
+    }
+    
+    /**
+     * @param cipherImpl
+     * @param derivationIterationsNum the iterations number of the checked key derivations, which dominate the
+     * duration of this check.
+     * @throws Exception if cipherImpl is not working.
+     */
+    public static void checkWorking(CipherImpl cipherImpl, int derivationIterationsNum)
+            throws Exception {
         final String commonChars =
                 "!\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~";
         byte[][] testsBytes = new byte[][] {
@@ -88,7 +124,8 @@ public static void checkWorking(CipherImpl cipherImpl) throws Exception {
         SecretKey key1 = cipherImpl.newKey();
         char[] pw1Chars = RandomUtils.newRandomChars(10, 30, commonChars);
         byte[] derivSalt1 = cipherImpl.newDerivationSalt();
-        SecretKey derivKey1 = cipherImpl.getDerivatedKeyFrom(pw1Chars, derivSalt1);
+        SecretKey derivKey1 =
+                cipherImpl.getDerivatedKeyFrom(pw1Chars, derivSalt1, derivationIterationsNum);
         
         byte[] iv1 = cipherImpl.newIv();
         
@@ -103,6 +140,22 @@ public static void checkWorking(CipherImpl cipherImpl) throws Exception {
                 byte[] encryptedBytes = cipherImpl.encryptBytes(testBytes, key, iv1);
                 byte[] decryptedBytes = cipherImpl.decryptBytes(encryptedBytes, key, iv1);
                 
+                ByteBuffer encryptedBuf = ByteBuffer.allocateDirect(encryptedBytes.length);
+                encryptedBuf.put(encryptedBytes).flip();
+                ByteBuffer decryptedBuf = ByteBuffer.allocateDirect(encryptedBytes.length);
+                int decryptedBufLen =
+                        cipherImpl.decryptBuffer(encryptedBuf, key, iv1, decryptedBuf);
+                decryptedBuf.flip();
+                if (
+                    decryptedBufLen != testBytes.length
+                            || !decryptedBuf.equals(ByteBuffer.wrap(testBytes))
+                ) {
+                    throw new GeneralSecurityException(
+                            "testBytes " + StringUtils.bytesToStr(testBytes)
+                                    + " not correctly decrypted from a buffer."
+                    );
+                }
+                
                 if (encryptedBytes.length != cipherImpl.getEncryptedLen(testBytes.length)) {
                     throw new GeneralSecurityException(
                             "testBytes " + StringUtils.bytesToStr(testBytes)
@@ -163,7 +216,8 @@ public static void checkWorking(CipherImpl cipherImpl) throws Exception {
             throw new GeneralSecurityException("Derivation salts are not random.");
         }
         
-        SecretKey derivKey2 = cipherImpl.getDerivatedKeyFrom(pw1Chars, derivSalt2);
+        SecretKey derivKey2 =
+                cipherImpl.getDerivatedKeyFrom(pw1Chars, derivSalt2, derivationIterationsNum);
         if (Arrays.equals(derivKey1.getEncoded(), derivKey2.getEncoded())) {
             throw new GeneralSecurityException("Derivated keys are independent of salt.");
         }
@@ -171,7 +225,8 @@ public static void checkWorking(CipherImpl cipherImpl) throws Exception {
         char[] pw2Chars = pw1Chars.clone();
         int midInd = pw2Chars.length >>> 1;
         pw2Chars[midInd] = (char) (pw2Chars[midInd] + 1);
-        SecretKey derivKey3 = cipherImpl.getDerivatedKeyFrom(pw2Chars, derivSalt1);
+        SecretKey derivKey3 =
+                cipherImpl.getDerivatedKeyFrom(pw2Chars, derivSalt1, derivationIterationsNum);
         if (Arrays.equals(derivKey1.getEncoded(), derivKey3.getEncoded())) {
             throw new GeneralSecurityException("Derivated keys are independent of password.");
         }
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.ciphers;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import fr.tigeriodev.tigersafe.logs.Logger;
+import fr.tigeriodev.tigersafe.logs.Logs;
+import fr.tigeriodev.tigersafe.utils.FileUtils;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.RandomPool;
+
+/**
+ * Self-test of the ciphers, run when they are first used.
+ * The full check ({@link CipherImpl#checkWorking(CipherImpl)}) runs several key derivations with
+ * {@link KeyDerivation#LEGACY_ITERATIONS_NUM}, which takes seconds. Once it has passed in an environment
+ * (JVM and security providers), a pass is recorded in the passes file (if defined), and later checks in the same
+ * environment only run the known-answer tests and the same check with {@link #REDUCED_ITERATIONS_NUM}.
+ * The known-answer tests (published test vectors) are run in both modes, for the ciphers which have some.
+ * NB: The passes are authenticated (HMAC-SHA256) with a random key stored in a separate key file, only accessible
+ * by its owner and normally in another directory (e.g. the user home), which detects edited, stale or foreign passes
+ * (e.g. a passes file copied with the configuration), but not an attacker able to read the key file and write the
+ * passes file (who could replace the program as well).
+ */
+public final class CipherSelfTest {
+    
+    private static final Logger log = Logs.newLogger(CipherSelfTest.class);
+    
+    public static final int REDUCED_ITERATIONS_NUM = 1000;
+    public static final String PASSES_FILE_NAME = "cipher-self-test.properties";
+    public static final String KEY_FILE_NAME = ".tigersafe-cipher-self-test.key";
+    /**
+     * Must be incremented when the checks change, in order to invalidate the previous passes.
+     */
+    private static final int CHECKS_VER = 1;
+    private static final String PASS_ALGO = "HmacSHA256";
+    private static final int PASS_KEY_LEN = 32;
+    private static final String PASS_PROP_PREFIX = "pass.";
+    private static final HexFormat HEX = HexFormat.of();
+    
+    public static enum Mode {
+        FULL,
+        REDUCED;
+    }
+    
+    private static final class KnownAnswer {
+        
+        final byte[] key;
+        final byte[] iv;
+        final byte[] plain;
+        final byte[] encrypted;
+        
+        KnownAnswer(String keyHex, String ivHex, String plainHex, String encryptedHex) {
+            key = HEX.parseHex(keyHex);
+            iv = HEX.parseHex(ivHex);
+            plain = HEX.parseHex(plainHex);
+            encrypted = HEX.parseHex(encryptedHex);
+        }
+        
+    }
+    
+    private static final String RFC7539_PLAIN_HEX =
+            "4c616469657320616e642047656e746c656d656e206f662074686520636c617373206f66202739393a204966204920636f756c64206f6666657220796f75206f6e6c79206f6e652074697020666f7220746865206675747572652c2073756e73637265656e20776f756c642062652069742e";
+    
+    /**
+     * By cipher name.
+     */
+    private static final Map<String, KnownAnswer> KNOWN_ANSWERS = new HashMap<>();
+    
+    static {
+        // NIST SP 800-38A, F.5.5 CTR-AES256.Encrypt
+        KNOWN_ANSWERS.put(
+                "AES_CTR",
+                new KnownAnswer(
+                        "603deb1015ca71be2b73aef0857d77811f352c073b6108d72d9810a30914dff4",
+                        "f0f1f2f3f4f5f6f7f8f9fafbfcfdfeff",
+                        "6bc1bee22e409f96e93d7e117393172aae2d8a571e03ac9c9eb76fac45af8e5130c81c46a35ce411e5fbc1191a0a52eff69f2445df4f9b17ad2b417be66c3710",
+                        "601ec313775789a5b7a7f504bbf3d228f443e3ca4d62b59aca84e990cacaf5c52b0930daa23de94ce87017ba2d84988ddfc9c58db67aada613c2dd08457941a6"
+                )
+        );
+        // The Galois/Counter Mode of Operation (GCM), test case 15 (ciphertext then tag)
+        KNOWN_ANSWERS.put(
+                "AES_GCM",
+                new KnownAnswer(
+                        "feffe9928665731c6d6a8f9467308308feffe9928665731c6d6a8f9467308308",
+                        "cafebabefacedbaddecaf888",
+                        "d9313225f88406e5a55909c5aff5269a86a7a9531534f7da2e4c303d8a318a721c3c0c95956809532fcf0e2449a6b525b16aedf5aa0de657ba637b391aafd255",
+                        "522dc1f099567d07f47f37a32a84427d643a8cdcbfe5c0c97598a2bd2555d1aa8cb08e48590dbb3da7b08b1056828838c5f61e6393ba7a0abcc9f662898015adb094dac5d93471bdec1a502270e3cc6c"
+                )
+        );
+        // RFC 7539, 2.4.2 (IV = nonce then counter)
+        KNOWN_ANSWERS.put(
+                "ChaCha20",
+                new KnownAnswer(
+                        "000102030405060708090a0b0c0d0e0f101112131415161718191a1b1c1d1e1f",
+                        "000000000000004a0000000000000001",
+                        RFC7539_PLAIN_HEX,
+                        "6e2e359a2568f98041ba0728dd0d6981e97e7aec1d4360c20a27afccfd9fae0bf91b65c5524733ab8f593dabcd62b3571639d624e65152ab8f530c359f0861d807ca0dbf500d6a6156a38e088a22b65e52bc514d16ccf806818ce91ab77937365af90bbf74a35be6b40b8eedf2785e42874d"
+                )
+        );
+        // RFC 7539, 2.8.2 without AAD (same ciphertext, the tag has been computed with another implementation)
+        KNOWN_ANSWERS.put(
+                "ChaCha20-Poly1305",
+                new KnownAnswer(
+                        "808182838485868788898a8b8c8d8e8f909192939495969798999a9b9c9d9e9f",
+                        "070000004041424344454647",
+                        RFC7539_PLAIN_HEX,
+                        "d31a8d34648e60db7b86afbc53ef7ec2a4aded51296e08fea9e2b5a736ee62d63dbea45e8ca9671282fafb69da92728b1a71de0a9e060b2905d6a5b67ecd3b3692ddbd7f2d778b8c9803aee328091b58fab324e4fad675945585808b4831d7bc3ff4def08e4b7a9de576d26586cec64b61166a23a4681fd59456aea1d29f82477216"
+                )
+        );
+    }
+    
+    /**
+     * PBKDF2-HMAC-SHA256 of {@link #DERIVATION_PW} with a salt of bytes 0x00 to 0x1f and {@link #REDUCED_ITERATIONS_NUM},
+     * computed with another implementation.
+     */
+    private static final String DERIVATION_PW = "TigerSafe self-test";
+    private static final String DERIVATION_KEY_HEX =
+            "0abc92a6da573578d16618371a25a1d796755d6cc5e1defc9effae37416801e5";
+    
+    private record PassesFiles(File passesFile, File keyFile) {}
+    
+    private static volatile PassesFiles passesFiles = null;
+    private static String envFingerprint = null;
+    
+    private CipherSelfTest() {}
+    
+    /**
+     * Should be called once at startup, before the ciphers are used.
+     * @param newPassesFile the file where passes are recorded, null to always run the full check.
+     * @param newKeyFile the file of the key authenticating the passes (created if needed), must be null iff
+     * newPassesFile is null.
+     */
+    public static void setPassesFile(File newPassesFile, File newKeyFile) {
+        if ((newPassesFile == null) != (newKeyFile == null)) {
+            throw new IllegalArgumentException(
+                    "Passes file and key file must both be defined or not."
+            );
+        }
+        if (newPassesFile != null && newPassesFile.equals(newKeyFile)) {
+            throw new IllegalArgumentException("Passes file and key file must be different.");
+        }
+        passesFiles = newPassesFile != null ? new PassesFiles(newPassesFile, newKeyFile) : null;
+    }
+    
+    public static File getPassesFile() {
+        PassesFiles curPassesFiles = passesFiles;
+        return curPassesFiles != null ? curPassesFiles.passesFile : null;
+    }
+    
+    public static File getKeyFile() {
+        PassesFiles curPassesFiles = passesFiles;
+        return curPassesFiles != null ? curPassesFiles.keyFile : null;
+    }
+    
+    /**
+     * Checks that cipherImpl is working, in reduced mode if a full check has already passed in the current
+     * environment, otherwise in full mode.
+     * @param cipherName
+     * @param cipherImpl
+     * @return the mode of the passed check.
+     * @throws Exception if cipherImpl is not working.
+     */
+    public static Mode check(String cipherName, CipherImpl cipherImpl) throws Exception {
+        boolean hasKnownAnswer = KNOWN_ANSWERS.containsKey(cipherName);
+        if (hasKnownAnswer) {
+            checkKnownAnswers(cipherName, cipherImpl);
+        }
+        PassesFiles curPassesFiles = passesFiles;
+        String pass = null;
+        if (hasKnownAnswer && curPassesFiles != null) {
+            try {
+                pass = getPass(curPassesFiles.keyFile, cipherName);
+                if (
+                    pass.equals(
+                            readPasses(curPassesFiles.passesFile)
+                                    .getProperty(PASS_PROP_PREFIX + cipherName)
+                    )
+                ) {
+                    CipherImpl.checkWorking(cipherImpl, REDUCED_ITERATIONS_NUM);
+                    return Mode.REDUCED;
+                }
+            } catch (IOException | GeneralSecurityException ex) {
+                log.warn(() -> "Failed to read the self-test passes: ", ex);
+                pass = null;
+            }
+        }
+        
+        CipherImpl.checkWorking(cipherImpl);
+        if (pass != null) {
+            try {
+                recordPass(curPassesFiles.passesFile, cipherName, pass);
+            } catch (IOException ex) {
+                log.warn(() -> "Failed to record the self-test pass of " + cipherName + ": ", ex);
+            }
+        }
+        return Mode.FULL;
+    }
+    
+    /**
+     * Checks cipherImpl against the known answer of cipherName (if any), and the key derivation against its known answer.
+     * @param cipherName
+     * @param cipherImpl
+     * @throws GeneralSecurityException if a result is not the known answer.
+     */
+    public static void checkKnownAnswers(String cipherName, CipherImpl cipherImpl)
+            throws GeneralSecurityException {
+        KnownAnswer answer = KNOWN_ANSWERS.get(cipherName);
+        if (answer == null) {
+            return;
+        }
+        SecretKey key = cipherImpl.bytesToKey(answer.key.clone());
+        if (!Arrays.equals(answer.encrypted, cipherImpl.encryptBytes(answer.plain, key, answer.iv))) {
+            throw new GeneralSecurityException(cipherName + " encryption known answer test failed.");
+        }
+        if (!Arrays.equals(answer.plain, cipherImpl.decryptBytes(answer.encrypted, key, answer.iv))) {
+            throw new GeneralSecurityException(cipherName + " decryption known answer test failed.");
+        }
+        MemUtils.tryDestroyKey(key);
+        
+        byte[] salt = new byte[32];
+        for (int i = 0; i < salt.length; i++) {
+            salt[i] = (byte) i;
+        }
+        byte[] expectedKeyBytes = HEX.parseHex(DERIVATION_KEY_HEX);
+        SecretKey derivKey = cipherImpl
+                .getDerivatedKeyFrom(DERIVATION_PW.toCharArray(), salt, REDUCED_ITERATIONS_NUM);
+        byte[] derivKeyBytes = derivKey.getEncoded();
+        int comparedLen = Math.min(expectedKeyBytes.length, derivKeyBytes.length); // PBKDF2 output is a prefix of longer outputs
+        boolean isExpectedDerivKey = Arrays
+                .equals(expectedKeyBytes, 0, comparedLen, derivKeyBytes, 0, comparedLen);
+        MemUtils.clearByteArray(derivKeyBytes);
+        MemUtils.tryDestroyKey(derivKey);
+        if (!isExpectedDerivKey) {
+            throw new GeneralSecurityException(
+                    cipherName + " key derivation known answer test failed."
+            );
+        }
+    }
+    
+    private static synchronized Properties readPasses(File file) throws IOException {
+        Properties res = new Properties();
+        if (file.isFile()) {
+            try (FileInputStream fileIn = new FileInputStream(file)) {
+                res.load(fileIn);
+            }
+        }
+        return res;
+    }
+    
+    private static synchronized void recordPass(File file, String cipherName, String pass)
+            throws IOException {
+        Properties passes = readPasses(file);
+        passes.setProperty(PASS_PROP_PREFIX + cipherName, pass);
+        try (FileWriter writer = new FileWriter(file)) {
+            passes.store(writer, null);
+        }
+    }
+    
+    /**
+     * @param keyFile
+     * @param cipherName
+     * @return the pass of cipherName in the current environment, authenticated by the key of keyFile (which is
+     * created if needed).
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    private static synchronized String getPass(File keyFile, String cipherName)
+            throws IOException, GeneralSecurityException {
+        Path keyPath = keyFile.toPath();
+        byte[] keyBytes;
+        if (!Files.exists(keyPath)) {
+            keyBytes = new byte[PASS_KEY_LEN];
+            RandomPool.nextBytes(keyBytes);
+            FileUtils.createOwnerOnlyFile(keyPath);
+            Files.write(keyPath, keyBytes);
+        } else {
+            keyBytes = Files.readAllBytes(keyPath);
+            if (keyBytes.length != PASS_KEY_LEN) {
+                MemUtils.clearByteArray(keyBytes);
+                throw new GeneralSecurityException("Invalid self-test key file.");
+            }
+        }
+        Mac mac = Mac.getInstance(PASS_ALGO);
+        mac.init(new SecretKeySpec(keyBytes, PASS_ALGO));
+        MemUtils.clearByteArray(keyBytes);
+        String data = CHECKS_VER + "\n" + cipherName + "\n" + getEnvFingerprint();
+        return HEX.formatHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+    
+    /**
+     * @return a fingerprint of the JVM and of the installed security providers, on which the results of the checks
+     * depend.
+     * @throws GeneralSecurityException
+     */
+    private static synchronized String getEnvFingerprint() throws GeneralSecurityException {
+        if (envFingerprint == null) {
+            StringBuilder sb = new StringBuilder();
+            for (String propKey : new String[] {
+                    "java.vendor", "java.vm.name", "java.vm.version", "java.runtime.version",
+                    "os.arch"
+            }) {
+                sb.append(propKey).append('=').append(System.getProperty(propKey)).append('\n');
+            }
+            for (Provider provider : Security.getProviders()) {
+                sb.append(provider.getName())
+                        .append(' ')
+                        .append(provider.getVersionStr())
+                        .append(' ')
+                        .append(provider.getClass().getName())
+                        .append('\n');
+            }
+            envFingerprint = HEX.formatHex(
+                    MessageDigest.getInstance("SHA-256")
+                            .digest(sb.toString().getBytes(StandardCharsets.UTF_8))
+            );
+        }
+        return envFingerprint;
+    }
+    
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.ciphers;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+
+import fr.tigeriodev.tigersafe.logs.Level;
+import fr.tigeriodev.tigersafe.logs.Logger;
+import fr.tigeriodev.tigersafe.logs.Logs;
+import fr.tigeriodev.tigersafe.utils.CheckUtils;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
+
+/**
+ * Cache of keys derivated from a single password, by cipher and derivation salt, in order to avoid
+ * running the (intentionally slow) key derivation several times for the same salt, e.g. when a safe
+ * file is written, then verified, then loaded again.
+ * NB: An instance must only be used with the same password, a new instance should be used after a password change.
+ * Entries expire after a time limit and are cleared from memory on expiration, eviction and destroy.
+ * The cached keys are stored in the {@link SecretArena}.
+ */
+public final class DerivedKeyCache implements Destroyable {
+    
+    private static final Logger log = Logs.newLogger(DerivedKeyCache.class);
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    public static final int DEFAULT_MAX_ENTRIES = 4;
+    
+    private static final class Entry {
+        
+        final Cipher cipher;
+        final byte[] salt;
+        final int iterationsNum;
+        final SecretArena.Secret key;
+        final String keyAlgorithm;
+        final long expirationTime;
+        
+        Entry(Cipher cipher, byte[] salt, int iterationsNum, SecretArena.Secret key,
+                String keyAlgorithm, long expirationTime) {
+            this.cipher = cipher;
+            this.salt = salt;
+            this.iterationsNum = iterationsNum;
+            this.key = key;
+            this.keyAlgorithm = keyAlgorithm;
+            this.expirationTime = expirationTime;
+        }
+        
+        boolean matches(Cipher cipher, byte[] salt, int iterationsNum) {
+            return this.cipher.equals(cipher)
+                    && this.iterationsNum == iterationsNum
+                    && Arrays.equals(this.salt, salt);
+        }
+        
+        void clear() {
+            MemUtils.clearByteArray(salt);
+            MemUtils.tryDestroy(key);
+        }
+        
+    }
+    
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final List<Entry> entries = new ArrayList<>();
+    private boolean isDestroyed = false;
+    private int hitsNum = 0;
+    private int derivationsNum = 0;
+    
+    public DerivedKeyCache() {
+        this(DEFAULT_TTL_MILLIS, DEFAULT_MAX_ENTRIES);
+    }
+    
+    public DerivedKeyCache(long ttlMillis, int maxEntries) {
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("Negative TTL.");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.maxEntries = CheckUtils.strictlyPositive(maxEntries);
+    }
+    
+    /**
+     * Same as {@link #getDerivatedKey(Cipher, char[], byte[], int)} with {@link KeyDerivation#LEGACY_ITERATIONS_NUM}.
+     */
+    public SecretKey getDerivatedKey(Cipher cipher, char[] password, byte[] salt)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        return getDerivatedKey(cipher, password, salt, KeyDerivation.LEGACY_ITERATIONS_NUM);
+    }
+    
+    /**
+     * The returned key is independent of this cache, it should be destroyed after use.
+     * On a hit, the returned key is backed by the {@link SecretArena} (see
+     * {@link SecretArena#newSecretKey(SecretArena.Secret, String)}), so that no copy of it is made in the heap.
+     * @param cipher
+     * @param password
+     * @param salt
+     * @param iterationsNum
+     * @return the key derivated from password and salt by cipher, either cached or newly derivated (and then cached).
+     * @throws NoSuchAlgorithmException
+     * @throws InvalidKeySpecException
+     */
+    public synchronized SecretKey getDerivatedKey(Cipher cipher, char[] password, byte[] salt,
+            int iterationsNum) throws NoSuchAlgorithmException, InvalidKeySpecException {
+        checkNotDestroyed();
+        CheckUtils.notNull(cipher);
+        removeExpiredEntries();
+        for (Entry entry : entries) {
+            if (entry.matches(cipher, salt, iterationsNum)) {
+                hitsNum++;
+                log.newChildFromCurMethIf(Level.DEBUG)
+                        .debug(() -> "hit for " + cipher.getName() + " cipher");
+                return SecretArena.newSecretKey(entry.key, entry.keyAlgorithm);
+            }
+        }
+        
+        SecretKey res = cipher.getDerivatedKeyFrom(password, salt, iterationsNum);
+        derivationsNum++;
+        if (entries.size() >= maxEntries) {
+            entries.remove(0).clear();
+        }
+        byte[] keyBytes = cipher.keyToBytes(res);
+        try {
+            entries.add(
+                    new Entry(
+                            cipher,
+                            salt.clone(),
+                            iterationsNum,
+                            SecretArena.newSecret(keyBytes),
+                            res.getAlgorithm(),
+                            System.nanoTime() + ttlNanos
+                    )
+            );
+        } finally {
+            MemUtils.clearByteArray(keyBytes);
+        }
+        return res;
+    }
+    
+    private void removeExpiredEntries() {
+        long now = System.nanoTime();
+        Iterator<Entry> it = entries.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (now - entry.expirationTime >= 0) {
+                entry.clear();
+                it.remove();
+            }
+        }
+    }
+    
+    public synchronized void clear() {
+        for (Entry entry : entries) {
+            entry.clear();
+        }
+        entries.clear();
+    }
+    
+    public synchronized int getEntriesNum() {
+        removeExpiredEntries();
+        return entries.size();
+    }
+    
+    public synchronized int getHitsNum() {
+        return hitsNum;
+    }
+    
+    public synchronized int getDerivationsNum() {
+        return derivationsNum;
+    }
+    
+    private void checkNotDestroyed() {
+        if (isDestroyed) {
+            throw new IllegalStateException("This cache has been destroyed.");
+        }
+    }
+    
+    @Override
+    public synchronized void destroy() throws DestroyFailedException {
+        clear();
+        isDestroyed = true;
+    }
+    
+    @Override
+    public synchronized boolean isDestroyed() {
+        return isDestroyed;
+    }
+    
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.ciphers;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-thread pool of JCA engine objects (e.g. {@link javax.crypto.Cipher}), whose provider lookup and
+ * construction cost more than a small block encryption.
+ * An engine must only be used by one thread at a time. A released engine becomes available to the releasing
+ * thread, which is not necessarily the acquiring one (e.g. a stream opened by a worker and closed by the caller).
+ * NB: This class does not clear the engines, the owner must make them forget their key material before releasing them.
+ * @param <T> the engine type
+ */
+public final class EnginePool<T> {
+    
+    public static final int MAX_POOLED_PER_THREAD = 4;
+    
+    private static final AtomicLong creationsNum = new AtomicLong();
+    private static final AtomicLong reusesNum = new AtomicLong();
+    
+    @FunctionalInterface
+    interface EngineFactory<T> {
+        
+        T newEngine() throws GeneralSecurityException;
+        
+    }
+    
+    private final EngineFactory<T> factory;
+    private final ThreadLocal<ArrayDeque<T>> pools = ThreadLocal.withInitial(ArrayDeque::new);
+    
+    EnginePool(EngineFactory<T> factory) {
+        this.factory = factory;
+    }
+    
+    T acquire() throws GeneralSecurityException {
+        T res = pools.get().pollLast();
+        if (res != null) {
+            reusesNum.incrementAndGet();
+            return res;
+        }
+        res = factory.newEngine();
+        creationsNum.incrementAndGet();
+        return res;
+    }
+    
+    /**
+     * @param engine an engine previously returned by {@link #acquire()}, which must not be used anymore by the caller.
+     */
+    void release(T engine) {
+        ArrayDeque<T> pool = pools.get();
+        if (pool.size() < MAX_POOLED_PER_THREAD) {
+            pool.addLast(engine);
+        }
+    }
+    
+    public static long getCreationsNum() {
+        return creationsNum.get();
+    }
+    
+    public static long getReusesNum() {
+        return reusesNum.get();
+    }
+    
+    public static String getStatsDebug() {
+        return "creations = " + getCreationsNum() + ", reuses = " + getReusesNum();
+    }
+    
+}
@@ -18,13 +18,15 @@
 
 package fr.tigeriodev.tigersafe.ciphers;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidKeySpecException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.crypto.CipherOutputStream;
 import javax.crypto.KeyGenerator;
@@ -35,6 +37,7 @@
 
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.RandomPool;
 
 public abstract class JavaCipherImpl implements CipherImpl {
     
@@ -55,11 +58,29 @@ public abstract class JavaCipherImpl implements CipherImpl {
      */
     private final int ivSize;
     
+    private static final EnginePool<SecretKeyFactory> keyFactoryPool =
+            new EnginePool<>(() -> SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256"));
+    private final EnginePool<KeyGenerator> keyGeneratorPool;
+    private final EnginePool<javax.crypto.Cipher> cipherPool;
+    /**
+     * Dummy (zero) key used to re-init the pooled ciphers when they are released, so that they
+     * forget the key material of their last use.
+     */
+    private final SecretKey wipeKey;
+    /**
+     * Counter of the IVs used with {@link #wipeKey}, so that they are never reused without drawing
+     * random bytes.
+     */
+    private final AtomicLong wipeIvCounter = new AtomicLong();
+    
     public JavaCipherImpl(String algoName, String transformationName, int keySize, int ivSize) {
         this.algoName = CheckUtils.notEmpty(algoName);
         this.transformationName = CheckUtils.notEmpty(transformationName);
         this.keySize = CheckUtils.strictlyPositive(keySize);
         this.ivSize = CheckUtils.strictlyPositive(ivSize);
+        keyGeneratorPool = new EnginePool<>(() -> KeyGenerator.getInstance(algoName));
+        cipherPool = new EnginePool<>(() -> javax.crypto.Cipher.getInstance(transformationName));
+        wipeKey = new SecretKeySpec(new byte[keySize], algoName);
     }
     
     public int getKeySizeBits() {
@@ -68,9 +89,11 @@ public int getKeySizeBits() {
     
     @Override
     public SecretKey newKey() throws NoSuchAlgorithmException {
-        KeyGenerator keyGenerator = KeyGenerator.getInstance(algoName);
-        keyGenerator.init(getKeySizeBits());
-        return keyGenerator.generateKey();
+        KeyGenerator keyGenerator = acquireEngine(keyGeneratorPool);
+        keyGenerator.init(getKeySizeBits(), RandomPool.getSecureRandom());
+        SecretKey res = keyGenerator.generateKey();
+        keyGeneratorPool.release(keyGenerator);
+        return res;
     }
     
     @Override
@@ -98,7 +121,7 @@ public SecretKey bytesToKey(byte[] keyBytes) {
     @Override
     public byte[] newIv() throws NoSuchAlgorithmException {
         byte[] res = new byte[ivSize];
-        SecureRandom.getInstanceStrong().nextBytes(res);
+        RandomPool.nextBytes(res);
         return res;
     }
     
@@ -110,7 +133,7 @@ public int getIvSize() {
     @Override
     public byte[] newDerivationSalt() throws NoSuchAlgorithmException {
         byte[] res = new byte[getDerivationSaltSize()];
-        SecureRandom.getInstanceStrong().nextBytes(res);
+        RandomPool.nextBytes(res);
         return res;
     }
     
@@ -120,16 +143,17 @@ public int getDerivationSaltSize() {
     }
     
     @Override
-    public SecretKey getDerivatedKeyFrom(char[] password, byte[] salt)
+    public SecretKey getDerivatedKeyFrom(char[] password, byte[] salt, int iterationsNum)
             throws NoSuchAlgorithmException, InvalidKeySpecException {
         if (salt.length != getDerivationSaltSize()) {
             throw new IllegalArgumentException("Invalid salt size.");
         }
-        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        CheckUtils.strictlyPositive(iterationsNum);
+        SecretKeyFactory factory = acquireEngine(keyFactoryPool);
         PBEKeySpec spec = null;
         SecretKey generatedKey = null;
         try {
-            spec = new PBEKeySpec(password, salt, 600000, getKeySizeBits()); // https://en.wikipedia.org/wiki/PBKDF2
+            spec = new PBEKeySpec(password, salt, iterationsNum, getKeySizeBits()); // https://en.wikipedia.org/wiki/PBKDF2
             generatedKey = factory.generateSecret(spec);
             byte[] keyBytes = generatedKey.getEncoded(); // returns a clone
             SecretKey res = new SecretKeySpec(keyBytes, algoName); // keyBytes is cloned
@@ -142,50 +166,142 @@ public SecretKey getDerivatedKeyFrom(char[] password, byte[] salt)
             if (generatedKey != null) {
                 MemUtils.tryDestroyPBKDF2Key(generatedKey);
             }
+            keyFactoryPool.release(factory);
         }
     }
     
     @Override
     public byte[] encryptBytes(byte[] plainBytes, SecretKey key, byte[] iv)
             throws GeneralSecurityException {
-        javax.crypto.Cipher cipher = getCipher(javax.crypto.Cipher.ENCRYPT_MODE, key, iv);
-        byte[] encryptedBytes = cipher.doFinal(plainBytes);
-        return encryptedBytes;
+        javax.crypto.Cipher cipher = acquireCipher(javax.crypto.Cipher.ENCRYPT_MODE, key, iv);
+        try {
+            return cipher.doFinal(plainBytes);
+        } finally {
+            releaseCipher(cipher);
+        }
     }
     
     @Override
     public byte[] decryptBytes(byte[] encryptedBytes, SecretKey key, byte[] iv)
             throws GeneralSecurityException {
-        javax.crypto.Cipher cipher = getCipher(javax.crypto.Cipher.DECRYPT_MODE, key, iv);
-        byte[] plainBytes = cipher.doFinal(encryptedBytes);
-        return plainBytes;
+        javax.crypto.Cipher cipher = acquireCipher(javax.crypto.Cipher.DECRYPT_MODE, key, iv);
+        try {
+            return cipher.doFinal(encryptedBytes);
+        } finally {
+            releaseCipher(cipher);
+        }
+    }
+    
+    @Override
+    public int decryptBuffer(ByteBuffer encrypted, SecretKey key, byte[] iv, ByteBuffer dest)
+            throws GeneralSecurityException {
+        javax.crypto.Cipher cipher = acquireCipher(javax.crypto.Cipher.DECRYPT_MODE, key, iv);
+        try {
+            return cipher.doFinal(encrypted, dest);
+        } finally {
+            releaseCipher(cipher);
+        }
     }
     
+    /**
+     * The cipher of the returned stream is released when the stream is closed.
+     */
     @Override
     public OutputStream newEncryptionStream(SecretKey key, byte[] iv, OutputStream out)
             throws GeneralSecurityException {
-        return new CipherOutputStream(out, getCipher(javax.crypto.Cipher.ENCRYPT_MODE, key, iv));
+        javax.crypto.Cipher cipher = acquireCipher(javax.crypto.Cipher.ENCRYPT_MODE, key, iv);
+        return new CipherOutputStream(out, cipher) {
+            
+            private boolean isReleased = false;
+            
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!isReleased) {
+                        isReleased = true;
+                        releaseCipher(cipher);
+                    }
+                }
+            }
+            
+        };
     }
     
+    /**
+     * The cipher of the returned stream is released when the stream is closed.
+     */
     @Override
     public InputStream newDecryptionStream(InputStream in, SecretKey key, byte[] iv)
             throws GeneralSecurityException {
-        return new SecureCipherInputStream(
-                in,
-                getCipher(javax.crypto.Cipher.DECRYPT_MODE, key, iv)
-        );
+        javax.crypto.Cipher cipher = acquireCipher(javax.crypto.Cipher.DECRYPT_MODE, key, iv);
+        return new SecureCipherInputStream(in, cipher) {
+            
+            private boolean isReleased = false;
+            
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!isReleased) {
+                        isReleased = true;
+                        releaseCipher(cipher);
+                    }
+                }
+            }
+            
+        };
     }
     
-    private javax.crypto.Cipher getCipher(int opmode, SecretKey key, byte[] iv)
+    private javax.crypto.Cipher acquireCipher(int opmode, SecretKey key, byte[] iv)
             throws GeneralSecurityException {
         if (iv.length != ivSize) {
             throw new IllegalArgumentException("Invalid iv size.");
         }
-        javax.crypto.Cipher cipher = javax.crypto.Cipher.getInstance(transformationName);
-        cipher.init(opmode, key, newParameterSpec(iv));
+        javax.crypto.Cipher cipher = cipherPool.acquire();
+        cipher.init(opmode, key, newParameterSpec(iv)); // if it fails, the cipher is not returned to the pool
         return cipher;
     }
     
+    /**
+     * Re-inits cipher with {@link #wipeKey} and a wipe IV, then returns it to the pool.
+     * NB: The encryption mode is needed because AEAD javax ciphers remember the key and IV of their last
+     * encryption init (to refuse their reuse), a decryption init would keep them.
+     * The wipe IV comes from a counter rather than {@link #newIv()}: it only needs to differ from the
+     * previous wipe IV (the key is public), not to be random.
+     * The cipher is discarded if it cannot be re-inited.
+     * @param cipher must not be used anymore by the caller.
+     */
+    private void releaseCipher(javax.crypto.Cipher cipher) {
+        try {
+            cipher.init(javax.crypto.Cipher.ENCRYPT_MODE, wipeKey, newParameterSpec(newWipeIv()));
+        } catch (GeneralSecurityException | RuntimeException ex) {
+            return;
+        }
+        cipherPool.release(cipher);
+    }
+    
+    private byte[] newWipeIv() {
+        byte[] res = new byte[ivSize];
+        long counter = wipeIvCounter.incrementAndGet();
+        for (int i = 0; i < Long.BYTES && i < ivSize; i++) {
+            res[i] = (byte) (counter >>> (i * Byte.SIZE));
+        }
+        return res;
+    }
+    
+    private static <T> T acquireEngine(EnginePool<T> pool) throws NoSuchAlgorithmException {
+        try {
+            return pool.acquire();
+        } catch (NoSuchAlgorithmException ex) {
+            throw ex;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
     public abstract AlgorithmParameterSpec newParameterSpec(byte[] iv);
     
 }
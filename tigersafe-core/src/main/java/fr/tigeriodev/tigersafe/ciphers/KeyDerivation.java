@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.ciphers;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import fr.tigeriodev.tigersafe.logs.Level;
+import fr.tigeriodev.tigersafe.logs.Logger;
+import fr.tigeriodev.tigersafe.logs.Logs;
+import fr.tigeriodev.tigersafe.utils.CheckUtils;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+
+/**
+ * Cost of the (intentionally slow) derivation of keys from passwords, see {@link CipherImpl#getDerivatedKeyFrom(char[], byte[], int)}.
+ * The iterations number can be calibrated for a target duration on the current host, it must then be stored
+ * next to the derivation salt, since the same iterations number is needed to derivate the same key again.
+ */
+public final class KeyDerivation {
+    
+    private static final Logger log = Logs.newLogger(KeyDerivation.class);
+    /**
+     * Iterations number of the data written before the calibration, which doesn't store it.
+     */
+    public static final int LEGACY_ITERATIONS_NUM = 600000;
+    public static final int MIN_ITERATIONS_NUM = 100000;
+    public static final int MAX_ITERATIONS_NUM = 100000000;
+    /**
+     * Calibrated iterations numbers are rounded up to a multiple of this step.
+     */
+    public static final int ITERATIONS_NUM_STEP = 1000;
+    private static final int SAMPLE_ITERATIONS_NUM = 20000;
+    private static final int SAMPLES_NUM = 3;
+    
+    /**
+     * Duration of a derivation of {@link #SAMPLE_ITERATIONS_NUM} iterations on the current host, by cipher.
+     */
+    private static final Map<Cipher, Long> sampleNanosByCipher = new ConcurrentHashMap<>();
+    
+    private KeyDerivation() {}
+    
+    public static boolean isValidIterationsNum(int iterationsNum) {
+        return iterationsNum >= MIN_ITERATIONS_NUM && iterationsNum <= MAX_ITERATIONS_NUM;
+    }
+    
+    public static int checkIterationsNum(int iterationsNum) {
+        return CheckUtils.inRange(iterationsNum, MIN_ITERATIONS_NUM, MAX_ITERATIONS_NUM);
+    }
+    
+    /**
+     * The derivation throughput of the host is only measured once per cipher, then reused.
+     * @param cipher
+     * @param targetMillis the target duration of a derivation on the current host
+     * @param minIterationsNum the floor of the result, regardless of the host
+     * @return the iterations number for which a derivation by cipher on the current host should take about targetMillis,
+     * but at least minIterationsNum.
+     * @throws NoSuchAlgorithmException
+     * @throws InvalidKeySpecException
+     */
+    public static int calibrate(Cipher cipher, long targetMillis, int minIterationsNum)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        CheckUtils.notNull(cipher);
+        checkIterationsNum(minIterationsNum);
+        if (targetMillis <= 0) {
+            throw new IllegalArgumentException("Target duration must be strictly positive.");
+        }
+        long sampleNanos = getSampleNanos(cipher);
+        double targetIterationsNum = (double) SAMPLE_ITERATIONS_NUM
+                * TimeUnit.MILLISECONDS.toNanos(targetMillis)
+                / sampleNanos;
+        long roundedIterationsNum =
+                (long) Math.ceil(targetIterationsNum / ITERATIONS_NUM_STEP) * ITERATIONS_NUM_STEP;
+        int res = (int) Math
+                .max(minIterationsNum, Math.min(MAX_ITERATIONS_NUM, roundedIterationsNum));
+        log.newChildFromCurMethIf(Level.DEBUG)
+                .debug(
+                        () -> cipher.getName() + " cipher: sampleNanos = " + sampleNanos
+                                + ", targetMillis = " + targetMillis + ", iterationsNum = " + res
+                );
+        return res;
+    }
+    
+    private static long getSampleNanos(Cipher cipher)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        Long res = sampleNanosByCipher.get(cipher);
+        if (res == null) {
+            res = measureSampleNanos(cipher);
+            sampleNanosByCipher.put(cipher, res);
+        }
+        return res;
+    }
+    
+    /**
+     * @param cipher
+     * @return the shortest duration of several derivations of {@link #SAMPLE_ITERATIONS_NUM} iterations, the first ones
+     * being slowed down by the warm-up of the JVM.
+     * @throws NoSuchAlgorithmException
+     * @throws InvalidKeySpecException
+     */
+    private static long measureSampleNanos(Cipher cipher)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        char[] pw = "calibrationPassword".toCharArray();
+        byte[] salt = cipher.newDerivationSalt();
+        long res = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES_NUM; i++) {
+            long startTime = System.nanoTime();
+            SecretKey key = cipher.getDerivatedKeyFrom(pw, salt, SAMPLE_ITERATIONS_NUM);
+            res = Math.min(res, System.nanoTime() - startTime);
+            MemUtils.tryDestroyKey(key);
+        }
+        return Math.max(1, res);
+    }
+    
+    /**
+     * Forgets the measured derivation throughput of the host, e.g. when its load has changed.
+     */
+    public static void resetCalibration() {
+        sampleNanosByCipher.clear();
+    }
+    
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.data;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.RandomUtils;
+
+/**
+ * Keyed running digest (HMAC-SHA256) of a sequence of password entries data, used to check that a
+ * written safe file (of version 2+) is read back identically without keeping a second set of entries in
+ * memory.
+ * The plain fields of each entry are digested from a canonical encoding, whereas its password and TOTP are
+ * digested from the plain bytes of their records, as they are written (see {@link #getPasswordsDigest()})
+ * and as they are read (see {@link #update(PasswordEntry.Data)}), so that the records are never unsealed.
+ * Two sequences have the same digest if and only if (barring collisions) they are equal in the same order.
+ * The key is random and only lives as long as this instance, so that the digests cannot be computed
+ * nor compared outside of a single verification.
+ */
+final class EntriesDigest implements Destroyable {
+    
+    private static final String MAC_ALGO = "HmacSHA256";
+    private static final int KEY_LEN = 32;
+    private static final int BUF_LEN = 512;
+    
+    /**
+     * Digest of the plain bytes of a kind of records (e.g. the passwords), in the order of the entries.
+     * It is independent of the other kinds, so that each kind can be digested by the thread writing its
+     * records, but it must only be used by one thread at a time.
+     */
+    final class RecordsDigest extends OutputStream {
+        
+        private final Mac recordsMac;
+        private final byte[] lenBytes = new byte[Integer.BYTES];
+        private int recordLen = 0;
+        
+        private RecordsDigest() throws GeneralSecurityException {
+            recordsMac = Mac.getInstance(MAC_ALGO);
+            recordsMac.init(key);
+        }
+        
+        @Override
+        public void write(int b) {
+            recordsMac.update((byte) b);
+            recordLen++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            recordsMac.update(b, off, len);
+            recordLen += len;
+        }
+        
+        /**
+         * Ends the current record, by digesting its length after its bytes.
+         */
+        void endRecord() {
+            ByteBuffer.wrap(lenBytes).putInt(recordLen);
+            recordsMac.update(lenBytes);
+            recordLen = 0;
+        }
+        
+        /**
+         * Digests the plain bytes of sealed as a record, without unsealing it.
+         * @param sealed
+         * @throws IOException
+         * @throws GeneralSecurityException
+         */
+        void updateRecord(SealedRecords.Record sealed)
+                throws IOException, GeneralSecurityException {
+            sealed.copyPlainTo(new DataOutputStream(this));
+            endRecord();
+        }
+        
+        private byte[] finish() {
+            if (recordLen != 0) {
+                throw new IllegalStateException("Record not ended.");
+            }
+            return recordsMac.doFinal();
+        }
+        
+    }
+    
+    private final Mac mac;
+    private final ByteBuffer buf = ByteBuffer.allocate(BUF_LEN);
+    private SecretKey key;
+    private final RecordsDigest passwordsDigest;
+    private final RecordsDigest totpsDigest;
+    private long entriesNum = 0;
+    
+    EntriesDigest() throws GeneralSecurityException {
+        byte[] keyBytes = RandomUtils.newRandomBytesOfLen(KEY_LEN);
+        key = new SecretKeySpec(keyBytes, MAC_ALGO);
+        MemUtils.clearByteArray(keyBytes);
+        mac = Mac.getInstance(MAC_ALGO);
+        mac.init(key);
+        passwordsDigest = new RecordsDigest();
+        totpsDigest = new RecordsDigest();
+    }
+    
+    /**
+     * @return the digest of the password records, to update with each written record.
+     */
+    RecordsDigest getPasswordsDigest() {
+        checkNotDestroyed();
+        return passwordsDigest;
+    }
+    
+    /**
+     * @return the digest of the TOTP records (of the entries which have a TOTP), to update with each written
+     * record.
+     */
+    RecordsDigest getTOTPsDigest() {
+        checkNotDestroyed();
+        return totpsDigest;
+    }
+    
+    /**
+     * Digests the plain fields of the given entry data, its records being digested separately (see
+     * {@link #getPasswordsDigest()} and {@link #getTOTPsDigest()}), e.g. while they are written.
+     * @param data
+     */
+    synchronized void updateFields(PasswordEntry.Data data) {
+        checkNotDestroyed();
+        updateChars(data.name);
+        ensureRemaining(Long.BYTES);
+        buf.putLong(data.lastPasswordChangeTime.getEpochSecond());
+        updateChars(data.site);
+        updateChars(data.info);
+        ensureRemaining(Byte.BYTES);
+        buf.put((byte) (data.hasTOTP() ? 1 : 0));
+        entriesNum++;
+    }
+    
+    /**
+     * Digests the given entry data, read from a safe file, including the plain bytes of its records which
+     * are decrypted without being unsealed.
+     * @param data
+     * @throws IllegalStateException if the password or the TOTP of data is not sealed (e.g. if it has been
+     * read from a safe file of version 1).
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    synchronized void update(PasswordEntry.Data data) throws IOException, GeneralSecurityException {
+        synchronized (data) {
+            SealedRecords.Record sealedPassword = data.getSealedPassword();
+            SealedRecords.Record sealedTOTP = data.getSealedTOTP();
+            if (sealedPassword == null || (data.hasTOTP() && sealedTOTP == null)) {
+                throw new IllegalStateException("The records of data are not sealed.");
+            }
+            updateFields(data);
+            passwordsDigest.updateRecord(sealedPassword);
+            if (sealedTOTP != null) {
+                totpsDigest.updateRecord(sealedTOTP);
+            }
+        }
+    }
+    
+    /**
+     * Completes the digest of the entries digested since the previous call (or the creation), and
+     * resets it for a new sequence with the same key.
+     * @return the digest, which includes the number of digested entries and the digests of their records.
+     */
+    synchronized byte[] finish() {
+        checkNotDestroyed();
+        ensureRemaining(Long.BYTES);
+        buf.putLong(entriesNum);
+        flush();
+        mac.update(passwordsDigest.finish());
+        mac.update(totpsDigest.finish());
+        entriesNum = 0;
+        return mac.doFinal();
+    }
+    
+    /**
+     * Digests the length of chars followed by its UTF-16 code units, without copying them outside of buf.
+     * @param chars
+     */
+    private void updateChars(CharSequence chars) {
+        int len = chars.length();
+        ensureRemaining(Integer.BYTES);
+        buf.putInt(len);
+        for (int i = 0; i < len; i++) {
+            ensureRemaining(Character.BYTES);
+            buf.putChar(chars.charAt(i));
+        }
+    }
+    
+    private void ensureRemaining(int len) {
+        if (buf.remaining() < len) {
+            flush();
+        }
+    }
+    
+    private void flush() {
+        mac.update(buf.array(), 0, buf.position());
+        MemUtils.clearByteArray(buf.array());
+        buf.clear();
+    }
+    
+    private void checkNotDestroyed() {
+        if (key == null) {
+            throw new IllegalStateException("This digest has been destroyed.");
+        }
+    }
+    
+    @Override
+    public synchronized void destroy() throws DestroyFailedException {
+        if (key == null) {
+            return;
+        }
+        mac.reset();
+        passwordsDigest.recordsMac.reset();
+        totpsDigest.recordsMac.reset();
+        MemUtils.clearByteArray(buf.array());
+        boolean success = MemUtils.tryDestroyKey(key);
+        key = null;
+        if (!success) {
+            throw new DestroyFailedException();
+        }
+    }
+    
+    @Override
+    public synchronized boolean isDestroyed() {
+        return key == null;
+    }
+    
+}
@@ -19,7 +19,6 @@
 package fr.tigeriodev.tigersafe.data;
 
 import java.time.Instant;
-import java.util.Arrays;
 import java.util.Objects;
 
 import javax.security.auth.DestroyFailedException;
@@ -27,13 +26,14 @@
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
 import fr.tigeriodev.tigersafe.utils.DatetimeUtils;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
 import fr.tigeriodev.tigersafe.utils.StringUtils;
 
 public final class ExistingPasswordEntry extends PasswordEntry {
     
     public final Data originalData;
     private String newName = null;
-    private char[] newPassword = null;
+    private SecretArena.Secret newPassword = null;
     private Instant newLastPasswordChangeTime = null;
     private String newSite = null;
     private String newInfo = null;
@@ -74,16 +74,21 @@ protected void setNewName(String newValSrc, SafeDataManager dm) {
     
     @Override
     public char[] getCurrentPassword() {
-        return newPassword != null ? newPassword : originalData.getPassword();
+        return getCurrentPasswordSecret().readChars();
+    }
+    
+    @Override
+    SecretArena.Secret getCurrentPasswordSecret() {
+        return newPassword != null ? newPassword : originalData.getPasswordSecret();
     }
     
     @Override
     protected void setNewPassword(char[] newValSrc) {
         if (newPassword != null) {
-            MemUtils.clearCharArray(newPassword);
+            MemUtils.tryDestroy(newPassword);
         }
-        boolean isDiffPw = !Arrays.equals(originalData.getPassword(), newValSrc);
-        newPassword = isDiffPw ? newValSrc.clone() : null;
+        boolean isDiffPw = !originalData.getPasswordSecret().contentEquals(newValSrc);
+        newPassword = isDiffPw ? SecretArena.newSecret(newValSrc) : null;
         newLastPasswordChangeTime = isDiffPw ? DatetimeUtils.nowWithoutNanos() : null;
     }
     
@@ -122,7 +127,7 @@ protected void setNewInfo(String newValSrc) {
     
     @Override
     public TOTP getCurrentTOTP() {
-        return hasNewTOTP ? newTOTP : originalData.totp;
+        return hasNewTOTP ? newTOTP : originalData.getTOTP();
     }
     
     @Override
@@ -130,7 +135,7 @@ protected void setNewTOTP(TOTP newValSrc) {
         if (newTOTP != null) {
             MemUtils.tryDestroy(newTOTP);
         }
-        if (!Objects.equals(originalData.totp, newValSrc)) {
+        if (!Objects.equals(originalData.getTOTP(), newValSrc)) {
             hasNewTOTP = true;
             newTOTP = newValSrc != null ? newValSrc.duplicate() : null;
         } else {
@@ -153,7 +158,7 @@ public Data getData() {
         return isModified()
                 ? new Data(
                         getCurrentName(),
-                        getCurrentPassword(),
+                        getCurrentPasswordSecret(),
                         getCurrentLastPasswordChangeTime(),
                         getCurrentSite(),
                         getCurrentInfo(),
@@ -165,7 +170,8 @@ public Data getData() {
     @Override
     public String toString() {
         return "ExistingPasswordEntry [originalData=" + originalData + ", newName=" + newName
-                + ", newPassword=" + StringUtils.charArrayToObfuscatedStr(newPassword)
+                + ", newPassword="
+                + (newPassword != null ? "char[" + newPassword.getCharsNum() + "]" : "null")
                 + ", newLastPasswordChangeTime=" + newLastPasswordChangeTime + ", newSite="
                 + newSite + ", newInfo=" + newInfo + ", hasNewTOTP=" + hasNewTOTP + ", newTOTP="
                 + newTOTP + "]";
@@ -177,7 +183,7 @@ public void destroy() throws DestroyFailedException {
         success = MemUtils.tryDestroy(originalData) && success;
         
         if (newPassword != null) {
-            MemUtils.clearCharArray(newPassword);
+            success = MemUtils.tryDestroy(newPassword) && success;
             newPassword = null;
         }
         
@@ -187,13 +193,9 @@ public void destroy() throws DestroyFailedException {
         }
         hasNewTOTP = false;
         
-        success = MemUtils.tryClearString(newName) && success;
+        success = MemUtils.tryClearStrings(newName, newSite, newInfo) && success;
         newName = null;
-        
-        success = MemUtils.tryClearString(newSite) && success;
         newSite = null;
-        
-        success = MemUtils.tryClearString(newInfo) && success;
         newInfo = null;
         
         newLastPasswordChangeTime = null;
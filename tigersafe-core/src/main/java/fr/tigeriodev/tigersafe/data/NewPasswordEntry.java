@@ -25,12 +25,13 @@
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
 import fr.tigeriodev.tigersafe.utils.DatetimeUtils;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
 import fr.tigeriodev.tigersafe.utils.StringUtils;
 
 public final class NewPasswordEntry extends PasswordEntry {
     
     private String name;
-    private char[] password;
+    private SecretArena.Secret password;
     private Instant lastPasswordChangeTime;
     private String site;
     private String info;
@@ -38,7 +39,7 @@ public final class NewPasswordEntry extends PasswordEntry {
     
     NewPasswordEntry(String name) {
         this.name = CheckUtils.notNull(name);
-        this.password = new char[0];
+        this.password = SecretArena.newSecret(new char[0]);
         this.lastPasswordChangeTime = DatetimeUtils.nowWithoutNanos();
         this.site = "";
         this.info = "";
@@ -64,15 +65,20 @@ protected void setNewName(String newValSrc, SafeDataManager dm) {
     
     @Override
     public char[] getCurrentPassword() {
+        return password.readChars();
+    }
+    
+    @Override
+    SecretArena.Secret getCurrentPasswordSecret() {
         return password;
     }
     
     @Override
     protected void setNewPassword(char[] newValSrc) {
         if (password != null) {
-            MemUtils.clearCharArray(password);
+            MemUtils.tryDestroy(password);
         }
-        password = newValSrc.clone();
+        password = SecretArena.newSecret(newValSrc);
         lastPasswordChangeTime = DatetimeUtils.nowWithoutNanos();
     }
     
@@ -121,7 +127,7 @@ public Data getData() {
         try {
             return new Data(
                     getCurrentName(),
-                    getCurrentPassword(),
+                    getCurrentPasswordSecret(),
                     getCurrentLastPasswordChangeTime(),
                     getCurrentSite(),
                     getCurrentInfo(),
@@ -137,7 +143,7 @@ public void destroy() throws DestroyFailedException {
         boolean success = true;
         
         if (password != null) {
-            MemUtils.clearCharArray(password);
+            success = MemUtils.tryDestroy(password) && success;
             password = null;
         }
         
@@ -146,13 +152,9 @@ public void destroy() throws DestroyFailedException {
             totp = null;
         }
         
-        success = MemUtils.tryClearString(name) && success;
+        success = MemUtils.tryClearStrings(name, site, info) && success;
         name = null;
-        
-        success = MemUtils.tryClearString(site) && success;
         site = null;
-        
-        success = MemUtils.tryClearString(info) && success;
         info = null;
         
         lastPasswordChangeTime = null;
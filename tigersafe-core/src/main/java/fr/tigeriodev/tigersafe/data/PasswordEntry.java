@@ -18,47 +18,241 @@
 
 package fr.tigeriodev.tigersafe.data;
 
+import java.io.IOException;
+import java.security.GeneralSecurityException;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.Objects;
 
 import javax.security.auth.DestroyFailedException;
 import javax.security.auth.Destroyable;
 
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
 import fr.tigeriodev.tigersafe.utils.StringUtils;
 
 public abstract sealed class PasswordEntry implements Comparable<PasswordEntry>, Destroyable
         permits NewPasswordEntry, ExistingPasswordEntry {
     
+    /**
+     * NB: The password and the TOTP of a Data read from a safe file can be sealed (still encrypted), they are
+     * then decrypted when they are accessed for the first time.
+     * The decrypted password is stored in the {@link SecretArena}, {@link #getPassword()} only decodes it into
+     * scratch arrays.
+     */
     public static final class Data implements Destroyable {
         
         public final String name;
-        private char[] password;
+        private SecretArena.Secret password;
+        private SealedRecords.Record sealedPassword;
         public final Instant lastPasswordChangeTime;
         public final String site;
         public final String info;
-        public final TOTP totp;
+        private TOTP totp;
+        private SealedRecords.Record sealedTOTP;
+        private boolean isDestroyed = false;
         
+        /**
+         * @param name
+         * @param password copied into the {@link SecretArena}, not modified, it should be cleared by the
+         * caller if it is no longer needed
+         * @param lastPasswordChangeTime
+         * @param site
+         * @param info
+         * @param totp
+         */
         public Data(String name, char[] password, Instant lastPasswordChangeTime, String site,
                 String info, TOTP totp) {
             this.name = checkName(name);
-            this.password = checkPassword(password);
+            checkPassword(password);
             this.lastPasswordChangeTime = checkLastPasswordChangeTime(lastPasswordChangeTime);
             this.site = checkSite(site);
             this.info = checkInfo(info);
             this.totp = totp;
+            this.password = SecretArena.newSecret(password);
         }
         
         /**
-         * Should only be used for reading.
-         * @return the real value (not a duplicate)
-         * @NotNull
+         * @param name
+         * @param password shared (not copied), already checked by {@link #checkPassword(char[])} except for
+         * emptiness
+         * @param lastPasswordChangeTime
+         * @param site
+         * @param info
+         * @param totp
+         */
+        Data(String name, SecretArena.Secret password, Instant lastPasswordChangeTime, String site,
+                String info, TOTP totp) {
+            this.name = checkName(name);
+            if (password.getLength() == 0) {
+                throw new IllegalArgumentException("Password is empty.");
+            }
+            this.password = password;
+            this.lastPasswordChangeTime = checkLastPasswordChangeTime(lastPasswordChangeTime);
+            this.site = checkSite(site);
+            this.info = checkInfo(info);
+            this.totp = totp;
+        }
+        
+        /**
+         * @param name
+         * @param sealedPassword
+         * @param lastPasswordChangeTime
+         * @param site
+         * @param info
+         * @param sealedTOTP null if no TOTP
+         */
+        Data(String name, SealedRecords.Record sealedPassword, Instant lastPasswordChangeTime,
+                String site, String info, SealedRecords.Record sealedTOTP) {
+            this.name = checkName(name);
+            this.sealedPassword = CheckUtils.notNull(sealedPassword);
+            this.lastPasswordChangeTime = checkLastPasswordChangeTime(lastPasswordChangeTime);
+            this.site = checkSite(site);
+            this.info = checkInfo(info);
+            this.sealedTOTP = sealedTOTP;
+        }
+        
+        /**
+         * @return a scratch copy of the password (to clear after use), decrypted if it was sealed, or null
+         * if this data has been destroyed.
+         * @throws IllegalStateException if the sealed password cannot be decrypted.
          */
-        public char[] getPassword() {
+        public synchronized char[] getPassword() {
+            SecretArena.Secret secret = getPasswordSecret();
+            return secret != null ? secret.readChars() : null;
+        }
+        
+        /**
+         * @return the real value (not a duplicate), decrypted if it was sealed, or null if this data has
+         * been destroyed.
+         * @throws IllegalStateException if the sealed password cannot be decrypted.
+         */
+        synchronized SecretArena.Secret getPasswordSecret() {
+            if (sealedPassword != null) {
+                char[] chars;
+                try {
+                    chars = checkPassword(sealedPassword.open(SafeFileManager::readChars));
+                } catch (IOException | GeneralSecurityException ex) {
+                    throw new IllegalStateException("The password could not be decrypted.", ex);
+                }
+                try {
+                    password = SecretArena.newSecret(chars);
+                } finally {
+                    MemUtils.clearCharArray(chars);
+                }
+                sealedPassword = null;
+            }
             return password;
         }
         
+        /**
+         * Should only be used for reading.
+         * @return the real value (not a duplicate), decrypted if it was sealed, or null if no TOTP.
+         * @throws IllegalStateException if the sealed TOTP cannot be decrypted.
+         */
+        public synchronized TOTP getTOTP() {
+            if (sealedTOTP != null) {
+                try {
+                    totp = sealedTOTP.open(SafeFileManager::readTOTP);
+                } catch (IOException | GeneralSecurityException ex) {
+                    throw new IllegalStateException("The TOTP could not be decrypted.", ex);
+                }
+                sealedTOTP = null;
+            }
+            return totp;
+        }
+        
+        /**
+         * @return the sealed password, or null if it has already been decrypted.
+         */
+        synchronized SealedRecords.Record getSealedPassword() {
+            return sealedPassword;
+        }
+        
+        /**
+         * @return the sealed TOTP, or null if no TOTP or if it has already been decrypted.
+         */
+        synchronized SealedRecords.Record getSealedTOTP() {
+            return sealedTOTP;
+        }
+        
+        /**
+         * @return a copy of the password (to clear after use), decrypted without being unsealed if it is sealed,
+         * or null if this data is destroyed.
+         * @throws IllegalStateException if the sealed password cannot be decrypted.
+         */
+        private synchronized char[] copyPassword() {
+            if (sealedPassword != null) {
+                try {
+                    return sealedPassword.peek(SafeFileManager::readChars);
+                } catch (IOException | GeneralSecurityException ex) {
+                    throw new IllegalStateException("The password could not be decrypted.", ex);
+                }
+            }
+            return password != null ? password.readChars() : null;
+        }
+        
+        /**
+         * @return a copy of the TOTP (to destroy after use), decrypted without being unsealed if it is sealed,
+         * or null if no TOTP.
+         * @throws IllegalStateException if the sealed TOTP cannot be decrypted.
+         */
+        private synchronized TOTP copyTOTP() {
+            if (sealedTOTP != null) {
+                try {
+                    return sealedTOTP.peek(SafeFileManager::readTOTP);
+                } catch (IOException | GeneralSecurityException ex) {
+                    throw new IllegalStateException("The TOTP could not be decrypted.", ex);
+                }
+            }
+            return totp != null ? totp.duplicate() : null;
+        }
+        
+        /**
+         * @return a deep copy of this data, whose sealed values stay sealed (their encrypted bytes being shared,
+         * not decrypted).
+         */
+        synchronized Data duplicate() {
+            if (isDestroyed) {
+                throw new IllegalStateException("Data destroyed.");
+            }
+            Data res = sealedPassword != null
+                    ? new Data(
+                            StringUtils.clone(name),
+                            sealedPassword.share(),
+                            lastPasswordChangeTime,
+                            StringUtils.clone(site),
+                            StringUtils.clone(info),
+                            null
+                    )
+                    : new Data(
+                            StringUtils.clone(name),
+                            password.duplicate(),
+                            lastPasswordChangeTime,
+                            StringUtils.clone(site),
+                            StringUtils.clone(info),
+                            null
+                    );
+            res.totp = totp != null ? totp.duplicate() : null;
+            res.sealedTOTP = sealedTOTP != null ? sealedTOTP.share() : null;
+            return res;
+        }
+        
+        /**
+         * @return true if this data has a TOTP, without decrypting it.
+         */
+        public synchronized boolean hasTOTP() {
+            return totp != null || sealedTOTP != null;
+        }
+        
+        /**
+         * @return true if the password is still sealed (not decrypted yet).
+         */
+        public synchronized boolean isPasswordSealed() {
+            return sealedPassword != null;
+        }
+        
         public static String checkName(String name) {
             return SafeFileManager.checkValidLen(CheckUtils.notEmpty(name));
         }
@@ -85,17 +279,18 @@ public static String checkInfo(String info) {
             return SafeFileManager.checkValidLen(CheckUtils.notNull(info));
         }
         
+        /**
+         * NB: The password and the TOTP are not hashed, so that hashing never decrypts them.
+         */
         @Override
         public int hashCode() {
             final int prime = 31;
             int result = 1;
             result = prime * result + ((name == null) ? 0 : name.hashCode());
-            result = prime * result + Arrays.hashCode(password);
             result = prime * result
                     + ((lastPasswordChangeTime == null) ? 0 : lastPasswordChangeTime.hashCode());
             result = prime * result + ((site == null) ? 0 : site.hashCode());
             result = prime * result + ((info == null) ? 0 : info.hashCode());
-            result = prime * result + ((totp == null) ? 0 : totp.hashCode());
             return result;
         }
         
@@ -113,7 +308,7 @@ public boolean equals(Object obj) {
                     return false;
             } else if (!name.equals(other.name))
                 return false;
-            if (!Arrays.equals(password, other.password))
+            if (!hasSamePassword(other))
                 return false;
             if (lastPasswordChangeTime == null) {
                 if (other.lastPasswordChangeTime != null)
@@ -130,47 +325,109 @@ public boolean equals(Object obj) {
                     return false;
             } else if (!info.equals(other.info))
                 return false;
-            if (totp == null) {
-                if (other.totp != null)
-                    return false;
-            } else if (!totp.equals(other.totp))
+            if (!hasSameTOTP(other))
                 return false;
             return true;
         }
         
+        /**
+         * Compares the sealed passwords by their encrypted bytes if possible, otherwise decrypts them without
+         * unsealing them.
+         * @param other
+         * @return
+         */
+        private boolean hasSamePassword(Data other) {
+            SealedRecords.Record thisSealed = getSealedPassword();
+            SealedRecords.Record otherSealed = other.getSealedPassword();
+            if (thisSealed != null && otherSealed != null && thisSealed.isSameSealed(otherSealed)) {
+                return true;
+            }
+            if (thisSealed == null && otherSealed == null) {
+                SecretArena.Secret thisPw = getPasswordSecret();
+                SecretArena.Secret otherPw = other.getPasswordSecret();
+                return thisPw == null ? otherPw == null : thisPw.contentEquals(otherPw);
+            }
+            char[] thisPw = copyPassword();
+            char[] otherPw = other.copyPassword();
+            try {
+                return Arrays.equals(thisPw, otherPw);
+            } finally {
+                if (thisPw != null) {
+                    MemUtils.clearCharArray(thisPw);
+                }
+                if (otherPw != null) {
+                    MemUtils.clearCharArray(otherPw);
+                }
+            }
+        }
+        
+        /**
+         * Same as {@link #hasSamePassword(Data)} for the TOTP.
+         * @param other
+         * @return
+         */
+        private boolean hasSameTOTP(Data other) {
+            SealedRecords.Record thisSealed = getSealedTOTP();
+            SealedRecords.Record otherSealed = other.getSealedTOTP();
+            if (thisSealed != null && otherSealed != null && thisSealed.isSameSealed(otherSealed)) {
+                return true;
+            }
+            TOTP thisTOTP = copyTOTP();
+            TOTP otherTOTP = other.copyTOTP();
+            try {
+                return Objects.equals(thisTOTP, otherTOTP);
+            } finally {
+                MemUtils.tryDestroyAll(new TOTP[] {thisTOTP, otherTOTP});
+            }
+        }
+        
         @Override
-        public String toString() {
+        public synchronized String toString() {
             return "Data [name=" + name + ", password="
-                    + StringUtils.charArrayToObfuscatedStr(password) + ", lastPasswordChangeTime="
-                    + lastPasswordChangeTime + ", site=" + site + ", info=" + info + ", totp="
-                    + totp + "]";
+                    + (sealedPassword != null
+                            ? "sealed"
+                            : password != null ? "char[" + password.getCharsNum() + "]" : "null")
+                    + ", lastPasswordChangeTime=" + lastPasswordChangeTime + ", site=" + site
+                    + ", info=" + info + ", totp=" + (sealedTOTP != null ? "sealed" : totp) + "]";
         }
         
         @Override
-        public void destroy() throws DestroyFailedException {
+        public synchronized void destroy() throws DestroyFailedException {
             boolean success = true;
+            isDestroyed = true;
             if (password != null) {
-                MemUtils.clearCharArray(password);
+                success = MemUtils.tryDestroy(password) && success;
                 password = null;
             }
+            if (sealedPassword != null) {
+                sealedPassword.release();
+                sealedPassword = null;
+            }
             if (totp != null) {
                 success = MemUtils.tryDestroy(totp) && success;
             }
-            success = MemUtils.tryClearString(name) && success;
-            success = MemUtils.tryClearString(site) && success;
-            success = MemUtils.tryClearString(info) && success;
+            if (sealedTOTP != null) {
+                sealedTOTP.release();
+                sealedTOTP = null;
+            }
+            success = MemUtils.tryClearStrings(name, site, info) && success;
             if (!success) {
                 throw new DestroyFailedException();
             }
         }
         
         @Override
-        public boolean isDestroyed() {
-            return password == null;
+        public synchronized boolean isDestroyed() {
+            return isDestroyed;
         }
         
     }
     
+    /**
+     * The data manager which holds this password entry, notified of its changes, or null.
+     */
+    SafeDataManager owner = null;
+    
     /**
      * 
      * @return ephemeral current name, which will potentially be cleared when the name changes and when the password entry is destroyed.
@@ -183,18 +440,26 @@ public void setName(String newValSrc, SafeDataManager dm) {
             return;
         }
         setNewName(newValSrc, dm);
+        notifyOwner(false); // the name is already updated in the owner by setNewName
     }
     
     protected abstract void setNewName(String newValSrc, SafeDataManager dm);
     
     /**
      * 
-     * @return ephemeral current password, which will potentially be cleared when the password changes and when the password entry is destroyed.
+     * @return a scratch copy of the current password, which should be cleared after use.
      */
     public abstract char[] getCurrentPassword();
     
+    /**
+     * @return the current password, as stored in the {@link SecretArena} (not a duplicate), or an empty
+     * secret if not set yet.
+     */
+    abstract SecretArena.Secret getCurrentPasswordSecret();
+    
     public void setPassword(char[] newValSrc) {
         setNewPassword(Data.checkPassword(newValSrc));
+        notifyOwner(false);
     }
     
     protected abstract void setNewPassword(char[] newValSrc);
@@ -209,6 +474,7 @@ public void setPassword(char[] newValSrc) {
     
     public void setSite(String newValSrc) {
         setNewSite(Data.checkSite(newValSrc));
+        notifyOwner(true);
     }
     
     protected abstract void setNewSite(String newValSrc);
@@ -221,6 +487,7 @@ public void setSite(String newValSrc) {
     
     public void setInfo(String newValSrc) {
         setNewInfo(Data.checkInfo(newValSrc));
+        notifyOwner(false);
     }
     
     protected abstract void setNewInfo(String newValSrc);
@@ -233,12 +500,19 @@ public void setInfo(String newValSrc) {
     
     public void setTOTP(TOTP newValSrc) {
         setNewTOTP(newValSrc);
+        notifyOwner(false);
     }
     
     protected abstract void setNewTOTP(TOTP newValSrc);
     
     public abstract Data getData();
     
+    private void notifyOwner(boolean isSiteChanged) {
+        if (owner != null) {
+            owner.onPwEntryChanged(this, isSiteChanged);
+        }
+    }
+    
     public boolean isValid() {
         return getData() != null;
     }
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.security.auth.Destroyable;
+
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+
+/**
+ * Index of the names and sites of password entries, for case-insensitive substring searches.
+ * Each indexed password entry has a slot holding its case-folded name and site (char arrays, cleared
+ * from memory when the slot is removed), and each trigram of them is hashed into a bucket, which lists
+ * the slots containing it. A search only checks the slots of the smallest bucket among the trigrams of
+ * the query, or all the slots if the query is shorter than {@link #MIN_INDEXED_QUERY_LEN} or if this bucket
+ * is too big.
+ * NB: Buckets only store slot ids and trigrams are hashed, so that the index doesn't hold other copies
+ * of the names and sites than the ones of the slots.
+ */
+final class PwEntriesSearchIndex implements Destroyable {
+    
+    static final int MIN_INDEXED_QUERY_LEN = 3;
+    private static final int BUCKETS_NUM = 1 << 16;
+    private static final int BUCKET_INIT_CAPACITY = 4;
+    /**
+     * Min ratio between the indexed password entries number and the length of a bucket, for the bucket to
+     * be used by a search.
+     */
+    private static final int MIN_BUCKET_SELECTIVITY = 8;
+    
+    private static final class Slot {
+        
+        final int id;
+        final PasswordEntry pwEntry;
+        final char[] foldedName;
+        final char[] foldedSite;
+        
+        Slot(int id, PasswordEntry pwEntry, char[] foldedName, char[] foldedSite) {
+            this.id = id;
+            this.pwEntry = pwEntry;
+            this.foldedName = foldedName;
+            this.foldedSite = foldedSite;
+        }
+        
+        void clear() {
+            MemUtils.clearCharArray(foldedName);
+            MemUtils.clearCharArray(foldedSite);
+        }
+        
+    }
+    
+    private final Map<PasswordEntry, Slot> slotsByPwEntry = new IdentityHashMap<>();
+    private Slot[] slotsById = new Slot[16];
+    private int[] freeIds = new int[16];
+    private int freeIdsNum = 0;
+    private int nextId = 0;
+    private int[][] buckets = new int[BUCKETS_NUM][];
+    private int[] bucketsLen = new int[BUCKETS_NUM];
+    private boolean isDestroyed = false;
+    
+    boolean contains(PasswordEntry pwEntry) {
+        return slotsByPwEntry.containsKey(pwEntry);
+    }
+    
+    int size() {
+        return slotsByPwEntry.size();
+    }
+    
+    /**
+     * Indexes pwEntry with name and site, replacing its previous slot (if any).
+     * @param pwEntry
+     * @param name not modified nor retained.
+     * @param site not modified nor retained.
+     */
+    void put(PasswordEntry pwEntry, String name, String site) {
+        checkNotDestroyed();
+        remove(pwEntry);
+        Slot slot = new Slot(newId(), pwEntry, fold(name), fold(site));
+        slotsByPwEntry.put(pwEntry, slot);
+        slotsById[slot.id] = slot;
+        for (int bucketInd : getBucketsInd(slot)) {
+            addToBucket(bucketInd, slot.id);
+        }
+    }
+    
+    /**
+     * No effect if pwEntry is not indexed.
+     * @param pwEntry
+     */
+    void remove(PasswordEntry pwEntry) {
+        Slot slot = slotsByPwEntry.remove(pwEntry);
+        if (slot == null) {
+            return;
+        }
+        for (int bucketInd : getBucketsInd(slot)) {
+            removeFromBucket(bucketInd, slot.id);
+        }
+        slotsById[slot.id] = null;
+        if (freeIdsNum == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeIdsNum << 1);
+        }
+        freeIds[freeIdsNum++] = slot.id;
+        slot.clear();
+    }
+    
+    /**
+     * @param nameQuery empty for any name.
+     * @param siteQuery empty for any site.
+     * @param sortedPwEntries the indexed password entries, sorted, used instead of the smallest bucket when
+     * the latter doesn't discard enough password entries (then avoiding to sort the result).
+     * @return the indexed password entries whose name contains nameQuery and whose site contains siteQuery (ignoring case), sorted.
+     */
+    List<PasswordEntry> search(String nameQuery, String siteQuery,
+            Iterable<PasswordEntry> sortedPwEntries) {
+        checkNotDestroyed();
+        char[] foldedNameQuery = fold(nameQuery);
+        char[] foldedSiteQuery = fold(siteQuery);
+        try {
+            int nameBucketInd = getSmallestBucketInd(foldedNameQuery);
+            int siteBucketInd = getSmallestBucketInd(foldedSiteQuery);
+            int bucketInd = nameBucketInd < 0
+                    || (siteBucketInd >= 0 && bucketsLen[siteBucketInd] < bucketsLen[nameBucketInd])
+                            ? siteBucketInd
+                            : nameBucketInd;
+            List<PasswordEntry> res = new ArrayList<>();
+            if (bucketInd >= 0 && bucketsLen[bucketInd] <= size() / MIN_BUCKET_SELECTIVITY) {
+                int[] bucket = buckets[bucketInd];
+                for (int i = 0; i < bucketsLen[bucketInd]; i++) {
+                    Slot slot = slotsById[bucket[i]];
+                    if (matches(slot, foldedNameQuery, foldedSiteQuery)) {
+                        res.add(slot.pwEntry);
+                    }
+                }
+                res.sort(null);
+            } else {
+                for (PasswordEntry pwEntry : sortedPwEntries) {
+                    Slot slot = slotsByPwEntry.get(pwEntry);
+                    if (slot != null && matches(slot, foldedNameQuery, foldedSiteQuery)) {
+                        res.add(pwEntry);
+                    }
+                }
+            }
+            return res;
+        } finally {
+            MemUtils.clearCharArray(foldedNameQuery);
+            MemUtils.clearCharArray(foldedSiteQuery);
+        }
+    }
+    
+    private static boolean matches(Slot slot, char[] foldedNameQuery, char[] foldedSiteQuery) {
+        return contains(slot.foldedName, foldedNameQuery)
+                && contains(slot.foldedSite, foldedSiteQuery);
+    }
+    
+    private static boolean contains(char[] text, char[] query) {
+        outer: for (int i = 0, last = text.length - query.length; i <= last; i++) {
+            for (int j = 0; j < query.length; j++) {
+                if (text[i + j] != query[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * @param foldedQuery
+     * @return the index of the smallest bucket among the trigrams of foldedQuery, or -1 if foldedQuery is too short to be indexed.
+     */
+    private int getSmallestBucketInd(char[] foldedQuery) {
+        int res = -1;
+        for (int i = 0; i + MIN_INDEXED_QUERY_LEN <= foldedQuery.length; i++) {
+            int bucketInd = getBucketInd(foldedQuery[i], foldedQuery[i + 1], foldedQuery[i + 2]);
+            if (res < 0 || bucketsLen[bucketInd] < bucketsLen[res]) {
+                res = bucketInd;
+            }
+        }
+        return res;
+    }
+    
+    /**
+     * @param slot
+     * @return the distinct indexes of the buckets of the trigrams of the name and the site of slot.
+     */
+    private static int[] getBucketsInd(Slot slot) {
+        int[] res = new int[Math.max(0, slot.foldedName.length - 2)
+                + Math.max(0, slot.foldedSite.length - 2)];
+        int len = addBucketsInd(slot.foldedName, res, 0);
+        len = addBucketsInd(slot.foldedSite, res, len);
+        Arrays.sort(res, 0, len);
+        int distinctLen = 0;
+        for (int i = 0; i < len; i++) {
+            if (distinctLen == 0 || res[distinctLen - 1] != res[i]) {
+                res[distinctLen++] = res[i];
+            }
+        }
+        return Arrays.copyOf(res, distinctLen);
+    }
+    
+    private static int addBucketsInd(char[] folded, int[] dest, int destLen) {
+        for (int i = 0; i + 2 < folded.length; i++) {
+            dest[destLen++] = getBucketInd(folded[i], folded[i + 1], folded[i + 2]);
+        }
+        return destLen;
+    }
+    
+    private static int getBucketInd(char c1, char c2, char c3) {
+        int h = ((c1 << 16) | c2) * 0x9E3779B1 + c3 * 0x85EBCA6B;
+        h ^= h >>> 16;
+        return h & (BUCKETS_NUM - 1);
+    }
+    
+    private void addToBucket(int bucketInd, int id) {
+        int[] bucket = buckets[bucketInd];
+        int len = bucketsLen[bucketInd];
+        if (bucket == null) {
+            bucket = buckets[bucketInd] = new int[BUCKET_INIT_CAPACITY];
+        } else if (len == bucket.length) {
+            bucket = buckets[bucketInd] = Arrays.copyOf(bucket, len << 1);
+        }
+        bucket[len] = id;
+        bucketsLen[bucketInd] = len + 1;
+    }
+    
+    private void removeFromBucket(int bucketInd, int id) {
+        int[] bucket = buckets[bucketInd];
+        int lastInd = bucketsLen[bucketInd] - 1;
+        for (int i = 0; i <= lastInd; i++) {
+            if (bucket[i] == id) {
+                bucket[i] = bucket[lastInd];
+                bucket[lastInd] = 0;
+                bucketsLen[bucketInd] = lastInd;
+                return;
+            }
+        }
+    }
+    
+    private int newId() {
+        if (freeIdsNum > 0) {
+            return freeIds[--freeIdsNum];
+        }
+        if (nextId == slotsById.length) {
+            slotsById = Arrays.copyOf(slotsById, nextId << 1);
+        }
+        return nextId++;
+    }
+    
+    /**
+     * @param str
+     * @return the case-folded chars of str, which should be cleared after use.
+     */
+    private static char[] fold(String str) {
+        char[] res = new char[str.length()];
+        for (int i = 0; i < res.length; i++) {
+            res[i] = Character.toLowerCase(Character.toUpperCase(str.charAt(i)));
+        }
+        return res;
+    }
+    
+    private void checkNotDestroyed() {
+        if (isDestroyed) {
+            throw new IllegalStateException("This index has been destroyed.");
+        }
+    }
+    
+    /**
+     * Clears the slots (case-folded names and sites) and the buckets from memory.
+     */
+    @Override
+    public void destroy() {
+        for (Slot slot : slotsByPwEntry.values()) {
+            slot.clear();
+        }
+        slotsByPwEntry.clear();
+        Arrays.fill(slotsById, null);
+        for (int[] bucket : buckets) {
+            if (bucket != null) {
+                Arrays.fill(bucket, 0);
+            }
+        }
+        buckets = null;
+        bucketsLen = null;
+        isDestroyed = true;
+    }
+    
+    @Override
+    public boolean isDestroyed() {
+        return isDestroyed;
+    }
+    
+}
@@ -45,9 +45,7 @@ public void dispose() {
     public void destroy() throws DestroyFailedException {
         boolean success = true;
         if (pwEntriesData != null) {
-            for (Data pwEntData : pwEntriesData) {
-                success = MemUtils.tryDestroy(pwEntData) && success;
-            }
+            success = MemUtils.tryDestroyAll(pwEntriesData) && success;
             pwEntriesData = null;
         }
         
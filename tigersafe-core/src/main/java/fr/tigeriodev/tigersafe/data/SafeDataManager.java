@@ -23,6 +23,7 @@
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -30,12 +31,14 @@
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
 
 import javax.security.auth.DestroyFailedException;
 import javax.security.auth.Destroyable;
 
 import fr.tigeriodev.tigersafe.GlobalConfig;
 import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.DerivedKeyCache;
 import fr.tigeriodev.tigersafe.data.PasswordEntry.Data;
 import fr.tigeriodev.tigersafe.logs.Level;
 import fr.tigeriodev.tigersafe.logs.Logger;
@@ -43,15 +46,40 @@
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
 import fr.tigeriodev.tigersafe.utils.MutableString;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
 
 public final class SafeDataManager implements Destroyable {
     
     private static final Logger unsafeLog = Logs.newUnsafeLogger(SafeDataManager.class);
     private static final Logger log = Logs.newLogger(SafeDataManager.class);
+    private static final Logger verifyDeeplyLog = log.newChildForMeth("verifyDeeply");
+    private static final Logger updateSafeFileLog = log.newChildForMeth("updateSafeFile");
     public static final int EXPECTED_PW_MAX_LEN = 80;
+    private static final int SAFE_PW_MIN_LEN = 10;
+    /**
+     * Max amount of journal records before the next save rewrites the whole safe file (compaction).
+     */
+    public static final int JOURNAL_MAX_RECORDS_NUM = 64;
+    /**
+     * Journal length below which no compaction is needed, regardless of the safe file length.
+     */
+    public static final long JOURNAL_MIN_COMPACTION_LEN = 64 * 1024;
+    /**
+     * Max amount of password entries read from a serialized file before being checked and added, during an import.
+     */
+    public static final int IMPORT_BATCH_SIZE = 256;
     
     public static boolean isValidSafePw(char[] pw) {
-        return pw != null && pw.length >= 10;
+        return pw != null && pw.length >= SAFE_PW_MIN_LEN;
+    }
+    
+    /**
+     * Same as {@link #isValidSafePw(char[])}, without reading the password.
+     * @param pwHolder
+     * @return
+     */
+    public static boolean isValidSafePw(MutableString pwHolder) {
+        return pwHolder != null && pwHolder.length() >= SAFE_PW_MIN_LEN;
     }
     
     public static class NameAlreadyUsedException extends IllegalArgumentException {
@@ -62,32 +90,102 @@ public NameAlreadyUsedException(String msg) {
         
     }
     
+    /**
+     * @return a holder for a password typed by the user, stored in the {@link SecretArena} (its
+     * {@link MutableString#getVal()} returns scratch copies, which should be cleared after use).
+     */
     public static MutableString newSafePwHolder() {
-        return new MutableString.Advanced(1, EXPECTED_PW_MAX_LEN);
+        return new MutableString.Secured();
     }
     
     private final File safeFile;
-    private final MutableString safePwH;
+    /**
+     * Safe password, only decoded into a scratch array (cf. {@link #readSafePw()}) for the duration of each
+     * operation which needs it (e.g. loading or saving the safe file), which clears it at the end.
+     */
+    private SecretArena.Secret safePw;
+    /**
+     * Cache of keys derivated from the safe password, owned by this instance if ownsKeyCache.
+     */
+    private DerivedKeyCache keyCache;
+    private final boolean ownsKeyCache;
     private SortedMap<String, PasswordEntry> pwEntriesByCurName = new TreeMap<>();
     private Set<ExistingPasswordEntry> deletedPwEntries = new HashSet<>();
+    /**
+     * Active password entries which are valid new password entries or modified existing password entries,
+     * kept up to date by the password entries themselves (cf. {@link #onPwEntryChanged(PasswordEntry, boolean)}).
+     */
+    private Set<PasswordEntry> changedPwEntries = new HashSet<>();
+    private final SafeJournal journal;
+    /**
+     * Index of the names and sites of the active password entries, built by the first search (not needed otherwise), or null.
+     */
+    private PwEntriesSearchIndex searchIndex = null;
+    /**
+     * True if the original data of the entries is the data of the safe file and its journal.
+     */
+    private boolean isSyncedWithFile = false;
     
     public SafeDataManager(File safeFile, char[] safePwSrc) {
+        this(safeFile, safePwSrc, null);
+    }
+    
+    /**
+     * 
+     * @param safeFile
+     * @param safePwSrc
+     * @param sharedKeyCache a cache of keys derivated from safePwSrc, which will not be destroyed by this instance, or null to use a new owned cache.
+     */
+    private SafeDataManager(File safeFile, char[] safePwSrc, DerivedKeyCache sharedKeyCache) {
         this.safeFile = CheckUtils.notNull(safeFile);
-        this.safePwH = newSafePwHolder();
-        this.safePwH.setChars(safePwSrc);
-        if (!isValidSafePw(this.safePwH.getVal()) || this.safePwH.isDestroyed()) {
+        this.journal = new SafeJournal(safeFile);
+        this.ownsKeyCache = sharedKeyCache == null;
+        this.keyCache = ownsKeyCache ? new DerivedKeyCache() : sharedKeyCache;
+        if (!isValidSafePw(safePwSrc)) {
             throw new IllegalArgumentException("Invalid safe password.");
         }
+        this.safePw = SecretArena.newSecret(safePwSrc);
+    }
+    
+    /**
+     * @return a new array containing the safe password, which must be cleared after use.
+     */
+    private char[] readSafePw() {
+        return safePw.readChars();
     }
     
     public File getSafeFile() {
         return safeFile;
     }
     
+    public File getJournalFile() {
+        return journal.getFile();
+    }
+    
+    /**
+     * Loads the safe file, then replays its journal (if any) on top of it.
+     * @throws IOException
+     * @throws GeneralSecurityException
+     * @throws DestroyFailedException
+     */
     public void loadSafeFile()
             throws IOException, GeneralSecurityException, DestroyFailedException {
         checkNotDestroyed();
-        SafeData safeData = SafeFileManager.read(safeFile, safePwH.getVal());
+        SafeData baseData;
+        List<SafeJournal.Record> journalRecords;
+        char[] pw = readSafePw();
+        try {
+            baseData = SafeFileManager.read(safeFile, pw, keyCache);
+            try {
+                journalRecords = journal.read(pw, keyCache);
+            } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+                MemUtils.tryDestroy(baseData);
+                throw ex;
+            }
+        } finally {
+            MemUtils.clearCharArray(pw);
+        }
+        SafeData safeData = SafeJournal.apply(baseData, journalRecords);
         destroyEntries();
         pwEntriesByCurName.clear();
         deletedPwEntries.clear();
@@ -95,6 +193,7 @@ public void loadSafeFile()
         deletedPwEntries = new HashSet<>();
         addSafeData(safeData);
         safeData.dispose();
+        isSyncedWithFile = true;
     }
     
     /**
@@ -104,41 +203,163 @@ public void loadSafeFile()
     private void addSafeData(SafeData safeData) {
         checkNotDestroyed();
         for (Data pwEntryData : safeData.getPwEntriesData()) {
-            PasswordEntry prevEntry = pwEntriesByCurName
-                    .put(pwEntryData.name, new ExistingPasswordEntry(pwEntryData));
+            ExistingPasswordEntry pwEntry = newExistingPwEntry(pwEntryData);
+            PasswordEntry prevEntry = pwEntriesByCurName.put(pwEntryData.name, pwEntry);
             if (prevEntry != null) {
                 throw new IllegalStateException(
                         "Duplicate password entry with name: " + pwEntryData.name + "."
                 );
             }
+            indexPwEntry(pwEntry, pwEntryData.name);
         }
     }
     
+    private ExistingPasswordEntry newExistingPwEntry(Data pwEntryData) {
+        ExistingPasswordEntry res = new ExistingPasswordEntry(pwEntryData);
+        res.owner = this;
+        return res;
+    }
+    
     public void updateSafeFile()
             throws IOException, GeneralSecurityException, DestroyFailedException {
         checkNotDestroyed();
-        updateSafeFile(safePwH.getVal());
+        char[] pw = readSafePw();
+        try {
+            updateSafeFile(pw, keyCache);
+        } finally {
+            MemUtils.clearCharArray(pw);
+        }
     }
     
-    private void updateSafeFile(char[] safePw)
+    /**
+     * Saves the changes of this instance, then resets them (like {@link #loadSafeFile()}).
+     * If the safe journal is enabled, the changes are appended to the journal of the safe file, unless
+     * the journal is big enough to be compacted, in which case the whole safe file is rewritten.
+     * @throws IOException
+     * @throws GeneralSecurityException
+     * @throws DestroyFailedException
+     */
+    public void saveChanges()
             throws IOException, GeneralSecurityException, DestroyFailedException {
         checkNotDestroyed();
-        File tempFile = safeFile.toPath().resolveSibling("_temp_-" + safeFile.getName()).toFile();
-        if (tempFile.exists()) {
-            throw new IllegalStateException(
-                    "Temp file " + tempFile.getAbsolutePath()
-                            + " already exists, it cannot be used to update the safe file."
-            );
+        if (canAppendToJournal()) {
+            appendChangesToJournal();
+        } else {
+            updateSafeFile();
+            loadSafeFile(); // Reset unsaved changes
         }
+    }
+    
+    private boolean canAppendToJournal() {
+        GlobalConfig conf = GlobalConfig.getInstance();
+        return conf != null
+                && conf.isSafeJournalEnabled()
+                && isSyncedWithFile
+                && journal.getRecordsNum() < JOURNAL_MAX_RECORDS_NUM
+                && journal.getLen() < Math.max(JOURNAL_MIN_COMPACTION_LEN, safeFile.length());
+    }
+    
+    private void appendChangesToJournal()
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        SafeOperation.checkpoint(SafeOperation.Step.WRITING);
+        List<String> deletedNames = new ArrayList<>();
+        List<Data> putData = new ArrayList<>();
+        for (ExistingPasswordEntry deletedPwEntry : deletedPwEntries) {
+            deletedNames.add(deletedPwEntry.originalData.name);
+        }
+        for (PasswordEntry pwEntry : getChangedPwEntries()) {
+            if (pwEntry instanceof ExistingPasswordEntry) {
+                ExistingPasswordEntry existingPwEntry = (ExistingPasswordEntry) pwEntry;
+                String originalName = existingPwEntry.originalData.name;
+                if (!originalName.equals(existingPwEntry.getCurrentName())) {
+                    deletedNames.add(originalName);
+                }
+            }
+            Data pwEntryData = pwEntry.getData();
+            if (pwEntryData != null) {
+                putData.add(pwEntryData);
+            }
+        }
+        SafeJournal.Record record = new SafeJournal.Record(deletedNames, putData);
         
-        GlobalConfig.ConfigCipher.INTERNAL_DATA.getCipher().waitWorkingCheck();
-        GlobalConfig.ConfigCipher.USER_DATA.getCipher().waitWorkingCheck();
-        
-        Data[] pwEntriesData = getValidPwEntriesData();
-        SafeData safeData = new SafeData(pwEntriesData);
-        SafeFileManager.write(tempFile, safePw, safeData);
-        safeData.dispose();
-        SafeDataManager tempDM = new SafeDataManager(tempFile, safePw);
+        SafeOperation.checkpoint(SafeOperation.Step.REPLACING); // last cancellation point, before the journal is modified
+        if (!record.isEmpty()) {
+            char[] pw = readSafePw();
+            try {
+                journal.append(record, pw, keyCache);
+            } finally {
+                MemUtils.clearCharArray(pw);
+            }
+        }
+        commitChanges();
+    }
+    
+    /**
+     * Makes the current data of the entries their original data, without reading the safe file.
+     * The result is the same as {@link #loadSafeFile()} after having saved the changes.
+     */
+    private void commitChanges() throws DestroyFailedException {
+        boolean success = true;
+        SortedMap<String, PasswordEntry> newPwEntriesByCurName = new TreeMap<>();
+        for (PasswordEntry pwEntry : pwEntriesByCurName.values()) {
+            if (
+                pwEntry instanceof ExistingPasswordEntry
+                        && !((ExistingPasswordEntry) pwEntry).isModified()
+            ) {
+                newPwEntriesByCurName.put(pwEntry.getCurrentName(), pwEntry);
+                continue;
+            }
+            Data pwEntryData = pwEntry.getData();
+            unindexPwEntry(pwEntry);
+            if (pwEntryData != null) {
+                Data committedData = pwEntryData.duplicate(); // pwEntryData shares values with pwEntry
+                ExistingPasswordEntry committedPwEntry = newExistingPwEntry(committedData);
+                newPwEntriesByCurName.put(committedData.name, committedPwEntry);
+                indexPwEntry(committedPwEntry, committedData.name);
+            }
+            success = MemUtils.tryDestroy(pwEntry) && success;
+        }
+        success = MemUtils.tryDestroyAll(deletedPwEntries) && success;
+        pwEntriesByCurName = newPwEntriesByCurName;
+        deletedPwEntries = new HashSet<>();
+        changedPwEntries = new HashSet<>();
+        if (!success) {
+            throw new DestroyFailedException();
+        }
+    }
+    
+    /**
+     * Checks that writtenFile contains exactly the entries digested by writtenDigest while they were
+     * written, without loading them all at the same time.
+     * @param writtenFile
+     * @param safePw
+     * @param safePwKeyCache the cache of keys derivated from safePw
+     * @param writtenDigest
+     * @throws IllegalStateException if the entries are not correctly written or read.
+     */
+    private static void verifyDigest(File writtenFile, char[] safePw,
+            DerivedKeyCache safePwKeyCache, EntriesDigest writtenDigest)
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        byte[] expected = writtenDigest.finish();
+        SafeFileManager.digest(writtenFile, safePw, safePwKeyCache, writtenDigest);
+        byte[] actual = writtenDigest.finish();
+        if (!MessageDigest.isEqual(expected, actual)) {
+            throw new IllegalStateException("Password entries are not correctly written or loaded.");
+        }
+    }
+    
+    /**
+     * Checks that writtenFile contains exactly pwEntriesData by fully loading it in a temporary manager.
+     * @param writtenFile
+     * @param safePw
+     * @param safePwKeyCache the cache of keys derivated from safePw
+     * @param pwEntriesData
+     * @throws IllegalStateException if the entries are not correctly written or loaded.
+     */
+    private static void verifyDeeply(File writtenFile, char[] safePw,
+            DerivedKeyCache safePwKeyCache, Data[] pwEntriesData)
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        SafeDataManager tempDM = new SafeDataManager(writtenFile, safePw, safePwKeyCache);
         try {
             tempDM.loadSafeFile();
             boolean isDataPersistent = Arrays.equals(tempDM.getValidPwEntriesData(), pwEntriesData);
@@ -153,21 +374,80 @@ private void updateSafeFile(char[] safePw)
                         "Password entries are not correctly written or loaded."
                 );
             }
-        } catch (
-                IOException | GeneralSecurityException | DestroyFailedException
-                | RuntimeException ex
-        ) {
-            tempFile.delete();
-            throw ex;
         } finally {
             try {
                 tempDM.destroy();
             } catch (Exception ex) {
-                log.newChildFromCurMeth().error(() -> "Error while destroying temp dm: ", ex);
+                verifyDeeplyLog.error(() -> "Error while destroying temp dm: ", ex);
+            }
+        }
+    }
+    
+    /**
+     * 
+     * @param safePw
+     * @param safePwKeyCache the cache of keys derivated from safePw
+     * @throws IOException
+     * @throws GeneralSecurityException
+     * @throws DestroyFailedException
+     */
+    private void updateSafeFile(char[] safePw, DerivedKeyCache safePwKeyCache)
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        checkNotDestroyed();
+        File tempFile = safeFile.toPath().resolveSibling("_temp_-" + safeFile.getName()).toFile();
+        if (tempFile.exists()) {
+            throw new IllegalStateException(
+                    "Temp file " + tempFile.getAbsolutePath()
+                            + " already exists, it cannot be used to update the safe file."
+            );
+        }
+        
+        GlobalConfig.ConfigCipher.INTERNAL_DATA.getCipher().waitWorkingCheck();
+        GlobalConfig.ConfigCipher.USER_DATA.getCipher().waitWorkingCheck();
+        
+        SafeOperation.checkpoint(SafeOperation.Step.WRITING);
+        Data[] pwEntriesData = getValidPwEntriesData();
+        SafeData safeData = new SafeData(pwEntriesData);
+        boolean isDeepVerification = GlobalConfig.getInstance().isSafeFileDeepVerification();
+        EntriesDigest digest = isDeepVerification ? null : new EntriesDigest();
+        try {
+            SafeFileManager.write(
+                    tempFile,
+                    safePw,
+                    safeData,
+                    safePwKeyCache,
+                    SafeFileManager.MAX_FILE_VER,
+                    GlobalConfig.getInstance()
+                            .getKeyDerivationIterationsNum(
+                                    GlobalConfig.ConfigCipher.INTERNAL_DATA.getCipher()
+                            ),
+                    digest
+            );
+            safeData.dispose();
+            try {
+                SafeOperation.checkpoint(SafeOperation.Step.VERIFYING);
+                if (isDeepVerification) {
+                    verifyDeeply(tempFile, safePw, safePwKeyCache, pwEntriesData);
+                } else {
+                    verifyDigest(tempFile, safePw, safePwKeyCache, digest);
+                }
+                SafeOperation.checkpoint(SafeOperation.Step.REPLACING); // last cancellation point, while tempFile can still be deleted
+            } catch (
+                    IOException | GeneralSecurityException | DestroyFailedException
+                    | RuntimeException ex
+            ) {
+                tempFile.delete();
+                throw ex;
+            }
+        } finally {
+            if (digest != null && !MemUtils.tryDestroy(digest)) {
+                updateSafeFileLog.error(() -> "Failed to destroy entries digest.");
             }
         }
         
         Files.move(tempFile.toPath(), safeFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        isSyncedWithFile = false; // the original data of the entries can be outdated
+        journal.reset(); // the new safe file contains the changes of the journal
     }
     
     public PasswordEntry[] getPwEntries() {
@@ -205,6 +485,7 @@ public NewPasswordEntry addNewPwEntry() {
             return null;
         }
         NewPasswordEntry newPwEntry = new NewPasswordEntry("");
+        newPwEntry.owner = this;
         addPwEntryByCurName(newPwEntry, newPwEntry.getCurrentName());
         return newPwEntry;
     }
@@ -245,6 +526,7 @@ private void addPwEntryByCurName(PasswordEntry pwEntry, String name)
             );
         }
         pwEntriesByCurName.put(name, pwEntry);
+        indexPwEntry(pwEntry, name);
     }
     
     /**
@@ -263,6 +545,8 @@ public void deletePwEntry(PasswordEntry pwEntry) {
         }
         
         pwEntriesByCurName.remove(pwEntry.getCurrentName());
+        changedPwEntries.remove(pwEntry);
+        unindexPwEntry(pwEntry);
         if (pwEntry instanceof ExistingPasswordEntry) {
             deletedPwEntries.add((ExistingPasswordEntry) pwEntry);
         } else {
@@ -291,26 +575,89 @@ public void restorePwEntry(ExistingPasswordEntry deletedPwEntry) {
         
         addPwEntryByCurName(deletedPwEntry, deletedPwEntry.getCurrentName());
         deletedPwEntries.remove(deletedPwEntry);
+        updateChangedState(deletedPwEntry);
     }
     
     /**
-     * NB: This method doesn't consider data added with {@link #addSafeData(SafeData)} as "changes", even if the safe file has not been updated with {@link #updateSafeFile()}.
-     * @return
+     * Searches the active password entries by name and site, ignoring case.
+     * The first search builds an index of the names and sites, which is then maintained along with the
+     * password entries, so that the next searches don't need to check every password entry.
+     * @param nameFilter empty for any name.
+     * @param siteFilter empty for any site.
+     * @return the active password entries whose current name contains nameFilter and whose current site contains siteFilter, sorted by name.
      */
-    public boolean hasChanges() {
-        if (!deletedPwEntries.isEmpty()) {
-            return true;
+    public List<PasswordEntry> searchPwEntries(String nameFilter, String siteFilter) {
+        checkNotDestroyed();
+        if (nameFilter.isEmpty() && siteFilter.isEmpty()) {
+            return new ArrayList<>(pwEntriesByCurName.values());
         }
-        for (PasswordEntry pwEntry : pwEntriesByCurName.values()) {
-            if (
-                (pwEntry instanceof NewPasswordEntry && pwEntry.isValid())
-                        || (pwEntry instanceof ExistingPasswordEntry
-                                && ((ExistingPasswordEntry) pwEntry).isModified())
-            ) {
-                return true;
+        if (searchIndex == null) {
+            searchIndex = new PwEntriesSearchIndex();
+            for (PasswordEntry pwEntry : pwEntriesByCurName.values()) {
+                searchIndex.put(pwEntry, pwEntry.getCurrentName(), pwEntry.getCurrentSite());
             }
         }
-        return false;
+        return searchIndex.search(nameFilter, siteFilter, pwEntriesByCurName.values());
+    }
+    
+    private void indexPwEntry(PasswordEntry pwEntry, String name) {
+        if (searchIndex != null) {
+            searchIndex.put(pwEntry, name, pwEntry.getCurrentSite());
+        }
+    }
+    
+    private void unindexPwEntry(PasswordEntry pwEntry) {
+        if (searchIndex != null) {
+            searchIndex.remove(pwEntry);
+        }
+    }
+    
+    /**
+     * Called by pwEntry (owned by this instance) after one of its values has been changed.
+     * @param pwEntry
+     * @param isSiteChanged
+     */
+    void onPwEntryChanged(PasswordEntry pwEntry, boolean isSiteChanged) {
+        if (deletedPwEntries.contains(pwEntry)) {
+            return;
+        }
+        updateChangedState(pwEntry);
+        if (isSiteChanged && searchIndex != null && searchIndex.contains(pwEntry)) {
+            searchIndex.put(pwEntry, pwEntry.getCurrentName(), pwEntry.getCurrentSite());
+        }
+    }
+    
+    /**
+     * Adds the active pwEntry to changedPwEntries if it is a valid new password entry or a modified existing
+     * password entry, removes it otherwise.
+     * @param pwEntry
+     */
+    private void updateChangedState(PasswordEntry pwEntry) {
+        boolean isChanged = pwEntry instanceof ExistingPasswordEntry
+                ? ((ExistingPasswordEntry) pwEntry).isModified()
+                : pwEntry.isValid();
+        if (isChanged) {
+            changedPwEntries.add(pwEntry);
+        } else {
+            changedPwEntries.remove(pwEntry);
+        }
+    }
+    
+    /**
+     * NB: This method doesn't consider data added with {@link #addSafeData(SafeData)} as "changes", even if the safe file has not been updated with {@link #updateSafeFile()}.
+     * @return
+     */
+    public boolean hasChanges() {
+        return !deletedPwEntries.isEmpty() || !changedPwEntries.isEmpty();
+    }
+    
+    /**
+     * @return the active password entries which are valid new password entries or modified existing password entries, sorted by name.
+     */
+    public PasswordEntry[] getChangedPwEntries() {
+        PasswordEntry[] res = changedPwEntries.toArray(new PasswordEntry[0]);
+        Arrays.sort(res);
+        return res;
     }
     
     public void clearInvalidNewPwEntries() {
@@ -320,6 +667,8 @@ public void clearInvalidNewPwEntries() {
         pwEntriesByCurName.values().removeIf((pwEntry) -> {
             boolean isInvalid = pwEntry instanceof NewPasswordEntry && !pwEntry.isValid();
             if (isInvalid) {
+                changedPwEntries.remove(pwEntry);
+                unindexPwEntry(pwEntry);
                 MemUtils.tryDestroy(pwEntry); // Caution: this clears the name string during the loop, which is used for key of pwEntriesByCurName, but with TreeMap no issue since the deletion is not based on the key
             }
             return isInvalid;
@@ -327,7 +676,21 @@ public void clearInvalidNewPwEntries() {
     }
     
     public boolean isSafePw(char[] pw) {
-        return Arrays.equals(safePwH.getVal(), pw);
+        return !isDestroyed() && safePw.contentEquals(pw);
+    }
+    
+    /**
+     * Same as {@link #isSafePw(char[])} for the value of pwHolder, whose copy is cleared right after.
+     * @param pwHolder
+     * @return
+     */
+    public boolean isSafePw(MutableString pwHolder) {
+        char[] pw = pwHolder.copyVal();
+        try {
+            return isSafePw(pw);
+        } finally {
+            MemUtils.clearCharArray(pw);
+        }
     }
     
     public void changeSafePw(char[] newPw)
@@ -336,8 +699,21 @@ public void changeSafePw(char[] newPw)
         if (!isValidSafePw(newPw)) {
             throw new IllegalArgumentException("Invalid safe password.");
         }
-        updateSafeFile(newPw);
-        safePwH.setChars(newPw);
+        DerivedKeyCache newPwKeyCache = new DerivedKeyCache();
+        try {
+            updateSafeFile(newPw, newPwKeyCache);
+        } catch (
+                IOException | GeneralSecurityException | DestroyFailedException
+                | RuntimeException ex
+        ) {
+            MemUtils.tryDestroy(newPwKeyCache);
+            throw ex;
+        }
+        SecretArena.Secret prevSafePw = safePw;
+        safePw = SecretArena.newSecret(newPw);
+        MemUtils.tryDestroy(prevSafePw);
+        MemUtils.tryDestroy(keyCache);
+        keyCache = newPwKeyCache;
     }
     
     public void changeSafeCiphers(String newInternalDataCipherName, String newUserDataCipherName)
@@ -364,26 +740,49 @@ public void changeSafeCiphers(String newInternalDataCipherName, String newUserDa
     public void exportDataTo(File targetFile, Cipher cipher, char[] serialPw, short serialVer)
             throws Exception {
         checkNotDestroyed();
+        SafeOperation.checkpoint(SafeOperation.Step.WRITING);
         Data[] pwEntriesData = getValidPwEntriesData();
         SafeData safeData = new SafeData(pwEntriesData);
         SafeSerializationManager.write(targetFile, cipher, serialPw, serialVer, safeData);
         safeData.dispose();
-        SafeData readSafeData = SafeSerializationManager.read(targetFile, cipher, serialPw);
-        Data[] readPwEntriesData = readSafeData.getPwEntriesData();
-        readSafeData.dispose();
-        
-        boolean isDataPersistent = Arrays.equals(pwEntriesData, readPwEntriesData);
-        if (!isDataPersistent) {
-            unsafeLog.newChildFromCurMethIf(Level.ERROR)
-                    .error(
-                            () -> "\n deserialized pw entries: "
-                                    + Arrays.toString(readPwEntriesData)
-                                    + ",\n serialized pw entries: " + Arrays.toString(pwEntriesData)
-                                    + "."
-                    );
-            throw new IllegalStateException(
-                    "Password entries are not correctly serialized or deserialized."
-            );
+        try {
+            SafeOperation.checkpoint(SafeOperation.Step.VERIFYING);
+        } catch (CancellationException ex) {
+            targetFile.delete();
+            throw ex;
+        }
+        try (
+                SafeSerializationManager.EntriesReader reader =
+                        SafeSerializationManager.openEntriesReader(targetFile, cipher, serialPw)
+        ) {
+            if (reader.getEntriesNum() != pwEntriesData.length) {
+                unsafeLog.newChildFromCurMethIf(Level.ERROR)
+                        .error(
+                                () -> "\n deserialized pw entries num: " + reader.getEntriesNum()
+                                        + ",\n serialized pw entries num: "
+                                        + pwEntriesData.length + "."
+                        );
+                throw new IllegalStateException(
+                        "Password entries are not correctly serialized or deserialized."
+                );
+            }
+            for (Data pwEntryData : pwEntriesData) {
+                Data readPwEntryData = reader.next();
+                try {
+                    if (!pwEntryData.equals(readPwEntryData)) {
+                        unsafeLog.newChildFromCurMethIf(Level.ERROR)
+                                .error(
+                                        () -> "\n deserialized pw entry: " + readPwEntryData
+                                                + ",\n serialized pw entry: " + pwEntryData + "."
+                                );
+                        throw new IllegalStateException(
+                                "Password entries are not correctly serialized or deserialized."
+                        );
+                    }
+                } finally {
+                    MemUtils.tryDestroy(readPwEntryData);
+                }
+            }
         }
     }
     
@@ -399,22 +798,89 @@ public void importData(SafeData safeData) throws Exception {
         }
     }
     
+    /**
+     * Imports the password entries of a serialized file without reading them all at once: they are read
+     * by batches of {@link #IMPORT_BATCH_SIZE}, each batch being checked for duplicate names before being
+     * added (the read password entries data are then owned by this instance, not copied), then the safe
+     * file is updated once.
+     * Nothing is imported if a password entry cannot be read or has the name of another password entry.
+     * NB: The memory bound only holds for the decoded password entries with a cipher which streams its
+     * decryption, see {@link SafeSerializationManager.EntriesReader} (e.g. not with AES_GCM).
+     * @param serialFile
+     * @param cipher
+     * @param serialPw can be cleared as soon as this method returns.
+     * @throws Exception
+     */
+    public void importSerialized(File serialFile, Cipher cipher, char[] serialPw)
+            throws Exception {
+        checkNotDestroyed();
+        checkHasNoChanges();
+        List<Data> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        try {
+            try (
+                    SafeSerializationManager.EntriesReader reader =
+                            SafeSerializationManager.openEntriesReader(serialFile, cipher, serialPw)
+            ) {
+                while (reader.hasNext()) {
+                    SafeOperation.checkpoint(SafeOperation.Step.READING);
+                    while (batch.size() < IMPORT_BATCH_SIZE && reader.hasNext()) {
+                        batch.add(reader.next());
+                    }
+                    addBatch(batch);
+                    batch.clear();
+                }
+            }
+            updateSafeFile();
+        } catch (Exception ex) {
+            for (Data pwEntryData : batch) {
+                MemUtils.tryDestroy(pwEntryData);
+            }
+            loadSafeFile(); // restore to before adding the batches
+            throw ex;
+        }
+    }
+    
+    /**
+     * Adds all the password entries of batch, or none of them if one of them has the name of another password entry.
+     * NB: Like {@link #addSafeData(SafeData)}, added data is not considered as "changes" for {@link #hasChanges()}.
+     * @param batch
+     */
+    private void addBatch(List<Data> batch) {
+        Set<String> batchNames = new HashSet<>();
+        for (Data pwEntryData : batch) {
+            if (
+                pwEntriesByCurName.containsKey(pwEntryData.name)
+                        || !batchNames.add(pwEntryData.name)
+            ) {
+                throw new IllegalStateException(
+                        "Duplicate password entry with name: " + pwEntryData.name + "."
+                );
+            }
+        }
+        for (Data pwEntryData : batch) {
+            ExistingPasswordEntry pwEntry = newExistingPwEntry(pwEntryData);
+            pwEntriesByCurName.put(pwEntryData.name, pwEntry);
+            indexPwEntry(pwEntry, pwEntryData.name);
+        }
+    }
+    
     public void destroyEntries() throws DestroyFailedException {
         boolean success = true;
+        if (searchIndex != null) {
+            searchIndex.destroy();
+            searchIndex = null;
+        }
         if (pwEntriesByCurName != null) {
-            for (PasswordEntry pwEntry : pwEntriesByCurName.values()) {
-                success = MemUtils.tryDestroy(pwEntry) && success;
-            }
+            success = MemUtils.tryDestroyAll(pwEntriesByCurName.values()) && success;
             pwEntriesByCurName.clear();
             pwEntriesByCurName = new TreeMap<>();
         }
         if (deletedPwEntries != null) {
-            for (ExistingPasswordEntry pwEntry : deletedPwEntries) {
-                success = MemUtils.tryDestroy(pwEntry) && success;
-            }
+            success = MemUtils.tryDestroyAll(deletedPwEntries) && success;
             deletedPwEntries.clear();
             deletedPwEntries = new HashSet<>();
         }
+        changedPwEntries = new HashSet<>();
         if (!success) {
             throw new DestroyFailedException();
         }
@@ -434,7 +900,10 @@ private void checkHasNoChanges() {
     
     @Override
     public void destroy() throws DestroyFailedException {
-        boolean success = MemUtils.tryDestroy(safePwH);
+        boolean success = MemUtils.tryDestroy(safePw);
+        if (ownsKeyCache) {
+            success = MemUtils.tryDestroy(keyCache) && success;
+        }
         try {
             destroyEntries();
         } catch (DestroyFailedException ex) {
@@ -447,7 +916,7 @@ public void destroy() throws DestroyFailedException {
     
     @Override
     public boolean isDestroyed() {
-        return safePwH.isDestroyed();
+        return safePw.isDestroyed();
     }
     
 }
@@ -18,40 +18,60 @@
 
 package fr.tigeriodev.tigersafe.data;
 
-import java.io.ByteArrayInputStream;
 import java.io.DataInput;
 import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.security.GeneralSecurityException;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
-import javax.crypto.BadPaddingException;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
+import javax.crypto.AEADBadTagException;
 import javax.crypto.SecretKey;
 import javax.security.auth.DestroyFailedException;
 import javax.security.auth.Destroyable;
 
 import fr.tigeriodev.tigersafe.GlobalConfig;
 import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.DerivedKeyCache;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
 import fr.tigeriodev.tigersafe.data.TOTP.Algorithm;
 import fr.tigeriodev.tigersafe.logs.Logger;
 import fr.tigeriodev.tigersafe.logs.Logs;
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
-import fr.tigeriodev.tigersafe.utils.DestroyableByteArrayOutputStream;
+import fr.tigeriodev.tigersafe.utils.CodecContext;
+import fr.tigeriodev.tigersafe.utils.DestroyableBufferedOutputStream;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
 import fr.tigeriodev.tigersafe.utils.NumberRange;
+import fr.tigeriodev.tigersafe.utils.RandomPool;
 import fr.tigeriodev.tigersafe.utils.RandomUtils;
 import fr.tigeriodev.tigersafe.utils.StringUtils;
 import fr.tigeriodev.tigersafe.utils.UTFUtils;
@@ -59,12 +79,54 @@
 public final class SafeFileManager {
     
     private static final Logger unsafeLog = Logs.newUnsafeLogger(SafeFileManager.class);
+    private static final Logger unsafeWriteLog = unsafeLog.newChildForMeth("write");
+    private static final Logger unsafeReadLog = unsafeLog.newChildForMeth("read");
     public static final NumberRange OUT_BLOCK_NOISE_LEN_RANGE = new NumberRange(1, 8);
     public static final NumberRange IN_BLOCK_NOISE_LEN_RANGE = new NumberRange(1, 5);
     public static final NumberRange INT_SIZE_RANGE = new NumberRange(1, 2);
     public static final NumberRange SHORT_SIZE_RANGE = new NumberRange(1, 1);
+    /**
+     * Version of the format of the written safe files. Since version 2, the passwords and the TOTPs are
+     * stored as separately encrypted records, indexed by the passwords data block, so that they can be
+     * decrypted on demand, and the main header starts with {@link #FILE_MARKER} and the version.
+     * Since version 3, the iterations number of the derivation of the safe key is stored next to its salt
+     * (see {@link #writeDerivationMeta(int, byte[], DataOutput)}), instead of always being
+     * {@link KeyDerivation#LEGACY_ITERATIONS_NUM}.
+     */
+    public static final short MAX_FILE_VER = 3; // min 1
+    /**
+     * Start of the main header of the files of version 2+, which distinguishes them from files of version 1.
+     */
+    public static final long FILE_MARKER = 0x54_69_67_65_72_53_61_66L; // "TigerSaf"
+    /**
+     * Length of the derivation metadata of the files of version 3+, before the safe key salt.
+     */
+    private static final int DERIVATION_META_LEN = 2 * Integer.BYTES;
+    
+    /**
+     * Bounded amount of threads used to encrypt (or decrypt) the independent blocks of a safe file concurrently.
+     */
+    public static final int BLOCK_WORKERS_NUM =
+            Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors()));
     
-    private static byte[] positiveIntBuf = new byte[Integer.BYTES];
+    private static final ExecutorService blockWorkers = newBlockWorkers();
+    
+    /**
+     * How the encrypted bytes of a safe file are accessed by {@link SafeFileManager#read(File, char[], DerivedKeyCache, ReadMode)}.
+     */
+    public static enum ReadMode {
+        /**
+         * Positional reads of the file channel, decrypted by streams with bounded buffers.
+         */
+        STREAM,
+        /**
+         * The file is mapped in memory (read-only), and each block is decrypted at once directly from the
+         * mapping into a direct buffer, which is cleared from memory after use.
+         * NB: The mapping is only released when it is garbage collected, until then the file cannot be
+         * deleted or replaced on some platforms (e.g. Windows).
+         */
+        MAPPED;
+    }
     
     private SafeFileManager() {}
     
@@ -73,20 +135,35 @@ private static class DataBlock implements Destroyable {
         final int minDataLen;
         final boolean hasFixedDataLen;
         final Cipher cipher;
+        /**
+         * True if the data of this block is a sequence of records, each one encrypted separately with the key
+         * of this block and its own IV (see {@link #writeRecord(DataBlock, DataOutputStream, RecordWriter)}),
+         * in which case the block itself is not encrypted as a whole, and its IV is not used.
+         */
+        final boolean hasRecords;
         private SecretKey key;
         private byte[] iv;
         private int inBeforeNoiseLen = -1;
         private int dataLen = -1;
         private int inAfterNoiseLen = -1;
         private int outAfterNoiseLen = -1;
-        private DestroyableByteArrayOutputStream bytesOut;
+        private boolean isDataWritingFinished = false;
+        private boolean isOutAfterNoiseWritten = false;
+        private BlockOutputStream blockOut;
+        private DestroyableBufferedOutputStream plainBufOut;
         private DataOutputStream dataOut;
-        private byte[] decryptedBytes;
+        private InputStream decryptionIn;
         
         public DataBlock(int minDataLen, boolean hasFixedDataLen, Cipher cipher) {
+            this(minDataLen, hasFixedDataLen, cipher, false);
+        }
+        
+        public DataBlock(int minDataLen, boolean hasFixedDataLen, Cipher cipher,
+                boolean hasRecords) {
             this.minDataLen = CheckUtils.positive(minDataLen);
             this.hasFixedDataLen = hasFixedDataLen;
             this.cipher = CheckUtils.notNull(cipher);
+            this.hasRecords = hasRecords;
         }
         
         public void newKey() throws NoSuchAlgorithmException {
@@ -132,119 +209,177 @@ public void readIvFrom(DataInput dataIn) throws IOException {
             setIv(readIv);
         }
         
-        public void writeMetadataTo(DataOutput dataOut)
+        public void writeMetadataTo(DataOutput dataOut, CodecContext ctx)
                 throws IOException, NoSuchAlgorithmException {
             writeIvTo(dataOut);
             writeSmallNumber(getOutAfterNoiseLen(), OUT_BLOCK_NOISE_LEN_RANGE, dataOut);
             DataBlock.writeInNoiseLen(getInBeforeNoiseLen(), dataOut);
             if (!hasFixedDataLen) {
-                writePositiveInt(getDataLen(), minDataLen, dataOut);
+                writePositiveInt(getDataLen(), minDataLen, dataOut, ctx);
             }
             DataBlock.writeInNoiseLen(getInAfterNoiseLen(), dataOut);
         }
         
-        public void readMetadataFrom(DataInput dataIn) throws IOException {
+        public void readMetadataFrom(DataInput dataIn, CodecContext ctx) throws IOException {
             readIvFrom(dataIn);
             setOutAfterNoiseLen(readSmallNumber(dataIn, OUT_BLOCK_NOISE_LEN_RANGE));
             setInBeforeNoiseLen(DataBlock.readInNoiseLen(dataIn));
             if (!hasFixedDataLen) {
-                setDataLen(readPositiveInt(dataIn, minDataLen));
+                setDataLen(readPositiveInt(dataIn, minDataLen, ctx));
             }
             setInAfterNoiseLen(DataBlock.readInNoiseLen(dataIn));
         }
         
-        DataOutputStream startDataWriting() throws IOException, NoSuchAlgorithmException {
+        /**
+         * Starts the streaming encryption of the data of this block, directly into dest (e.g. a RandomAccessFile at its current file pointer).
+         * The plain bytes are only held by a bounded buffer which is cleared from memory after use.
+         * @param dest
+         * @return the stream in which the data of this block should be written.
+         * @throws GeneralSecurityException
+         * @throws IOException
+         */
+        DataOutputStream startDataWriting(DataOutput dest)
+                throws GeneralSecurityException, IOException {
             checkNotAlreadyEncrypted();
-            if (bytesOut != null || dataOut != null) {
+            if (plainBufOut != null || dataOut != null) {
                 throw new IllegalStateException("Data writing already started.");
             }
             
-            bytesOut = new DestroyableByteArrayOutputStream();
-            dataOut = new DataOutputStream(bytesOut);
+            blockOut = new BlockOutputStream(dest);
+            if (hasRecords) {
+                dataOut = new DataOutputStream(blockOut); // the records are already encrypted
+            } else {
+                plainBufOut = new DestroyableBufferedOutputStream(
+                        cipher.newEncryptionStream(getKey(), getIv(), blockOut)
+                );
+                dataOut = new DataOutputStream(plainBufOut);
+            }
             
-            byte[] beforeNoise = newInNoise();
-            setInBeforeNoiseLen(beforeNoise.length);
-            dataOut.write(beforeNoise);
+            if (inBeforeNoiseLen < 0) {
+                setInBeforeNoiseLen(newInNoiseLen());
+            }
+            dataOut.write(RandomUtils.newRandomBytesOfLen(getInBeforeNoiseLen()));
             
             return dataOut;
         }
         
-        void finishDataWritingAndWriteTo(RandomAccessFile raf)
-                throws GeneralSecurityException, IOException {
-            byte[] encryptedBytes = finishDataWriting();
-            raf.write(encryptedBytes);
-            MemUtils.clearByteArray(encryptedBytes);
-            writeOutAfterNoise(raf);
+        void finishDataWritingAndWriteOutAfterNoise(DataOutput dest)
+                throws IOException, NoSuchAlgorithmException {
+            finishDataWriting();
+            writeOutAfterNoise(dest);
         }
         
-        /**
-         * The returned array should be cleared from memory after use.
-         * @return
-         * @throws InvalidKeyException
-         * @throws NoSuchPaddingException
-         * @throws NoSuchAlgorithmException
-         * @throws InvalidAlgorithmParameterException
-         * @throws BadPaddingException
-         * @throws IllegalBlockSizeException
-         * @throws IOException
-         */
-        byte[] finishDataWriting() throws GeneralSecurityException, IOException {
+        void finishDataWriting() throws IOException, NoSuchAlgorithmException {
             checkNotAlreadyEncrypted();
-            if (bytesOut == null || dataOut == null) {
+            if (dataOut == null) {
                 throw new IllegalStateException("Should startDataWriting first.");
             }
-            dataOut.flush();
             
-            setDataLen(dataOut.size() - getInBeforeNoiseLen());
+            int writtenDataLen = dataOut.size() - getInBeforeNoiseLen();
+            if (dataLen < 0) {
+                setDataLen(writtenDataLen);
+            } else if (writtenDataLen != dataLen) {
+                throw new IllegalStateException(
+                        "Written data length " + writtenDataLen + " != planned data length "
+                                + dataLen + "."
+                );
+            }
             
-            byte[] afterNoise = newInNoise();
-            setInAfterNoiseLen(afterNoise.length);
-            bytesOut.write(afterNoise);
-            bytesOut.flush();
-            byte[] plainBytes = bytesOut.toByteArray();
+            if (inAfterNoiseLen < 0) {
+                setInAfterNoiseLen(newInNoiseLen());
+            }
+            isDataWritingFinished = true;
+            dataOut.write(RandomUtils.newRandomBytesOfLen(getInAfterNoiseLen()));
+            dataOut.close(); // Flushes and clears plainBufOut, then finalizes the encryption
             
-            byte[] encryptedBytes = cipher.encryptBytes(plainBytes, getKey(), getIv());
-            MemUtils.clearByteArray(plainBytes);
-            if (getEncryptedLen() != encryptedBytes.length) {
+            if (getEncryptedLen() != blockOut.getWrittenLen()) {
                 throw new IllegalStateException();
             }
-            return encryptedBytes;
         }
         
-        DataInputStream startDataReading(RandomAccessFile raf)
+        /**
+         * Starts the decryption of the data of this block, read from src at startInd.
+         * Several blocks of the same source can be read concurrently.
+         * @param src
+         * @param startInd
+         * @return the stream from which the data of this block can be read.
+         * @throws GeneralSecurityException
+         * @throws IOException
+         */
+        DataInputStream startDataReading(BlockSource src, long startInd)
                 throws GeneralSecurityException, IOException {
-            if (decryptedBytes != null) {
+            if (hasRecords) {
+                throw new IllegalStateException("Records block, should readRecords instead.");
+            }
+            if (decryptionIn != null) {
                 throw new IllegalStateException("Data reading has already been started.");
             }
-            byte[] encryptedBytes = new byte[getEncryptedLen()];
-            raf.readFully(encryptedBytes);
-            decryptedBytes = cipher.decryptBytes(encryptedBytes, getKey(), getIv());
-            MemUtils.clearByteArray(encryptedBytes);
+            decryptionIn = src.newDecryptionStream(this, startInd);
             
-            DataInputStream dataIn = new DataInputStream(new ByteArrayInputStream(decryptedBytes));
+            DataInputStream dataIn = new DataInputStream(decryptionIn);
             skipBytes(dataIn, getInBeforeNoiseLen());
             
             return dataIn;
         }
         
-        void writeOutAfterNoise(RandomAccessFile raf) throws IOException, NoSuchAlgorithmException {
-            if (outAfterNoiseLen >= 0) {
+        /**
+         * Reads the (still encrypted) records of this records block, from src at startInd.
+         * @param src
+         * @param startInd
+         * @return the records, which now own the key of this block.
+         * @throws IOException
+         */
+        SealedRecords readRecords(BlockSource src, long startInd) throws IOException {
+            if (!hasRecords) {
+                throw new IllegalStateException("Not a records block.");
+            }
+            byte[] bytes = new byte[getDataLen()];
+            src.readFully(startInd + getInBeforeNoiseLen(), bytes);
+            SealedRecords res = new SealedRecords(cipher, getKey(), bytes);
+            key = null; // owned by res
+            return res;
+        }
+        
+        void writeOutAfterNoise(DataOutput dest) throws IOException, NoSuchAlgorithmException {
+            if (isOutAfterNoiseWritten) {
                 throw new IllegalStateException();
             }
-            byte[] noise = newOutBlockNoise();
-            setOutAfterNoiseLen(noise.length);
-            raf.write(noise);
+            if (outAfterNoiseLen < 0) {
+                setOutAfterNoiseLen(newOutBlockNoiseLen());
+            }
+            isOutAfterNoiseWritten = true;
+            dest.write(RandomUtils.newRandomBytesOfLen(getOutAfterNoiseLen()));
+        }
+        
+        /**
+         * Plans the layout of this block before writing it, so that its length (see {@link #getOutLen()})
+         * is known in advance, e.g. to compute the start index of the following blocks.
+         * @param dataLen the length of the data which will be written.
+         * @throws NoSuchAlgorithmException
+         */
+        void initLayout(int dataLen) throws NoSuchAlgorithmException {
+            setDataLen(dataLen);
+            setInBeforeNoiseLen(newInNoiseLen());
+            setInAfterNoiseLen(newInNoiseLen());
+            setOutAfterNoiseLen(newOutBlockNoiseLen());
+        }
+        
+        /**
+         * @return the length of this block in the file, from its start index to the end of its outAfterNoise.
+         */
+        long getOutLen() {
+            return (long) getEncryptedLen() + getOutAfterNoiseLen();
         }
         
         private void checkNotAlreadyEncrypted() {
-            if (inAfterNoiseLen >= 0) {
+            if (isDataWritingFinished) {
                 throw new IllegalStateException("Data block already encrypted.");
             }
         }
         
         int getEncryptedLen() {
-            return cipher
-                    .getEncryptedLen(getInBeforeNoiseLen() + getDataLen() + getInAfterNoiseLen());
+            int plainLen = getInBeforeNoiseLen() + getDataLen() + getInAfterNoiseLen();
+            return hasRecords ? plainLen : cipher.getEncryptedLen(plainLen);
         }
         
         void setDataLen(int newVal) {
@@ -332,11 +467,9 @@ long getStartInd(long outAfterNoiseEndExclInd) {
             return outAfterNoiseEndExclInd - getOutAfterNoiseLen() - getEncryptedLen();
         }
         
-        static byte[] newInNoise() throws NoSuchAlgorithmException {
-            return RandomUtils.newRandomBytes(
-                    IN_BLOCK_NOISE_LEN_RANGE.min,
-                    IN_BLOCK_NOISE_LEN_RANGE.getMax()
-            );
+        static int newInNoiseLen() throws NoSuchAlgorithmException {
+            return RandomUtils
+                    .newRandomInt(IN_BLOCK_NOISE_LEN_RANGE.min, IN_BLOCK_NOISE_LEN_RANGE.getMax());
         }
         
         static void writeInNoiseLen(int noiseLen, DataOutput dataOut)
@@ -365,25 +498,33 @@ public void destroy() throws DestroyFailedException {
             outAfterNoiseLen = -1;
             
             if (dataOut != null) {
-                try {
-                    dataOut.writeLong(0); // Clear internal writeBuffer
-                } catch (IOException ex) {
-                    ex.printStackTrace();
-                    success = false;
+                if (!hasRecords) { // the dataOut of a records block only writes encrypted bytes, directly into dest
+                    try {
+                        dataOut.writeLong(0); // Clear internal writeBuffer
+                    } catch (IOException ex) {
+                        // Expected if the stream has already been closed, writeBuffer is cleared anyway
+                    }
                 }
                 // Internal bytearr doesn't need to be cleared, because writeUTF never called.
                 dataOut = null;
             }
             
-            // Internal bytearr and chararr of DataInputStream returned by startDataReading() don't need to to be cleared, because readUTF never called.
-            
-            if (bytesOut != null) {
-                success = MemUtils.tryDestroy(bytesOut) && success;
-                bytesOut = null;
+            if (plainBufOut != null) {
+                success = MemUtils.tryDestroy(plainBufOut) && success;
+                plainBufOut = null;
             }
+            blockOut = null;
             
-            if (decryptedBytes != null) {
-                MemUtils.clearByteArray(decryptedBytes);
+            // Internal bytearr and chararr of DataInputStream returned by startDataReading() don't need to to be cleared, because readUTF never called.
+            
+            if (decryptionIn != null) {
+                try {
+                    decryptionIn.close(); // Clears its internal buffer
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                    success = false;
+                }
+                decryptionIn = null;
             }
             if (!success) {
                 throw new DestroyFailedException();
@@ -398,17 +539,560 @@ public boolean isDestroyed() {
                     && dataLen == -1
                     && inAfterNoiseLen == -1
                     && outAfterNoiseLen == -1
-                    && bytesOut == null
+                    && blockOut == null
+                    && plainBufOut == null
                     && dataOut == null
-                    && decryptedBytes == null;
+                    && decryptionIn == null;
         }
         
     }
     
-    private static DataBlock newMainHeaderBlock() {
+    /**
+     * Writes directly into a DataOutput (e.g. a RandomAccessFile at its current file pointer), without closing it.
+     */
+    private static class BlockOutputStream extends OutputStream {
+        
+        private final DataOutput dest;
+        private long writtenLen = 0;
+        
+        BlockOutputStream(DataOutput dest) {
+            this.dest = CheckUtils.notNull(dest);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            dest.write(b);
+            writtenLen++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            dest.write(b, off, len);
+            writtenLen += len;
+        }
+        
+        long getWrittenLen() {
+            return writtenLen;
+        }
+        
+        @Override
+        public void close() {
+            // The destination is managed by the caller.
+        }
+        
+    }
+    
+    /**
+     * Writes into two streams, and only closes the first one.
+     */
+    private static class TeeOutputStream extends OutputStream {
+        
+        private final OutputStream out;
+        private final OutputStream copyOut;
+        
+        TeeOutputStream(OutputStream out, OutputStream copyOut) {
+            this.out = CheckUtils.notNull(out);
+            this.copyOut = CheckUtils.notNull(copyOut);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            copyOut.write(b);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            copyOut.write(b, off, len);
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            copyOut.flush();
+        }
+        
+        @Override
+        public void close() throws IOException {
+            out.close(); // copyOut is managed by the caller
+        }
+        
+    }
+    
+    /**
+     * Writes into a FileChannel from startInd, without closing it.
+     * Only positional writes are used, so that several blocks can be written concurrently at their start index.
+     * NB: Only encrypted bytes and noise are buffered, so its buffer doesn't need to be cleared from memory.
+     */
+    private static class BlockFileOutputStream extends OutputStream {
+        
+        private static final int BUF_LEN = 8192;
+        
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUF_LEN);
+        private long pos;
+        
+        BlockFileOutputStream(FileChannel channel, long startInd) {
+            this.channel = CheckUtils.notNull(channel);
+            this.pos = CheckUtils.positive(startInd);
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            if (!buf.hasRemaining()) {
+                flush();
+            }
+            buf.put((byte) b);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > buf.remaining()) {
+                flush();
+            }
+            if (len >= buf.capacity()) {
+                writeFully(ByteBuffer.wrap(b, off, len));
+            } else {
+                buf.put(b, off, len);
+            }
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            buf.flip();
+            writeFully(buf);
+            buf.clear();
+        }
+        
+        private void writeFully(ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                pos += channel.write(src, pos);
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            flush(); // The channel is managed by the caller.
+        }
+        
+    }
+    
+    /**
+     * Reads at most len bytes of a FileChannel, from startInd, without closing it.
+     * Only positional reads are used, so that it is independent of the position of the channel and of other readers.
+     */
+    private static class BlockFileInputStream extends InputStream {
+        
+        private final FileChannel channel;
+        private long pos;
+        private long remainingLen;
+        
+        BlockFileInputStream(FileChannel channel, long startInd, long len) {
+            this.channel = CheckUtils.notNull(channel);
+            this.pos = startInd;
+            this.remainingLen = len;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            byte[] oneByte = new byte[1];
+            int readNum = read(oneByte, 0, 1);
+            return readNum > 0 ? oneByte[0] & 0xff : -1;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len <= 0) {
+                return 0;
+            }
+            if (remainingLen <= 0) {
+                return -1;
+            }
+            ByteBuffer dest = ByteBuffer.wrap(b, off, (int) Math.min(len, remainingLen));
+            int readNum = channel.read(dest, pos);
+            if (readNum > 0) {
+                pos += readNum;
+                remainingLen -= readNum;
+            }
+            return readNum;
+        }
+        
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, remainingLen);
+        }
+        
+        @Override
+        public void close() {
+            // The FileChannel is managed by the caller.
+        }
+        
+    }
+    
+    /**
+     * Source of the encrypted bytes of a safe file.
+     * Only absolute reads are used, so that several blocks can be read concurrently.
+     */
+    private interface BlockSource {
+        
+        /**
+         * @param block
+         * @param startInd
+         * @return the stream of the decrypted bytes of block, which clears its buffers from memory when closed.
+         * @throws GeneralSecurityException
+         * @throws IOException
+         */
+        InputStream newDecryptionStream(DataBlock block, long startInd)
+                throws GeneralSecurityException, IOException;
+        
+        void readFully(long startInd, byte[] dest) throws IOException;
+        
+    }
+    
+    private static class ChannelBlockSource implements BlockSource {
+        
+        private final FileChannel channel;
+        
+        ChannelBlockSource(FileChannel channel) {
+            this.channel = CheckUtils.notNull(channel);
+        }
+        
+        @Override
+        public InputStream newDecryptionStream(DataBlock block, long startInd)
+                throws GeneralSecurityException {
+            return block.cipher.newDecryptionStream(
+                    new BlockFileInputStream(channel, startInd, block.getEncryptedLen()),
+                    block.getKey(),
+                    block.getIv()
+            );
+        }
+        
+        @Override
+        public void readFully(long startInd, byte[] dest) throws IOException {
+            if (startInd < 0) {
+                throw new EOFException();
+            }
+            ByteBuffer destBuf = ByteBuffer.wrap(dest);
+            long pos = startInd;
+            while (destBuf.hasRemaining()) {
+                int readNum = channel.read(destBuf, pos);
+                if (readNum < 0) {
+                    throw new EOFException();
+                }
+                pos += readNum;
+            }
+        }
+        
+    }
+    
+    /**
+     * NB: The encrypted bytes are never copied, each block is decrypted directly from the mapping.
+     */
+    private static class MappedBlockSource implements BlockSource {
+        
+        private final MappedByteBuffer mapping;
+        
+        MappedBlockSource(MappedByteBuffer mapping) {
+            this.mapping = CheckUtils.notNull(mapping);
+        }
+        
+        @Override
+        public InputStream newDecryptionStream(DataBlock block, long startInd)
+                throws GeneralSecurityException, IOException {
+            int encryptedLen = block.getEncryptedLen();
+            ByteBuffer encryptedBuf =
+                    mapping.slice(checkRange(startInd, encryptedLen), encryptedLen);
+            ByteBuffer plainBuf = ByteBuffer.allocateDirect(encryptedLen);
+            try {
+                block.cipher.decryptBuffer(encryptedBuf, block.getKey(), block.getIv(), plainBuf);
+            } catch (GeneralSecurityException | RuntimeException ex) {
+                MemUtils.clearByteBuffer(plainBuf); // may hold partially decrypted bytes
+                throw ex;
+            }
+            plainBuf.flip();
+            return new PlainBufferInputStream(plainBuf);
+        }
+        
+        @Override
+        public void readFully(long startInd, byte[] dest) throws IOException {
+            mapping.get(checkRange(startInd, dest.length), dest);
+        }
+        
+        private int checkRange(long startInd, int len) throws EOFException {
+            if (startInd < 0 || startInd + len > mapping.capacity()) {
+                throw new EOFException();
+            }
+            return (int) startInd;
+        }
+        
+    }
+    
+    /**
+     * Reads the plain bytes of a buffer, which is cleared from memory when this stream is closed.
+     */
+    private static class PlainBufferInputStream extends InputStream {
+        
+        private final ByteBuffer plainBuf;
+        private boolean isClosed = false;
+        
+        PlainBufferInputStream(ByteBuffer plainBuf) {
+            this.plainBuf = CheckUtils.notNull(plainBuf);
+        }
+        
+        @Override
+        public int read() throws IOException {
+            checkNotClosed();
+            return plainBuf.hasRemaining() ? plainBuf.get() & 0xff : -1;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            checkNotClosed();
+            if (len <= 0) {
+                return 0;
+            }
+            if (!plainBuf.hasRemaining()) {
+                return -1;
+            }
+            int readNum = Math.min(len, plainBuf.remaining());
+            plainBuf.get(b, off, readNum);
+            return readNum;
+        }
+        
+        @Override
+        public long skip(long n) throws IOException {
+            checkNotClosed();
+            int skippedNum = (int) Math.max(0, Math.min(n, plainBuf.remaining()));
+            plainBuf.position(plainBuf.position() + skippedNum);
+            return skippedNum;
+        }
+        
+        @Override
+        public int available() throws IOException {
+            checkNotClosed();
+            return plainBuf.remaining();
+        }
+        
+        private void checkNotClosed() throws IOException {
+            if (isClosed) {
+                throw new IOException("Stream closed.");
+            }
+        }
+        
+        @Override
+        public void close() {
+            if (!isClosed) {
+                MemUtils.clearByteBuffer(plainBuf);
+                isClosed = true;
+            }
+        }
+        
+    }
+    
+    /**
+     * In-memory destination of the encrypted bytes of a header block, which are written to the file once all
+     * the blocks have been written. Header blocks have a fixed data length, so this buffer stays small.
+     * NB: Only encrypted bytes and noise are held, so its buffer doesn't need to be cleared from memory.
+     */
+    private static class EncryptedBlockBuffer extends ByteArrayOutputStream {
+        
+        final DataOutputStream dataOut = new DataOutputStream(this);
+        
+        void writeTo(RandomAccessFile raf) throws IOException {
+            raf.write(buf, 0, count);
+        }
+        
+    }
+    
+    /**
+     * The header block of a block written by a block worker, encrypted in its own buffer.
+     */
+    private static class EncryptedHeader {
+        
+        final DataBlock headerBlock;
+        final EncryptedBlockBuffer headerBuf;
+        
+        EncryptedHeader(DataBlock headerBlock, EncryptedBlockBuffer headerBuf) {
+            this.headerBlock = headerBlock;
+            this.headerBuf = headerBuf;
+        }
+        
+    }
+    
+    /**
+     * Writes the data of a block, into the stream returned by {@link DataBlock#startDataWriting(DataOutput)}.
+     */
+    @FunctionalInterface
+    private interface BlockContentWriter {
+        
+        void write(DataOutputStream dataOut, CodecContext ctx)
+                throws GeneralSecurityException, IOException;
+        
+    }
+    
+    /**
+     * A block whose layout has been planned (see {@link DataBlock#initLayout(int)}), so that its start index
+     * is known before it is written, and that it can be written directly into the file, concurrently with
+     * the other blocks.
+     */
+    private static class PlannedBlock {
+        
+        final String name;
+        final DataBlock block;
+        final BlockContentWriter contentWriter;
+        long startInd = -1;
+        
+        PlannedBlock(String name, DataBlock block, BlockContentWriter contentWriter) {
+            this.name = CheckUtils.notNull(name);
+            this.block = CheckUtils.notNull(block);
+            this.contentWriter = CheckUtils.notNull(contentWriter);
+        }
+        
+    }
+    
+    @FunctionalInterface
+    private interface EntryRecordWriter {
+        
+        void write(PasswordEntry.Data entryData, DataOutput recordOut, CodecContext ctx)
+                throws GeneralSecurityException, IOException;
+        
+    }
+    
+    /**
+     * The kinds of records of the entries (file version 2+), each kind being stored in its own records block.
+     */
+    private static enum RecordKind {
+        
+        PASSWORD(
+                PasswordEntry.Data::getSealedPassword,
+                entryData -> true,
+                SafeFileManager::writeEntryPassword
+        ),
+        TOTP(
+                PasswordEntry.Data::getSealedTOTP,
+                PasswordEntry.Data::hasTOTP,
+                SafeFileManager::writeEntryTOTP
+        );
+        
+        final Function<PasswordEntry.Data, SealedRecords.Record> sealedRecordGetter;
+        final Predicate<PasswordEntry.Data> hasRecord;
+        final EntryRecordWriter plainWriter;
+        
+        private RecordKind(Function<PasswordEntry.Data, SealedRecords.Record> sealedRecordGetter,
+                Predicate<PasswordEntry.Data> hasRecord, EntryRecordWriter plainWriter) {
+            this.sealedRecordGetter = sealedRecordGetter;
+            this.hasRecord = hasRecord;
+            this.plainWriter = plainWriter;
+        }
+        
+    }
+    
+    @FunctionalInterface
+    private interface BlockTask<T> {
+        
+        T run(CodecContext ctx) throws IOException, GeneralSecurityException;
+        
+    }
+    
+    private static ExecutorService newBlockWorkers() {
+        AtomicInteger threadsNum = new AtomicInteger();
+        return Executors.newFixedThreadPool(BLOCK_WORKERS_NUM, runnable -> {
+            Thread thread =
+                    new Thread(runnable, "tigersafe-block-worker-" + threadsNum.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Submits task to the block workers, with its own CodecContext.
+     * The buffers of the task are cleared from memory after the task.
+     * @param <T>
+     * @param task
+     * @return
+     */
+    private static <T> Future<T> submitBlockTask(BlockTask<T> task) {
+        return blockWorkers.submit(() -> {
+            try (CodecContext ctx = CodecContext.acquire()) {
+                return task.run(ctx);
+            } finally {
+                clearBuffers();
+            }
+        });
+    }
+    
+    /**
+     * Updates digest, if not null, with the plain fields of the entries in the order of the file.
+     */
+    private static void updateDigestFields(EntriesDigest digest,
+            PasswordEntry.Data[] pwEntriesData) {
+        if (digest != null) {
+            for (PasswordEntry.Data data : pwEntriesData) {
+                digest.updateFields(data);
+            }
+        }
+    }
+    
+    /**
+     * Waits for all the futures, so that no task is still running after a failure.
+     * @param futures
+     * @throws IOException the first exception thrown by a task, if any.
+     * @throws GeneralSecurityException the first exception thrown by a task, if any.
+     */
+    private static void awaitAll(Future<?>... futures)
+            throws IOException, GeneralSecurityException {
+        Throwable firstEx = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (firstEx == null) {
+                        firstEx = ex.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (firstEx instanceof IOException) {
+            throw (IOException) firstEx;
+        } else if (firstEx instanceof GeneralSecurityException) {
+            throw (GeneralSecurityException) firstEx;
+        } else if (firstEx instanceof RuntimeException) {
+            throw (RuntimeException) firstEx;
+        } else if (firstEx instanceof Error) {
+            throw (Error) firstEx;
+        } else if (firstEx != null) {
+            throw new IllegalStateException(firstEx);
+        }
+    }
+    
+    /**
+     * @param <T>
+     * @param future which must be done
+     * @return
+     */
+    private static <T> T getDone(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    private static DataBlock newMainHeaderBlock(short fileVer) {
         Cipher headersCipher = getHeaderBlocksCipher();
+        int markerLen = fileVer >= 2 ? Long.BYTES + Short.BYTES : 0;
         return new DataBlock(
-                headersCipher.getKeySize() + 3 * (headersCipher.getIvSize() + 3),
+                markerLen + headersCipher.getKeySize() + 3 * (headersCipher.getIvSize() + 3),
                 true,
                 headersCipher
         );
@@ -435,6 +1119,14 @@ private static DataBlock newTOTPBlock() {
         return new DataBlock(0, false, getUserDataBlocksCipher());
     }
     
+    private static DataBlock newPasswordsRecordsBlock() {
+        return new DataBlock(0, false, getUserDataBlocksCipher(), true);
+    }
+    
+    private static DataBlock newTOTPRecordsBlock() {
+        return new DataBlock(0, false, getUserDataBlocksCipher(), true);
+    }
+    
     private static Cipher getHeaderBlocksCipher() {
         return GlobalConfig.ConfigCipher.INTERNAL_DATA.getCipher();
     }
@@ -443,14 +1135,107 @@ private static Cipher getUserDataBlocksCipher() {
         return GlobalConfig.ConfigCipher.USER_DATA.getCipher();
     }
     
+    /**
+     * Same as {@link #write(File, char[], SafeData, DerivedKeyCache, short, int)} with the last
+     * version and {@link KeyDerivation#LEGACY_ITERATIONS_NUM}.
+     */
     public static void write(File targetFile, char[] safePw, SafeData safeData)
             throws IOException, GeneralSecurityException, DestroyFailedException {
-        Logger unsafeMethLog = unsafeLog.newChildFromCurMeth();
+        write(targetFile, safePw, safeData, null);
+    }
+    
+    /**
+     * Same as {@link #write(File, char[], SafeData, DerivedKeyCache, short, int)} with the last
+     * version and {@link KeyDerivation#LEGACY_ITERATIONS_NUM}.
+     * @param targetFile
+     * @param safePw
+     * @param safeData
+     * @param keyCache the cache of keys derivated from safePw, or null to always derivate the safe key.
+     * @throws IOException
+     * @throws GeneralSecurityException
+     * @throws DestroyFailedException
+     */
+    public static void write(File targetFile, char[] safePw, SafeData safeData,
+            DerivedKeyCache keyCache)
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        write(targetFile, safePw, safeData, keyCache, MAX_FILE_VER);
+    }
+    
+    /**
+     * Same as {@link #write(File, char[], SafeData, DerivedKeyCache, short, int)} with
+     * {@link KeyDerivation#LEGACY_ITERATIONS_NUM}.
+     * @param targetFile
+     * @param safePw
+     * @param safeData
+     * @param keyCache the cache of keys derivated from safePw, or null to always derivate the safe key.
+     * @param fileVer the version of the file format, between 1 and {@link #MAX_FILE_VER}.
+     * @throws IOException
+     * @throws GeneralSecurityException
+     * @throws DestroyFailedException
+     */
+    public static void write(File targetFile, char[] safePw, SafeData safeData,
+            DerivedKeyCache keyCache, short fileVer)
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        write(
+                targetFile,
+                safePw,
+                safeData,
+                keyCache,
+                fileVer,
+                KeyDerivation.LEGACY_ITERATIONS_NUM
+        );
+    }
+    
+    /**
+     * 
+     * @param targetFile
+     * @param safePw
+     * @param safeData
+     * @param keyCache the cache of keys derivated from safePw, or null to always derivate the safe key.
+     * @param fileVer the version of the file format, between 1 and {@link #MAX_FILE_VER}.
+     * @param derivationIterationsNum the iterations number of the derivation of the safe key, necessarily
+     * {@link KeyDerivation#LEGACY_ITERATIONS_NUM} before version 3.
+     * @throws IOException
+     * @throws GeneralSecurityException
+     * @throws DestroyFailedException
+     */
+    public static void write(File targetFile, char[] safePw, SafeData safeData,
+            DerivedKeyCache keyCache, short fileVer, int derivationIterationsNum)
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        write(targetFile, safePw, safeData, keyCache, fileVer, derivationIterationsNum, null);
+    }
+    
+    /**
+     * Same as {@link #write(File, char[], SafeData, DerivedKeyCache, short, int)}, but also updates
+     * digest with the written entries: their plain fields on the calling thread while the blocks are
+     * encrypted, and their records as they are written.
+     * @param digest the digest to update, or null (which is required before version 2).
+     */
+    static void write(File targetFile, char[] safePw, SafeData safeData, DerivedKeyCache keyCache,
+            short fileVer, int derivationIterationsNum, EntriesDigest digest)
+            throws IOException, GeneralSecurityException, DestroyFailedException {
         CheckUtils.notNull(safeData);
+        checkFileVer(fileVer);
+        if (digest != null && fileVer < 2) {
+            throw new IllegalArgumentException("The entries can only be digested since version 2.");
+        }
+        if (fileVer >= 3) {
+            KeyDerivation.checkIterationsNum(derivationIterationsNum);
+        } else if (derivationIterationsNum != KeyDerivation.LEGACY_ITERATIONS_NUM) {
+            throw new IllegalArgumentException(
+                    "The derivation iterations number cannot be stored before version 3."
+            );
+        }
         PasswordEntry.Data[] passwordEntriesData = safeData.getPwEntriesData();
-        unsafeMethLog.debug(() -> "passwordEntriesData num = " + passwordEntriesData.length);
+        unsafeWriteLog.debug(
+                () -> "passwordEntriesData num = " + passwordEntriesData.length + ", fileVer = "
+                        + fileVer
+        );
         
-        try (RandomAccessFile raf = new RandomAccessFile(targetFile, "rw");) {
+        try (
+                RandomAccessFile raf = new RandomAccessFile(targetFile, "rw");
+                CodecContext mainCtx = CodecContext.acquire();
+        ) {
             if (raf.length() != 0) {
                 throw new IllegalArgumentException("targetFile is not empty.");
             }
@@ -461,67 +1246,192 @@ public static void write(File targetFile, char[] safePw, SafeData safeData)
                     )
             );
             
-            unsafeMethLog.debug(() -> "passwordsBlock start ind = " + raf.getFilePointer());
-            DataBlock passwordsBlock = writePasswordsBlock(passwordEntriesData, raf);
-            
-            unsafeMethLog.debug(() -> "passwordsDataBlock start ind = " + raf.getFilePointer());
-            DataBlock passwordsDataBlock = writePasswordsDataBlock(passwordEntriesData, raf);
-            
-            unsafeMethLog.debug(() -> "totpBlock start ind = " + raf.getFilePointer());
-            DataBlock totpBlock = writeTOTPBlock(passwordEntriesData, raf);
-            
             Cipher headersCipher = getHeaderBlocksCipher();
             SecretKey mainKey = headersCipher.newKey();
             
-            unsafeMethLog.debug(() -> "passwordsHeaderBlock start ind = " + raf.getFilePointer());
-            DataBlock passwordsHeaderBlock = writeHeaderBlockFor(passwordsBlock, mainKey, raf);
-            
-            unsafeMethLog
-                    .debug(() -> "passwordsDataHeaderBlock start ind = " + raf.getFilePointer());
-            DataBlock passwordsDataHeaderBlock =
-                    writeHeaderBlockFor(passwordsDataBlock, mainKey, raf);
+            // The blocks are independent (own key and IV), only their order in the file matters, so their
+            // layout is planned first, then each block is written directly at its start index.
+            List<DataBlock> ownedBlocks = new ArrayList<>();
+            List<Future<EncryptedHeader>> headerFutures = new ArrayList<>();
+            PlannedBlock passwords;
+            PlannedBlock passwordsData;
+            PlannedBlock totp;
+            EncryptedHeader passwordsHeader;
+            EncryptedHeader passwordsDataHeader;
+            EncryptedHeader totpHeader;
+            try {
+                if (fileVer >= 2) {
+                    int[] pwRecordsLen = new int[passwordEntriesData.length];
+                    int[] totpRecordsLen = new int[passwordEntriesData.length];
+                    passwords = planRecordsBlock(
+                            "passwordsBlock",
+                            newPasswordsRecordsBlock(),
+                            RecordKind.PASSWORD,
+                            passwordEntriesData,
+                            pwRecordsLen,
+                            digest != null ? digest.getPasswordsDigest() : null,
+                            ownedBlocks,
+                            mainCtx
+                    );
+                    totp = planRecordsBlock(
+                            "totpBlock",
+                            newTOTPRecordsBlock(),
+                            RecordKind.TOTP,
+                            passwordEntriesData,
+                            totpRecordsLen,
+                            digest != null ? digest.getTOTPsDigest() : null,
+                            ownedBlocks,
+                            mainCtx
+                    );
+                    // The passwords data block indexes the records, whose lengths are already planned.
+                    passwordsData = planBlock(
+                            "passwordsDataBlock",
+                            newPasswordsDataBlock(),
+                            (dataOut, ctx) -> writePasswordsData(
+                                    passwordEntriesData,
+                                    pwRecordsLen,
+                                    totpRecordsLen,
+                                    dataOut,
+                                    ctx
+                            ),
+                            ownedBlocks,
+                            mainCtx
+                    );
+                } else {
+                    passwords = planBlock(
+                            "passwordsBlock",
+                            newPasswordsBlock(),
+                            (dataOut, ctx) -> writePasswords(passwordEntriesData, dataOut, ctx),
+                            ownedBlocks,
+                            mainCtx
+                    );
+                    passwordsData = planBlock(
+                            "passwordsDataBlock",
+                            newPasswordsDataBlock(),
+                            (dataOut, ctx) -> writePasswordsData(
+                                    passwordEntriesData,
+                                    null,
+                                    null,
+                                    dataOut,
+                                    ctx
+                            ),
+                            ownedBlocks,
+                            mainCtx
+                    );
+                    totp = planBlock(
+                            "totpBlock",
+                            newTOTPBlock(),
+                            (dataOut, ctx) -> writeTOTPs(passwordEntriesData, dataOut, ctx),
+                            ownedBlocks,
+                            mainCtx
+                    );
+                }
+                
+                long startInd = raf.getFilePointer();
+                FileChannel channel = raf.getChannel();
+                for (PlannedBlock plannedBlock : new PlannedBlock[] {
+                        passwords, passwordsData, totp
+                }) {
+                    plannedBlock.startInd = startInd;
+                    startInd += plannedBlock.block.getOutLen();
+                    unsafeWriteLog.debug(
+                            () -> plannedBlock.name + " start ind = " + plannedBlock.startInd
+                    );
+                    headerFutures.add(
+                            submitBlockTask(
+                                    ctx -> writePlannedBlock(channel, plannedBlock, mainKey, ctx)
+                            )
+                    );
+                }
+                long headersStartInd = startInd;
+                
+                updateDigestFields(digest, passwordEntriesData);
+                awaitAll(headerFutures.toArray(new Future<?>[0]));
+                
+                passwordsHeader = getDone(headerFutures.get(0));
+                passwordsDataHeader = getDone(headerFutures.get(1));
+                totpHeader = getDone(headerFutures.get(2));
+                if (raf.length() != headersStartInd) {
+                    throw new IllegalStateException(
+                            "Blocks end " + raf.length() + " != planned blocks end "
+                                    + headersStartInd + "."
+                    );
+                }
+                raf.seek(headersStartInd);
+                
+                unsafeWriteLog
+                        .debug(() -> "passwordsHeaderBlock start ind = " + raf.getFilePointer());
+                passwordsHeader.headerBuf.writeTo(raf);
+                
+                unsafeWriteLog.debug(
+                        () -> "passwordsDataHeaderBlock start ind = " + raf.getFilePointer()
+                );
+                passwordsDataHeader.headerBuf.writeTo(raf);
+                
+                unsafeWriteLog.debug(() -> "totpHeaderBlock start ind = " + raf.getFilePointer());
+                totpHeader.headerBuf.writeTo(raf);
+            } catch (Throwable ex) {
+                destroyAfterFailure(ownedBlocks, headerFutures, mainKey);
+                throw ex;
+            }
             
-            unsafeMethLog.debug(() -> "totpHeaderBlock start ind = " + raf.getFilePointer());
-            DataBlock totpHeaderBlock = writeHeaderBlockFor(totpBlock, mainKey, raf);
+            DataBlock passwordsBlock = passwords.block;
+            DataBlock passwordsDataBlock = passwordsData.block;
+            DataBlock totpBlock = totp.block;
+            DataBlock passwordsHeaderBlock = passwordsHeader.headerBlock;
+            DataBlock passwordsDataHeaderBlock = passwordsDataHeader.headerBlock;
+            DataBlock totpHeaderBlock = totpHeader.headerBlock;
             
-            DataBlock mainHeaderBlock = newMainHeaderBlock();
+            DataBlock mainHeaderBlock = newMainHeaderBlock(fileVer);
             
             byte[] safeKeySalt = mainHeaderBlock.cipher.newDerivationSalt();
             
-            SecretKey safeKey = mainHeaderBlock.cipher.getDerivatedKeyFrom(safePw, safeKeySalt);
+            SecretKey safeKey = getSafeKey(
+                    mainHeaderBlock.cipher,
+                    safePw,
+                    safeKeySalt,
+                    derivationIterationsNum,
+                    keyCache
+            );
             
             mainHeaderBlock.setKey(safeKey);
             mainHeaderBlock.newIv();
             
-            DataOutputStream mainHeaderDataOut = mainHeaderBlock.startDataWriting();
+            unsafeWriteLog.debug(() -> "mainHeaderBlock start ind = " + raf.getFilePointer());
+            DataOutputStream mainHeaderDataOut = mainHeaderBlock.startDataWriting(raf);
+            if (fileVer >= 2) {
+                mainHeaderDataOut.writeLong(FILE_MARKER);
+                mainHeaderDataOut.writeShort(fileVer);
+            }
             writeKey(mainKey, headersCipher, mainHeaderDataOut);
-            passwordsHeaderBlock.writeMetadataTo(mainHeaderDataOut);
-            passwordsDataHeaderBlock.writeMetadataTo(mainHeaderDataOut);
-            totpHeaderBlock.writeMetadataTo(mainHeaderDataOut);
+            passwordsHeaderBlock.writeMetadataTo(mainHeaderDataOut, mainCtx);
+            passwordsDataHeaderBlock.writeMetadataTo(mainHeaderDataOut, mainCtx);
+            totpHeaderBlock.writeMetadataTo(mainHeaderDataOut, mainCtx);
             
-            byte[] mainHeaderBlockBytes = mainHeaderBlock.finishDataWriting();
-            unsafeMethLog.debug(() -> "mainHeaderBlock start ind = " + raf.getFilePointer());
-            raf.write(mainHeaderBlockBytes);
+            mainHeaderBlock.finishDataWriting();
             
-            unsafeMethLog.debug(() -> "mainHeaderBlock meta start ind = " + raf.getFilePointer());
+            unsafeWriteLog.debug(() -> "mainHeaderBlock meta start ind = " + raf.getFilePointer());
             DataBlock.writeInNoiseLen(mainHeaderBlock.getInBeforeNoiseLen(), raf);
             DataBlock.writeInNoiseLen(mainHeaderBlock.getInAfterNoiseLen(), raf);
             mainHeaderBlock.writeIvTo(raf);
+            if (fileVer >= 3) {
+                writeDerivationMeta(derivationIterationsNum, safeKeySalt, raf);
+            }
             
-            unsafeMethLog.debug(() -> "safeKeySalt start ind = " + raf.getFilePointer());
+            unsafeWriteLog.debug(() -> "safeKeySalt start ind = " + raf.getFilePointer());
             raf.write(safeKeySalt);
             
             int endNoiseLen = getEndNoiseLen(safePw);
-            unsafeMethLog.debug(() -> "endNoise start ind = " + raf.getFilePointer());
+            unsafeWriteLog.debug(() -> "endNoise start ind = " + raf.getFilePointer());
             raf.write(RandomUtils.newRandomBytesOfLen(endNoiseLen));
-            unsafeMethLog.debug(
+            unsafeWriteLog.debug(
                     () -> "writting end, total size = " + raf.getFilePointer()
                             + ",\n endNoiseLen = " + endNoiseLen + ",\n safeKeySalt = "
                             + StringUtils.bytesToStr(safeKeySalt)
             );
+            unsafeWriteLog.debug(() -> "RandomPool stats: " + RandomPool.getStatsDebug());
             
             MemUtils.clearByteArray(safeKeySalt);
-            MemUtils.clearByteArray(mainHeaderBlockBytes);
             
             boolean success = true;
             success = MemUtils.tryDestroy(passwordsBlock) && success;
@@ -546,51 +1456,346 @@ public static void write(File targetFile, char[] safePw, SafeData safeData)
         }
     }
     
-    private static DataBlock writePasswordsBlock(PasswordEntry.Data[] passwordEntriesData,
-            RandomAccessFile raf) throws GeneralSecurityException, IOException {
-        DataBlock block = newPasswordsBlock();
+    /**
+     * Plans a block whose data is entirely written by contentWriter, by counting (without keeping) the bytes
+     * that it writes.
+     * @param name
+     * @param block owned by ownedBlocks
+     * @param contentWriter which must write the same number of bytes each time it is called
+     * @param ownedBlocks
+     * @param ctx
+     * @return
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    private static PlannedBlock planBlock(String name, DataBlock block,
+            BlockContentWriter contentWriter, List<DataBlock> ownedBlocks, CodecContext ctx)
+            throws GeneralSecurityException, IOException {
+        ownedBlocks.add(block);
         block.newKey();
         block.newIv();
-        DataOutputStream dataOut = block.startDataWriting();
-        
-        writePositiveInt(passwordEntriesData.length, 0, dataOut);
-        for (PasswordEntry.Data entryData : passwordEntriesData) {
-            writeChars(entryData.getPassword(), dataOut);
+        block.initLayout(getContentLen(contentWriter, ctx));
+        return new PlannedBlock(name, block, contentWriter);
+    }
+    
+    private static int getContentLen(BlockContentWriter contentWriter, CodecContext ctx)
+            throws GeneralSecurityException, IOException {
+        DataOutputStream countingOut = new DataOutputStream(OutputStream.nullOutputStream());
+        contentWriter.write(countingOut, ctx);
+        return countingOut.size();
+    }
+    
+    /**
+     * Writes plannedBlock at its start index in channel, then encrypts its header block with headerKey.
+     * @param channel
+     * @param plannedBlock
+     * @param headerKey
+     * @param ctx
+     * @return
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    private static EncryptedHeader writePlannedBlock(FileChannel channel,
+            PlannedBlock plannedBlock, SecretKey headerKey, CodecContext ctx)
+            throws GeneralSecurityException, IOException {
+        DataBlock block = plannedBlock.block;
+        try (
+                BlockFileOutputStream blockOut =
+                        new BlockFileOutputStream(channel, plannedBlock.startInd)
+        ) {
+            DataOutputStream dest = new DataOutputStream(blockOut);
+            DataOutputStream dataOut = block.startDataWriting(dest);
+            plannedBlock.contentWriter.write(dataOut, ctx);
+            block.finishDataWritingAndWriteOutAfterNoise(dest);
         }
-        
-        block.finishDataWritingAndWriteTo(raf);
-        return block;
+        EncryptedBlockBuffer headerBuf = new EncryptedBlockBuffer();
+        DataBlock headerBlock = writeHeaderBlockFor(block, headerKey, headerBuf.dataOut, ctx);
+        return new EncryptedHeader(headerBlock, headerBuf);
+    }
+    
+    /**
+     * Destroys the blocks of a failed writing once all its tasks are finished, including the header blocks of
+     * the tasks which have succeeded, and mainKey.
+     * @param ownedBlocks
+     * @param headerFutures
+     * @param mainKey
+     */
+    private static void destroyAfterFailure(List<DataBlock> ownedBlocks,
+            List<Future<EncryptedHeader>> headerFutures, SecretKey mainKey) {
+        try {
+            awaitAll(headerFutures.toArray(new Future<?>[0]));
+        } catch (Throwable ex) {
+            // The original failure is rethrown by the caller
+        }
+        for (Future<EncryptedHeader> headerFuture : headerFutures) {
+            if (headerFuture.isDone()) {
+                try {
+                    MemUtils.tryDestroy(headerFuture.get().headerBlock);
+                } catch (InterruptedException | ExecutionException | CancellationException ex) {
+                    // The task has failed, its header block is not available
+                }
+            }
+        }
+        MemUtils.tryDestroyAll(ownedBlocks);
+        MemUtils.tryDestroyKey(mainKey);
     }
     
-    private static char[][] readPasswordsBlock(DataBlock block, RandomAccessFile raf)
+    private static void writePasswords(PasswordEntry.Data[] passwordEntriesData,
+            DataOutputStream dataOut, CodecContext ctx)
             throws GeneralSecurityException, IOException {
-        DataInputStream dataIn = block.startDataReading(raf);
+        writePositiveInt(passwordEntriesData.length, 0, dataOut, ctx);
+        for (PasswordEntry.Data entryData : passwordEntriesData) {
+            writeEntryPassword(entryData, dataOut, ctx);
+        }
+    }
+    
+    private static char[][] readPasswordsBlock(DataBlock block, BlockSource src,
+            long startInd, CodecContext ctx) throws GeneralSecurityException, IOException {
+        DataInputStream dataIn = block.startDataReading(src, startInd);
         
-        int pwsNum = readPositiveInt(dataIn, 0);
+        int pwsNum = readPositiveInt(dataIn, 0, ctx);
         char[][] passwords = new char[pwsNum][];
         for (int i = 0; i < pwsNum; i++) {
-            passwords[i] = readChars(dataIn);
+            passwords[i] = readChars(dataIn, ctx);
         }
         return passwords;
     }
     
-    private static DataBlock writePasswordsDataBlock(PasswordEntry.Data[] passwordEntriesData,
-            RandomAccessFile raf) throws GeneralSecurityException, IOException {
-        DataBlock block = newPasswordsDataBlock();
-        block.newKey();
-        block.newIv();
-        DataOutputStream dataOut = block.startDataWriting();
+    @FunctionalInterface
+    private interface RecordWriter {
+        
+        void write(DataOutput recordOut) throws GeneralSecurityException, IOException;
         
-        writePositiveInt(passwordEntriesData.length, 0, dataOut);
+    }
+    
+    /**
+     * Writes a record (its own IV, then its data encrypted with the key of block) into the data of a records block.
+     * @param block a records block
+     * @param blockDataOut the stream returned by {@link DataBlock#startDataWriting(DataOutput)} for block
+     * @param plainCopyOut the stream into which the plain data of the record is also written (e.g. a digest),
+     * or null.
+     * @param recordWriter
+     * @return the length of the written record.
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    private static int writeRecord(DataBlock block, DataOutputStream blockDataOut,
+            OutputStream plainCopyOut, RecordWriter recordWriter)
+            throws GeneralSecurityException, IOException {
+        int startLen = blockDataOut.size();
+        byte[] iv = block.cipher.newIv();
+        blockDataOut.write(iv);
+        DestroyableBufferedOutputStream plainBufOut = new DestroyableBufferedOutputStream(
+                block.cipher.newEncryptionStream(
+                        block.getKey(),
+                        iv,
+                        new BlockOutputStream(blockDataOut)
+                )
+        );
+        DataOutputStream recordOut = new DataOutputStream(
+                plainCopyOut != null ? new TeeOutputStream(plainBufOut, plainCopyOut) : plainBufOut
+        );
+        try {
+            recordWriter.write(recordOut);
+            recordOut.close(); // Flushes and clears plainBufOut, then finalizes the encryption
+        } finally {
+            try {
+                recordOut.writeLong(0); // Clear internal writeBuffer
+            } catch (IOException ex) {
+                // Expected since the stream has been closed, writeBuffer is cleared anyway
+            }
+            MemUtils.tryDestroy(plainBufOut);
+            MemUtils.clearByteArray(iv);
+        }
+        return blockDataOut.size() - startLen;
+    }
+    
+    /**
+     * Sets the key of a records block: a copy of the key of the sealed records of the first entry whose
+     * record (got by sealedRecordGetter) is sealed with the cipher of block, so that the records sealed with
+     * this key can be rewritten as they are, or a new key if there is no such entry.
+     * @param block a records block
+     * @param passwordEntriesData
+     * @param sealedRecordGetter
+     * @return the sealed records whose key is reused, or null if a new key is used.
+     * @throws NoSuchAlgorithmException
+     */
+    private static SealedRecords initRecordsBlockKey(DataBlock block,
+            PasswordEntry.Data[] passwordEntriesData,
+            Function<PasswordEntry.Data, SealedRecords.Record> sealedRecordGetter)
+            throws NoSuchAlgorithmException {
         for (PasswordEntry.Data entryData : passwordEntriesData) {
-            writeStr(entryData.name, dataOut);
-            dataOut.writeLong(entryData.lastPasswordChangeTime.getEpochSecond());
-            writeStr(entryData.site, dataOut);
-            writeStr(entryData.info, dataOut);
+            SealedRecords.Record sealed = sealedRecordGetter.apply(entryData);
+            if (sealed != null && block.cipher.equals(sealed.getRecords().getCipher())) {
+                SecretKey key = sealed.getRecords().copyKey();
+                if (key != null) {
+                    block.setKey(key);
+                    return sealed.getRecords();
+                }
+            }
+        }
+        block.newKey();
+        return null;
+    }
+    
+    /**
+     * Writes the password of entryData like {@link #writeChars(char[], DataOutput, CodecContext)}, by
+     * copying the decrypted bytes of its record if it is sealed, without unsealing it.
+     * @param entryData
+     * @param dataOut
+     * @param ctx
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    static void writeEntryPassword(PasswordEntry.Data entryData, DataOutput dataOut,
+            CodecContext ctx) throws IOException, GeneralSecurityException {
+        synchronized (entryData) {
+            SealedRecords.Record sealed = entryData.getSealedPassword();
+            if (sealed != null) {
+                sealed.copyPlainTo(dataOut);
+            } else {
+                char[] pw = entryData.getPassword();
+                try {
+                    writeChars(pw, dataOut, ctx);
+                } finally {
+                    MemUtils.clearCharArray(pw);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Same as {@link #writeEntryPassword(PasswordEntry.Data, DataOutput, CodecContext)} for the TOTP
+     * (like {@link #writeTOTP(TOTP, DataOutput, CodecContext)}), entryData must have a TOTP.
+     * @param entryData
+     * @param dataOut
+     * @param ctx
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    static void writeEntryTOTP(PasswordEntry.Data entryData, DataOutput dataOut,
+            CodecContext ctx) throws IOException, GeneralSecurityException {
+        synchronized (entryData) {
+            SealedRecords.Record sealed = entryData.getSealedTOTP();
+            if (sealed != null) {
+                sealed.copyPlainTo(dataOut);
+            } else {
+                writeTOTP(CheckUtils.notNull(entryData.getTOTP()), dataOut, ctx);
+            }
+        }
+    }
+    
+    /**
+     * Plans a records block of the given kind, whose records lengths are computed without encrypting them.
+     * Its key is initialized by {@link #initRecordsBlockKey(DataBlock, PasswordEntry.Data[], Function)}, so
+     * that the records still sealed with this key are rewritten as they are (without decrypting them), the
+     * other sealed records being decrypted and encrypted again, without unsealing them.
+     * @param name
+     * @param block a records block, owned by ownedBlocks
+     * @param kind
+     * @param passwordEntriesData
+     * @param recordsLen filled with the length of the record of each entry, 0 if it has no record.
+     * @param recordsDigest the digest to update with the plain bytes of the records when they are written,
+     * or null.
+     * @param ownedBlocks
+     * @param ctx
+     * @return
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    private static PlannedBlock planRecordsBlock(String name, DataBlock block, RecordKind kind,
+            PasswordEntry.Data[] passwordEntriesData, int[] recordsLen,
+            EntriesDigest.RecordsDigest recordsDigest, List<DataBlock> ownedBlocks,
+            CodecContext ctx) throws GeneralSecurityException, IOException {
+        ownedBlocks.add(block);
+        SealedRecords reusedRecords =
+                initRecordsBlockKey(block, passwordEntriesData, kind.sealedRecordGetter);
+        block.newIv(); // not used, but part of the metadata
+        int ivSize = block.cipher.getIvSize();
+        int dataLen = 0;
+        for (int i = 0; i < passwordEntriesData.length; i++) {
+            PasswordEntry.Data entryData = passwordEntriesData[i];
+            synchronized (entryData) {
+                SealedRecords.Record sealed = kind.sealedRecordGetter.apply(entryData);
+                if (sealed != null && sealed.getRecords() == reusedRecords) {
+                    recordsLen[i] = sealed.getLen();
+                } else if (sealed != null) {
+                    recordsLen[i] = ivSize + block.cipher.getEncryptedLen(sealed.getPlainLen());
+                } else if (kind.hasRecord.test(entryData)) {
+                    int plainLen = getContentLen(
+                            (recordOut, recordCtx) -> kind.plainWriter
+                                    .write(entryData, recordOut, recordCtx),
+                            ctx
+                    );
+                    recordsLen[i] = ivSize + block.cipher.getEncryptedLen(plainLen);
+                } else {
+                    recordsLen[i] = 0;
+                }
+            }
+            dataLen = Math.addExact(dataLen, recordsLen[i]);
         }
+        block.initLayout(dataLen);
         
-        block.finishDataWritingAndWriteTo(raf);
-        return block;
+        return new PlannedBlock(name, block, (dataOut, ctx2) -> {
+            for (int i = 0; i < passwordEntriesData.length; i++) {
+                PasswordEntry.Data entryData = passwordEntriesData[i];
+                int recordLen;
+                synchronized (entryData) {
+                    SealedRecords.Record sealed = kind.sealedRecordGetter.apply(entryData);
+                    if (sealed != null && sealed.getRecords() == reusedRecords) {
+                        recordLen = sealed.writeSealedTo(dataOut);
+                        if (recordsDigest != null) {
+                            recordsDigest.updateRecord(sealed);
+                        }
+                    } else if (kind.hasRecord.test(entryData)) {
+                        recordLen = writeRecord(
+                                block,
+                                dataOut,
+                                recordsDigest,
+                                recordOut -> kind.plainWriter.write(entryData, recordOut, ctx2)
+                        );
+                        if (recordsDigest != null) {
+                            recordsDigest.endRecord();
+                        }
+                    } else {
+                        recordLen = 0;
+                    }
+                }
+                if (recordLen != recordsLen[i]) {
+                    throw new IllegalStateException(
+                            "Record length " + recordLen + " != planned record length "
+                                    + recordsLen[i] + "."
+                    );
+                }
+            }
+        });
+    }
+    
+    /**
+     * 
+     * @param passwordEntriesData
+     * @param pwRecordsLen the length of the password record of each entry (file version 2+), null for file version 1.
+     * @param totpRecordsLen the length of the TOTP record of each entry, 0 if no TOTP (file version 2+), null for file version 1.
+     * @param dataOut
+     * @param ctx
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    private static void writePasswordsData(PasswordEntry.Data[] passwordEntriesData,
+            int[] pwRecordsLen, int[] totpRecordsLen, DataOutputStream dataOut, CodecContext ctx)
+            throws GeneralSecurityException, IOException {
+        writePositiveInt(passwordEntriesData.length, 0, dataOut, ctx);
+        for (int i = 0; i < passwordEntriesData.length; i++) {
+            PasswordEntry.Data entryData = passwordEntriesData[i];
+            writeStr(entryData.name, dataOut, ctx);
+            dataOut.writeLong(entryData.lastPasswordChangeTime.getEpochSecond());
+            writeStr(entryData.site, dataOut, ctx);
+            writeStr(entryData.info, dataOut, ctx);
+            if (pwRecordsLen != null) {
+                writePositiveInt(pwRecordsLen[i], 0, dataOut, ctx);
+                writePositiveInt(totpRecordsLen[i], 0, dataOut, ctx);
+            }
+        }
     }
     
     private static class PasswordData {
@@ -599,112 +1804,183 @@ private static class PasswordData {
         final Instant lastPasswordChangeTime;
         final String site;
         final String info;
+        final int pwRecordLen;
+        final int totpRecordLen;
         
-        public PasswordData(String name, Instant lastPasswordChangeTime, String site, String info) {
+        public PasswordData(String name, Instant lastPasswordChangeTime, String site, String info,
+                int pwRecordLen, int totpRecordLen) {
             this.name = name;
             this.lastPasswordChangeTime = lastPasswordChangeTime;
             this.site = site;
             this.info = info;
+            this.pwRecordLen = pwRecordLen;
+            this.totpRecordLen = totpRecordLen;
         }
         
     }
     
-    private static PasswordData[] readPasswordsDataBlock(DataBlock block, RandomAccessFile raf)
+    private static PasswordData[] readPasswordsDataBlock(DataBlock block, BlockSource src,
+            long startInd, boolean hasRecordsLen, CodecContext ctx)
             throws GeneralSecurityException, IOException {
-        DataInputStream dataIn = block.startDataReading(raf);
+        DataInputStream dataIn = block.startDataReading(src, startInd);
         
-        int pwsNum = readPositiveInt(dataIn, 0);
+        int pwsNum = readPositiveInt(dataIn, 0, ctx);
         PasswordData[] passwordsData = new PasswordData[pwsNum];
         for (int i = 0; i < pwsNum; i++) {
+            String name = readStr(dataIn, ctx);
+            Instant lastPasswordChangeTime = Instant.ofEpochSecond(dataIn.readLong());
+            String site = readStr(dataIn, ctx);
+            String info = readStr(dataIn, ctx);
+            int pwRecordLen = hasRecordsLen ? readPositiveInt(dataIn, 0, ctx) : -1;
+            int totpRecordLen = hasRecordsLen ? readPositiveInt(dataIn, 0, ctx) : -1;
             passwordsData[i] = new PasswordData(
-                    readStr(dataIn),
-                    Instant.ofEpochSecond(dataIn.readLong()),
-                    readStr(dataIn),
-                    readStr(dataIn)
+                    name,
+                    lastPasswordChangeTime,
+                    site,
+                    info,
+                    pwRecordLen,
+                    totpRecordLen
             );
         }
         return passwordsData;
     }
     
-    private static DataBlock writeTOTPBlock(PasswordEntry.Data[] passwordEntriesData,
-            RandomAccessFile raf) throws GeneralSecurityException, IOException {
-        DataBlock block = newTOTPBlock();
-        block.newKey();
-        block.newIv();
-        DataOutputStream dataOut = block.startDataWriting();
-        
-        Map<Integer, TOTP> totpByPwEntryInd = new HashMap<>();
+    private static void writeTOTPs(PasswordEntry.Data[] passwordEntriesData,
+            DataOutputStream dataOut, CodecContext ctx)
+            throws GeneralSecurityException, IOException {
+        Map<Integer, PasswordEntry.Data> totpEntryDataByPwEntryInd = new HashMap<>();
         int pwEntryInd = 0;
         for (PasswordEntry.Data entryData : passwordEntriesData) {
-            if (entryData.totp != null) {
-                totpByPwEntryInd.put(pwEntryInd, entryData.totp);
+            if (entryData.hasTOTP()) {
+                totpEntryDataByPwEntryInd.put(pwEntryInd, entryData);
             }
             pwEntryInd++;
         }
         
-        writePositiveInt(totpByPwEntryInd.size(), 0, dataOut);
-        for (Map.Entry<Integer, TOTP> ent : totpByPwEntryInd.entrySet()) {
-            writePositiveInt(ent.getKey(), 0, dataOut);
-            writeTOTP(ent.getValue(), dataOut);
+        writePositiveInt(totpEntryDataByPwEntryInd.size(), 0, dataOut, ctx);
+        for (Map.Entry<Integer, PasswordEntry.Data> ent : totpEntryDataByPwEntryInd.entrySet()) {
+            writePositiveInt(ent.getKey(), 0, dataOut, ctx);
+            writeEntryTOTP(ent.getValue(), dataOut, ctx);
         }
-        
-        block.finishDataWritingAndWriteTo(raf);
-        return block;
     }
     
-    private static Map<Integer, TOTP> readTOTPBlock(DataBlock block, RandomAccessFile raf)
-            throws GeneralSecurityException, IOException {
-        DataInputStream dataIn = block.startDataReading(raf);
+    private static Map<Integer, TOTP> readTOTPBlock(DataBlock block, BlockSource src,
+            long startInd, CodecContext ctx) throws GeneralSecurityException, IOException {
+        DataInputStream dataIn = block.startDataReading(src, startInd);
         
         HashMap<Integer, TOTP> res = new HashMap<>();
-        int totpsNum = readPositiveInt(dataIn, 0);
+        int totpsNum = readPositiveInt(dataIn, 0, ctx);
         for (int i = 0; i < totpsNum; i++) {
-            res.put(readPositiveInt(dataIn, 0), readTOTP(dataIn));
+            res.put(readPositiveInt(dataIn, 0, ctx), readTOTP(dataIn, ctx));
         }
         return res;
     }
     
-    private static void writeTOTP(TOTP totp, DataOutput dataOut)
+    static void writeTOTP(TOTP totp, DataOutput dataOut, CodecContext ctx)
             throws IOException, NoSuchAlgorithmException {
-        writeUnsignedShort(totp.getKeyBytes().length, dataOut);
-        dataOut.write(totp.getKeyBytes());
-        writeStr(totp.label, dataOut);
-        writeStr(totp.issuer, dataOut);
+        byte[] keyBytes = totp.getKeyBytes();
+        try {
+            writeUnsignedShort(keyBytes.length, dataOut);
+            dataOut.write(keyBytes);
+        } finally {
+            MemUtils.clearByteArray(keyBytes);
+        }
+        writeStr(totp.label, dataOut, ctx);
+        writeStr(totp.issuer, dataOut, ctx);
         writeSmallNumber(totp.algo.ordinal(), TOTP.ALGO_ORD_RANGE, dataOut);
         writeSmallNumber(totp.digitsNum, TOTP.DIGITS_NUM_RANGE, dataOut);
         writeSmallNumber(totp.periodSeconds, TOTP.PERIOD_SECONDS_RANGE, dataOut);
     }
     
-    private static TOTP readTOTP(DataInput dataIn) throws IOException {
+    static TOTP readTOTP(DataInput dataIn, CodecContext ctx) throws IOException {
         int keyLen = readUnsignedShort(dataIn);
         byte[] keyBytes = new byte[keyLen];
-        dataIn.readFully(keyBytes);
-        String label = readStr(dataIn);
-        String issuer = readStr(dataIn);
-        int algoOrd = readSmallNumber(dataIn, TOTP.ALGO_ORD_RANGE);
-        Algorithm algo = TOTP.Algorithm.getByOrdinal(algoOrd);
-        int digitsNum = readSmallNumber(dataIn, TOTP.DIGITS_NUM_RANGE);
-        int periodSeconds = readSmallNumber(dataIn, TOTP.PERIOD_SECONDS_RANGE);
-        return new TOTP(keyBytes, label, issuer, algo, digitsNum, periodSeconds);
+        try {
+            dataIn.readFully(keyBytes);
+            String label = readStr(dataIn, ctx);
+            String issuer = readStr(dataIn, ctx);
+            int algoOrd = readSmallNumber(dataIn, TOTP.ALGO_ORD_RANGE);
+            Algorithm algo = TOTP.Algorithm.getByOrdinal(algoOrd);
+            int digitsNum = readSmallNumber(dataIn, TOTP.DIGITS_NUM_RANGE);
+            int periodSeconds = readSmallNumber(dataIn, TOTP.PERIOD_SECONDS_RANGE);
+            return new TOTP(keyBytes, label, issuer, algo, digitsNum, periodSeconds);
+        } finally {
+            MemUtils.clearByteArray(keyBytes);
+        }
     }
     
     private static DataBlock writeHeaderBlockFor(DataBlock targetBlock, SecretKey headerKey,
-            RandomAccessFile raf) throws GeneralSecurityException, IOException {
+            DataOutput dest, CodecContext ctx) throws GeneralSecurityException, IOException {
         DataBlock headerBlock = newHeaderBlock();
         headerBlock.setKey(headerKey);
         headerBlock.newIv();
-        DataOutputStream headerDataOut = headerBlock.startDataWriting();
+        DataOutputStream headerDataOut = headerBlock.startDataWriting(dest);
         writeKey(targetBlock.getKey(), targetBlock.cipher, headerDataOut);
-        targetBlock.writeMetadataTo(headerDataOut);
-        headerBlock.finishDataWritingAndWriteTo(raf);
+        targetBlock.writeMetadataTo(headerDataOut, ctx);
+        headerBlock.finishDataWritingAndWriteOutAfterNoise(dest);
         return headerBlock;
     }
     
-    private static void readHeaderBlock(DataBlock header, DataBlock target, RandomAccessFile raf)
+    private static DataBlock readHeaderBlock(DataBlock header, DataBlock target,
+            BlockSource src, long headerStartInd, CodecContext ctx)
             throws GeneralSecurityException, IOException {
-        DataInputStream headerDataIn = header.startDataReading(raf);
+        DataInputStream headerDataIn = header.startDataReading(src, headerStartInd);
         target.setKey(readKey(headerDataIn, target.cipher));
-        target.readMetadataFrom(headerDataIn);
+        target.readMetadataFrom(headerDataIn, ctx);
+        return target;
+    }
+    
+    private static SecretKey getSafeKey(Cipher cipher, char[] safePw, byte[] safeKeySalt,
+            int iterationsNum, DerivedKeyCache keyCache)
+            throws NoSuchAlgorithmException, InvalidKeySpecException {
+        if (keyCache != null) {
+            return keyCache.getDerivatedKey(cipher, safePw, safeKeySalt, iterationsNum);
+        } else {
+            return cipher.getDerivatedKeyFrom(safePw, safeKeySalt, iterationsNum);
+        }
+    }
+    
+    /**
+     * Writes the iterations number of the derivation of the safe key in a non obvious way: masked, followed by
+     * a check which allows to distinguish it from the end of the IV of the files of version 1 and 2
+     * (false positive probability of 2^-32, rejected by the authenticated version of the main header).
+     * @param iterationsNum
+     * @param safeKeySalt
+     * @param dataOut
+     * @throws IOException
+     * @throws NoSuchAlgorithmException
+     */
+    private static void writeDerivationMeta(int iterationsNum, byte[] safeKeySalt,
+            DataOutput dataOut) throws IOException, NoSuchAlgorithmException {
+        int[] masks = getDerivationMetaMasks(safeKeySalt);
+        dataOut.writeInt(iterationsNum ^ masks[0]);
+        dataOut.writeInt(iterationsNum ^ masks[1]);
+    }
+    
+    /**
+     * @param derivationMeta
+     * @param safeKeySalt
+     * @return the iterations number of the derivation of the safe key, or -1 if derivationMeta is not valid
+     * (e.g. the end of the IV of a file of version 1 or 2).
+     * @throws NoSuchAlgorithmException
+     */
+    private static int readDerivationMeta(byte[] derivationMeta, byte[] safeKeySalt)
+            throws NoSuchAlgorithmException {
+        int[] masks = getDerivationMetaMasks(safeKeySalt);
+        ByteBuffer metaBuf = ByteBuffer.wrap(derivationMeta);
+        int iterationsNum = metaBuf.getInt() ^ masks[0];
+        int checkIterationsNum = metaBuf.getInt() ^ masks[1];
+        return iterationsNum == checkIterationsNum
+                && KeyDerivation.isValidIterationsNum(iterationsNum) ? iterationsNum : -1;
+    }
+    
+    private static int[] getDerivationMetaMasks(byte[] safeKeySalt)
+            throws NoSuchAlgorithmException {
+        ByteBuffer digestBuf =
+                ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(safeKeySalt));
+        return new int[] {
+                digestBuf.getInt(), digestBuf.getInt()
+        };
     }
     
     public static int getEndNoiseLen(char[] safePw) {
@@ -717,113 +1993,329 @@ public static int getEndNoiseLen(char[] safePw) {
     
     public static SafeData read(File srcFile, char[] safePw)
             throws IOException, GeneralSecurityException, DestroyFailedException {
-        Logger unsafeMethLog = unsafeLog.newChildFromCurMeth();
-        try (RandomAccessFile raf = new RandomAccessFile(srcFile, "r");) {
+        return read(srcFile, safePw, null);
+    }
+    
+    public static SafeData read(File srcFile, char[] safePw, DerivedKeyCache keyCache)
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        return read(srcFile, safePw, keyCache, ReadMode.STREAM);
+    }
+    
+    /**
+     * 
+     * @param srcFile
+     * @param safePw
+     * @param keyCache the cache of keys derivated from safePw, or null to always derivate the safe key.
+     * @param readMode
+     * @return
+     * @throws IOException
+     * @throws GeneralSecurityException
+     * @throws DestroyFailedException
+     */
+    public static SafeData read(File srcFile, char[] safePw, DerivedKeyCache keyCache,
+            ReadMode readMode) throws IOException, GeneralSecurityException, DestroyFailedException {
+        List<PasswordEntry.Data> pwEntriesData = new ArrayList<>();
+        read(srcFile, safePw, keyCache, readMode, pwEntriesData::add);
+        return new SafeData(pwEntriesData.toArray(new PasswordEntry.Data[0]));
+    }
+    
+    /**
+     * Reads srcFile (of version 2+) and updates digest with its entries, each one being destroyed as soon
+     * as it has been digested, so that the entries are never all decrypted at the same time.
+     * @param srcFile
+     * @param safePw
+     * @param keyCache the cache of keys derivated from safePw, or null to always derivate the safe key.
+     * @param digest
+     * @throws IOException
+     * @throws GeneralSecurityException
+     * @throws DestroyFailedException
+     */
+    static void digest(File srcFile, char[] safePw, DerivedKeyCache keyCache, EntriesDigest digest)
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        CheckUtils.notNull(digest);
+        read(srcFile, safePw, keyCache, ReadMode.STREAM, data -> {
+            try {
+                digest.update(data);
+            } finally {
+                data.destroy();
+            }
+        });
+    }
+    
+    @FunctionalInterface
+    private interface PwEntryDataConsumer {
+        
+        /**
+         * @param data owned by the consumer
+         */
+        void accept(PasswordEntry.Data data)
+                throws IOException, GeneralSecurityException, DestroyFailedException;
+        
+    }
+    
+    /**
+     * 
+     * @param srcFile
+     * @param safePw
+     * @param keyCache the cache of keys derivated from safePw, or null to always derivate the safe key.
+     * @param readMode
+     * @param consumer called with each entry data, in the order of the file.
+     * @throws IOException
+     * @throws GeneralSecurityException
+     * @throws DestroyFailedException
+     */
+    private static void read(File srcFile, char[] safePw, DerivedKeyCache keyCache,
+            ReadMode readMode, PwEntryDataConsumer consumer)
+            throws IOException, GeneralSecurityException, DestroyFailedException {
+        try (
+                RandomAccessFile raf = new RandomAccessFile(srcFile, "r");
+                CodecContext mainCtx = CodecContext.acquire();
+        ) {
             int endNoiseLen = getEndNoiseLen(safePw);
-            unsafeMethLog.debug(() -> "endNoiseLen = " + endNoiseLen);
+            unsafeReadLog.debug(() -> "endNoiseLen = " + endNoiseLen);
             
-            DataBlock mainHeaderBlock = newMainHeaderBlock();
-            long mainHeaderBlockMetaStartInd = raf.length()
-                    - endNoiseLen
-                    - mainHeaderBlock.cipher.getDerivationSaltSize()
-                    - mainHeaderBlock.cipher.getIvSize()
-                    - (2 * Byte.BYTES);
-            unsafeMethLog
-                    .debug(() -> "mainHeaderBlockMetaStartInd = " + mainHeaderBlockMetaStartInd);
-            raf.seek(mainHeaderBlockMetaStartInd);
+            FileChannel channel = raf.getChannel();
+            long fileLen = channel.size();
+            BlockSource src;
+            switch (CheckUtils.notNull(readMode)) {
+                case MAPPED:
+                    if (fileLen > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("The safe file is too big to be mapped.");
+                    }
+                    src = new MappedBlockSource(channel.map(MapMode.READ_ONLY, 0, fileLen));
+                    break;
+                default:
+                    src = new ChannelBlockSource(channel);
+                    break;
+            }
             
-            mainHeaderBlock.setInBeforeNoiseLen(DataBlock.readInNoiseLen(raf));
-            mainHeaderBlock.setInAfterNoiseLen(DataBlock.readInNoiseLen(raf));
-            mainHeaderBlock.readIvFrom(raf);
+            Cipher headersCipher = getHeaderBlocksCipher();
+            long safeKeySaltStartInd = fileLen - endNoiseLen - headersCipher.getDerivationSaltSize();
+            byte[] safeKeySalt = new byte[headersCipher.getDerivationSaltSize()];
+            src.readFully(safeKeySaltStartInd, safeKeySalt);
+            unsafeReadLog.debug(() -> "safeKeySalt = " + StringUtils.bytesToStr(safeKeySalt));
             
-            unsafeMethLog.debug(
-                    () -> "mainHeaderBlock encrypted len = " + mainHeaderBlock.getEncryptedLen()
+            // The derivation metadata only exists since version 3, otherwise these bytes are the end of the IV.
+            // Its check can pass by chance (probability of 2^-32) for a file of version 1 or 2, so it is only
+            // trusted if the main header, located and decrypted with it, authenticates a version 3+.
+            byte[] derivationMeta = new byte[DERIVATION_META_LEN];
+            src.readFully(safeKeySaltStartInd - DERIVATION_META_LEN, derivationMeta);
+            int storedIterationsNum = readDerivationMeta(derivationMeta, safeKeySalt);
+            MainHeaderMeta mainHeaderMeta = null;
+            if (storedIterationsNum > 0) {
+                mainHeaderMeta = readMainHeaderMeta(
+                        src,
+                        headersCipher,
+                        safeKeySaltStartInd - DERIVATION_META_LEN,
+                        safePw,
+                        safeKeySalt,
+                        storedIterationsNum,
+                        keyCache
+                );
+                if (mainHeaderMeta.fileVer < 3) {
+                    mainHeaderMeta.destroy();
+                    mainHeaderMeta = null;
+                }
+            }
+            if (mainHeaderMeta == null) {
+                mainHeaderMeta = readMainHeaderMeta(
+                        src,
+                        headersCipher,
+                        safeKeySaltStartInd,
+                        safePw,
+                        safeKeySalt,
+                        KeyDerivation.LEGACY_ITERATIONS_NUM,
+                        keyCache
+                );
+                if (mainHeaderMeta.fileVer >= 3) {
+                    short invalidFileVer = mainHeaderMeta.fileVer;
+                    mainHeaderMeta.destroy();
+                    throw new IllegalArgumentException(
+                            "The safe file of version " + invalidFileVer
+                                    + " has no valid derivation metadata."
+                    );
+                }
+            }
+            short fileVer = mainHeaderMeta.fileVer;
+            long mainHeaderBlockMetaStartInd = mainHeaderMeta.blockMetaStartInd;
+            int mainHeaderInBeforeNoiseLen = mainHeaderMeta.inBeforeNoiseLen;
+            int mainHeaderInAfterNoiseLen = mainHeaderMeta.inAfterNoiseLen;
+            byte[] mainHeaderIv = mainHeaderMeta.iv;
+            SecretKey safeKey = mainHeaderMeta.safeKey;
+            int derivationIterationsNum = mainHeaderMeta.iterationsNum;
+            unsafeReadLog.debug(
+                    () -> "fileVer = " + fileVer + ", derivationIterationsNum = "
+                            + derivationIterationsNum + ", mainHeaderBlockMetaStartInd = "
+                            + mainHeaderBlockMetaStartInd
             );
-            byte[] safeKeySalt = new byte[mainHeaderBlock.cipher.getDerivationSaltSize()];
-            raf.readFully(safeKeySalt);
-            unsafeMethLog.debug(() -> "safeKeySalt = " + StringUtils.bytesToStr(safeKeySalt));
             
-            SecretKey safeKey = mainHeaderBlock.cipher.getDerivatedKeyFrom(safePw, safeKeySalt);
+            DataBlock mainHeaderBlock = newMainHeaderBlock(fileVer);
+            mainHeaderBlock.setInBeforeNoiseLen(mainHeaderInBeforeNoiseLen);
+            mainHeaderBlock.setInAfterNoiseLen(mainHeaderInAfterNoiseLen);
+            mainHeaderBlock.setIv(mainHeaderIv);
             mainHeaderBlock.setKey(safeKey);
+            unsafeReadLog.debug(
+                    () -> "mainHeaderBlock encrypted len = " + mainHeaderBlock.getEncryptedLen()
+            );
             
             long mainHeaderStartInd =
                     mainHeaderBlockMetaStartInd - mainHeaderBlock.getEncryptedLen();
-            unsafeMethLog.debug(() -> "mainHeaderStartInd = " + mainHeaderStartInd);
-            raf.seek(mainHeaderStartInd);
+            unsafeReadLog.debug(() -> "mainHeaderStartInd = " + mainHeaderStartInd);
             
-            DataInputStream mainHeaderDataIn = mainHeaderBlock.startDataReading(raf);
-            SecretKey mainKey = readKey(mainHeaderDataIn, getHeaderBlocksCipher());
+            DataInputStream mainHeaderDataIn =
+                    mainHeaderBlock.startDataReading(src, mainHeaderStartInd);
+            if (fileVer >= 2) {
+                skipBytes(mainHeaderDataIn, Long.BYTES + Short.BYTES); // already checked by readFileVer
+            }
+            SecretKey mainKey = readKey(mainHeaderDataIn, headersCipher);
             
             DataBlock passwordsHeaderBlock = newHeaderBlock();
             passwordsHeaderBlock.setKey(mainKey);
-            passwordsHeaderBlock.readMetadataFrom(mainHeaderDataIn);
+            passwordsHeaderBlock.readMetadataFrom(mainHeaderDataIn, mainCtx);
             
             DataBlock passwordsDataHeaderBlock = newHeaderBlock();
             passwordsDataHeaderBlock.setKey(mainKey);
-            passwordsDataHeaderBlock.readMetadataFrom(mainHeaderDataIn);
+            passwordsDataHeaderBlock.readMetadataFrom(mainHeaderDataIn, mainCtx);
             
             DataBlock totpHeaderBlock = newHeaderBlock();
             totpHeaderBlock.setKey(mainKey);
-            totpHeaderBlock.readMetadataFrom(mainHeaderDataIn);
+            totpHeaderBlock.readMetadataFrom(mainHeaderDataIn, mainCtx);
             
             long totpHeaderStartInd = totpHeaderBlock.getStartInd(mainHeaderStartInd);
-            unsafeMethLog.debug(() -> "totpHeaderStartInd = " + totpHeaderStartInd);
-            raf.seek(totpHeaderStartInd);
-            DataBlock totpBlock = newTOTPBlock();
-            readHeaderBlock(totpHeaderBlock, totpBlock, raf);
-            
+            unsafeReadLog.debug(() -> "totpHeaderStartInd = " + totpHeaderStartInd);
             long pwsDataHeaderStartInd = passwordsDataHeaderBlock.getStartInd(totpHeaderStartInd);
-            unsafeMethLog.debug(() -> "pwsDataHeaderStartInd = " + pwsDataHeaderStartInd);
-            
-            raf.seek(pwsDataHeaderStartInd);
-            DataBlock passwordsDataBlock = newPasswordsDataBlock();
-            readHeaderBlock(passwordsDataHeaderBlock, passwordsDataBlock, raf);
-            
+            unsafeReadLog.debug(() -> "pwsDataHeaderStartInd = " + pwsDataHeaderStartInd);
             long pwsHeaderStartInd = passwordsHeaderBlock.getStartInd(pwsDataHeaderStartInd);
-            unsafeMethLog.debug(() -> "pwsHeaderStartInd = " + pwsHeaderStartInd);
-            raf.seek(pwsHeaderStartInd);
-            DataBlock passwordsBlock = newPasswordsBlock();
-            readHeaderBlock(passwordsHeaderBlock, passwordsBlock, raf);
+            unsafeReadLog.debug(() -> "pwsHeaderStartInd = " + pwsHeaderStartInd);
             
-            long totpStartInd = totpBlock.getStartInd(pwsHeaderStartInd);
-            unsafeMethLog.debug(() -> "totpStartInd = " + totpStartInd);
-            raf.seek(totpStartInd);
-            Map<Integer, TOTP> totpByPwEntryInd = readTOTPBlock(totpBlock, raf);
+            boolean hasRecords = fileVer >= 2;
+            Future<DataBlock> totpBlockFuture = submitBlockTask(
+                    ctx -> readHeaderBlock(
+                            totpHeaderBlock,
+                            hasRecords ? newTOTPRecordsBlock() : newTOTPBlock(),
+                            src,
+                            totpHeaderStartInd,
+                            ctx
+                    )
+            );
+            Future<DataBlock> passwordsDataBlockFuture = submitBlockTask(
+                    ctx -> readHeaderBlock(
+                            passwordsDataHeaderBlock,
+                            newPasswordsDataBlock(),
+                            src,
+                            pwsDataHeaderStartInd,
+                            ctx
+                    )
+            );
+            Future<DataBlock> passwordsBlockFuture = submitBlockTask(
+                    ctx -> readHeaderBlock(
+                            passwordsHeaderBlock,
+                            hasRecords ? newPasswordsRecordsBlock() : newPasswordsBlock(),
+                            src,
+                            pwsHeaderStartInd,
+                            ctx
+                    )
+            );
+            awaitAll(totpBlockFuture, passwordsDataBlockFuture, passwordsBlockFuture);
+            DataBlock totpBlock = getDone(totpBlockFuture);
+            DataBlock passwordsDataBlock = getDone(passwordsDataBlockFuture);
+            DataBlock passwordsBlock = getDone(passwordsBlockFuture);
             
+            long totpStartInd = totpBlock.getStartInd(pwsHeaderStartInd);
+            unsafeReadLog.debug(() -> "totpStartInd = " + totpStartInd);
             long pwsDataStartInd = passwordsDataBlock.getStartInd(totpStartInd);
-            unsafeMethLog.debug(() -> "pwsDataStartInd = " + pwsDataStartInd);
-            raf.seek(pwsDataStartInd);
-            PasswordData[] passwordsData = readPasswordsDataBlock(passwordsDataBlock, raf);
-            
+            unsafeReadLog.debug(() -> "pwsDataStartInd = " + pwsDataStartInd);
             long pwsStartInd = passwordsBlock.getStartInd(pwsDataStartInd);
-            unsafeMethLog.debug(() -> "pwsStartInd = " + pwsStartInd);
-            raf.seek(pwsStartInd);
-            char[][] passwords = readPasswordsBlock(passwordsBlock, raf);
+            unsafeReadLog.debug(() -> "pwsStartInd = " + pwsStartInd);
             
-            int pwsNum = passwords.length;
-            if (passwordsData.length != pwsNum) {
-                throw new IllegalArgumentException(
-                        "PasswordsData block entries amount is different than Passwords block entries amount."
+            int pwEntriesNum;
+            if (hasRecords) {
+                // Only the passwords data block is decrypted, the records are decrypted on demand.
+                Future<SealedRecords> totpRecordsFuture =
+                        submitBlockTask(ctx -> totpBlock.readRecords(src, totpStartInd));
+                Future<PasswordData[]> passwordsDataFuture = submitBlockTask(
+                        ctx -> readPasswordsDataBlock(
+                                passwordsDataBlock,
+                                src,
+                                pwsDataStartInd,
+                                true,
+                                ctx
+                        )
                 );
-            }
-            
-            PasswordEntry.Data[] pwEntriesData = new PasswordEntry.Data[pwsNum];
-            for (int i = 0; i < pwsNum; i++) {
-                pwEntriesData[i] = new PasswordEntry.Data(
-                        passwordsData[i].name,
-                        passwords[i].clone(),
-                        passwordsData[i].lastPasswordChangeTime,
-                        passwordsData[i].site,
-                        passwordsData[i].info,
-                        totpByPwEntryInd.getOrDefault(i, null)
+                Future<SealedRecords> pwRecordsFuture =
+                        submitBlockTask(ctx -> passwordsBlock.readRecords(src, pwsStartInd));
+                awaitAll(totpRecordsFuture, passwordsDataFuture, pwRecordsFuture);
+                SealedRecords totpRecords = getDone(totpRecordsFuture);
+                PasswordData[] passwordsData = getDone(passwordsDataFuture);
+                SealedRecords pwRecords = getDone(pwRecordsFuture);
+                
+                pwEntriesNum = passwordsData.length;
+                for (int i = 0; i < pwEntriesNum; i++) {
+                    PasswordData pwData = passwordsData[i];
+                    passwordsData[i] = null;
+                    consumer.accept(
+                            new PasswordEntry.Data(
+                                    pwData.name,
+                                    pwRecords.newRecord(pwData.pwRecordLen),
+                                    pwData.lastPasswordChangeTime,
+                                    pwData.site,
+                                    pwData.info,
+                                    pwData.totpRecordLen > 0
+                                            ? totpRecords.newRecord(pwData.totpRecordLen)
+                                            : null
+                            )
+                    );
+                }
+                pwRecords.finishCreation();
+                totpRecords.finishCreation();
+            } else {
+                Future<Map<Integer, TOTP>> totpFuture = submitBlockTask(
+                        ctx -> readTOTPBlock(totpBlock, src, totpStartInd, ctx)
+                );
+                Future<PasswordData[]> passwordsDataFuture = submitBlockTask(
+                        ctx -> readPasswordsDataBlock(
+                                passwordsDataBlock,
+                                src,
+                                pwsDataStartInd,
+                                false,
+                                ctx
+                        )
                 );
+                Future<char[][]> passwordsFuture = submitBlockTask(
+                        ctx -> readPasswordsBlock(passwordsBlock, src, pwsStartInd, ctx)
+                );
+                awaitAll(totpFuture, passwordsDataFuture, passwordsFuture);
+                Map<Integer, TOTP> totpByPwEntryInd = getDone(totpFuture);
+                PasswordData[] passwordsData = getDone(passwordsDataFuture);
+                char[][] passwords = getDone(passwordsFuture);
+                
+                int pwsNum = passwords.length;
+                if (passwordsData.length != pwsNum) {
+                    throw new IllegalArgumentException(
+                            "PasswordsData block entries amount is different than Passwords block entries amount."
+                    );
+                }
+                
+                pwEntriesNum = pwsNum;
+                for (int i = 0; i < pwsNum; i++) {
+                    consumer.accept(
+                            new PasswordEntry.Data(
+                                    passwordsData[i].name,
+                                    passwords[i],
+                                    passwordsData[i].lastPasswordChangeTime,
+                                    passwordsData[i].site,
+                                    passwordsData[i].info,
+                                    totpByPwEntryInd.getOrDefault(i, null)
+                            )
+                    );
+                }
+                MemUtils.clearCharMatrix(passwords);
+                Arrays.fill(passwordsData, null);
             }
-            unsafeMethLog
-                    .debug(() -> "reading end, passwordEntriesData num = " + pwEntriesData.length);
+            unsafeReadLog
+                    .debug(() -> "reading end, passwordEntriesData num = " + pwEntriesNum);
             
-            MemUtils.clearCharMatrix(passwords);
             MemUtils.clearByteArray(safeKeySalt);
-            Arrays.fill(passwordsData, null);
             
             boolean success = true;
             success = MemUtils.tryDestroy(passwordsBlock) && success;
@@ -845,11 +2337,144 @@ public static SafeData read(File srcFile, char[] safePw)
                         "safeKey and/or mainKey could not be cleared from memory."
                 );
             }
-            
-            return new SafeData(pwEntriesData);
         }
     }
     
+    /**
+     * Location, key and version of the main header block, as read for a given derivation iterations number.
+     */
+    private static class MainHeaderMeta implements Destroyable {
+        
+        int iterationsNum;
+        long blockMetaStartInd;
+        int inBeforeNoiseLen;
+        int inAfterNoiseLen;
+        byte[] iv;
+        SecretKey safeKey;
+        short fileVer;
+        
+        @Override
+        public void destroy() {
+            MemUtils.clearByteArray(iv);
+            MemUtils.tryDestroyKey(safeKey);
+        }
+        
+        @Override
+        public boolean isDestroyed() {
+            return MemUtils.isKeyDestroyed(safeKey);
+        }
+        
+    }
+    
+    /**
+     * Reads the metadata of the main header block, assuming that it ends at blockMetaEndInd, and the file
+     * version with the safe key derivated with iterationsNum.
+     * @param src
+     * @param headersCipher
+     * @param blockMetaEndInd
+     * @param safePw
+     * @param safeKeySalt
+     * @param iterationsNum
+     * @param keyCache
+     * @return
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    private static MainHeaderMeta readMainHeaderMeta(BlockSource src, Cipher headersCipher,
+            long blockMetaEndInd, char[] safePw, byte[] safeKeySalt, int iterationsNum,
+            DerivedKeyCache keyCache) throws IOException, GeneralSecurityException {
+        MainHeaderMeta res = new MainHeaderMeta();
+        res.iterationsNum = iterationsNum;
+        res.blockMetaStartInd = blockMetaEndInd - headersCipher.getIvSize() - (2 * Byte.BYTES);
+        byte[] blockMeta = new byte[(2 * Byte.BYTES) + headersCipher.getIvSize()];
+        src.readFully(res.blockMetaStartInd, blockMeta);
+        DataInputStream blockMetaIn = new DataInputStream(new ByteArrayInputStream(blockMeta));
+        res.inBeforeNoiseLen = DataBlock.readInNoiseLen(blockMetaIn);
+        res.inAfterNoiseLen = DataBlock.readInNoiseLen(blockMetaIn);
+        res.iv = new byte[headersCipher.getIvSize()];
+        blockMetaIn.readFully(res.iv);
+        MemUtils.clearByteArray(blockMeta);
+        res.safeKey = getSafeKey(headersCipher, safePw, safeKeySalt, iterationsNum, keyCache);
+        res.fileVer = readFileVer(
+                src,
+                res.blockMetaStartInd,
+                res.inBeforeNoiseLen,
+                res.inAfterNoiseLen,
+                res.iv,
+                res.safeKey
+        );
+        return res;
+    }
+    
+    /**
+     * 
+     * @param src
+     * @param mainHeaderBlockMetaStartInd
+     * @param mainHeaderInBeforeNoiseLen
+     * @param mainHeaderInAfterNoiseLen
+     * @param mainHeaderIv
+     * @param safeKey
+     * @return the version of the file format, 1 if the main header (of version 2+ length) fails authentication or doesn't start with {@link #FILE_MARKER}.
+     * @throws IllegalArgumentException if the version is not supported.
+     * @throws IOException if the main header cannot be read for another reason than a version 1 layout.
+     * @throws GeneralSecurityException if the main header cannot be decrypted for another reason than a version 1 layout.
+     */
+    private static short readFileVer(BlockSource src, long mainHeaderBlockMetaStartInd,
+            int mainHeaderInBeforeNoiseLen, int mainHeaderInAfterNoiseLen, byte[] mainHeaderIv,
+            SecretKey safeKey) throws IOException, GeneralSecurityException {
+        DataBlock mainHeaderBlock = newMainHeaderBlock(MAX_FILE_VER);
+        mainHeaderBlock.setInBeforeNoiseLen(mainHeaderInBeforeNoiseLen);
+        mainHeaderBlock.setInAfterNoiseLen(mainHeaderInAfterNoiseLen);
+        mainHeaderBlock.setIv(mainHeaderIv.clone());
+        mainHeaderBlock.setKey(copyKey(safeKey, mainHeaderBlock.cipher));
+        try {
+            long mainHeaderStartInd =
+                    mainHeaderBlockMetaStartInd - mainHeaderBlock.getEncryptedLen();
+            if (mainHeaderStartInd < 0) {
+                return 1;
+            }
+            DataInputStream mainHeaderDataIn =
+                    mainHeaderBlock.startDataReading(src, mainHeaderStartInd);
+            if (mainHeaderDataIn.readLong() != FILE_MARKER) {
+                return 1;
+            }
+            short fileVer = mainHeaderDataIn.readShort();
+            checkFileVer(fileVer);
+            return fileVer;
+        } catch (IOException | GeneralSecurityException ex) {
+            if (isAuthenticationFailure(ex)) {
+                return 1; // the main header of version 1 is shorter
+            }
+            throw ex;
+        } finally {
+            MemUtils.tryDestroy(mainHeaderBlock);
+        }
+    }
+    
+    /**
+     * @param ex
+     * @return true if ex is (or is an IOException caused by) an authentication failure of an AEAD cipher.
+     */
+    private static boolean isAuthenticationFailure(Exception ex) {
+        Throwable cause = ex instanceof IOException ? ex.getCause() : ex;
+        return cause instanceof AEADBadTagException;
+    }
+    
+    private static void checkFileVer(short fileVer) {
+        if (fileVer < 1 || fileVer > MAX_FILE_VER) {
+            throw new IllegalArgumentException(
+                    "The safe file version " + fileVer + " is not supported."
+            );
+        }
+    }
+    
+    private static SecretKey copyKey(SecretKey key, Cipher cipher) {
+        byte[] keyBytes = cipher.keyToBytes(key);
+        SecretKey res = cipher.bytesToKey(keyBytes);
+        MemUtils.clearByteArray(keyBytes);
+        return res;
+    }
+    
     private static void writeKey(SecretKey key, Cipher cipher, DataOutput dataOut)
             throws IOException {
         byte[] keyBytes = cipher.keyToBytes(key);
@@ -865,9 +2490,9 @@ private static SecretKey readKey(DataInput dataIn, Cipher cipher) throws IOExcep
         return res;
     }
     
-    private static byte[] newOutBlockNoise() throws NoSuchAlgorithmException {
+    private static int newOutBlockNoiseLen() throws NoSuchAlgorithmException {
         return RandomUtils
-                .newRandomBytes(OUT_BLOCK_NOISE_LEN_RANGE.min, OUT_BLOCK_NOISE_LEN_RANGE.getMax());
+                .newRandomInt(OUT_BLOCK_NOISE_LEN_RANGE.min, OUT_BLOCK_NOISE_LEN_RANGE.getMax());
     }
     
     /**
@@ -902,13 +2527,14 @@ public static int readSmallNumber(DataInput dataIn, NumberRange range) throws IO
         }
     }
     
-    public static void writePositiveInt(int num, int min, DataOutput dataOut)
+    public static void writePositiveInt(int num, int min, DataOutput dataOut, CodecContext ctx)
             throws IOException, NoSuchAlgorithmException {
         if (min < 0 || num < min) {
             throw new IllegalArgumentException();
         }
         
         int writtenNum = num - min;
+        byte[] positiveIntBuf = ctx.getIntBuf();
         positiveIntBuf[0] = (byte) (writtenNum >>> 24);
         positiveIntBuf[1] = (byte) (writtenNum >>> 16);
         positiveIntBuf[2] = (byte) (writtenNum >>> 8);
@@ -931,19 +2557,14 @@ public static void writePositiveInt(int num, int min, DataOutput dataOut)
         dataOut.write(positiveIntBuf, startInd, size);
     }
     
-    /**
-     * NB: Only supports DataInput with always first call success of {@link DataInput#skipBytes(int)}, like with DataInputStream(ByteArrayInputStream), for optimization reasons.
-     * @param dataIn
-     * @param min
-     * @return
-     * @throws IOException
-     */
-    public static int readPositiveInt(DataInput dataIn, int min) throws IOException {
+    public static int readPositiveInt(DataInput dataIn, int min, CodecContext ctx)
+            throws IOException {
         int size = readSmallNumber(dataIn, INT_SIZE_RANGE);
         int startInd = Integer.BYTES - size;
         if (startInd > 0) {
             skipBytes(dataIn, startInd);
         }
+        byte[] positiveIntBuf = ctx.getIntBuf();
         dataIn.readFully(positiveIntBuf, startInd, size);
         if (startInd == 0) {
             positiveIntBuf[0] &= ~(1 << 7);
@@ -956,30 +2577,30 @@ public static int readPositiveInt(DataInput dataIn, int min) throws IOException
         return res;
     }
     
-    public static void writeStr(String str, DataOutput dataOut)
+    public static void writeStr(String str, DataOutput dataOut, CodecContext ctx)
             throws NoSuchAlgorithmException, IOException {
         char[] chars = str.toCharArray();
-        writeChars(chars, dataOut);
+        writeChars(chars, dataOut, ctx);
         MemUtils.clearCharArray(chars);
     }
     
-    public static String readStr(DataInput dataIn) throws IOException {
-        char[] chars = readChars(dataIn);
+    public static String readStr(DataInput dataIn, CodecContext ctx) throws IOException {
+        char[] chars = readChars(dataIn, ctx);
         String res = new String(chars);
         MemUtils.clearCharArray(chars);
         return res;
     }
     
-    public static void writeChars(char[] chars, DataOutput dataOut)
+    public static void writeChars(char[] chars, DataOutput dataOut, CodecContext ctx)
             throws IOException, NoSuchAlgorithmException {
         int utflen = UTFUtils.getUTFLen(chars);
         writeUnsignedShort(utflen, dataOut);
-        UTFUtils.writeChars(chars, utflen, dataOut);
+        UTFUtils.writeChars(chars, utflen, dataOut, ctx);
     }
     
-    public static char[] readChars(DataInput dataIn) throws IOException {
+    public static char[] readChars(DataInput dataIn, CodecContext ctx) throws IOException {
         int utflen = readUnsignedShort(dataIn);
-        return UTFUtils.readChars(utflen, dataIn);
+        return UTFUtils.readChars(utflen, dataIn, ctx);
     }
     
     public static void writeUnsignedShort(int num, DataOutput dataOut)
@@ -1030,24 +2651,23 @@ public static char[] checkValidLen(char[] chars) throws IllegalArgumentException
         }
     }
     
-    /**
-     * NB: Only supports DataInput with always first call success of {@link DataInput#skipBytes(int)}, like with DataInputStream(ByteArrayInputStream), for optimization reasons.
-     * @param dataIn
-     * @param num
-     * @throws IOException
-     */
     private static void skipBytes(DataInput dataIn, int num) throws IOException {
-        int skipped = dataIn.skipBytes(num); // avoids readFully(new byte[startInd]) and clearing of that filled array
-        if (skipped != num) {
-            throw new RuntimeException(
-                    "Unexpected failure of skipBytes(" + num + "): " + skipped + " skipped."
-            );
+        int remaining = num - dataIn.skipBytes(num); // avoids readFully(new byte[num]) and clearing of that filled array
+        while (remaining > 0) {
+            dataIn.readByte(); // e.g. decryption streams which have no available byte yet
+            remaining--;
+            if (remaining > 0) {
+                remaining -= dataIn.skipBytes(remaining);
+            }
         }
     }
     
+    /**
+     * Clears the buffers of the current thread from memory.
+     * NB: The buffers of a CodecContext are already cleared when it is closed.
+     */
     public static void clearBuffers() {
-        MemUtils.clearByteArray(positiveIntBuf);
-        UTFUtils.clearBuffers();
+        RandomPool.clearBuffers();
     }
     
 }
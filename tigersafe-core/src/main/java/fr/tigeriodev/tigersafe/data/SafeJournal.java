@@ -0,0 +1,563 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.DigestInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import fr.tigeriodev.tigersafe.GlobalConfig;
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.ciphers.DerivedKeyCache;
+import fr.tigeriodev.tigersafe.data.PasswordEntry.Data;
+import fr.tigeriodev.tigersafe.logs.Level;
+import fr.tigeriodev.tigersafe.logs.Logger;
+import fr.tigeriodev.tigersafe.logs.Logs;
+import fr.tigeriodev.tigersafe.utils.CheckUtils;
+import fr.tigeriodev.tigersafe.utils.CodecContext;
+import fr.tigeriodev.tigersafe.utils.DestroyableBufferedOutputStream;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+
+/**
+ * Encrypted append-only journal of the changes saved since the last full write of a safe file (its base snapshot),
+ * stored next to the safe file, so that saving a few changes doesn't require to rewrite the whole safe file.
+ * Each record contains the changes of one save, and is encrypted with its own IV by a key derivated from the safe password.
+ * Its plain data is padded to a power of 2 (at least {@link #MIN_PADDED_LEN}), so that its length only leaks a size class.
+ * The header and the records are chained by a tag (HMAC-SHA256 of the previous tag, the sequence number and the encrypted record),
+ * so that a record cannot be modified, dropped, reordered or replayed (even from another journal of the same password) unnoticed,
+ * whatever the cipher. NB: Dropping the last records remains undetectable, like an interrupted append.
+ * The journal is bound to its base snapshot by the digest of the safe file, the journal of another base is ignored.
+ * An incomplete last record (e.g. interrupted append) is ignored, and overwritten by the next append.
+ * NB: Not thread-safe, it is owned by a {@link SafeDataManager}.
+ */
+final class SafeJournal {
+    
+    private static final Logger log = Logs.newLogger(SafeJournal.class);
+    public static final short VERSION = 2;
+    public static final String FILE_NAME_PREFIX = "_journal_-";
+    public static final String DIGEST_ALGO = "SHA-256";
+    public static final int MIN_PADDED_LEN = 256;
+    private static final String TAG_ALGO = "HmacSHA256";
+    private static final int TAG_LEN = 32;
+    private static final byte[] TAG_KEY_LABEL =
+            "tigersafe-journal-tag".getBytes(StandardCharsets.US_ASCII);
+    
+    /**
+     * The changes of one save: deletions by name, then additions/replacements by name.
+     */
+    static final class Record {
+        
+        final List<String> deletedNames;
+        final List<Data> putData;
+        
+        Record(List<String> deletedNames, List<Data> putData) {
+            this.deletedNames = CheckUtils.notNull(deletedNames);
+            this.putData = CheckUtils.notNull(putData);
+        }
+        
+        boolean isEmpty() {
+            return deletedNames.isEmpty() && putData.isEmpty();
+        }
+        
+        /**
+         * Applies this record on dataByName, the removed or replaced data are destroyed.
+         * @param dataByName
+         */
+        void applyOn(Map<String, Data> dataByName) {
+            for (String deletedName : deletedNames) {
+                Data removed = dataByName.remove(deletedName);
+                if (removed != null) {
+                    MemUtils.tryDestroy(removed);
+                }
+            }
+            for (Data data : putData) {
+                // removed before put, because the key of a replaced mapping (replaced.name) would be kept, then cleared
+                Data replaced = dataByName.remove(data.name);
+                if (replaced != null) {
+                    MemUtils.tryDestroy(replaced);
+                }
+                dataByName.put(data.name, data);
+            }
+        }
+        
+        void destroy() {
+            for (Data data : putData) {
+                MemUtils.tryDestroy(data);
+            }
+        }
+        
+    }
+    
+    /**
+     * A record read from the journal, with its chaining tag.
+     */
+    private static final class ChainedRecord {
+        
+        final Record record;
+        final byte[] tag;
+        
+        ChainedRecord(Record record, byte[] tag) {
+            this.record = record;
+            this.tag = tag;
+        }
+        
+    }
+    
+    public static File getFileFor(File safeFile) {
+        return safeFile.toPath().resolveSibling(FILE_NAME_PREFIX + safeFile.getName()).toFile();
+    }
+    
+    public static byte[] digestFile(File file) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGO);
+        try (InputStream fileIn = new DigestInputStream(new FileInputStream(file), digest)) {
+            byte[] buf = new byte[1 << 16];
+            while (fileIn.read(buf) >= 0) {
+                // the digest is updated by the stream
+            }
+        }
+        return digest.digest();
+    }
+    
+    private final File safeFile;
+    private final File file;
+    /**
+     * The digest of the base snapshot (safe file) of the journal, or null if not computed yet.
+     */
+    private byte[] baseDigest = null;
+    private Cipher cipher = null;
+    private byte[] salt = null;
+    /**
+     * The length of the valid part of the journal file, 0 if there is no valid journal.
+     */
+    private long validLen = 0;
+    private int recordsNum = 0;
+    /**
+     * The tag of the last valid record (or of the header if there is no record), null if there is no valid journal.
+     */
+    private byte[] chainTag = null;
+    
+    SafeJournal(File safeFile) {
+        this.safeFile = CheckUtils.notNull(safeFile);
+        this.file = getFileFor(safeFile);
+    }
+    
+    File getFile() {
+        return file;
+    }
+    
+    int getRecordsNum() {
+        return recordsNum;
+    }
+    
+    long getLen() {
+        return validLen;
+    }
+    
+    /**
+     * Reads the journal of the current safe file (base snapshot), if any.
+     * @param safePw
+     * @param keyCache
+     * @return the records of the journal, in order, empty if there is no valid journal for the current safe file.
+     * @throws IOException
+     * @throws GeneralSecurityException if a complete record cannot be decrypted.
+     */
+    List<Record> read(char[] safePw, DerivedKeyCache keyCache)
+            throws IOException, GeneralSecurityException {
+        Logger methLog = log.newChildFromCurMethIf(Level.DEBUG);
+        clearState();
+        if (!file.isFile()) {
+            return Collections.emptyList();
+        }
+        baseDigest = digestFile(safeFile);
+        
+        List<Record> res = new ArrayList<>();
+        try (
+                RandomAccessFile raf = new RandomAccessFile(file, "r");
+                CodecContext ctx = CodecContext.acquire();
+        ) {
+            try {
+                if (raf.readShort() != VERSION) {
+                    methLog.debug(() -> "unsupported version, journal ignored");
+                    return res;
+                }
+                byte[] readBaseDigest = new byte[baseDigest.length];
+                raf.readFully(readBaseDigest);
+                if (!MessageDigest.isEqual(readBaseDigest, baseDigest)) {
+                    methLog.debug(() -> "journal of another base, ignored");
+                    return res;
+                }
+                Cipher readCipher = CiphersManager.getCipherByName(raf.readUTF());
+                byte[] readSalt = new byte[readCipher.getDerivationSaltSize()];
+                raf.readFully(readSalt);
+                cipher = readCipher;
+                salt = readSalt;
+            } catch (EOFException ex) {
+                methLog.debug(() -> "incomplete header, journal ignored");
+                return res;
+            }
+            byte[] header = new byte[Math.toIntExact(raf.getFilePointer())];
+            raf.seek(0);
+            raf.readFully(header);
+            
+            SecretKey key = keyCache.getDerivatedKey(cipher, safePw, salt);
+            SecretKey tagKey = null;
+            try {
+                tagKey = newTagKey(key);
+                chainTag = newHeaderTag(header, tagKey);
+                validLen = raf.getFilePointer();
+                ChainedRecord chainedRecord;
+                while ((chainedRecord = readRecord(raf, key, tagKey, ctx)) != null) {
+                    res.add(chainedRecord.record);
+                    MemUtils.clearByteArray(chainTag);
+                    chainTag = chainedRecord.tag;
+                    recordsNum++;
+                    validLen = raf.getFilePointer();
+                }
+            } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+                for (Record record : res) {
+                    record.destroy();
+                }
+                clearState();
+                throw ex;
+            } finally {
+                MemUtils.tryDestroyKey(key);
+                if (tagKey != null) {
+                    MemUtils.tryDestroyKey(tagKey);
+                }
+            }
+        }
+        methLog.debug(() -> "records num = " + recordsNum + ", validLen = " + validLen);
+        return res;
+    }
+    
+    /**
+     * Appends record to the journal, creating the journal if needed, then verifies it.
+     * @param record
+     * @param safePw
+     * @param keyCache
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    void append(Record record, char[] safePw, DerivedKeyCache keyCache)
+            throws IOException, GeneralSecurityException {
+        if (validLen == 0) {
+            if (baseDigest == null) {
+                baseDigest = digestFile(safeFile);
+            }
+            cipher = GlobalConfig.ConfigCipher.USER_DATA.getCipher();
+            salt = cipher.newDerivationSalt();
+        }
+        SecretKey key = keyCache.getDerivatedKey(cipher, safePw, salt);
+        SecretKey tagKey = null;
+        try (
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                CodecContext ctx = CodecContext.acquire();
+        ) {
+            tagKey = newTagKey(key);
+            if (validLen == 0) {
+                ByteArrayOutputStream headerOut = new ByteArrayOutputStream();
+                DataOutputStream headerDataOut = new DataOutputStream(headerOut);
+                headerDataOut.writeShort(VERSION);
+                headerDataOut.write(baseDigest);
+                headerDataOut.writeUTF(cipher.getName());
+                headerDataOut.write(salt);
+                byte[] header = headerOut.toByteArray();
+                raf.setLength(0);
+                raf.write(header);
+                if (chainTag != null) {
+                    MemUtils.clearByteArray(chainTag);
+                }
+                chainTag = newHeaderTag(header, tagKey);
+            } else {
+                raf.setLength(validLen); // drops an incomplete record
+                raf.seek(validLen);
+            }
+            long recordStartInd = raf.getFilePointer();
+            writeRecord(record, raf, key, tagKey, ctx);
+            raf.getChannel().force(true);
+            
+            raf.seek(recordStartInd);
+            ChainedRecord chainedRecord = readRecord(raf, key, tagKey, ctx);
+            Record readRecord = chainedRecord != null ? chainedRecord.record : null;
+            try {
+                if (
+                    readRecord == null
+                            || !readRecord.deletedNames.equals(record.deletedNames)
+                            || !readRecord.putData.equals(record.putData)
+                ) {
+                    raf.setLength(recordStartInd);
+                    throw new IllegalStateException("Journal record not correctly written.");
+                }
+            } finally {
+                if (readRecord != null) {
+                    readRecord.destroy();
+                }
+            }
+            MemUtils.clearByteArray(chainTag);
+            chainTag = chainedRecord.tag;
+            validLen = raf.getFilePointer();
+            recordsNum++;
+        } finally {
+            MemUtils.tryDestroyKey(key);
+            if (tagKey != null) {
+                MemUtils.tryDestroyKey(tagKey);
+            }
+        }
+    }
+    
+    /**
+     * Deletes the journal file, e.g. after the safe file has been fully written (new base snapshot).
+     * @throws IOException
+     */
+    void reset() throws IOException {
+        Files.deleteIfExists(file.toPath());
+        clearState();
+    }
+    
+    private void clearState() {
+        if (baseDigest != null) {
+            MemUtils.clearByteArray(baseDigest);
+            baseDigest = null;
+        }
+        if (salt != null) {
+            MemUtils.clearByteArray(salt);
+            salt = null;
+        }
+        if (chainTag != null) {
+            MemUtils.clearByteArray(chainTag);
+            chainTag = null;
+        }
+        cipher = null;
+        validLen = 0;
+        recordsNum = 0;
+    }
+    
+    /**
+     * @param key the journal key
+     * @return the key of the tags, derivated from key, so that key is only used by the cipher.
+     * @throws GeneralSecurityException
+     */
+    private SecretKey newTagKey(SecretKey key) throws GeneralSecurityException {
+        byte[] keyBytes = cipher.keyToBytes(key);
+        byte[] tagKeyBytes = null;
+        try {
+            Mac kdf = Mac.getInstance(TAG_ALGO);
+            SecretKeySpec kdfKey = new SecretKeySpec(keyBytes, TAG_ALGO);
+            kdf.init(kdfKey);
+            MemUtils.tryDestroyKey(kdfKey);
+            tagKeyBytes = kdf.doFinal(TAG_KEY_LABEL);
+            return new SecretKeySpec(tagKeyBytes, TAG_ALGO);
+        } finally {
+            MemUtils.clearByteArray(keyBytes);
+            if (tagKeyBytes != null) {
+                MemUtils.clearByteArray(tagKeyBytes);
+            }
+        }
+    }
+    
+    private static byte[] newHeaderTag(byte[] header, SecretKey tagKey)
+            throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(TAG_ALGO);
+        mac.init(tagKey);
+        return mac.doFinal(header);
+    }
+    
+    /**
+     * @return the tag of the record at index {@link #recordsNum}, chained to {@link #chainTag}.
+     * @throws GeneralSecurityException
+     */
+    private byte[] newRecordTag(byte[] iv, byte[] encrypted, int encryptedLen, SecretKey tagKey)
+            throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(TAG_ALGO);
+        mac.init(tagKey);
+        mac.update(chainTag);
+        mac.update(
+                ByteBuffer.allocate(2 * Integer.BYTES)
+                        .putInt(recordsNum)
+                        .putInt(encryptedLen)
+                        .array()
+        );
+        mac.update(iv);
+        mac.update(encrypted, 0, encryptedLen);
+        return mac.doFinal();
+    }
+    
+    static int getPaddedLen(int plainLen) {
+        int paddedLen = MIN_PADDED_LEN;
+        while (paddedLen < plainLen) {
+            paddedLen = Math.multiplyExact(paddedLen, 2);
+        }
+        return paddedLen;
+    }
+    
+    private void writeRecord(Record record, RandomAccessFile raf, SecretKey key, SecretKey tagKey,
+            CodecContext ctx) throws IOException, GeneralSecurityException {
+        byte[] iv = cipher.newIv();
+        ByteArrayOutputStream encryptedOut = new ByteArrayOutputStream();
+        try (
+                DestroyableBufferedOutputStream plainBufOut = new DestroyableBufferedOutputStream(
+                        cipher.newEncryptionStream(key, iv, encryptedOut)
+                );
+                DataOutputStream dataOut = new DataOutputStream(plainBufOut);
+        ) {
+            SafeFileManager.writePositiveInt(record.deletedNames.size(), 0, dataOut, ctx);
+            for (String deletedName : record.deletedNames) {
+                SafeFileManager.writeStr(deletedName, dataOut, ctx);
+            }
+            SafeFileManager.writePositiveInt(record.putData.size(), 0, dataOut, ctx);
+            for (Data data : record.putData) {
+                SafeFileManager.writeStr(data.name, dataOut, ctx);
+                SafeFileManager.writeEntryPassword(data, dataOut, ctx);
+                dataOut.writeLong(data.lastPasswordChangeTime.getEpochSecond());
+                SafeFileManager.writeStr(data.site, dataOut, ctx);
+                SafeFileManager.writeStr(data.info, dataOut, ctx);
+                dataOut.writeBoolean(data.hasTOTP());
+                if (data.hasTOTP()) {
+                    SafeFileManager.writeEntryTOTP(data, dataOut, ctx);
+                }
+            }
+            int contentLen = dataOut.size();
+            dataOut.write(new byte[getPaddedLen(contentLen) - contentLen]);
+        }
+        byte[] encrypted = encryptedOut.toByteArray();
+        raf.writeInt(encrypted.length);
+        raf.write(iv);
+        raf.write(encrypted);
+        raf.write(newRecordTag(iv, encrypted, encrypted.length, tagKey));
+        MemUtils.clearByteArray(iv);
+    }
+    
+    /**
+     * @param raf
+     * @param key
+     * @param ctx
+     * @param tagKey
+     * @return the record at the file pointer of raf, authenticated as the record at index {@link #recordsNum}
+     * following {@link #chainTag}, or null if there is no complete record.
+     * @throws IOException
+     * @throws GeneralSecurityException if the record is not authenticated (e.g. modified, dropped, reordered
+     * or replayed).
+     */
+    private ChainedRecord readRecord(RandomAccessFile raf, SecretKey key, SecretKey tagKey,
+            CodecContext ctx) throws IOException, GeneralSecurityException {
+        int ivSize = cipher.getIvSize();
+        long remainingLen = raf.length() - raf.getFilePointer();
+        if (remainingLen < Integer.BYTES + ivSize + TAG_LEN) {
+            return null;
+        }
+        int encryptedLen = raf.readInt();
+        if (
+            encryptedLen < 0
+                    || remainingLen < (long) Integer.BYTES + ivSize + encryptedLen + TAG_LEN
+        ) {
+            return null;
+        }
+        byte[] iv = new byte[ivSize];
+        raf.readFully(iv);
+        byte[] encrypted = new byte[encryptedLen];
+        raf.readFully(encrypted);
+        byte[] readTag = new byte[TAG_LEN];
+        raf.readFully(readTag);
+        byte[] tag = newRecordTag(iv, encrypted, encryptedLen, tagKey);
+        if (!MessageDigest.isEqual(readTag, tag)) {
+            MemUtils.clearByteArray(iv);
+            throw new GeneralSecurityException(
+                    "Journal record " + recordsNum
+                            + " not authenticated (modified, dropped, reordered or replayed)."
+            );
+        }
+        
+        List<String> deletedNames = new ArrayList<>();
+        List<Data> putData = new ArrayList<>();
+        try (
+                DataInputStream dataIn = new DataInputStream(
+                        cipher.newDecryptionStream(new ByteArrayInputStream(encrypted), key, iv)
+                )
+        ) {
+            int deletedNum = SafeFileManager.readPositiveInt(dataIn, 0, ctx);
+            for (int i = 0; i < deletedNum; i++) {
+                deletedNames.add(SafeFileManager.readStr(dataIn, ctx));
+            }
+            int putNum = SafeFileManager.readPositiveInt(dataIn, 0, ctx);
+            for (int i = 0; i < putNum; i++) {
+                String name = SafeFileManager.readStr(dataIn, ctx);
+                char[] password = SafeFileManager.readChars(dataIn, ctx);
+                Instant lastPasswordChangeTime = Instant.ofEpochSecond(dataIn.readLong());
+                String site = SafeFileManager.readStr(dataIn, ctx);
+                String info = SafeFileManager.readStr(dataIn, ctx);
+                TOTP totp = dataIn.readBoolean() ? SafeFileManager.readTOTP(dataIn, ctx) : null;
+                try {
+                    putData.add(new Data(name, password, lastPasswordChangeTime, site, info, totp));
+                } finally {
+                    MemUtils.clearCharArray(password);
+                }
+            }
+        } finally {
+            MemUtils.clearByteArray(iv);
+        }
+        return new ChainedRecord(new Record(deletedNames, putData), tag);
+    }
+    
+    /**
+     * Applies records on baseData, in order.
+     * @param baseData disposed by this method.
+     * @param records
+     * @return the resulting data.
+     */
+    static SafeData apply(SafeData baseData, List<Record> records) {
+        if (records.isEmpty()) {
+            return baseData;
+        }
+        Map<String, Data> dataByName = new LinkedHashMap<>();
+        for (Data data : baseData.getPwEntriesData()) {
+            dataByName.put(data.name, data);
+        }
+        baseData.dispose();
+        for (Record record : records) {
+            record.applyOn(dataByName);
+        }
+        return new SafeData(dataByName.values().toArray(new Data[0]));
+    }
+    
+}
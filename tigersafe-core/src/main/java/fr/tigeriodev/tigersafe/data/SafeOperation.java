@@ -0,0 +1,467 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.data;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import javax.security.auth.Destroyable;
+
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.logs.Level;
+import fr.tigeriodev.tigersafe.logs.Logger;
+import fr.tigeriodev.tigersafe.logs.Logs;
+import fr.tigeriodev.tigersafe.utils.CheckUtils;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
+
+/**
+ * Long operation on a safe (key derivation, encryption, file writing, verification) run on a dedicated
+ * worker thread, so that the caller thread (e.g. the UI thread) is not blocked.
+ * Operations are run one at a time, in submission order, because a {@link SafeDataManager} is not thread-safe.
+ * NB: The caller must not use the involved {@link SafeDataManager} until the operation is done.
+ * Progress and the final result are delivered through the callback executor given to {@link #start(Executor, BiConsumer)}.
+ * Cancellation is only honored at the next checkpoint of a cancellable {@link Step}, an operation can
+ * therefore still succeed after a cancellation request (e.g. when the safe file is being replaced).
+ */
+public final class SafeOperation<T> {
+    
+    private static final Logger log = Logs.newLogger(SafeOperation.class);
+    
+    private static final ExecutorService worker = Executors.newSingleThreadExecutor((r) -> {
+        Thread thread = new Thread(r, "tigersafe-safe-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ThreadLocal<SafeOperation<?>> curOperation = new ThreadLocal<>();
+    private static final Set<SafeOperation<?>> pendingOperations =
+            Collections.newSetFromMap(new ConcurrentHashMap<>());
+    
+    public static enum Step {
+        
+        PENDING(true),
+        READING(true),
+        WRITING(true),
+        VERIFYING(true),
+        REPLACING(false),
+        DONE(false);
+        
+        public final boolean isCancellable;
+        
+        private Step(boolean isCancellable) {
+            this.isCancellable = isCancellable;
+        }
+        
+    }
+    
+    @FunctionalInterface
+    public static interface Task<T> {
+        
+        T run() throws Exception;
+        
+    }
+    
+    /**
+     * Reports the progress of the operation run by the current thread, if any, to step, after having checked
+     * that it has not been cancelled.
+     * Does nothing if the current thread is not running an operation (e.g. synchronous use of {@link SafeDataManager}).
+     * @param step
+     * @throws CancellationException if the current operation has been cancelled.
+     */
+    static void checkpoint(Step step) throws CancellationException {
+        SafeOperation<?> op = curOperation.get();
+        if (op != null) {
+            op.onCheckpoint(step);
+        }
+    }
+    
+    /**
+     * Requests the cancellation of all the not done operations.
+     */
+    public static void cancelAll() {
+        for (SafeOperation<?> op : pendingOperations) {
+            op.cancel();
+        }
+    }
+    
+    /**
+     * Waits until all the not done operations are done (e.g. after {@link #cancelAll()}, for the ones
+     * which could not be cancelled), or until the timeout.
+     * @param timeoutMillis
+     * @return true if all the operations are done.
+     * @throws InterruptedException
+     */
+    public static boolean awaitAll(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (SafeOperation<?> op : pendingOperations) {
+            try {
+                op.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (ExecutionException | CancellationException ex) {
+                // done
+            } catch (TimeoutException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public static SafeOperation<Void> load(SafeDataManager dm) {
+        CheckUtils.notNull(dm);
+        return new SafeOperation<>("load", () -> {
+            checkpoint(Step.READING);
+            dm.loadSafeFile();
+            return null;
+        });
+    }
+    
+    public static SafeOperation<Void> update(SafeDataManager dm) {
+        CheckUtils.notNull(dm);
+        return new SafeOperation<>("update", () -> {
+            dm.updateSafeFile();
+            return null;
+        });
+    }
+    
+    /**
+     * Saves the changes of dm, then resets them, see {@link SafeDataManager#saveChanges()}.
+     * @param dm
+     * @return
+     */
+    public static SafeOperation<Void> save(SafeDataManager dm) {
+        CheckUtils.notNull(dm);
+        return new SafeOperation<>("save", () -> {
+            dm.saveChanges();
+            return null;
+        });
+    }
+    
+    /**
+     * @param dm
+     * @param newPw copied into the {@link SecretArena} until the operation is done (or discarded), can be
+     * cleared as soon as this method returns.
+     * @return
+     */
+    public static SafeOperation<Void> changeSafePw(SafeDataManager dm, char[] newPw) {
+        CheckUtils.notNull(dm);
+        SecretArena.Secret newPwSecret = SecretArena.newSecret(newPw);
+        return new SafeOperation<>("changeSafePw", () -> {
+            char[] newPwCopy = newPwSecret.readChars();
+            try {
+                dm.changeSafePw(newPwCopy);
+            } finally {
+                MemUtils.clearCharArray(newPwCopy);
+            }
+            return null;
+        }, newPwSecret);
+    }
+    
+    public static SafeOperation<Void> changeSafeCiphers(SafeDataManager dm,
+            String newInternalDataCipherName, String newUserDataCipherName) {
+        CheckUtils.notNull(dm);
+        return new SafeOperation<>("changeSafeCiphers", () -> {
+            dm.changeSafeCiphers(newInternalDataCipherName, newUserDataCipherName);
+            return null;
+        });
+    }
+    
+    /**
+     * @param dm
+     * @param targetFile
+     * @param cipher
+     * @param serialPw copied into the {@link SecretArena} until the operation is done (or discarded), can be
+     * cleared as soon as this method returns.
+     * @param serialVer
+     * @return
+     */
+    public static SafeOperation<Void> exportDataTo(SafeDataManager dm, File targetFile,
+            Cipher cipher, char[] serialPw, short serialVer) {
+        CheckUtils.notNull(dm);
+        SecretArena.Secret serialPwSecret = SecretArena.newSecret(serialPw);
+        return new SafeOperation<>("exportDataTo", () -> {
+            char[] serialPwCopy = serialPwSecret.readChars();
+            try {
+                dm.exportDataTo(targetFile, cipher, serialPwCopy, serialVer);
+            } finally {
+                MemUtils.clearCharArray(serialPwCopy);
+            }
+            return null;
+        }, serialPwSecret);
+    }
+    
+    /**
+     * The returned {@link SafeData} should be disposed or destroyed by the caller.
+     * @param serialFile
+     * @param cipher
+     * @param serialPw copied into the {@link SecretArena} until the operation is done (or discarded), can be
+     * cleared as soon as this method returns.
+     * @return
+     */
+    public static SafeOperation<SafeData> readSerialized(File serialFile, Cipher cipher,
+            char[] serialPw) {
+        SecretArena.Secret serialPwSecret = SecretArena.newSecret(serialPw);
+        return new SafeOperation<>("readSerialized", () -> {
+            char[] serialPwCopy = serialPwSecret.readChars();
+            try {
+                checkpoint(Step.READING);
+                return SafeSerializationManager.read(serialFile, cipher, serialPwCopy);
+            } finally {
+                MemUtils.clearCharArray(serialPwCopy);
+            }
+        }, serialPwSecret);
+    }
+    
+    /**
+     * @param dm
+     * @param safeData must not be modified nor destroyed until the operation is done.
+     * @return
+     */
+    public static SafeOperation<Void> importData(SafeDataManager dm, SafeData safeData) {
+        CheckUtils.notNull(dm);
+        CheckUtils.notNull(safeData);
+        return new SafeOperation<>("importData", () -> {
+            dm.importData(safeData);
+            return null;
+        });
+    }
+    
+    /**
+     * Same as {@link #readSerialized(File, Cipher, char[])} followed by {@link #importData(SafeDataManager, SafeData)},
+     * without any review of the password entries, but without reading them all at once.
+     * @param dm
+     * @param serialFile
+     * @param cipher
+     * @param serialPw copied into the {@link SecretArena} until the operation is done (or discarded), can be
+     * cleared as soon as this method returns.
+     * @return
+     */
+    public static SafeOperation<Void> importSerialized(SafeDataManager dm, File serialFile,
+            Cipher cipher, char[] serialPw) {
+        CheckUtils.notNull(dm);
+        SecretArena.Secret serialPwSecret = SecretArena.newSecret(serialPw);
+        return new SafeOperation<>("importSerialized", () -> {
+            char[] serialPwCopy = serialPwSecret.readChars();
+            try {
+                checkpoint(Step.READING);
+                dm.importSerialized(serialFile, cipher, serialPwCopy);
+            } finally {
+                MemUtils.clearCharArray(serialPwCopy);
+            }
+            return null;
+        }, serialPwSecret);
+    }
+    
+    private final String name;
+    private final Task<T> task;
+    /**
+     * Resource (e.g. a password copy) used by the task, destroyed once this operation is done or discarded.
+     */
+    private Destroyable ownedResource;
+    private final CompletableFuture<T> future = new CompletableFuture<>();
+    private volatile Step step = Step.PENDING;
+    private volatile boolean isCancelRequested = false;
+    private volatile Consumer<Step> progressListener = null;
+    private Executor callbackExecutor = null;
+    
+    public SafeOperation(String name, Task<T> task) {
+        this(name, task, null);
+    }
+    
+    /**
+     * @param name
+     * @param task
+     * @param ownedResource used by task, destroyed by this operation once it is done, even if it has been
+     * cancelled before its start or if it has failed, or once it is discarded (see {@link #discard()}),
+     * null if none.
+     */
+    public SafeOperation(String name, Task<T> task, Destroyable ownedResource) {
+        this.name = CheckUtils.notNull(name);
+        this.task = CheckUtils.notNull(task);
+        this.ownedResource = ownedResource;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Must be called before {@link #start(Executor, BiConsumer)}.
+     * @param listener notified (through the callback executor) of each new step of this operation.
+     * @return this
+     */
+    public SafeOperation<T> setProgressListener(Consumer<Step> listener) {
+        if (callbackExecutor != null) {
+            throw new IllegalStateException("Operation already started.");
+        }
+        progressListener = listener;
+        return this;
+    }
+    
+    /**
+     * Submits this operation to the worker.
+     * @param callbackExecutor executes the progress and completion callbacks, e.g. Platform::runLater for JavaFX.
+     * @param onDone called once with either the result (thrown = null) or the thrown exception (a
+     * {@link CancellationException} if cancelled).
+     * @return this
+     */
+    public SafeOperation<T> start(Executor callbackExecutor, BiConsumer<T, Throwable> onDone) {
+        CheckUtils.notNull(callbackExecutor);
+        CheckUtils.notNull(onDone);
+        synchronized (this) {
+            if (this.callbackExecutor != null) {
+                throw new IllegalStateException("Operation already started.");
+            }
+            if (future.isDone()) {
+                throw new IllegalStateException("Operation discarded.");
+            }
+            this.callbackExecutor = callbackExecutor;
+        }
+        future.whenComplete((res, thrown) -> {
+            callbackExecutor.execute(() -> onDone.accept(res, thrown));
+        });
+        pendingOperations.add(this);
+        log.newChildFromCurMethIf(Level.DEBUG).debug(() -> "submit " + name);
+        try {
+            worker.execute(this::run);
+        } catch (RejectedExecutionException ex) {
+            pendingOperations.remove(this);
+            releaseOwnedResource();
+            future.completeExceptionally(ex);
+            throw ex;
+        }
+        return this;
+    }
+    
+    /**
+     * Must be called instead of {@link #start(Executor, BiConsumer)} if this operation will never be started,
+     * so that its owned resource is destroyed.
+     * Does nothing if this operation has already been discarded.
+     * @throws IllegalStateException if this operation has already been started.
+     */
+    public synchronized void discard() {
+        if (callbackExecutor != null) {
+            throw new IllegalStateException("Operation already started.");
+        }
+        isCancelRequested = true;
+        step = Step.DONE;
+        releaseOwnedResource();
+        future.completeExceptionally(new CancellationException("Operation " + name + " discarded."));
+    }
+    
+    private synchronized void releaseOwnedResource() {
+        if (ownedResource != null) {
+            MemUtils.tryDestroy(ownedResource);
+            ownedResource = null;
+        }
+    }
+    
+    private void run() {
+        Logger methLog = log.newChildFromCurMethIf(Level.DEBUG);
+        methLog.debug(() -> "start " + name);
+        curOperation.set(this);
+        try {
+            T res;
+            try {
+                if (isCancelRequested) {
+                    throw new CancellationException("Operation " + name + " cancelled before start.");
+                }
+                res = task.run();
+            } finally {
+                // Before the completion, so that the resource is destroyed once this operation is done
+                releaseOwnedResource();
+            }
+            setStep(Step.DONE);
+            methLog.debug(() -> "end " + name);
+            future.complete(res);
+        } catch (Throwable thrown) {
+            setStep(Step.DONE);
+            methLog.debug(() -> "failed " + name + ": ", thrown);
+            future.completeExceptionally(thrown);
+        } finally {
+            curOperation.remove();
+            pendingOperations.remove(this);
+        }
+    }
+    
+    private void onCheckpoint(Step newStep) throws CancellationException {
+        synchronized (this) {
+            if (isCancelRequested) {
+                throw new CancellationException("Operation " + name + " cancelled.");
+            }
+            setStep(newStep);
+        }
+    }
+    
+    private void setStep(Step newStep) {
+        step = newStep;
+        Consumer<Step> listener = progressListener;
+        if (listener != null) {
+            callbackExecutor.execute(() -> listener.accept(newStep));
+        }
+    }
+    
+    /**
+     * Requests the cancellation of this operation, which will take effect at its next checkpoint.
+     * @return true if the cancellation has been requested during a cancellable step, false otherwise.
+     */
+    public synchronized boolean cancel() {
+        if (!step.isCancellable || future.isDone()) {
+            return false;
+        }
+        isCancelRequested = true;
+        return true;
+    }
+    
+    public boolean isCancelRequested() {
+        return isCancelRequested;
+    }
+    
+    public Step getStep() {
+        return step;
+    }
+    
+    public boolean isDone() {
+        return future.isDone();
+    }
+    
+    /**
+     * Blocks the current thread until this operation is done.
+     * NB: Must not be called from the callback executor thread (e.g. JavaFX thread).
+     * @return the result of this operation
+     * @throws CancellationException if the operation has been cancelled.
+     * @throws ExecutionException if the operation has failed.
+     * @throws InterruptedException
+     */
+    public T await() throws ExecutionException, InterruptedException {
+        return future.get();
+    }
+    
+}
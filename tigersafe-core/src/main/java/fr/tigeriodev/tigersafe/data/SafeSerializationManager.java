@@ -28,21 +28,36 @@
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UTFDataFormatException;
 import java.security.GeneralSecurityException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 import javax.crypto.SecretKey;
 import javax.security.auth.DestroyFailedException;
 
+import fr.tigeriodev.tigersafe.GlobalConfig;
 import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
+import fr.tigeriodev.tigersafe.utils.CodecContext;
+import fr.tigeriodev.tigersafe.utils.DestroyableBufferedOutputStream;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.UTFUtils;
 
 public final class SafeSerializationManager {
     
-    public static final short MAX_SERIAL_VER = 1; // min 1
+    /**
+     * Since version 2, the header stores the iterations number of the derivation of the serial key,
+     * instead of it always being {@link KeyDerivation#LEGACY_ITERATIONS_NUM}.
+     * Since version 3, strings are written as their length in bytes followed by their modified UTF-8 bytes
+     * (cf. {@link UTFUtils}), instead of their length in chars followed by their UTF-16 chars.
+     */
+    public static final short MAX_SERIAL_VER = 3; // min 1
+    private static final int READ_INIT_CAPACITY = 1024;
     
     private SafeSerializationManager() {}
     
@@ -56,9 +71,13 @@ public static void write(File targetFile, Cipher cipher, char[] serialPw, short
         }
         
         checkSerialVer(serialVer);
+        int derivationIterationsNum = serialVer >= 2
+                ? GlobalConfig.getInstance().getKeyDerivationIterationsNum(cipher)
+                : KeyDerivation.LEGACY_ITERATIONS_NUM;
         
         byte[] serialKeySalt = cipher.newDerivationSalt();
-        SecretKey serialKey = cipher.getDerivatedKeyFrom(serialPw, serialKeySalt);
+        SecretKey serialKey =
+                cipher.getDerivatedKeyFrom(serialPw, serialKeySalt, derivationIterationsNum);
         byte[] serialIv = cipher.newIv();
         
         try (
@@ -67,22 +86,32 @@ public static void write(File targetFile, Cipher cipher, char[] serialPw, short
                 DataOutputStream plainDataOut = new DataOutputStream(fileBufOut);
                 OutputStream cipherOut =
                         cipher.newEncryptionStream(serialKey, serialIv, fileBufOut);
-                // NB: could be optimized for really intense writing with "BufferedOutputStream cipherBufOut = new BufferedOutputStream(cipherOut); cipherDataOut = new DataOutputStream(cipherBufOut);", but should implement a destroyable BufferedOutputStream
-                DataOutputStream cipherDataOut = new DataOutputStream(cipherOut);
+                DestroyableBufferedOutputStream cipherBufOut =
+                        new DestroyableBufferedOutputStream(cipherOut);
+                DataOutputStream cipherDataOut = new DataOutputStream(cipherBufOut);
+                CodecContext ctx = CodecContext.acquire();
         ) {
             plainDataOut.writeShort(serialVer);
+            if (serialVer >= 2) {
+                plainDataOut.writeInt(derivationIterationsNum);
+            }
             plainDataOut.write(serialKeySalt);
             plainDataOut.write(serialIv);
             
             cipherDataOut.writeInt(pwEntriesData.length);
             
             for (PasswordEntry.Data pwEntryData : pwEntriesData) {
-                writeStr(pwEntryData.name, cipherDataOut);
-                writeChars(pwEntryData.getPassword(), cipherDataOut);
+                writeStr(pwEntryData.name, serialVer, cipherDataOut, ctx);
+                char[] pw = pwEntryData.getPassword();
+                try {
+                    writeChars(pw, serialVer, cipherDataOut, ctx);
+                } finally {
+                    MemUtils.clearCharArray(pw);
+                }
                 cipherDataOut.writeLong(pwEntryData.lastPasswordChangeTime.getEpochSecond());
-                writeStr(pwEntryData.site, cipherDataOut);
-                writeStr(pwEntryData.info, cipherDataOut);
-                writeTOTP(pwEntryData.totp, cipherDataOut);
+                writeStr(pwEntryData.site, serialVer, cipherDataOut, ctx);
+                writeStr(pwEntryData.info, serialVer, cipherDataOut, ctx);
+                writeTOTP(pwEntryData.getTOTP(), serialVer, cipherDataOut, ctx);
             }
         }
         
@@ -94,50 +123,182 @@ public static void write(File targetFile, Cipher cipher, char[] serialPw, short
         }
     }
     
+    /**
+     * Reads the whole serialized file at once. {@link #openEntriesReader(File, Cipher, char[])} should be
+     * preferred for files which can contain many password entries.
+     * The returned {@link SafeData} should be disposed or destroyed by the caller.
+     */
     public static SafeData read(File srcFile, Cipher cipher, char[] serialPw)
             throws IOException, GeneralSecurityException, DestroyFailedException {
-        try (
-                FileInputStream fileIn = new FileInputStream(srcFile);
+        try (EntriesReader reader = openEntriesReader(srcFile, cipher, serialPw)) {
+            // The entries number is not trusted for the initial capacity, it is only authenticated with the entries
+            List<PasswordEntry.Data> pwEntriesData =
+                    new ArrayList<>(Math.min(reader.getEntriesNum(), READ_INIT_CAPACITY));
+            try {
+                while (reader.hasNext()) {
+                    pwEntriesData.add(reader.next());
+                }
+            } catch (Exception ex) {
+                for (PasswordEntry.Data pwEntryData : pwEntriesData) {
+                    MemUtils.tryDestroy(pwEntryData);
+                }
+                throw ex;
+            }
+            return new SafeData(pwEntriesData.toArray(new PasswordEntry.Data[0]));
+        }
+    }
+    
+    /**
+     * The returned reader must be closed by the caller, even if not all password entries have been read.
+     * @param srcFile
+     * @param cipher
+     * @param serialPw can be cleared as soon as this method returns.
+     * @return a reader of the password entries of srcFile, which decodes them one by one, when requested.
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public static EntriesReader openEntriesReader(File srcFile, Cipher cipher, char[] serialPw)
+            throws IOException, GeneralSecurityException {
+        return new EntriesReader(srcFile, cipher, serialPw);
+    }
+    
+    /**
+     * Pull-based reader of the password entries of a serialized file, which only keeps the currently
+     * decoded password entry in memory (plus the decryption buffers of the cipher).
+     * NB: For authenticated ciphers, the decrypted data is only released once it has been authenticated,
+     * which can require the cipher to buffer the whole encrypted data. This is the case of AES_GCM (the
+     * default user data cipher), whose JCE implementation holds the whole encrypted data, then the whole
+     * decrypted data (as bytes), so that only the decoded password entries are bounded.
+     */
+    public static final class EntriesReader implements AutoCloseable {
+        
+        private final short serialVer;
+        private FileInputStream fileIn;
+        private SecretKey serialKey;
+        private DataInputStream cipherDataIn;
+        private CodecContext ctx;
+        private int entriesNum;
+        private int readEntriesNum = 0;
+        private boolean isClosed = false;
+        
+        private EntriesReader(File srcFile, Cipher cipher, char[] serialPw)
+                throws IOException, GeneralSecurityException {
+            fileIn = new FileInputStream(srcFile);
+            try {
                 BufferedInputStream bufIn = new BufferedInputStream(fileIn);
                 DataInputStream plainDataIn = new DataInputStream(bufIn);
-        ) {
-            short serialVer = plainDataIn.readShort();
-            checkSerialVer(serialVer);
-            byte[] serialKeySalt = new byte[cipher.getDerivationSaltSize()];
-            plainDataIn.read(serialKeySalt);
-            byte[] serialIv = new byte[cipher.getIvSize()];
-            plainDataIn.read(serialIv);
-            
-            SecretKey serialKey = cipher.getDerivatedKeyFrom(serialPw, serialKeySalt);
-            
-            try (
-                    InputStream cipherIn = cipher.newDecryptionStream(bufIn, serialKey, serialIv);
-                    DataInputStream cipherDataIn = new DataInputStream(cipherIn);
-            ) {
-                int pwEntriesNum = cipherDataIn.readInt();
-                PasswordEntry.Data[] pwEntriesData = new PasswordEntry.Data[pwEntriesNum];
-                
-                for (int i = 0; i < pwEntriesNum; i++) {
-                    pwEntriesData[i] = new PasswordEntry.Data(
-                            readStr(cipherDataIn),
-                            readChars(cipherDataIn),
-                            Instant.ofEpochSecond(cipherDataIn.readLong()),
-                            readStr(cipherDataIn),
-                            readStr(cipherDataIn),
-                            readTOTP(cipherDataIn)
+                serialVer = plainDataIn.readShort();
+                checkSerialVer(serialVer);
+                int derivationIterationsNum = serialVer >= 2
+                        ? KeyDerivation.checkIterationsNum(plainDataIn.readInt())
+                        : KeyDerivation.LEGACY_ITERATIONS_NUM;
+                byte[] serialKeySalt = new byte[cipher.getDerivationSaltSize()];
+                byte[] serialIv = new byte[cipher.getIvSize()];
+                try {
+                    plainDataIn.readFully(serialKeySalt);
+                    plainDataIn.readFully(serialIv);
+                    serialKey = cipher
+                            .getDerivatedKeyFrom(serialPw, serialKeySalt, derivationIterationsNum);
+                    cipherDataIn = new DataInputStream(
+                            cipher.newDecryptionStream(bufIn, serialKey, serialIv)
                     );
+                } finally {
+                    MemUtils.clearByteArray(serialKeySalt);
+                    MemUtils.clearByteArray(serialIv);
+                }
+                ctx = CodecContext.acquire();
+                entriesNum = cipherDataIn.readInt();
+                if (entriesNum < 0) {
+                    throw new IOException("Negative password entries number.");
                 }
-                
-                return new SafeData(pwEntriesData);
+            } catch (Exception ex) {
+                try {
+                    close();
+                } catch (Exception closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+                throw ex;
+            }
+        }
+        
+        public short getSerialVer() {
+            return serialVer;
+        }
+        
+        public int getEntriesNum() {
+            return entriesNum;
+        }
+        
+        public int getReadEntriesNum() {
+            return readEntriesNum;
+        }
+        
+        public boolean hasNext() {
+            return !isClosed && readEntriesNum < entriesNum;
+        }
+        
+        /**
+         * The returned password entry data is owned by the caller, who should destroy it when no longer needed.
+         * @return the next password entry data.
+         * @throws IOException
+         */
+        public PasswordEntry.Data next() throws IOException {
+            checkNotClosed();
+            if (readEntriesNum >= entriesNum) {
+                throw new NoSuchElementException();
+            }
+            String name = readStr(serialVer, cipherDataIn, ctx);
+            char[] pw = readChars(serialVer, cipherDataIn, ctx);
+            PasswordEntry.Data res;
+            try {
+                res = new PasswordEntry.Data(
+                        name,
+                        pw,
+                        Instant.ofEpochSecond(cipherDataIn.readLong()),
+                        readStr(serialVer, cipherDataIn, ctx),
+                        readStr(serialVer, cipherDataIn, ctx),
+                        readTOTP(serialVer, cipherDataIn, ctx)
+                );
             } finally {
-                MemUtils.clearByteArray(serialKeySalt);
-                MemUtils.clearByteArray(serialIv);
-                
-                if (!MemUtils.tryDestroyKey(serialKey)) {
+                MemUtils.clearCharArray(pw);
+            }
+            readEntriesNum++;
+            return res;
+        }
+        
+        private void checkNotClosed() {
+            if (isClosed) {
+                throw new IllegalStateException("This reader has been closed.");
+            }
+        }
+        
+        /**
+         * Closes the file, clears the codec buffers and destroys the serial key.
+         * @throws IOException
+         * @throws DestroyFailedException
+         */
+        @Override
+        public void close() throws IOException, DestroyFailedException {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            try {
+                if (cipherDataIn != null) {
+                    cipherDataIn.close();
+                } else {
+                    fileIn.close();
+                }
+            } finally {
+                if (ctx != null) {
+                    ctx.close();
+                }
+                if (serialKey != null && !MemUtils.tryDestroyKey(serialKey)) {
                     throw new DestroyFailedException("serialKey could not be cleared from memory.");
                 }
             }
         }
+        
     }
     
     public static void writeStr(String str, DataOutput dataOut) throws IOException {
@@ -168,14 +329,76 @@ public static char[] readChars(DataInput dataIn) throws IOException {
         return res;
     }
     
+    /**
+     * @param str
+     * @param serialVer
+     * @param dataOut
+     * @param ctx which provides the buffer (serial version 3+)
+     * @throws IOException
+     */
+    public static void writeStr(String str, short serialVer, DataOutput dataOut, CodecContext ctx)
+            throws IOException {
+        char[] chars = str.toCharArray();
+        writeChars(chars, serialVer, dataOut, ctx);
+        MemUtils.clearCharArray(chars);
+    }
+    
+    public static String readStr(short serialVer, DataInput dataIn, CodecContext ctx)
+            throws IOException {
+        char[] chars = readChars(serialVer, dataIn, ctx);
+        String res = new String(chars);
+        MemUtils.clearCharArray(chars);
+        return res;
+    }
+    
+    /**
+     * @param chars
+     * @param serialVer
+     * @param dataOut
+     * @param ctx which provides the buffer (serial version 3+)
+     * @throws IOException
+     */
+    public static void writeChars(char[] chars, short serialVer, DataOutput dataOut,
+            CodecContext ctx) throws IOException {
+        if (serialVer < 3) {
+            writeChars(chars, dataOut);
+            return;
+        }
+        int utflen = UTFUtils.getUTFLen(chars);
+        dataOut.writeInt(utflen);
+        UTFUtils.writeChars(chars, utflen, dataOut, ctx);
+    }
+    
+    public static char[] readChars(short serialVer, DataInput dataIn, CodecContext ctx)
+            throws IOException {
+        if (serialVer < 3) {
+            return readChars(dataIn);
+        }
+        int utflen = dataIn.readInt();
+        if (utflen < 0 || utflen > CodecContext.MAX_UTF_BUF_LEN) {
+            throw new UTFDataFormatException("Invalid UTF length: " + utflen + ".");
+        }
+        return UTFUtils.readChars(utflen, dataIn, ctx);
+    }
+    
     public static void writeTOTP(TOTP totp, DataOutputStream dataOut) throws IOException {
+        writeTOTP(totp, (short) 1, dataOut, null);
+    }
+    
+    public static void writeTOTP(TOTP totp, short serialVer, DataOutputStream dataOut,
+            CodecContext ctx) throws IOException {
         if (totp == null) {
             dataOut.writeInt(-1);
         } else {
-            dataOut.writeInt(totp.getKeyBytes().length);
-            dataOut.write(totp.getKeyBytes());
-            writeStr(totp.label, dataOut);
-            writeStr(totp.issuer, dataOut);
+            byte[] keyBytes = totp.getKeyBytes();
+            try {
+                dataOut.writeInt(keyBytes.length);
+                dataOut.write(keyBytes);
+            } finally {
+                MemUtils.clearByteArray(keyBytes);
+            }
+            writeStr(totp.label, serialVer, dataOut, ctx);
+            writeStr(totp.issuer, serialVer, dataOut, ctx);
             dataOut.writeInt(totp.algo.ordinal());
             dataOut.writeInt(totp.digitsNum);
             dataOut.writeInt(totp.periodSeconds);
@@ -183,20 +406,29 @@ public static void writeTOTP(TOTP totp, DataOutputStream dataOut) throws IOExcep
     }
     
     public static TOTP readTOTP(DataInputStream dataIn) throws IOException {
+        return readTOTP((short) 1, dataIn, null);
+    }
+    
+    public static TOTP readTOTP(short serialVer, DataInputStream dataIn, CodecContext ctx)
+            throws IOException {
         int keyLen = dataIn.readInt();
         if (keyLen == -1) {
             return null;
         } else {
             byte[] keyBytes = new byte[keyLen];
-            dataIn.readFully(keyBytes);
-            return new TOTP(
-                    keyBytes,
-                    readStr(dataIn),
-                    readStr(dataIn),
-                    TOTP.Algorithm.getByOrdinal(dataIn.readInt()),
-                    dataIn.readInt(),
-                    dataIn.readInt()
-            );
+            try {
+                dataIn.readFully(keyBytes);
+                return new TOTP(
+                        keyBytes,
+                        readStr(serialVer, dataIn, ctx),
+                        readStr(serialVer, dataIn, ctx),
+                        TOTP.Algorithm.getByOrdinal(dataIn.readInt()),
+                        dataIn.readInt(),
+                        dataIn.readInt()
+                );
+            } finally {
+                MemUtils.clearByteArray(keyBytes);
+            }
         }
     }
     
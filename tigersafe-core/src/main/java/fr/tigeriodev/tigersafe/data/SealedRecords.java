@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.utils.CheckUtils;
+import fr.tigeriodev.tigersafe.utils.CodecContext;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+
+/**
+ * Records block of a safe file (since file version 2), kept encrypted in memory, whose records are only
+ * decrypted on demand (e.g. when the password of an entry is accessed for the first time).
+ * Each record is encrypted separately, with the key of the block and its own IV, so that opening a record
+ * doesn't require to decrypt the other ones.
+ * The key is destroyed as soon as all the records have been released (opened or discarded).
+ * The records can be compared, duplicated and rewritten without being opened, i.e. without decrypting them
+ * for good.
+ */
+final class SealedRecords {
+    
+    @FunctionalInterface
+    interface RecordReader<T> {
+        
+        T read(DataInputStream dataIn, CodecContext ctx) throws IOException;
+        
+    }
+    
+    final class Record {
+        
+        private final int off;
+        private final int len;
+        private boolean isReleased = false;
+        
+        private Record(int off, int len) {
+            this.off = off;
+            this.len = len;
+        }
+        
+        /**
+         * Decrypts this record with reader, then releases it (if successful).
+         * @param <T>
+         * @param reader
+         * @return
+         * @throws IOException
+         * @throws GeneralSecurityException
+         */
+        <T> T open(RecordReader<T> reader) throws IOException, GeneralSecurityException {
+            synchronized (SealedRecords.this) {
+                checkNotReleased();
+                T res = read(off, len, reader);
+                release();
+                return res;
+            }
+        }
+        
+        /**
+         * Decrypts this record with reader, without releasing it (e.g. to compare it with a plain value).
+         * @param <T>
+         * @param reader
+         * @return
+         * @throws IOException
+         * @throws GeneralSecurityException
+         */
+        <T> T peek(RecordReader<T> reader) throws IOException, GeneralSecurityException {
+            synchronized (SealedRecords.this) {
+                checkNotReleased();
+                return read(off, len, reader);
+            }
+        }
+        
+        /**
+         * Writes the decrypted bytes of this record into dest, without releasing it nor decoding them.
+         * @param dest
+         * @throws IOException
+         * @throws GeneralSecurityException
+         */
+        void copyPlainTo(DataOutput dest) throws IOException, GeneralSecurityException {
+            peek((dataIn, ctx) -> {
+                byte[] buf = new byte[PLAIN_COPY_BUF_LEN];
+                try {
+                    int readNum;
+                    while ((readNum = dataIn.read(buf)) >= 0) {
+                        dest.write(buf, 0, readNum);
+                    }
+                } finally {
+                    MemUtils.clearByteArray(buf);
+                }
+                return null;
+            });
+        }
+        
+        /**
+         * Writes this record as it is (its IV followed by its encrypted data) into dest, without releasing it.
+         * The written record can only be decrypted with the key of these records (see {@link SealedRecords#copyKey()}).
+         * @param dest
+         * @return the length of the written record.
+         * @throws IOException
+         */
+        int writeSealedTo(DataOutput dest) throws IOException {
+            synchronized (SealedRecords.this) {
+                checkNotReleased();
+                dest.write(bytes, off, len);
+                return len;
+            }
+        }
+        
+        /**
+         * @return the length of this record as written by {@link #writeSealedTo(DataOutput)}.
+         */
+        int getLen() {
+            return len;
+        }
+        
+        /**
+         * @return the length of the decrypted bytes of this record, as written by
+         * {@link #copyPlainTo(DataOutput)}.
+         */
+        int getPlainLen() {
+            return len - cipher.getIvSize() - cipher.getEncryptedLen(0);
+        }
+        
+        /**
+         * @return a new record of the same encrypted bytes, which must be released separately.
+         */
+        Record share() {
+            synchronized (SealedRecords.this) {
+                checkNotReleased();
+                unreleasedNum++;
+                return new Record(off, len);
+            }
+        }
+        
+        /**
+         * NB: Records encrypted with different keys are never considered the same, even if their decrypted
+         * data are equal.
+         * @param other
+         * @return true if other has the same encrypted bytes and key as this record, which therefore hold
+         * the same data, without decrypting any of them.
+         */
+        boolean isSameSealed(Record other) {
+            SealedRecords otherRecords = other.getRecords();
+            if (SealedRecords.this == otherRecords && off == other.off) {
+                return true;
+            }
+            byte[] thisBytes = getSealedBytes();
+            byte[] otherBytes = other.getSealedBytes();
+            if (
+                thisBytes == null || otherBytes == null || len != other.len
+                        || !Arrays.equals(
+                                thisBytes,
+                                off,
+                                off + len,
+                                otherBytes,
+                                other.off,
+                                other.off + len
+                        )
+            ) {
+                return false;
+            }
+            return SealedRecords.this == otherRecords || hasSameKey(otherRecords);
+        }
+        
+        SealedRecords getRecords() {
+            return SealedRecords.this;
+        }
+        
+        /**
+         * @return the (encrypted) bytes of the records, or null if this record has been released.
+         */
+        private byte[] getSealedBytes() {
+            synchronized (SealedRecords.this) {
+                return isReleased ? null : bytes;
+            }
+        }
+        
+        private void checkNotReleased() {
+            if (isReleased) {
+                throw new IllegalStateException("Record already released.");
+            }
+        }
+        
+        void release() {
+            synchronized (SealedRecords.this) {
+                if (!isReleased) {
+                    isReleased = true;
+                    unreleasedNum--;
+                    destroyIfUnused();
+                }
+            }
+        }
+        
+    }
+    
+    private static final int PLAIN_COPY_BUF_LEN = 256;
+    
+    private final Cipher cipher;
+    private SecretKey key;
+    private byte[] bytes;
+    private int nextRecordOff = 0;
+    private int unreleasedNum = 0;
+    private boolean isCreationFinished = false;
+    
+    /**
+     * @param cipher
+     * @param key owned by this instance
+     * @param bytes the records, each one being its IV followed by its encrypted data.
+     */
+    SealedRecords(Cipher cipher, SecretKey key, byte[] bytes) {
+        this.cipher = CheckUtils.notNull(cipher);
+        this.key = CheckUtils.notNull(key);
+        this.bytes = CheckUtils.notNull(bytes);
+    }
+    
+    /**
+     * @param len
+     * @return the record following the previously created one (the first record if none).
+     * @throws IllegalArgumentException if len is invalid, e.g. if the file is corrupted.
+     */
+    synchronized Record newRecord(int len) {
+        if (isCreationFinished) {
+            throw new IllegalStateException("Records creation already finished.");
+        }
+        if (len < cipher.getIvSize() || len > bytes.length - nextRecordOff) {
+            throw new IllegalArgumentException("Invalid record length: " + len + ".");
+        }
+        Record res = new Record(nextRecordOff, len);
+        nextRecordOff += len;
+        unreleasedNum++;
+        return res;
+    }
+    
+    /**
+     * Must be called once all the records have been created.
+     * @throws IllegalArgumentException if some bytes don't belong to any record, e.g. if the file is corrupted.
+     */
+    synchronized void finishCreation() {
+        if (nextRecordOff != bytes.length) {
+            throw new IllegalArgumentException(
+                    "Records length mismatch: " + nextRecordOff + " != " + bytes.length + "."
+            );
+        }
+        isCreationFinished = true;
+        destroyIfUnused();
+    }
+    
+    private <T> T read(int off, int len, RecordReader<T> reader)
+            throws IOException, GeneralSecurityException {
+        if (key == null) {
+            throw new IllegalStateException("Records already destroyed.");
+        }
+        int ivSize = cipher.getIvSize();
+        byte[] iv = Arrays.copyOfRange(bytes, off, off + ivSize);
+        try (
+                CodecContext ctx = CodecContext.acquire();
+                DataInputStream dataIn = new DataInputStream(
+                        cipher.newDecryptionStream(
+                                new ByteArrayInputStream(bytes, off + ivSize, len - ivSize),
+                                key,
+                                iv
+                        )
+                );
+        ) {
+            return reader.read(dataIn, ctx);
+        } finally {
+            MemUtils.clearByteArray(iv);
+        }
+    }
+    
+    Cipher getCipher() {
+        return cipher;
+    }
+    
+    /**
+     * @return a copy of the key of these records, or null if they have already been destroyed.
+     */
+    synchronized SecretKey copyKey() {
+        if (key == null) {
+            return null;
+        }
+        byte[] keyBytes = cipher.keyToBytes(key);
+        try {
+            return cipher.bytesToKey(keyBytes);
+        } finally {
+            MemUtils.clearByteArray(keyBytes);
+        }
+    }
+    
+    /**
+     * @return the bytes of the key of these records (to clear after use), or null if they have already been
+     * destroyed.
+     */
+    private synchronized byte[] getKeyBytes() {
+        return key != null ? cipher.keyToBytes(key) : null;
+    }
+    
+    private boolean hasSameKey(SealedRecords other) {
+        if (!cipher.equals(other.cipher)) {
+            return false;
+        }
+        // Not synchronized on both at once, to avoid deadlocks
+        byte[] thisKeyBytes = getKeyBytes();
+        byte[] otherKeyBytes = other.getKeyBytes();
+        try {
+            return thisKeyBytes != null && otherKeyBytes != null
+                    && MessageDigest.isEqual(thisKeyBytes, otherKeyBytes);
+        } finally {
+            if (thisKeyBytes != null) {
+                MemUtils.clearByteArray(thisKeyBytes);
+            }
+            if (otherKeyBytes != null) {
+                MemUtils.clearByteArray(otherKeyBytes);
+            }
+        }
+    }
+    
+    private void destroyIfUnused() {
+        if (isCreationFinished && unreleasedNum == 0 && key != null) {
+            MemUtils.tryDestroyKey(key);
+            key = null;
+            bytes = null; // only encrypted bytes, no need to clear
+        }
+    }
+    
+    synchronized boolean isDestroyed() {
+        return key == null;
+    }
+    
+}
@@ -21,6 +21,7 @@
 import java.time.Instant;
 import java.util.Arrays;
 
+import javax.crypto.Mac;
 import javax.security.auth.DestroyFailedException;
 import javax.security.auth.Destroyable;
 
@@ -28,6 +29,7 @@
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
 import fr.tigeriodev.tigersafe.utils.NumberRange;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
 import fr.tigeriodev.tigersafe.utils.StringUtils;
 import fr.tigeriodev.tigersafe.utils.TOTPUtils;
 
@@ -206,10 +208,18 @@ public static TOTP fromURI(char[] uri) throws IllegalArgumentException {
             return new TOTP(keyBytes, label, issuer, algo, digitsNum, period);
         } catch (NullPointerException ex) {
             throw new IllegalArgumentException(ex);
+        } finally {
+            if (keyBytes != null) {
+                MemUtils.clearByteArray(keyBytes);
+            }
         }
     }
     
-    private byte[] keyBytes;
+    /**
+     * Stored in the {@link SecretArena}, only decoded into scratch arrays when needed (e.g. to initialize
+     * the HMAC, whose key dependent state remains in the heap until {@link #destroy()}).
+     */
+    private SecretArena.Secret key;
     public final String label;
     public final String issuer;
     public final Algorithm algo;
@@ -218,11 +228,26 @@ public static TOTP fromURI(char[] uri) throws IllegalArgumentException {
     private long lastCurIntervalInd = -1L;
     private String lastCurCode;
     private String lastNextCode;
-    private char[] uri;
+    /**
+     * Code of the interval following the next one, if precomputed by {@link #precomputeCode()}.
+     */
+    private String lastAfterNextCode;
+    private Mac hmac;
+    private byte[] hmacBuf;
+    private char[] codeBuf;
     
+    /**
+     * @param keyBytes copied into the {@link SecretArena}, not modified, it should be cleared by the caller
+     * if it is no longer needed
+     * @param label
+     * @param issuer
+     * @param algo
+     * @param digitsNum
+     * @param periodSeconds
+     */
     public TOTP(byte[] keyBytes, String label, String issuer, Algorithm algo, int digitsNum,
             int periodSeconds) {
-        this.keyBytes = CheckUtils.notNull(keyBytes);
+        CheckUtils.notNull(keyBytes);
         if (keyBytes.length == 0) {
             throw new IllegalArgumentException("keyBytes is empty.");
         }
@@ -231,32 +256,96 @@ public TOTP(byte[] keyBytes, String label, String issuer, Algorithm algo, int di
         this.algo = CheckUtils.notNull(algo);
         this.digitsNum = CheckUtils.inRange(digitsNum, DIGITS_NUM_RANGE);
         this.periodSeconds = CheckUtils.inRange(periodSeconds, PERIOD_SECONDS_RANGE);
+        this.key = SecretArena.newSecret(keyBytes);
+    }
+    
+    private TOTP(TOTP src) {
+        this.label = src.label;
+        this.issuer = src.issuer;
+        this.algo = src.algo;
+        this.digitsNum = src.digitsNum;
+        this.periodSeconds = src.periodSeconds;
+        this.key = src.key.duplicate();
     }
     
     /**
-     * Should only be used for reading.
-     * @return the real value (not a duplicate)
+     * @return a scratch copy of the key, which should be cleared after use.
+     * @throws IllegalStateException if this TOTP has been destroyed.
      * @NotNull
      */
-    public byte[] getKeyBytes() {
-        return keyBytes;
+    public synchronized byte[] getKeyBytes() {
+        checkNotDestroyed();
+        return key.readBytes();
     }
     
-    public boolean updateCurTime(Instant curTime) {
+    /**
+     * @return the length of the key in bytes, without decoding it.
+     */
+    public synchronized int getKeyLength() {
+        checkNotDestroyed();
+        return key.getLength();
+    }
+    
+    /**
+     * Same as {@link #updateCurTime(Instant)} for each TOTP of totps, e.g. all the TOTPs displayed
+     * at the same time.
+     * @param totps
+     * @param curTime
+     * @return the number of TOTPs whose codes have changed.
+     */
+    public static int updateCurTime(Iterable<TOTP> totps, Instant curTime) {
+        int res = 0;
+        for (TOTP totp : totps) {
+            if (totp.updateCurTime(curTime)) {
+                res++;
+            }
+        }
+        return res;
+    }
+    
+    /**
+     * Updates the current and next codes if curTime is not in the same interval as the previous call.
+     * The HMAC of this TOTP is reused, so that only the codes of new intervals are computed.
+     * @param curTime
+     * @return true if the codes have changed.
+     */
+    public synchronized boolean updateCurTime(Instant curTime) {
         long curIntervalInd = getIntervalInd(curTime);
         if (lastCurIntervalInd == curIntervalInd) {
             return false;
         }
         
-        lastCurCode = curIntervalInd == lastCurIntervalInd + 1 ? lastNextCode : null;
+        if (curIntervalInd == lastCurIntervalInd + 1) {
+            lastCurCode = lastNextCode;
+            lastNextCode = lastAfterNextCode;
+        } else {
+            lastCurCode = null;
+            lastNextCode = null;
+        }
+        lastAfterNextCode = null;
         if (lastCurCode == null) {
             lastCurCode = newCode(curIntervalInd);
         }
-        lastNextCode = newCode(curIntervalInd + 1);
+        if (lastNextCode == null) {
+            lastNextCode = newCode(curIntervalInd + 1);
+        }
         lastCurIntervalInd = curIntervalInd;
         return true;
     }
     
+    /**
+     * Computes, if not done yet, the code of the interval following the next one, so that the next
+     * {@link #updateCurTime(Instant)} of the following interval does not compute any code.
+     * @return true if a code has been computed.
+     */
+    public synchronized boolean precomputeCode() {
+        if (lastCurIntervalInd < 0 || lastAfterNextCode != null) {
+            return false;
+        }
+        lastAfterNextCode = newCode(lastCurIntervalInd + 2);
+        return true;
+    }
+    
     public long getIntervalInd(Instant time) {
         return time.getEpochSecond() / periodSeconds;
     }
@@ -265,25 +354,57 @@ public Instant getIntervalStartTime(long intervalInd) {
         return Instant.ofEpochSecond(intervalInd * periodSeconds);
     }
     
-    public Instant getNextIntervalStartTime() {
+    public synchronized Instant getNextIntervalStartTime() {
         if (lastCurIntervalInd < 0) {
             throw new IllegalStateException("Should updateCurTime() first.");
         }
         return getIntervalStartTime(lastCurIntervalInd + 1);
     }
     
-    public String newCode(long intervalInd) {
-        return TOTPUtils.generateTOTP(keyBytes, intervalInd, digitsNum, algo.macAlgoName);
+    public synchronized String newCode(long intervalInd) {
+        if (codeBuf == null) {
+            codeBuf = new char[digitsNum];
+        }
+        writeCode(intervalInd, codeBuf, 0);
+        String res = new String(codeBuf);
+        MemUtils.clearCharArray(codeBuf);
+        return res;
     }
     
-    public String getCurCode() {
+    /**
+     * Allocation-free version of {@link #newCode(long)}.
+     * @param intervalInd
+     * @param dest where the {@link #digitsNum} chars of the code are written.
+     * @param destOff
+     */
+    public synchronized void writeCode(long intervalInd, char[] dest, int destOff) {
+        checkNotDestroyed();
+        if (hmac == null) {
+            byte[] keyBytes = key.readBytes();
+            try {
+                hmac = TOTPUtils.newHmac(algo.macAlgoName, keyBytes);
+            } finally {
+                MemUtils.clearByteArray(keyBytes);
+            }
+            hmacBuf = new byte[TOTPUtils.HMAC_BUF_LEN];
+        }
+        TOTPUtils.generateTOTP(hmac, intervalInd, digitsNum, hmacBuf, dest, destOff);
+    }
+    
+    private void checkNotDestroyed() {
+        if (key == null) {
+            throw new IllegalStateException("This TOTP has been destroyed.");
+        }
+    }
+    
+    public synchronized String getCurCode() {
         if (lastCurCode == null) {
             throw new IllegalStateException("Should updateCurTime() first.");
         }
         return lastCurCode;
     }
     
-    public String getNextCode() {
+    public synchronized String getNextCode() {
         if (lastNextCode == null) {
             throw new IllegalStateException("Should updateCurTime() first.");
         }
@@ -291,41 +412,40 @@ public String getNextCode() {
     }
     
     /**
-     * Should only be used for reading.
-     * @return the lazy single value (no duplicate)
+     * @return a new scratch array, which should be cleared after use (the URI contains the key).
      * @NotNull
      */
-    public char[] getURI() {
-        // Single instance for easy and safe clearing.
-        if (uri == null) {
-            String startPart = URI_PREFIX + URI_TYPE + "/" + label + "?secret=";
-            String issuerParam = !issuer.isEmpty() ? "&issuer=" + issuer : "";
-            String endPart = "&algorithm=" + algo.name() + "&digits=" + digitsNum + "&period="
-                    + periodSeconds;
-            
-            char[] secretB32Chars = Base32Encoding.encode(keyBytes);
-            
-            int startPartLen = startPart.length();
-            uri = new char[startPartLen
-                    + secretB32Chars.length
-                    + issuerParam.length()
-                    + endPart.length()];
-            startPart.getChars(0, startPartLen, uri, 0);
-            
-            for (int i = 0; i < secretB32Chars.length; i++) {
-                uri[startPartLen + i] = secretB32Chars[i];
-            }
-            MemUtils.clearCharArray(secretB32Chars);
-            
-            issuerParam
-                    .getChars(0, issuerParam.length(), uri, startPartLen + secretB32Chars.length);
-            endPart.getChars(
-                    0,
-                    endPart.length(),
-                    uri,
-                    startPartLen + secretB32Chars.length + issuerParam.length()
-            );
+    public synchronized char[] getURI() {
+        checkNotDestroyed();
+        String startPart = URI_PREFIX + URI_TYPE + "/" + label + "?secret=";
+        String issuerParam = !issuer.isEmpty() ? "&issuer=" + issuer : "";
+        String endPart = "&algorithm=" + algo.name() + "&digits=" + digitsNum + "&period="
+                + periodSeconds;
+        
+        byte[] keyBytes = key.readBytes();
+        char[] secretB32Chars = Base32Encoding.encode(keyBytes);
+        MemUtils.clearByteArray(keyBytes);
+        
+        int startPartLen = startPart.length();
+        char[] uri = new char[startPartLen
+                + secretB32Chars.length
+                + issuerParam.length()
+                + endPart.length()];
+        startPart.getChars(0, startPartLen, uri, 0);
+        
+        for (int i = 0; i < secretB32Chars.length; i++) {
+            uri[startPartLen + i] = secretB32Chars[i];
         }
+        MemUtils.clearCharArray(secretB32Chars);
+        
+        issuerParam
+                .getChars(0, issuerParam.length(), uri, startPartLen + secretB32Chars.length);
+        endPart.getChars(
+                0,
+                endPart.length(),
+                uri,
+                startPartLen + secretB32Chars.length + issuerParam.length()
+        );
         return uri;
     }
     
@@ -333,7 +453,7 @@ public char[] getURI() {
     public int hashCode() {
         final int prime = 31;
         int result = 1;
-        result = prime * result + Arrays.hashCode(keyBytes);
+        result = prime * result + (key != null ? key.getLength() : 0); // content not hashed
         result = prime * result + ((label == null) ? 0 : label.hashCode());
         result = prime * result + ((issuer == null) ? 0 : issuer.hashCode());
         result = prime * result + ((algo == null) ? 0 : algo.hashCode());
@@ -351,7 +471,10 @@ public boolean equals(Object obj) {
         if (getClass() != obj.getClass())
             return false;
         TOTP other = (TOTP) obj;
-        if (!Arrays.equals(keyBytes, other.keyBytes))
+        if (key == null || other.key == null) {
+            if (key != other.key)
+                return false;
+        } else if (!key.contentEquals(other.key))
             return false;
         if (label == null) {
             if (other.label != null)
@@ -374,28 +497,43 @@ public boolean equals(Object obj) {
     
     @Override
     public String toString() {
-        return "TOTP [uri=" + StringUtils.charArrayToObfuscatedStr(getURI()) + "]";
+        if (isDestroyed()) {
+            return "TOTP [destroyed]";
+        }
+        char[] uri = getURI();
+        try {
+            return "TOTP [uri=" + StringUtils.charArrayToObfuscatedStr(uri) + "]";
+        } finally {
+            MemUtils.clearCharArray(uri);
+        }
     }
     
-    public TOTP duplicate() {
-        return new TOTP(keyBytes.clone(), label, issuer, algo, digitsNum, periodSeconds);
+    public synchronized TOTP duplicate() {
+        checkNotDestroyed();
+        return new TOTP(this);
     }
     
     @Override
-    public void destroy() throws DestroyFailedException {
-        if (keyBytes != null) {
-            MemUtils.clearByteArray(keyBytes);
-            keyBytes = null;
+    public synchronized void destroy() throws DestroyFailedException {
+        if (hmac != null) {
+            TOTPUtils.wipeHmac(hmac);
+            hmac = null;
+            MemUtils.clearByteArray(hmacBuf);
+            hmacBuf = null;
         }
-        if (uri != null) {
-            MemUtils.clearCharArray(uri);
-            uri = null;
+        if (codeBuf != null) {
+            MemUtils.clearCharArray(codeBuf);
+            codeBuf = null;
+        }
+        if (key != null) {
+            key.destroy();
+            key = null;
         }
     }
     
     @Override
-    public boolean isDestroyed() {
-        return keyBytes == null;
+    public synchronized boolean isDestroyed() {
+        return key == null;
     }
     
 }
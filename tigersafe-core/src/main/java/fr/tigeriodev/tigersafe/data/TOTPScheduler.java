@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.data;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import fr.tigeriodev.tigersafe.logs.Level;
+import fr.tigeriodev.tigersafe.logs.Logger;
+import fr.tigeriodev.tigersafe.logs.Logs;
+import fr.tigeriodev.tigersafe.utils.CheckUtils;
+
+/**
+ * Single timer refreshing the codes of all the subscribed TOTPs, instead of one timer per displayed TOTP.
+ * TOTPs are grouped by period, and the timer only wakes up at the next interval boundary of a group,
+ * or at each second while at least one subscription wants ticks (e.g. to display the remaining time).
+ * Codes are computed on the timer thread ahead of their interval: after each wake-up, once the listeners
+ * are notified, each TOTP precomputes the code following its next one, so that an interval boundary
+ * only shifts the already computed codes (except the first one after a subscription without ticks).
+ * Listeners are called on the timer thread, they must not block nor (un)subscribe, and should hand over
+ * to their own thread (e.g. the UI thread) if needed.
+ */
+public final class TOTPScheduler {
+    
+    private static final Logger log = Logs.newLogger(TOTPScheduler.class);
+    private static final TOTPScheduler instance = new TOTPScheduler();
+    
+    public static TOTPScheduler getInstance() {
+        return instance;
+    }
+    
+    @FunctionalInterface
+    public interface Listener {
+        
+        /**
+         * @param totp
+         * @param curTime
+         * @param isNewInterval true if the codes of totp have changed since the previous call (or the subscription).
+         */
+        void onUpdate(TOTP totp, Instant curTime, boolean isNewInterval);
+        
+    }
+    
+    public final class Subscription implements AutoCloseable {
+        
+        final TOTP totp;
+        final boolean withTicks;
+        final Listener listener;
+        
+        private Subscription(TOTP totp, boolean withTicks, Listener listener) {
+            this.totp = totp;
+            this.withTicks = withTicks;
+            this.listener = listener;
+        }
+        
+        /**
+         * Unsubscribes, idempotent.
+         */
+        @Override
+        public void close() {
+            unsubscribe(this);
+        }
+        
+    }
+    
+    /**
+     * Subscriptions by TOTP, by period.
+     */
+    private final Map<Integer, Map<TOTP, List<Subscription>>> groups = new TreeMap<>();
+    private int subscriptionsNum = 0;
+    private int tickSubscriptionsNum = 0;
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> nextWakeUp;
+    /**
+     * The time for which {@link #nextWakeUp} has been scheduled, {@link Long#MIN_VALUE} if none.
+     */
+    private long nextWakeUpMillis = Long.MIN_VALUE;
+    private long wakeUpsNum = 0;
+    
+    /**
+     * Updates the codes of totp (on the calling thread) and notifies listener of the following updates,
+     * until the returned subscription is closed.
+     * @param totp
+     * @param withTicks true to also be notified at each second, false to only be notified when the codes change.
+     * @param listener
+     * @return
+     */
+    public synchronized Subscription subscribe(TOTP totp, boolean withTicks, Listener listener) {
+        Subscription res =
+                new Subscription(CheckUtils.notNull(totp), withTicks, CheckUtils.notNull(listener));
+        totp.updateCurTime(Instant.now());
+        groups.computeIfAbsent(totp.periodSeconds, k -> new IdentityHashMap<>())
+                .computeIfAbsent(totp, k -> new ArrayList<>(1))
+                .add(res);
+        subscriptionsNum++;
+        if (withTicks) {
+            tickSubscriptionsNum++;
+        }
+        scheduleNextWakeUp(System.currentTimeMillis());
+        return res;
+    }
+    
+    private synchronized void unsubscribe(Subscription sub) {
+        Map<TOTP, List<Subscription>> group = groups.get(sub.totp.periodSeconds);
+        if (group == null) {
+            return;
+        }
+        List<Subscription> totpSubs = group.get(sub.totp);
+        if (totpSubs == null || !totpSubs.remove(sub)) {
+            return;
+        }
+        if (totpSubs.isEmpty()) {
+            group.remove(sub.totp);
+            if (group.isEmpty()) {
+                groups.remove(sub.totp.periodSeconds);
+            }
+        }
+        subscriptionsNum--;
+        if (sub.withTicks) {
+            tickSubscriptionsNum--;
+        }
+        scheduleNextWakeUp(System.currentTimeMillis());
+    }
+    
+    /**
+     * @param nowMillis the current time, which can be slightly ahead of the system clock.
+     */
+    private void scheduleNextWakeUp(long nowMillis) {
+        if (nextWakeUp != null) {
+            nextWakeUp.cancel(false);
+            nextWakeUp = null;
+            nextWakeUpMillis = Long.MIN_VALUE;
+        }
+        if (subscriptionsNum == 0) {
+            return;
+        }
+        long nowSeconds = Math.floorDiv(nowMillis, 1000L);
+        long wakeUpSeconds = Long.MAX_VALUE;
+        if (tickSubscriptionsNum > 0) {
+            wakeUpSeconds = nowSeconds + 1;
+        } else {
+            for (int periodSeconds : groups.keySet()) {
+                wakeUpSeconds = Math.min(
+                        wakeUpSeconds,
+                        (Math.floorDiv(nowSeconds, periodSeconds) + 1) * periodSeconds
+                );
+            }
+        }
+        long targetMillis = wakeUpSeconds * 1000L;
+        nextWakeUpMillis = targetMillis;
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "tigersafe-totp-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        nextWakeUp = timer.schedule(
+                () -> wakeUp(targetMillis),
+                Math.max(0L, targetMillis - System.currentTimeMillis()),
+                TimeUnit.MILLISECONDS
+        );
+    }
+    
+    /**
+     * @param targetMillis the time for which this wake-up has been scheduled.
+     */
+    private synchronized void wakeUp(long targetMillis) {
+        if (targetMillis != nextWakeUpMillis) {
+            // Rescheduled while this wake-up was waiting for the lock (not stopped by its cancellation)
+            return;
+        }
+        wakeUpsNum++;
+        // The timer can be a few milliseconds early, which must not be seen as the previous second.
+        long curMillis = Math.max(System.currentTimeMillis(), targetMillis);
+        Instant curTime = Instant.ofEpochMilli(curMillis);
+        log.newChildFromCurMethIf(Level.DEBUG)
+                .debug(() -> "curTime = " + curTime + ", subscriptions = " + subscriptionsNum);
+        for (Map<TOTP, List<Subscription>> group : groups.values()) {
+            for (Map.Entry<TOTP, List<Subscription>> totpSubs : group.entrySet()) {
+                TOTP totp = totpSubs.getKey();
+                try {
+                    boolean isNewInterval = totp.updateCurTime(curTime);
+                    for (Subscription sub : totpSubs.getValue()) {
+                        if (isNewInterval || sub.withTicks) {
+                            sub.listener.onUpdate(totp, curTime, isNewInterval);
+                        }
+                    }
+                } catch (RuntimeException ex) {
+                    log.newChildFromCurMeth().error(() -> "Failed to update a TOTP: ", ex);
+                }
+            }
+        }
+        for (Map<TOTP, List<Subscription>> group : groups.values()) {
+            for (TOTP totp : group.keySet()) {
+                try {
+                    totp.precomputeCode();
+                } catch (RuntimeException ex) {
+                    log.newChildFromCurMeth().error(() -> "Failed to precompute a TOTP code: ", ex);
+                }
+            }
+        }
+        scheduleNextWakeUp(curMillis);
+    }
+    
+    public synchronized int getSubscriptionsNum() {
+        return subscriptionsNum;
+    }
+    
+    /**
+     * @return the number of times the timer has woken up, for all the subscriptions.
+     */
+    public synchronized long getWakeUpsNum() {
+        return wakeUpsNum;
+    }
+    
+}
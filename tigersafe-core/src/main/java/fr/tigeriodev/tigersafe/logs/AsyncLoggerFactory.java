@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.logs;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import fr.tigeriodev.tigersafe.utils.CheckUtils;
+
+/**
+ * Factory of loggers which do not print on the logging thread: messages are evaluated by the logging
+ * thread, then their records are queued in a bounded lock-free ring buffer, which is drained to a
+ * {@link LogSink} by a background daemon thread.
+ * When the buffer is full, the {@link OverflowPolicy} tells whether a record is dropped or whether the
+ * logging thread waits for a free slot. Dropped records are counted and reported in the sink.
+ * {@link #close()} must be called before exit (e.g. in a shutdown hook) to write the remaining records.
+ * NB: Records logged after {@link #close()} are printed on the console by the logging thread.
+ */
+public final class AsyncLoggerFactory implements LoggerFactory, AutoCloseable {
+    
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long CLOSE_JOIN_MILLIS = 1000;
+    
+    public enum OverflowPolicy {
+        
+        /**
+         * Drops the record, the logging thread never waits.
+         */
+        DROP,
+        /**
+         * Waits for a free slot, the records are never dropped.
+         */
+        BLOCK,
+        /**
+         * Waits for a free slot for WARN and ERROR records, drops DEBUG and INFO records.
+         */
+        BLOCK_WARN_OR_HIGHER;
+        
+        boolean isBlocking(Level level) {
+            return switch (this) {
+                case DROP -> false;
+                case BLOCK -> true;
+                case BLOCK_WARN_OR_HIGHER -> Level.WARN.isLowerThan(level);
+            };
+        }
+        
+    }
+    
+    private final class AsyncLogger extends Logger {
+        
+        private final String displayName;
+        
+        AsyncLogger(String displayName, Level initLevel) {
+            super(initLevel);
+            this.displayName = displayName;
+        }
+        
+        @Override
+        protected void print(Level level, String msg, Throwable thrown) {
+            enqueue(
+                    new LogRecord(
+                            level,
+                            displayName,
+                            Thread.currentThread().getName(),
+                            System.currentTimeMillis(),
+                            System.nanoTime(),
+                            msg,
+                            thrown
+                    )
+            );
+        }
+        
+    }
+    
+    private final LogSink sink;
+    private final LogRingBuffer buffer;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread drainThread;
+    private final AtomicLong droppedNum = new AtomicLong();
+    private long reportedDroppedNum = 0; // only used by the drain thread
+    private volatile long writtenNum = 0; // only written by the drain thread
+    private volatile long flushedPos = 0; // only written by the drain thread
+    private volatile long flushRequestedPos = 0;
+    private volatile boolean isClosed = false;
+    
+    public AsyncLoggerFactory(LogSink sink) {
+        this(sink, DEFAULT_CAPACITY, OverflowPolicy.BLOCK_WARN_OR_HIGHER);
+    }
+    
+    /**
+     * @param sink
+     * @param capacity the max number of records waiting to be written, a power of 2
+     * @param overflowPolicy
+     */
+    public AsyncLoggerFactory(LogSink sink, int capacity, OverflowPolicy overflowPolicy) {
+        this.sink = CheckUtils.notNull(sink);
+        this.buffer = new LogRingBuffer(capacity);
+        this.overflowPolicy = CheckUtils.notNull(overflowPolicy);
+        drainThread = new Thread(this::drain, "tigersafe-logs");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+    
+    @Override
+    public Logger newLogger(String displayName, Level initLevel) {
+        return new AsyncLogger(displayName, initLevel);
+    }
+    
+    private void enqueue(LogRecord record) {
+        if (isClosed) {
+            System.out.print(record);
+            return;
+        }
+        if (buffer.offer(record)) {
+            return;
+        }
+        if (
+            !overflowPolicy.isBlocking(record.level) || Thread.currentThread() == drainThread
+        ) {
+            droppedNum.incrementAndGet();
+            return;
+        }
+        do {
+            LockSupport.unpark(drainThread);
+            LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+            if (isClosed) {
+                System.out.print(record);
+                return;
+            }
+        } while (!buffer.offer(record));
+    }
+    
+    private void drain() {
+        boolean hasUnflushed = false;
+        while (true) {
+            LogRecord record = buffer.poll();
+            if (record != null) {
+                write(record);
+                hasUnflushed = true;
+                long requestedPos = flushRequestedPos;
+                if (requestedPos > flushedPos && buffer.getHeadPos() >= requestedPos) {
+                    flushSink();
+                    hasUnflushed = false;
+                }
+                continue;
+            }
+            
+            if (reportedDroppedNum != droppedNum.get()) {
+                reportDropped();
+                hasUnflushed = true;
+            }
+            if (hasUnflushed) {
+                flushSink();
+                hasUnflushed = false;
+            } else {
+                flushedPos = buffer.getHeadPos();
+            }
+            if (isClosed) {
+                return;
+            }
+            LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+    }
+    
+    private void write(LogRecord record) {
+        try {
+            sink.write(record);
+            writtenNum++;
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Failed to write log record: " + ex);
+            System.out.print(record);
+        }
+    }
+    
+    private void reportDropped() {
+        long curDroppedNum = droppedNum.get();
+        long newDroppedNum = curDroppedNum - reportedDroppedNum;
+        reportedDroppedNum = curDroppedNum;
+        write(
+                new LogRecord(
+                        Level.WARN,
+                        AsyncLoggerFactory.class.getSimpleName(),
+                        Thread.currentThread().getName(),
+                        System.currentTimeMillis(),
+                        System.nanoTime(),
+                        newDroppedNum + " log records dropped because the buffer was full.",
+                        null
+                )
+        );
+    }
+    
+    private void flushSink() {
+        long pos = buffer.getHeadPos();
+        try {
+            sink.flush();
+        } catch (IOException | RuntimeException ex) {
+            System.err.println("Failed to flush logs: " + ex);
+        }
+        flushedPos = pos;
+    }
+    
+    /**
+     * Waits until the records logged before this call are written and the sink is flushed.
+     * @param timeoutMillis
+     * @return true if flushed before the timeout.
+     */
+    public boolean flush(long timeoutMillis) {
+        long targetPos = buffer.getTailPos();
+        if (flushRequestedPos < targetPos) {
+            flushRequestedPos = targetPos;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (flushedPos < targetPos) {
+            if (!drainThread.isAlive() || System.nanoTime() - deadline >= 0) {
+                return flushedPos >= targetPos;
+            }
+            LockSupport.unpark(drainThread);
+            LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+        }
+        return true;
+    }
+    
+    /**
+     * Writes the remaining records, then closes the sink. Later records are printed on the console.
+     */
+    @Override
+    public synchronized void close() {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join(CLOSE_JOIN_MILLIS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (drainThread.isAlive()) {
+            System.err.println("The logs drain thread did not stop in time.");
+            return;
+        }
+        LogRecord record;
+        while ((record = buffer.poll()) != null) { // records offered while closing
+            write(record);
+        }
+        try {
+            sink.close();
+        } catch (IOException ex) {
+            System.err.println("Failed to close logs: " + ex);
+        }
+    }
+    
+    public boolean isClosed() {
+        return isClosed;
+    }
+    
+    public long getWrittenNum() {
+        return writtenNum;
+    }
+    
+    public long getDroppedNum() {
+        return droppedNum.get();
+    }
+    
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.logs;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import fr.tigeriodev.tigersafe.utils.StringUtils;
+
+/**
+ * Log message with the context of its logging, captured by the logging thread so that it can be printed
+ * later by another thread.
+ */
+public final class LogRecord {
+    
+    private static final DateTimeFormatter TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    
+    public final Level level;
+    public final String loggerName;
+    public final String threadName;
+    public final long timeMillis;
+    /**
+     * {@link System#nanoTime()} of the logging, e.g. to compute precise durations between records.
+     */
+    public final long nanoTime;
+    public final String msg;
+    public final Throwable thrown;
+    
+    public LogRecord(Level level, String loggerName, String threadName, long timeMillis,
+            long nanoTime, String msg, Throwable thrown) {
+        this.level = level;
+        this.loggerName = loggerName;
+        this.threadName = threadName;
+        this.timeMillis = timeMillis;
+        this.nanoTime = nanoTime;
+        this.msg = msg;
+        this.thrown = thrown;
+    }
+    
+    /**
+     * Appends this record as a line of fields separated by " | " (time, level, thread, logger, nanoTime,
+     * message), followed by the stack trace of thrown if any, ending with a line separator.
+     * @param sb
+     */
+    public void appendTo(StringBuilder sb) {
+        TIME_FORMATTER.formatTo(Instant.ofEpochMilli(timeMillis), sb);
+        sb.append(" | ").append(level.id);
+        sb.append(" | ").append(threadName);
+        sb.append(" | ").append(loggerName);
+        sb.append(" | ").append(nanoTime);
+        sb.append(" | ").append(msg).append(System.lineSeparator());
+        if (thrown != null) {
+            sb.append(StringUtils.getStackTrace(thrown)); // ends with a line separator
+        }
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendTo(sb);
+        return sb.toString();
+    }
+    
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.logs;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free queue of records, for several producers and a single consumer.
+ * Each slot has a sequence number telling whether it can be filled for a position (sequence = position), or
+ * consumed (sequence = position + 1), so that producers only contend on the CAS of the tail position.
+ */
+final class LogRingBuffer {
+    
+    private final LogRecord[] slots;
+    private final AtomicLongArray seqs;
+    private final int mask;
+    private final AtomicLong tailPos = new AtomicLong();
+    private volatile long headPos = 0; // only written by the consumer
+    
+    /**
+     * @param capacity a power of 2
+     */
+    LogRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of 2.");
+        }
+        slots = new LogRecord[capacity];
+        seqs = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            seqs.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+    
+    /**
+     * @param record
+     * @return false if this buffer is full.
+     */
+    boolean offer(LogRecord record) {
+        long pos = tailPos.get();
+        while (true) {
+            int ind = (int) pos & mask;
+            long diff = seqs.get(ind) - pos;
+            if (diff == 0) {
+                if (tailPos.compareAndSet(pos, pos + 1)) {
+                    slots[ind] = record;
+                    seqs.set(ind, pos + 1); // publishes the record
+                    return true;
+                }
+                pos = tailPos.get();
+            } else if (diff < 0) {
+                return false; // the slot still holds the record of the previous lap
+            } else {
+                pos = tailPos.get(); // another producer has taken pos
+            }
+        }
+    }
+    
+    /**
+     * Must only be called by the consumer.
+     * @return the oldest record, or null if no record is available.
+     */
+    LogRecord poll() {
+        long pos = headPos;
+        int ind = (int) pos & mask;
+        if (seqs.get(ind) != pos + 1) {
+            return null;
+        }
+        LogRecord res = slots[ind];
+        slots[ind] = null;
+        seqs.set(ind, pos + slots.length); // frees the slot for the next lap
+        headPos = pos + 1;
+        return res;
+    }
+    
+    /**
+     * @return the position after the last reserved record, published or not yet.
+     */
+    long getTailPos() {
+        return tailPos.get();
+    }
+    
+    /**
+     * @return the position after the last consumed record.
+     */
+    long getHeadPos() {
+        return headPos;
+    }
+    
+    int getCapacity() {
+        return slots.length;
+    }
+    
+}
@@ -22,16 +22,40 @@
 
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
 
+/**
+ * NB: The level check of a logger is a single int comparison, so logging at a disabled level (e.g.
+ * {@link #debug(Callable)} in production) only costs a branch, without evaluating the message.
+ * Method loggers should preferably be resolved once, by {@link #newChildForMeth(String)} in a static
+ * (or instance) final field, or by {@link #newChildForMethIf(Level, String)} in the method, rather than
+ * by {@link #newChildFromCurMeth()} which walks the stack on each call.
+ */
 public abstract class Logger {
     
+    private static final int DISABLED_LEVEL_ORDINAL = Level.values().length;
+    
     protected Level minLevel;
+    private final boolean isDisabled;
+    private int minLevelOrdinal;
     
     public Logger(Level minLevel) {
+        this.isDisabled = false;
         setMinLevel(minLevel);
     }
     
+    /**
+     * Creates a logger which never prints, whatever its min level, and which is its own child.
+     */
+    Logger() {
+        this.isDisabled = true;
+        this.minLevel = Level.ERROR;
+        this.minLevelOrdinal = DISABLED_LEVEL_ORDINAL;
+    }
+    
     public void setMinLevel(Level newVal) {
         minLevel = CheckUtils.notNull(newVal);
+        if (!isDisabled) {
+            minLevelOrdinal = newVal.ordinal();
+        }
     }
     
     public Level getMinLevel() {
@@ -54,66 +78,89 @@ public boolean isErrorLoggable() {
         return isLoggable(Level.ERROR);
     }
     
-    public boolean isLoggable(Level level) {
-        return minLevel.isLowerThan(level);
+    public final boolean isLoggable(Level level) {
+        return level.ordinal() >= minLevelOrdinal;
     }
     
-    public void debug(Callable<String> msgCallable) {
-        log(Level.DEBUG, msgCallable);
+    public final void debug(Callable<String> msgCallable) {
+        if (isLoggable(Level.DEBUG)) {
+            printCalled(Level.DEBUG, msgCallable, null);
+        }
     }
     
-    public void debug(Callable<String> msgCallable, Throwable thrown) {
-        log(Level.DEBUG, msgCallable, thrown);
+    public final void debug(Callable<String> msgCallable, Throwable thrown) {
+        if (isLoggable(Level.DEBUG)) {
+            printCalled(Level.DEBUG, msgCallable, thrown);
+        }
     }
     
-    public void info(Callable<String> msgCallable) {
-        log(Level.INFO, msgCallable);
+    public final void info(Callable<String> msgCallable) {
+        if (isLoggable(Level.INFO)) {
+            printCalled(Level.INFO, msgCallable, null);
+        }
     }
     
-    public void info(Callable<String> msgCallable, Throwable thrown) {
-        log(Level.INFO, msgCallable, thrown);
+    public final void info(Callable<String> msgCallable, Throwable thrown) {
+        if (isLoggable(Level.INFO)) {
+            printCalled(Level.INFO, msgCallable, thrown);
+        }
     }
     
-    public void warn(Callable<String> msgCallable) {
-        log(Level.WARN, msgCallable);
+    public final void warn(Callable<String> msgCallable) {
+        if (isLoggable(Level.WARN)) {
+            printCalled(Level.WARN, msgCallable, null);
+        }
     }
     
-    public void warn(Callable<String> msgCallable, Throwable thrown) {
-        log(Level.WARN, msgCallable, thrown);
+    public final void warn(Callable<String> msgCallable, Throwable thrown) {
+        if (isLoggable(Level.WARN)) {
+            printCalled(Level.WARN, msgCallable, thrown);
+        }
     }
     
-    public void error(Callable<String> msgCallable) {
-        log(Level.ERROR, msgCallable);
+    public final void error(Callable<String> msgCallable) {
+        if (isLoggable(Level.ERROR)) {
+            printCalled(Level.ERROR, msgCallable, null);
+        }
     }
     
-    public void error(Callable<String> msgCallable, Throwable thrown) {
-        log(Level.ERROR, msgCallable, thrown);
+    public final void error(Callable<String> msgCallable, Throwable thrown) {
+        if (isLoggable(Level.ERROR)) {
+            printCalled(Level.ERROR, msgCallable, thrown);
+        }
     }
     
-    public void log(Level level, Callable<String> msgCallable) {
+    public final void log(Level level, Callable<String> msgCallable) {
         log(level, msgCallable, null);
     }
     
-    public void log(Level level, Callable<String> msgCallable, Throwable thrown) {
+    public final void log(Level level, Callable<String> msgCallable, Throwable thrown) {
         if (isLoggable(level)) {
-            try {
-                print(level, msgCallable.call(), thrown);
-            } catch (Exception ex) {
-                print(Level.ERROR, "An error occurred while logging: ", ex);
-            }
+            printCalled(level, msgCallable, thrown);
         }
     }
     
-    public void log(Level level, String msg) {
+    public final void log(Level level, String msg) {
         log(level, msg, null);
     }
     
-    public void log(Level level, String msg, Throwable thrown) {
+    public final void log(Level level, String msg, Throwable thrown) {
         if (isLoggable(level)) {
             print(level, msg, thrown);
         }
     }
     
+    /**
+     * Kept out of the level methods so that they remain small enough to be inlined.
+     */
+    private void printCalled(Level level, Callable<String> msgCallable, Throwable thrown) {
+        try {
+            print(level, msgCallable.call(), thrown);
+        } catch (Exception ex) {
+            print(Level.ERROR, "An error occurred while logging: ", ex);
+        }
+    }
+    
     protected abstract void print(Level level, String msg, Throwable thrown);
     
     public Logger newChild(Class<?> clazz) {
@@ -128,6 +175,33 @@ public Logger newChildFromInstance(Object instance) {
         return newChild("#" + instance.hashCode());
     }
     
+    /**
+     * Should be used to resolve a method logger once, e.g. in a static final field.
+     * @param methName
+     * @return a child logger for the method methName.
+     */
+    public Logger newChildForMeth(String methName) {
+        return newChild(methName + "()");
+    }
+    
+    /**
+     * Same as {@link #newChildForMeth(String)}, but does not create a new logger if maxUsedLevel is
+     * not loggable, e.g. for a method logger of an instance logger.
+     * @param maxUsedLevel
+     * @param methName
+     * @return either a child logger for the method methName, or this logger if it will never print.
+     */
+    public Logger newChildForMethIf(Level maxUsedLevel, String methName) {
+        if (!isLoggable(maxUsedLevel)) {
+            return this;
+        }
+        return newChildForMeth(methName);
+    }
+    
+    /**
+     * NB: Walks the stack when maxUsedLevel is loggable, should only be used in cold paths, see
+     * {@link #newChildForMethIf(Level, String)}.
+     */
     public Logger newChildFromCurMethIf(Level maxUsedLevel) {
         if (!isLoggable(maxUsedLevel)) {
             return this; // will never print, no need to create new logger
@@ -137,7 +211,14 @@ public Logger newChildFromCurMethIf(Level maxUsedLevel) {
         return newChild(curMethName + "()");
     }
     
+    /**
+     * NB: Walks the stack on each call, should only be used in cold paths, see
+     * {@link #newChildForMeth(String)}.
+     */
     public Logger newChildFromCurMeth() {
+        if (isDisabled) {
+            return this;
+        }
         String curMethName =
                 StackWalker.getInstance().walk(f -> f.skip(1).findFirst()).get().getMethodName();
         return newChild(curMethName + "()");
@@ -148,6 +229,9 @@ public Logger newChild(String displayName) {
     }
     
     public Logger newChild(String displayName, Level minLevel) {
+        if (isDisabled) {
+            return this;
+        }
         return new ChildLogger(this, displayName, minLevel);
     }
     
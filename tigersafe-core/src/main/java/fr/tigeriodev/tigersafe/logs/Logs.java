@@ -30,33 +30,13 @@ public final class Logs {
     
     public static final boolean ALLOW_UNSAFE_LOGGERS =
             Boolean.getBoolean("tigersafe.unsafeLoggers");
-    private static final Logger DISABLED_LOGGER = new Logger(Level.ERROR) {
-        
-        @Override
-        public boolean isLoggable(Level level) {
-            return false;
-        };
+    private static final Logger DISABLED_LOGGER = new Logger() {
         
         @Override
         protected void print(Level level, String msg, Throwable thrown) {
             // Nothing
         }
         
-        @Override
-        public Logger newChildFromCurMethIf(Level maxUsedLevel) {
-            return DISABLED_LOGGER;
-        };
-        
-        @Override
-        public Logger newChildFromCurMeth() {
-            return DISABLED_LOGGER;
-        };
-        
-        @Override
-        public Logger newChild(String displayName, Level minLevel) {
-            return DISABLED_LOGGER;
-        };
-        
     };
     
     private static LoggerFactory loggerFactory;
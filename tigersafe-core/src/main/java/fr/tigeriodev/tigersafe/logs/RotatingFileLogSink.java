@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.logs;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import fr.tigeriodev.tigersafe.utils.CheckUtils;
+import fr.tigeriodev.tigersafe.utils.FileUtils;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+
+/**
+ * Appends records to a file, which is rotated when it would exceed a size limit: file is renamed to
+ * file.1, file.1 to file.2, etc., and the oldest file is deleted, so that at most maxFilesNum files are kept.
+ * The files (and the created directories) are only accessible by their owner.
+ */
+public final class RotatingFileLogSink implements LogSink {
+    
+    public static final long DEFAULT_MAX_FILE_BYTES = 10L << 20;
+    public static final int DEFAULT_MAX_FILES_NUM = 5;
+    private static final int OUT_BUFFER_LEN = 8192;
+    
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFilesNum;
+    private final StringBuilder lineBuilder = new StringBuilder(256);
+    private OutputStream out;
+    private long fileBytesNum;
+    private int rotationsNum = 0;
+    
+    public RotatingFileLogSink(File file) throws IOException {
+        this(file, DEFAULT_MAX_FILE_BYTES, DEFAULT_MAX_FILES_NUM);
+    }
+    
+    /**
+     * @param file the current logs file, appended if it already exists
+     * @param maxFileBytes the size above which a file is rotated, a single record larger than it is
+     * still written in its own file.
+     * @param maxFilesNum the number of kept files, including the current one
+     * @throws IOException
+     */
+    public RotatingFileLogSink(File file, long maxFileBytes, int maxFilesNum) throws IOException {
+        this.file = file.toPath().toAbsolutePath();
+        this.maxFileBytes = CheckUtils.strictlyPositive(maxFileBytes);
+        this.maxFilesNum = CheckUtils.strictlyPositive(maxFilesNum);
+        Path dir = this.file.getParent();
+        if (!Files.isDirectory(dir)) {
+            FileUtils.createOwnerOnlyDirectories(dir);
+        }
+        open();
+    }
+    
+    private void open() throws IOException {
+        if (!Files.exists(file)) {
+            FileUtils.createOwnerOnlyFile(file);
+        } else {
+            FileUtils.restrictToOwner(file);
+        }
+        out = new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                OUT_BUFFER_LEN
+        );
+        fileBytesNum = Files.size(file);
+    }
+    
+    @Override
+    public void write(LogRecord record) throws IOException {
+        lineBuilder.setLength(0);
+        record.appendTo(lineBuilder);
+        byte[] bytes = lineBuilder.toString().getBytes(StandardCharsets.UTF_8);
+        if (fileBytesNum > 0 && fileBytesNum + bytes.length > maxFileBytes) {
+            rotate();
+        }
+        out.write(bytes);
+        fileBytesNum += bytes.length;
+        MemUtils.clearByteArray(bytes);
+    }
+    
+    private void rotate() throws IOException {
+        out.close();
+        Files.deleteIfExists(getFile(maxFilesNum - 1));
+        for (int i = maxFilesNum - 2; i >= 0; i--) {
+            Path src = getFile(i);
+            if (Files.exists(src)) {
+                Files.move(src, getFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        rotationsNum++;
+        open();
+    }
+    
+    /**
+     * @param ind the rotation index, 0 for the current file
+     * @return the path of the file of index ind.
+     */
+    public Path getFile(int ind) {
+        return ind == 0 ? file : file.resolveSibling(file.getFileName() + "." + ind);
+    }
+    
+    public int getRotationsNum() {
+        return rotationsNum;
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+    
+    /**
+     * Closes the current file and clears the last written line from memory.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            clearLineBuilder();
+        }
+    }
+    
+    private void clearLineBuilder() {
+        lineBuilder.setLength(0);
+        lineBuilder.setLength(lineBuilder.capacity()); // overwrites the content with '\0'
+        lineBuilder.setLength(0);
+    }
+    
+}
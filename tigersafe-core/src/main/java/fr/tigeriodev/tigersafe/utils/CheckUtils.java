@@ -72,6 +72,13 @@ public static final int positive(final int i) {
         return i;
     }
     
+    public static final long positive(final long l) {
+        if (l < 0) {
+            throw new IllegalArgumentException("Long " + l + " < 0.");
+        }
+        return l;
+    }
+    
     public static final int strictlyPositive(final int i) {
         if (i <= 0) {
             throw new IllegalArgumentException("Int " + i + " <= 0.");
@@ -79,6 +86,13 @@ public static final int strictlyPositive(final int i) {
         return i;
     }
     
+    public static final long strictlyPositive(final long l) {
+        if (l <= 0) {
+            throw new IllegalArgumentException("Long " + l + " <= 0.");
+        }
+        return l;
+    }
+    
     public static final int inRange(final int num, final NumberRange range) {
         if (!range.contains(num)) {
             throw new IllegalArgumentException("Int " + num + " is not in range: " + range + ".");
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.utils;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.security.auth.Destroyable;
+
+/**
+ * Scratch buffers of a single encoding/decoding operation (e.g. a safe file read or write, a TOTP generation).
+ * Contexts are pooled: a context is acquired by a single thread, and destroyed (its buffers are cleared from memory)
+ * when it is returned to the pool by {@link #close()}, so that several operations can run concurrently without sharing any buffer.
+ * NB: A destroyed context can be reused, its buffers are lazily reallocated.
+ */
+public final class CodecContext implements Destroyable, AutoCloseable {
+    
+    public static final int MAX_POOLED_NUM = 8;
+    public static final int MAX_UTF_BUF_LEN = 65535;
+    
+    private static final BlockingDeque<CodecContext> pool =
+            new LinkedBlockingDeque<>(MAX_POOLED_NUM);
+    private static final AtomicLong instantiationsNum = new AtomicLong();
+    
+    private final byte[] intBuf = new byte[Integer.BYTES];
+    private final byte[] longBuf = new byte[Long.BYTES];
+    private byte[] utfBytesBuf = null;
+    private char[] utfCharsBuf = null;
+    private boolean isAcquired = false;
+    
+    private CodecContext() {
+        instantiationsNum.incrementAndGet();
+    }
+    
+    /**
+     * @return a context owned by the caller until it is closed.
+     */
+    public static CodecContext acquire() {
+        CodecContext res = pool.pollFirst();
+        if (res == null) {
+            res = new CodecContext();
+        }
+        res.isAcquired = true;
+        return res;
+    }
+    
+    /**
+     * Destroys this context and returns it to the pool. It must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        checkAcquired();
+        destroy();
+        isAcquired = false;
+        pool.offerFirst(this); // dropped if the pool is full
+    }
+    
+    public byte[] getIntBuf() {
+        checkAcquired();
+        return intBuf;
+    }
+    
+    public byte[] getLongBuf() {
+        checkAcquired();
+        return longBuf;
+    }
+    
+    /**
+     * @param minLen
+     * @return a buffer of at least minLen bytes, whose content is undefined.
+     */
+    public byte[] getUTFBytesBuf(int minLen) {
+        checkAcquired();
+        if (utfBytesBuf == null || utfBytesBuf.length < minLen) {
+            if (utfBytesBuf != null) {
+                MemUtils.clearByteArray(utfBytesBuf);
+            }
+            utfBytesBuf = new byte[Math.max(minLen, Math.min(minLen << 1, MAX_UTF_BUF_LEN))];
+        }
+        return utfBytesBuf;
+    }
+    
+    /**
+     * @param minLen
+     * @return a buffer of at least minLen chars, whose content is undefined.
+     */
+    public char[] getUTFCharsBuf(int minLen) {
+        checkAcquired();
+        if (utfCharsBuf == null || utfCharsBuf.length < minLen) {
+            if (utfCharsBuf != null) {
+                MemUtils.clearCharArray(utfCharsBuf);
+            }
+            utfCharsBuf = new char[Math.max(minLen, Math.min(minLen << 1, MAX_UTF_BUF_LEN))];
+        }
+        return utfCharsBuf;
+    }
+    
+    private void checkAcquired() {
+        if (!isAcquired) {
+            throw new IllegalStateException("This context has not been acquired.");
+        }
+    }
+    
+    public static int getPooledNum() {
+        return pool.size();
+    }
+    
+    public static long getInstantiationsNum() {
+        return instantiationsNum.get();
+    }
+    
+    /**
+     * Clears the buffers of this context from memory, the context stays acquired.
+     */
+    @Override
+    public void destroy() {
+        MemUtils.clearByteArray(intBuf);
+        MemUtils.clearByteArray(longBuf);
+        if (utfBytesBuf != null) {
+            MemUtils.clearByteArray(utfBytesBuf);
+            utfBytesBuf = null;
+        }
+        if (utfCharsBuf != null) {
+            MemUtils.clearCharArray(utfCharsBuf);
+            utfCharsBuf = null;
+        }
+    }
+    
+    @Override
+    public boolean isDestroyed() {
+        return utfBytesBuf == null
+                && utfCharsBuf == null
+                && Arrays.equals(intBuf, new byte[Integer.BYTES])
+                && Arrays.equals(longBuf, new byte[Long.BYTES]);
+    }
+    
+}
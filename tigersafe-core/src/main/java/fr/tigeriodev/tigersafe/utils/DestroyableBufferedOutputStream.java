@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+
+/**
+ * Bounded buffered output stream whose internal buffer is cleared from memory
+ * after each flush, on close and on destroy, so that it can safely hold plain
+ * bytes before they reach the underlying (e.g. cipher) stream.
+ */
+public class DestroyableBufferedOutputStream extends OutputStream implements Destroyable {
+    
+    public static final int DEFAULT_BUF_SIZE = 4096;
+    
+    private final OutputStream out;
+    private byte[] buf;
+    private int count = 0;
+    private boolean isClosed = false;
+    
+    public DestroyableBufferedOutputStream(OutputStream out) {
+        this(out, DEFAULT_BUF_SIZE);
+    }
+    
+    public DestroyableBufferedOutputStream(OutputStream out, int bufSize) {
+        this.out = CheckUtils.notNull(out);
+        this.buf = new byte[CheckUtils.strictlyPositive(bufSize)];
+    }
+    
+    private void ensureOpen() throws IOException {
+        if (isClosed) {
+            throw new IOException("Stream closed.");
+        }
+    }
+    
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            MemUtils.clearByteArray(buf);
+            count = 0;
+        }
+    }
+    
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (count >= buf.length) {
+            flushBuffer();
+        }
+        buf[count++] = (byte) b;
+    }
+    
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len >= buf.length) {
+            // Avoids a pointless copy of big arrays
+            flushBuffer();
+            out.write(b, off, len);
+            return;
+        }
+        if (len > buf.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+    
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+        out.flush();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        try {
+            flushBuffer();
+            out.close();
+        } finally {
+            isClosed = true;
+            clearBuf();
+        }
+    }
+    
+    private void clearBuf() {
+        MemUtils.clearByteArray(buf);
+        buf = new byte[0];
+        count = 0;
+    }
+    
+    /**
+     * Clears the internal buffer from memory, without flushing nor closing the underlying stream.
+     */
+    @Override
+    public void destroy() throws DestroyFailedException {
+        isClosed = true;
+        clearBuf();
+    }
+    
+    @Override
+    public boolean isDestroyed() {
+        return isClosed && buf.length == 0 && count == 0;
+    }
+    
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.FileAttribute;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+public final class FileUtils {
+    
+    private static final FileAttribute<Set<PosixFilePermission>> OWNER_ONLY_DIR_ATTR =
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"));
+    private static final FileAttribute<Set<PosixFilePermission>> OWNER_ONLY_FILE_ATTR =
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------"));
+    
+    private FileUtils() {}
+    
+    public static boolean isPosix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+    
+    /**
+     * Creates dir and its missing parents, only accessible by their owner.
+     * @param dir
+     * @throws IOException
+     */
+    public static void createOwnerOnlyDirectories(Path dir) throws IOException {
+        if (isPosix(dir)) {
+            Files.createDirectories(dir, OWNER_ONLY_DIR_ATTR);
+        } else {
+            Files.createDirectories(dir);
+            restrictToOwner(dir);
+        }
+    }
+    
+    /**
+     * Creates the (not existing) file, only accessible by its owner.
+     * @param file
+     * @throws IOException
+     */
+    public static void createOwnerOnlyFile(Path file) throws IOException {
+        if (isPosix(file)) {
+            Files.createFile(file, OWNER_ONLY_FILE_ATTR);
+        } else {
+            Files.createFile(file);
+            restrictToOwner(file);
+        }
+    }
+    
+    /**
+     * Removes the permissions of the other users on path, with POSIX permissions or an ACL.
+     * @param path
+     * @throws IOException
+     */
+    public static void restrictToOwner(Path path) throws IOException {
+        if (isPosix(path)) {
+            Set<PosixFilePermission> perms = Files.getPosixFilePermissions(path);
+            perms.removeAll(
+                    EnumSet.of(
+                            PosixFilePermission.GROUP_READ,
+                            PosixFilePermission.GROUP_WRITE,
+                            PosixFilePermission.GROUP_EXECUTE,
+                            PosixFilePermission.OTHERS_READ,
+                            PosixFilePermission.OTHERS_WRITE,
+                            PosixFilePermission.OTHERS_EXECUTE
+                    )
+            );
+            Files.setPosixFilePermissions(path, perms);
+            return;
+        }
+        AclFileAttributeView aclView = Files.getFileAttributeView(path, AclFileAttributeView.class);
+        if (aclView != null) {
+            aclView.setAcl(
+                    List.of(
+                            AclEntry.newBuilder()
+                                    .setType(AclEntryType.ALLOW)
+                                    .setPrincipal(aclView.getOwner())
+                                    .setPermissions(EnumSet.allOf(AclEntryPermission.class))
+                                    .build()
+                    )
+            );
+        }
+    }
+    
+}
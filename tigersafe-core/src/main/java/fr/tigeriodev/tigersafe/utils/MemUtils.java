@@ -18,16 +18,31 @@
 
 package fr.tigeriodev.tigersafe.utils;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.DestroyFailedException;
 import javax.security.auth.Destroyable;
 
+import com.sun.management.HotSpotDiagnosticMXBean;
+
 import fr.tigeriodev.tigersafe.logs.Level;
 import fr.tigeriodev.tigersafe.logs.Logger;
 import fr.tigeriodev.tigersafe.logs.Logs;
@@ -36,11 +51,54 @@ public final class MemUtils {
     
     private static final Logger unsafeLog = Logs.newUnsafeLogger(MemUtils.class);
     private static final Logger log = Logs.newLogger(MemUtils.class);
+    private static final Logger unsafeTryClearStringLog =
+            unsafeLog.newChildForMeth("tryClearString");
+    private static final Logger unsafeTryClearStringsLog =
+            unsafeLog.newChildForMeth("tryClearStrings");
+    private static final Logger unsafeTryDestroyLog = unsafeLog.newChildForMeth("tryDestroy");
+    private static final Logger unsafeTryDestroyAllLog = unsafeLog.newChildForMeth("tryDestroyAll");
+    private static final Logger tryClearStringLog = log.newChildForMeth("tryClearString");
+    private static final Logger tryDestroyLog = log.newChildForMeth("tryDestroy");
+    private static final Logger clearHeapLog = log.newChildForMeth("clearHeap");
+    
+    public static final long CLEAR_HEAP_DEFAULT_BUDGET_MILLIS = 5000;
+    /**
+     * Length of the chunks allocated by {@link #clearHeap(long, long, long)} when the G1 region size is unknown.
+     */
+    public static final int CLEAR_HEAP_DEFAULT_CHUNK_LEN = 1024 * 1024;
+    /**
+     * Space left in each G1 region for the header of the chunk which fills it.
+     */
+    private static final int CLEAR_HEAP_CHUNK_HEADER_LEN = 64;
+    private static final int CLEAR_HEAP_MAX_WORKERS_NUM = 4;
+    private static final long CLEAR_HEAP_WORKER_MIN_BYTES = 32L * 1024 * 1024;
     
-    private static final Field strValueF = ReflectionUtils.getField(String.class, "value");
-    private static final Field strHashF = ReflectionUtils.getField(String.class, "hash");
+    private static final VarHandle strValueVH =
+            ReflectionUtils.getVarHandle(String.class, "value", byte[].class);
+    private static final VarHandle strHashVH =
+            ReflectionUtils.getVarHandle(String.class, "hash", int.class);
     private static final Field secretKeyF = ReflectionUtils.getField(SecretKeySpec.class, "key");
     
+    private static final Set<Class<?>> BOXED_PRIMITIVE_CLASSES = Set.of(
+            Boolean.class,
+            Byte.class,
+            Short.class,
+            Character.class,
+            Integer.class,
+            Long.class,
+            Float.class,
+            Double.class
+    );
+    
+    private static final ClassValue<WipePlan> wipePlans = new ClassValue<>() {
+        
+        @Override
+        protected WipePlan computeValue(Class<?> type) {
+            return new WipePlan(type);
+        }
+        
+    };
+    
     private static Field pbkdf2PasswdF = null;
     private static Field pbkdf2SaltF = null;
     private static Field pbkdf2KeyF = null;
@@ -126,6 +184,31 @@ public static void clearCharArray(char[] arr) {
         lastClearedCharArray = arr;
     }
     
+    /**
+     * Clears the whole content of buf (from 0 to its capacity), independently of its position and limit.
+     * Useful for direct buffers, which are not cleared from memory when they are garbage collected.
+     * @param buf a writable buffer
+     */
+    public static void clearByteBuffer(ByteBuffer buf) {
+        int cap = buf.capacity();
+        if (cap == 0) {
+            return;
+        }
+        ByteBuffer wholeBuf = buf.duplicate().clear(); // absolute accesses are bounded by the limit
+        int i = 0;
+        for (; i + Long.BYTES <= cap; i += Long.BYTES) {
+            wholeBuf.putLong(i, 0L);
+        }
+        for (; i < cap; i++) {
+            wholeBuf.put(i, (byte) 0);
+        }
+        
+        // Prevent compiler optimization
+        if (wholeBuf.get(0) + wholeBuf.get(cap - 1) != (byte) 0) {
+            throw new RuntimeException("Unexpected memory clearing issue.");
+        }
+    }
+    
     public static void clearCharMatrix(char[][] matrix) {
         if (matrix.length == 0) {
             return;
@@ -141,27 +224,41 @@ public static boolean tryClearString(String str) {
         if (str == null || str.isEmpty()) { // Prevents clearing interned ""
             return true;
         }
-        
-        Logger unsafeMethLog = unsafeLog.newChildFromCurMethIf(Level.DEBUG);
+        return tryClearString(str, unsafeTryClearStringLog);
+    }
+    
+    /**
+     * Same as {@link #tryClearString(String)} for each string of strs (null strings are ignored), in one pass.
+     * @param strs
+     * @return true if all the strings have been cleared.
+     */
+    public static boolean tryClearStrings(String... strs) {
+        boolean isSuccessful = true;
+        for (String str : strs) {
+            if (str != null && !str.isEmpty()) {
+                isSuccessful = tryClearString(str, unsafeTryClearStringsLog) && isSuccessful;
+            }
+        }
+        return isSuccessful;
+    }
+    
+    private static boolean tryClearString(String str, Logger unsafeMethLog) {
         unsafeMethLog.debug(() -> "str = " + StringUtils.quote(str));
         
         Exception exception = null;
         try {
-            clearByteArray((byte[]) strValueF.get(str));
+            clearByteArray((byte[]) strValueVH.get(str));
+            strHashVH.set(str, 0);
         } catch (
-                ClassCastException | IllegalArgumentException | IllegalAccessException
-                | SecurityException ex
-        ) {
-            exception = ex;
-        }
-        try {
-            strHashF.setInt(str, 0);
-        } catch (IllegalArgumentException | IllegalAccessException | SecurityException ex) {
+                ClassCastException | NullPointerException | UnsupportedOperationException
+                | WrongMethodTypeException ex
+        ) { // NullPointerException if a VarHandle is not available
             exception = ex;
         }
         
         if (exception != null) {
-            log.newChildFromCurMeth().error(() -> "Failed to clear a String: ", exception);
+            final Exception fexception = exception;
+            tryClearStringLog.error(() -> "Failed to clear a String: ", fexception);
             tryClearPrimitives(str, false);
             return false;
         } else {
@@ -170,80 +267,133 @@ public static boolean tryClearString(String str) {
     }
     
     /**
-     * 
+     * Clears the primitives of obj, i.e. its primitive fields and the content of its primitive arrays (the primitives
+     * of the objects of its Object arrays are also cleared), by following the {@link WipePlan} of its class.
+     * NB: Boxed primitives are immutable values potentially shared by other objects, they are not cleared.
      * @param obj
      * @param deeply true to recursively consider primitives of Object fields
      */
     public static boolean tryClearPrimitives(Object obj, boolean deeply) {
-        boolean isSuccessful = true;
-        Class<?> clazz = obj.getClass();
-        while (clazz != null && !Object.class.equals(clazz)) {
-            for (Field field : clazz.getDeclaredFields()) {
-                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
-                    continue;
+        WipePlan plan = wipePlans.get(obj.getClass());
+        boolean isSuccessful = plan.isComplete;
+        try {
+            for (MethodHandle zeroSetter : plan.zeroSetters) {
+                zeroSetter.invokeExact(obj);
+            }
+            for (MethodHandle refGetter : plan.refGetters) {
+                Object val = (Object) refGetter.invokeExact(obj);
+                if (val != null) {
+                    isSuccessful = tryClearPrimitivesOfVal(val, deeply) && isSuccessful;
                 }
-                
-                try {
-                    field.setAccessible(true);
-                    Object val = field.get(obj);
-                    if (val == null) {
+            }
+        } catch (Throwable ex) {
+            log.newChildFromCurMeth()
+                    .error(() -> "Failed to clear a " + obj.getClass().getName() + ": ", ex);
+            isSuccessful = false;
+        }
+        return isSuccessful;
+    }
+    
+    private static boolean tryClearPrimitivesOfVal(Object val, boolean deeply) {
+        Class<? extends Object> valClass = val.getClass();
+        if (valClass == char[].class) {
+            clearCharArray((char[]) val);
+        } else if (valClass == byte[].class) {
+            clearByteArray((byte[]) val);
+        } else if (valClass == int[].class) {
+            Arrays.fill((int[]) val, 0);
+        } else if (valClass == long[].class) {
+            Arrays.fill((long[]) val, 0L);
+        } else if (valClass == short[].class) {
+            Arrays.fill((short[]) val, (short) 0);
+        } else if (valClass == float[].class) {
+            Arrays.fill((float[]) val, 0f);
+        } else if (valClass == double[].class) {
+            Arrays.fill((double[]) val, 0d);
+        } else if (valClass == boolean[].class) {
+            Arrays.fill((boolean[]) val, false);
+        } else if (valClass.isArray()) {
+            boolean isSuccessful = true;
+            for (Object item : (Object[]) val) {
+                if (item != null) {
+                    isSuccessful = (item.getClass().isArray()
+                            ? tryClearPrimitivesOfVal(item, deeply)
+                            : tryClearPrimitives(item, deeply)) && isSuccessful;
+                }
+            }
+            return isSuccessful;
+        } else if (deeply && !BOXED_PRIMITIVE_CLASSES.contains(valClass)) {
+            return tryClearPrimitives(val, deeply);
+        }
+        return true;
+    }
+    
+    /**
+     * Method handles for clearing the instances of a class, built once from the declared fields of the class and of
+     * its superclasses (instead of looking them up reflectively at each clearing).
+     */
+    private static final class WipePlan {
+        
+        /**
+         * Setters of the zero value of the primitive fields, of type (Object)void.
+         */
+        final MethodHandle[] zeroSetters;
+        /**
+         * Getters of the Object fields, of type (Object)Object.
+         */
+        final MethodHandle[] refGetters;
+        /**
+         * False if some fields are not accessible, and will therefore not be cleared.
+         */
+        final boolean isComplete;
+        
+        WipePlan(Class<?> clazz) {
+            List<MethodHandle> zeroSetterList = new ArrayList<>();
+            List<MethodHandle> refGetterList = new ArrayList<>();
+            boolean isComplete = true;
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            for (Class<?> c = clazz; c != null && !Object.class.equals(c); c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
                         continue;
                     }
-                    Class<? extends Object> valClass = val.getClass();
-                    if (valClass == char[].class) {
-                        clearCharArray((char[]) val);
-                    } else if (valClass == byte[].class) {
-                        clearByteArray((byte[]) val);
-                    } else if (valClass == Integer.class) {
-                        field.setInt(obj, 0);
-                    } else if (valClass == Long.class) {
-                        field.setLong(obj, 0L);
-                    } else if (valClass == Byte.class) {
-                        field.setByte(obj, (byte) 0);
-                    } else if (valClass == Short.class) {
-                        field.setShort(obj, (short) 0);
-                    } else if (valClass == Float.class) {
-                        field.setFloat(obj, 0f);
-                    } else if (valClass == Double.class) {
-                        field.setDouble(obj, 0d);
-                    } else if (valClass == Character.class) {
-                        field.setChar(obj, (char) 0);
-                    } else if (valClass == Boolean.class) {
-                        field.setBoolean(obj, false);
-                    } else if (valClass == int[].class) {
-                        Arrays.fill((int[]) val, 0);
-                    } else if (valClass == long[].class) {
-                        Arrays.fill((long[]) val, 0L);
-                    } else if (valClass == short[].class) {
-                        Arrays.fill((short[]) val, (short) 0);
-                    } else if (valClass == float[].class) {
-                        Arrays.fill((float[]) val, 0f);
-                    } else if (valClass == double[].class) {
-                        Arrays.fill((double[]) val, 0d);
-                    } else if (valClass == boolean[].class) {
-                        Arrays.fill((boolean[]) val, false);
-                    } else if (valClass.isArray()) {
-                        Object[] valAsArray = (Object[]) val;
-                        for (int i = 0; i < valAsArray.length; i++) {
-                            if (!tryClearPrimitives(valAsArray[i], deeply)) {
-                                isSuccessful = false;
-                                break;
-                            }
+                    
+                    try {
+                        field.setAccessible(true);
+                        Class<?> fieldType = field.getType();
+                        if (fieldType.isPrimitive()) {
+                            zeroSetterList.add(
+                                    MethodHandles
+                                            .collectArguments(
+                                                    lookup.unreflectSetter(field),
+                                                    1,
+                                                    MethodHandles.zero(fieldType)
+                                            )
+                                            .asType(MethodType.methodType(void.class, Object.class))
+                            );
+                        } else {
+                            refGetterList.add(
+                                    lookup.unreflectGetter(field)
+                                            .asType(
+                                                    MethodType.methodType(
+                                                            Object.class,
+                                                            Object.class
+                                                    )
+                                            )
+                            );
                         }
-                    } else if (deeply) {
-                        isSuccessful = tryClearPrimitives(val, deeply) && isSuccessful;
+                    } catch (IllegalAccessException | RuntimeException ex) { // e.g. InaccessibleObjectException
+                        log.newChildFromCurMeth()
+                                .error(() -> "Inaccessible field to clear: " + field, ex);
+                        isComplete = false;
                     }
-                } catch (
-                        IllegalArgumentException | IllegalAccessException | SecurityException
-                        | ExceptionInInitializerError ex
-                ) {
-                    ex.printStackTrace();
-                    isSuccessful = false;
                 }
             }
-            clazz = clazz.getSuperclass();
+            this.zeroSetters = zeroSetterList.toArray(new MethodHandle[0]);
+            this.refGetters = refGetterList.toArray(new MethodHandle[0]);
+            this.isComplete = isComplete;
         }
-        return isSuccessful;
+        
     }
     
     public static boolean tryDestroyPBKDF2Key(SecretKey key) {
@@ -342,7 +492,7 @@ public static boolean tryDestroyKey(SecretKey key) {
     }
     
     public static boolean isKeyDestroyed(SecretKey key) {
-        if (key == null) {
+        if (key == null || key.isDestroyed()) {
             return true;
         }
         byte[] keyBytes = key.getEncoded(); // usually a clone
@@ -363,85 +513,312 @@ public static boolean isKeyDestroyed(SecretKey key) {
     }
     
     public static boolean tryDestroy(Destroyable obj) {
+        return tryDestroy(obj, unsafeTryDestroyLog);
+    }
+    
+    /**
+     * Same as {@link #tryDestroy(Destroyable)} for each object of objs (null objects are ignored), in one pass.
+     * @param objs
+     * @return true if all the objects have been destroyed.
+     */
+    public static boolean tryDestroyAll(Iterable<? extends Destroyable> objs) {
+        boolean isSuccessful = true;
+        for (Destroyable obj : objs) {
+            if (obj != null) {
+                isSuccessful = tryDestroy(obj, unsafeTryDestroyAllLog) && isSuccessful;
+            }
+        }
+        return isSuccessful;
+    }
+    
+    /**
+     * Same as {@link #tryDestroyAll(Iterable)} for an array.
+     */
+    public static boolean tryDestroyAll(Destroyable[] objs) {
+        return tryDestroyAll(Arrays.asList(objs));
+    }
+    
+    private static boolean tryDestroy(Destroyable obj, Logger unsafeMethLog) {
         try {
-            unsafeLog.newChildFromCurMethIf(Level.DEBUG)
-                    .debug(() -> "obj = " + StringUtils.getSafeObjName(obj));
+            unsafeMethLog.debug(() -> "obj = " + StringUtils.getSafeObjName(obj));
             obj.destroy();
             return true;
         } catch (DestroyFailedException ex) {
-            log.newChildFromCurMeth()
-                    .error(() -> "Failed to destroy: " + StringUtils.getSafeObjName(obj), ex);
+            tryDestroyLog.error(() -> "Failed to destroy: " + StringUtils.getSafeObjName(obj), ex);
             return false;
         }
     }
     
-    public static void clearHeap(int margin) {
+    /**
+     * Result of a {@link #clearHeap(long, long, long)} call.
+     */
+    public static final class ClearHeapReport {
+        
+        private final long targetBytesNum;
+        private final long scrubbedBytesNum;
+        private final int chunksNum;
+        private final long gcsNum;
+        private final long elapsedNanos;
+        private final boolean isBudgetExceeded;
+        
+        ClearHeapReport(long targetBytesNum, long scrubbedBytesNum, int chunksNum, long gcsNum,
+                long elapsedNanos, boolean isBudgetExceeded) {
+            this.targetBytesNum = targetBytesNum;
+            this.scrubbedBytesNum = scrubbedBytesNum;
+            this.chunksNum = chunksNum;
+            this.gcsNum = gcsNum;
+            this.elapsedNanos = elapsedNanos;
+            this.isBudgetExceeded = isBudgetExceeded;
+        }
+        
+        /**
+         * @return the amount of free heap memory (minus the margin) to scrub, bounded by the bytes budget.
+         */
+        public long getTargetBytesNum() {
+            return targetBytesNum;
+        }
+        
+        public long getScrubbedBytesNum() {
+            return scrubbedBytesNum;
+        }
+        
+        public int getChunksNum() {
+            return chunksNum;
+        }
+        
+        /**
+         * @return the number of garbage collections which happened during the scrub (including the initial one), or -1 if unknown.
+         */
+        public long getGCsNum() {
+            return gcsNum;
+        }
+        
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+        
+        /**
+         * @return true if the time budget was exceeded before the target was reached.
+         */
+        public boolean isBudgetExceeded() {
+            return isBudgetExceeded;
+        }
+        
+        /**
+         * @return true if the whole target has been scrubbed.
+         */
+        public boolean isComplete() {
+            return scrubbedBytesNum >= targetBytesNum;
+        }
+        
+        @Override
+        public String toString() {
+            return "scrubbed " + formatBytesNum(scrubbedBytesNum) + " / "
+                    + formatBytesNum(targetBytesNum) + " in " + chunksNum + " chunks, "
+                    + gcsNum + " GCs, " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms"
+                    + (isBudgetExceeded ? " (time budget exceeded)" : "");
+        }
+        
+    }
+    
+    /**
+     * Same as {@link #clearHeap(long, long, long)} without bytes budget and with {@link #CLEAR_HEAP_DEFAULT_BUDGET_MILLIS}.
+     */
+    public static ClearHeapReport clearHeap(long marginBytes) {
+        return clearHeap(marginBytes, Long.MAX_VALUE, CLEAR_HEAP_DEFAULT_BUDGET_MILLIS);
+    }
+    
+    /**
+     * Overwrites the free heap memory (where copies of sensitive data may remain after garbage collections),
+     * by allocating (thus zeroing) chunks of {@link #getClearHeapChunkLen()} bytes in parallel, until the free
+     * memory (minus marginBytes) is covered, then releasing them.
+     * NB: An OutOfMemoryError (e.g. margin too small) stops the scrub, the report is then incomplete.
+     * @param marginBytes the amount of free memory which is not scrubbed, in order to avoid an OutOfMemoryError in other threads
+     * @param maxBytes the bytes budget
+     * @param budgetMillis the time budget, after which the scrub is stopped even if incomplete
+     * @return the report of the scrub.
+     */
+    public static ClearHeapReport clearHeap(long marginBytes, long maxBytes, long budgetMillis) {
+        CheckUtils.positive(marginBytes);
+        CheckUtils.positive(maxBytes);
+        CheckUtils.positive(budgetMillis);
+        long startTime = System.nanoTime();
+        long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        long initGCsNum = getGCsNum();
+        
         lastClearedCharArray = null;
         lastClearedIntArray = null;
         lastClearedFloatArray = null;
         
         Runtime runtime = Runtime.getRuntime();
+        runtime.gc(); // Free unused memory
+        clearHeapLog.debug(() -> "after GC: " + getMemDebug());
         
-        // Free unused memory
-        runtime.runFinalization();
-        runtime.gc();
-        runtime.gc();
-        runtime.runFinalization();
-        runtime.gc();
-        runtime.gc();
-        runtime.runFinalization();
-        Logger methLog = log.newChildFromCurMethIf(Level.DEBUG);
-        methLog.debug(() -> "after GC: " + getMemDebug());
-        
-        int freeMem; // memory that the JVM has eventually used
-        try {
-            freeMem = Math.toIntExact(runtime.freeMemory());
-        } catch (ArithmeticException overflowEx) {
-            freeMem = Integer.MAX_VALUE; // accept not clearing all memory when it is too big.
+        int chunkLen = getClearHeapChunkLen();
+        long targetBytesNum = Math.min(Math.max(0, runtime.freeMemory() - marginBytes), maxBytes);
+        targetBytesNum -= targetBytesNum % chunkLen; // a last partial chunk could exceed the margin
+        AtomicLong remainingBytesNum = new AtomicLong(targetBytesNum);
+        int workersNum = (int) Math.min(
+                Math.min(runtime.availableProcessors(), CLEAR_HEAP_MAX_WORKERS_NUM),
+                Math.max(1, targetBytesNum / CLEAR_HEAP_WORKER_MIN_BYTES)
+        );
+        ClearHeapWorker[] workers = new ClearHeapWorker[workersNum];
+        Thread[] threads = new Thread[workersNum - 1];
+        int workerMaxChunksNum = (int) (targetBytesNum / chunkLen / workersNum) + 1;
+        for (int i = 0; i < workersNum; i++) {
+            workers[i] =
+                    new ClearHeapWorker(remainingBytesNum, chunkLen, workerMaxChunksNum, deadline);
+        }
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(workers[i + 1], "tigersafe-clear-heap-" + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        workers[0].run();
+        boolean isInterrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException ex) {
+                    isInterrupted = true;
+                }
+            }
         }
         
-        int marginCoef = 1;
-        int eraserSize = freeMem - margin;
+        long scrubbedBytesNum = 0;
+        int chunksNum = 0;
+        boolean isBudgetExceeded = false;
+        for (ClearHeapWorker worker : workers) {
+            worker.checkChunks();
+            scrubbedBytesNum += (long) worker.chunks.size() * chunkLen;
+            chunksNum += worker.chunks.size();
+            isBudgetExceeded |= worker.isBudgetExceeded;
+            worker.chunks.clear();
+        }
+        lastClearedByteArray = null;
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
         
-        byte[] eraser = null;
-        while (eraserSize > 100) {
-            try {
-                eraser = new byte[eraserSize];
-                final int feraserLen = eraser.length;
-                methLog.debug(() -> "cleared " + formatBytesNum(feraserLen));
-                break;
-            } catch (OutOfMemoryError memErr) {
-                final int feraserSize = eraserSize;
-                methLog.warn(() -> "OutOfMemory with eraserSize = " + feraserSize);
-                if (marginCoef < 3) {
-                    eraserSize -= margin;
-                    marginCoef++;
-                } else {
-                    eraserSize >>= 1;
+        ClearHeapReport report = new ClearHeapReport(
+                targetBytesNum,
+                scrubbedBytesNum,
+                chunksNum,
+                initGCsNum < 0 ? -1 : getGCsNum() - initGCsNum,
+                System.nanoTime() - startTime,
+                isBudgetExceeded
+        );
+        if (report.isComplete()) {
+            clearHeapLog.debug(() -> report.toString());
+        } else {
+            clearHeapLog.warn(() -> "Incomplete heap clearing: " + report);
+        }
+        return report;
+    }
+    
+    private static final class ClearHeapWorker implements Runnable {
+        
+        final AtomicLong remainingBytesNum;
+        final int chunkLen;
+        final long deadline;
+        /**
+         * Sized beforehand, so that no allocation other than chunks happens near the memory limit.
+         */
+        final List<byte[]> chunks;
+        boolean isBudgetExceeded = false;
+        
+        ClearHeapWorker(AtomicLong remainingBytesNum, int chunkLen, int maxChunksNum,
+                long deadline) {
+            this.remainingBytesNum = remainingBytesNum;
+            this.chunkLen = chunkLen;
+            this.chunks = new ArrayList<>(maxChunksNum);
+            this.deadline = deadline;
+        }
+        
+        @Override
+        public void run() {
+            while (remainingBytesNum.getAndAdd(-chunkLen) > 0) {
+                if (System.nanoTime() - deadline >= 0) {
+                    isBudgetExceeded = true;
+                    return;
+                }
+                try {
+                    chunks.add(new byte[chunkLen]);
+                } catch (OutOfMemoryError memErr) {
+                    return; // the margin was too small, the remaining memory is left as is
                 }
             }
         }
         
-        if (eraser == null) {
-            throw new RuntimeException("The heap memory could not be cleared.");
+        /**
+         * Prevents compiler optimization.
+         */
+        void checkChunks() {
+            for (int i = 0; i < chunks.size(); i++) { // no iterator allocation
+                byte[] chunk = chunks.get(i);
+                if (
+                    chunk.length != chunkLen
+                            || chunk[7] + chunk[8] + chunk[chunk.length - 1] != (byte) 0
+                ) {
+                    throw new RuntimeException("Unexpected memory clearing issue.");
+                }
+            }
         }
         
-        // Prevent compiler optimization
-        if (eraser.length > 2) {
-            eraser[1] = eraser[0];
-        }
-        if (
-            eraser.length != eraserSize
-                    || (freeMem > 8
-                            && eraser[7] + eraser[8] + eraser[eraser.length - 1] != (byte) 0)
-                    || (lastClearedByteArray != null
-                            && lastClearedByteArray.length > 0
-                            && (lastClearedByteArray[0] & eraser[0]) < 0)
-        ) {
-            throw new RuntimeException("Unexpected memory clearing issue.");
+    }
+    
+    /**
+     * With G1, a chunk fills a whole region (minus {@link #CLEAR_HEAP_CHUNK_HEADER_LEN}), so that it is
+     * allocated as a humongous object directly in a free region, which is neither limited by the young
+     * generation sizing nor copied by the young collections.
+     * @return the length of the chunks allocated by {@link #clearHeap(long, long, long)}.
+     */
+    public static int getClearHeapChunkLen() {
+        return ClearHeapChunk.LEN;
+    }
+    
+    private static final class ClearHeapChunk {
+        
+        static final int LEN = computeLen();
+        
+        private static int computeLen() {
+            try {
+                HotSpotDiagnosticMXBean diagBean =
+                        ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+                if (
+                    diagBean != null
+                            && Boolean.parseBoolean(diagBean.getVMOption("UseG1GC").getValue())
+                ) {
+                    int regionSize =
+                            Integer.parseInt(diagBean.getVMOption("G1HeapRegionSize").getValue());
+                    if (regionSize > 2 * CLEAR_HEAP_CHUNK_HEADER_LEN) {
+                        return regionSize - CLEAR_HEAP_CHUNK_HEADER_LEN;
+                    }
+                }
+            } catch (RuntimeException ex) {
+                log.newChildFromCurMethIf(Level.DEBUG)
+                        .debug(() -> "failed to get G1 region size", ex);
+            }
+            return CLEAR_HEAP_DEFAULT_CHUNK_LEN;
         }
         
-        lastClearedByteArray = null;
+    }
+    
+    /**
+     * @return the total number of garbage collections since the start of the JVM, or -1 if unknown.
+     */
+    private static long getGCsNum() {
+        long res = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long count = gcBean.getCollectionCount();
+            if (count < 0) {
+                return -1;
+            }
+            res += count;
+        }
+        return res;
     }
     
     public static String getMemDebug() {
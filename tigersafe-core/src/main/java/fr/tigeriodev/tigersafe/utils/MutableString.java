@@ -18,6 +18,9 @@
 
 package fr.tigeriodev.tigersafe.utils;
 
+import java.util.Arrays;
+import java.util.function.Consumer;
+
 import javax.security.auth.DestroyFailedException;
 import javax.security.auth.Destroyable;
 
@@ -26,11 +29,27 @@ public abstract class MutableString implements Destroyable {
     private MutableString() {}
     
     /**
+     * NB: {@link Secured} returns a scratch copy instead, which should be cleared after use.
      * @return the real value (not a duplicate)
      * @NotNull
      */
     public abstract char[] getVal();
     
+    /**
+     * @return a copy of the value, which should be cleared after use.
+     * @NotNull
+     */
+    public char[] copyVal() {
+        return getVal().clone();
+    }
+    
+    /**
+     * @return the number of chars of the value, without reading it.
+     */
+    public int length() {
+        return getVal().length;
+    }
+    
     public void addChars(char[] src) {
         int initLen = getVal().length;
         resize(initLen + src.length);
@@ -121,7 +140,26 @@ public void resize(int newSize) {
     }
     
     public boolean isEmpty() {
-        return getVal().length == 0;
+        return length() == 0;
+    }
+    
+    /**
+     * @param other
+     * @return true if other has the same value as this one, compared without any copy if both are
+     * {@link Secured}.
+     */
+    public boolean hasSameVal(MutableString other) {
+        if (length() != other.length()) {
+            return false;
+        }
+        char[] val = copyVal();
+        char[] otherVal = other.copyVal();
+        try {
+            return Arrays.equals(val, otherVal);
+        } finally {
+            MemUtils.clearCharArray(val);
+            MemUtils.clearCharArray(otherVal);
+        }
     }
     
     @Override
@@ -237,4 +275,133 @@ public void resize(int newSize) {
         
     }
     
+    /**
+     * Value stored in the {@link SecretArena}, replaced by a new secret at each change (the previous one being
+     * destroyed), so that the value is never kept in the heap. An empty value holds no secret.
+     * {@link #getVal()} returns a scratch copy, which should be cleared after use.
+     * Each change is applied on a short-lived scratch copy, cleared right after.
+     */
+    public static final class Secured extends MutableString {
+        
+        /**
+         * null if empty.
+         */
+        private SecretArena.Secret val = null;
+        
+        /**
+         * @param initValSrc copied, not modified, it should be cleared by the caller if it is no longer needed
+         */
+        public Secured(char[] initValSrc) {
+            setChars(initValSrc);
+        }
+        
+        public Secured() {}
+        
+        /**
+         * @return a scratch copy of the value, which should be cleared after use.
+         */
+        @Override
+        public char[] getVal() {
+            return val != null ? val.readChars() : new char[0];
+        }
+        
+        @Override
+        public char[] copyVal() {
+            return getVal(); // already a scratch copy
+        }
+        
+        @Override
+        public int length() {
+            return val != null ? val.getCharsNum() : 0;
+        }
+        
+        @Override
+        public boolean hasSameVal(MutableString other) {
+            if (!(other instanceof Secured)) {
+                return super.hasSameVal(other);
+            }
+            SecretArena.Secret otherVal = ((Secured) other).val;
+            return val == null || otherVal == null ? val == otherVal : val.contentEquals(otherVal);
+        }
+        
+        /**
+         * Applies change on a scratch copy of the value, then stores the result in a new secret.
+         * @param change
+         */
+        private void edit(Consumer<MutableString> change) {
+            char[] initVal = getVal();
+            MutableString scratch = new Simple(initVal);
+            MemUtils.clearCharArray(initVal);
+            try {
+                change.accept(scratch);
+                SecretArena.Secret newVal =
+                        !scratch.isEmpty() ? SecretArena.newSecret(scratch.getVal()) : null;
+                if (val != null) {
+                    MemUtils.tryDestroy(val);
+                }
+                val = newVal;
+            } finally {
+                scratch.clear();
+            }
+        }
+        
+        @Override
+        public void addChars(char[] src) {
+            edit(scratch -> scratch.addChars(src));
+        }
+        
+        @Override
+        public void addChars(String src) {
+            edit(scratch -> scratch.addChars(src));
+        }
+        
+        @Override
+        public void addChar(char c) {
+            edit(scratch -> scratch.addChar(c));
+        }
+        
+        @Override
+        public void insertChars(int startInd, char[] src) {
+            edit(scratch -> scratch.insertChars(startInd, src));
+        }
+        
+        @Override
+        public void remLastChar() {
+            if (isEmpty()) {
+                return;
+            }
+            edit(MutableString::remLastChar);
+        }
+        
+        @Override
+        public void remChars(int startInd, int endInd) {
+            edit(scratch -> scratch.remChars(startInd, endInd));
+        }
+        
+        @Override
+        public void setChars(String src) {
+            edit(scratch -> scratch.setChars(src));
+        }
+        
+        @Override
+        public void setChars(char[] src) {
+            edit(scratch -> scratch.setChars(src));
+        }
+        
+        @Override
+        public void resize(int newSize) {
+            CheckUtils.positive(newSize);
+            if (newSize == length()) {
+                return;
+            }
+            edit(scratch -> scratch.resize(newSize));
+        }
+        
+        @Override
+        protected void newValHolder(int size) {
+            throw new UnsupportedOperationException(); // resize() is overridden
+        }
+        
+    }
+    
 }
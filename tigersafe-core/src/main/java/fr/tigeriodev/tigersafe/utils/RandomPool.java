@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.utils;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.tigeriodev.tigersafe.logs.Level;
+import fr.tigeriodev.tigersafe.logs.Logger;
+import fr.tigeriodev.tigersafe.logs.Logs;
+
+/**
+ * Managed source of secure random values.
+ * Each thread has its own DRBG (NIST SP 800-90Ar1, 256 bits of security strength), seeded by the
+ * strong entropy source of the platform, reseeded after {@link #RESEED_INTERVAL_BYTES} generated bytes
+ * or {@link #RESEED_INTERVAL_NANOS}, whichever comes first.
+ * Small requests (noise, IVs, salts, small numbers) are served from a per-thread batch of pre-generated
+ * bytes, which are cleared from memory as soon as they are consumed.
+ * The sources of all the threads are tracked (weakly, until their thread dies), so that
+ * {@link #clearBuffers()} clears all the batches.
+ */
+public final class RandomPool {
+    
+    private static final Logger log = Logs.newLogger(RandomPool.class);
+    
+    public static final int BATCH_SIZE = 256;
+    public static final long RESEED_INTERVAL_BYTES = 1L << 20;
+    public static final long RESEED_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(10);
+    
+    private static final ThreadLocal<Source> sources = new ThreadLocal<>();
+    /**
+     * Sources of all the threads, synchronized on itself.
+     */
+    private static final Set<Source> allSources = Collections.newSetFromMap(new WeakHashMap<>());
+    
+    private static final AtomicLong callsNum = new AtomicLong();
+    private static final AtomicLong bytesNum = new AtomicLong();
+    private static final AtomicLong batchRefillsNum = new AtomicLong();
+    private static final AtomicLong reseedsNum = new AtomicLong();
+    private static final AtomicLong instantiationsNum = new AtomicLong();
+    
+    private RandomPool() {}
+    
+    /**
+     * Methods touching batch are synchronized, as {@link #clear()} can be called by another thread.
+     */
+    private static final class Source {
+        
+        final SecureRandom drbg;
+        final byte[] batch = new byte[BATCH_SIZE];
+        int batchInd = BATCH_SIZE;
+        long bytesSinceReseed = 0;
+        long lastReseedTime;
+        
+        Source() throws NoSuchAlgorithmException {
+            drbg = SecureRandom.getInstance(
+                    "DRBG",
+                    DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null)
+            );
+            lastReseedTime = System.nanoTime();
+            instantiationsNum.incrementAndGet();
+        }
+        
+        synchronized void generate(byte[] dest, int off, int len) {
+            if (
+                bytesSinceReseed >= RESEED_INTERVAL_BYTES
+                        || System.nanoTime() - lastReseedTime >= RESEED_INTERVAL_NANOS
+            ) {
+                drbg.reseed();
+                bytesSinceReseed = 0;
+                lastReseedTime = System.nanoTime();
+                reseedsNum.incrementAndGet();
+            }
+            if (off == 0 && len == dest.length) {
+                drbg.nextBytes(dest);
+            } else {
+                byte[] tmp = new byte[len];
+                drbg.nextBytes(tmp);
+                System.arraycopy(tmp, 0, dest, off, len);
+                MemUtils.clearByteArray(tmp);
+            }
+            bytesSinceReseed += len;
+        }
+        
+        synchronized void take(byte[] dest, int off, int len) {
+            ensureAvail(len);
+            System.arraycopy(batch, batchInd, dest, off, len);
+            Arrays.fill(batch, batchInd, batchInd + len, (byte) 0);
+            batchInd += len;
+        }
+        
+        synchronized byte takeByte() {
+            ensureAvail(1);
+            byte res = batch[batchInd];
+            batch[batchInd++] = 0;
+            return res;
+        }
+        
+        synchronized int takeInt() {
+            ensureAvail(Integer.BYTES);
+            int res = (batch[batchInd] & 0xff) << 24;
+            res |= (batch[batchInd + 1] & 0xff) << 16;
+            res |= (batch[batchInd + 2] & 0xff) << 8;
+            res |= batch[batchInd + 3] & 0xff;
+            Arrays.fill(batch, batchInd, batchInd + Integer.BYTES, (byte) 0);
+            batchInd += Integer.BYTES;
+            return res;
+        }
+        
+        /**
+         * Ensures that at least len bytes are available in batch from batchInd.
+         * NB: The remaining bytes of a refilled batch are discarded, a batch is always consumed in order.
+         * @param len
+         */
+        private void ensureAvail(int len) {
+            if (BATCH_SIZE - batchInd < len) {
+                generate(batch, 0, BATCH_SIZE);
+                batchInd = 0;
+                batchRefillsNum.incrementAndGet();
+            }
+        }
+        
+        synchronized void clear() {
+            MemUtils.clearByteArray(batch);
+            batchInd = BATCH_SIZE;
+        }
+        
+    }
+    
+    private static Source getSource() throws NoSuchAlgorithmException {
+        Source res = sources.get();
+        if (res == null) {
+            res = new Source();
+            sources.set(res);
+            synchronized (allSources) {
+                allSources.add(res);
+            }
+            log.newChildFromCurMethIf(Level.DEBUG)
+                    .debug(() -> "new DRBG for thread " + Thread.currentThread().getName());
+        }
+        return res;
+    }
+    
+    /**
+     * @return the DRBG of the current thread, e.g. for {@link javax.crypto.KeyGenerator#init(int, SecureRandom)}.
+     * It must not be shared with other threads.
+     * @throws NoSuchAlgorithmException
+     */
+    public static SecureRandom getSecureRandom() throws NoSuchAlgorithmException {
+        callsNum.incrementAndGet();
+        return getSource().drbg;
+    }
+    
+    public static void nextBytes(byte[] dest) throws NoSuchAlgorithmException {
+        nextBytes(dest, 0, dest.length);
+    }
+    
+    public static void nextBytes(byte[] dest, int off, int len) throws NoSuchAlgorithmException {
+        Objects.checkFromIndexSize(off, len, dest.length);
+        callsNum.incrementAndGet();
+        bytesNum.addAndGet(len);
+        Source source = getSource();
+        if (len <= BATCH_SIZE) {
+            source.take(dest, off, len);
+        } else {
+            source.generate(dest, off, len);
+        }
+    }
+    
+    /**
+     * Same distribution as {@link java.util.Random#nextInt(int)}.
+     * @param bound strictly positive
+     * @return a random int between 0 (inclusive) and bound (exclusive).
+     * @throws NoSuchAlgorithmException
+     */
+    public static int nextInt(int bound) throws NoSuchAlgorithmException {
+        CheckUtils.strictlyPositive(bound);
+        callsNum.incrementAndGet();
+        bytesNum.addAndGet(Integer.BYTES);
+        Source source = getSource();
+        int r = source.takeInt() >>> 1;
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        for (int u = r; u - (r = u % bound) + m < 0; u = source.takeInt() >>> 1) {
+            bytesNum.addAndGet(Integer.BYTES);
+        }
+        return r;
+    }
+    
+    public static boolean nextBoolean() throws NoSuchAlgorithmException {
+        callsNum.incrementAndGet();
+        bytesNum.incrementAndGet();
+        return (getSource().takeByte() & 1) != 0;
+    }
+    
+    /**
+     * Clears the not yet consumed batches of all the threads from memory.
+     */
+    public static void clearBuffers() {
+        List<Source> curSources;
+        synchronized (allSources) {
+            curSources = new ArrayList<>(allSources);
+        }
+        for (Source source : curSources) {
+            source.clear();
+        }
+    }
+    
+    public static long getCallsNum() {
+        return callsNum.get();
+    }
+    
+    public static long getBytesNum() {
+        return bytesNum.get();
+    }
+    
+    public static long getBatchRefillsNum() {
+        return batchRefillsNum.get();
+    }
+    
+    public static long getReseedsNum() {
+        return reseedsNum.get();
+    }
+    
+    public static long getInstantiationsNum() {
+        return instantiationsNum.get();
+    }
+    
+    public static String getStatsDebug() {
+        return "calls = " + getCallsNum() + ", bytes = " + getBytesNum() + ", batchRefills = "
+                + getBatchRefillsNum() + ", reseeds = " + getReseedsNum() + ", instantiations = "
+                + getInstantiationsNum();
+    }
+    
+}
@@ -19,7 +19,6 @@
 package fr.tigeriodev.tigersafe.utils;
 
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 
 public final class RandomUtils {
     
@@ -29,10 +28,9 @@ public static char[] newRandomChars(int minLen, int maxLen, String alphabet)
             throws NoSuchAlgorithmException {
         int len = newRandomInt(minLen, maxLen);
         char[] res = new char[len];
-        SecureRandom rand = SecureRandom.getInstanceStrong();
         int alphabetLen = alphabet.length();
         for (int i = 0; i < len; i++) {
-            res[i] = alphabet.charAt(rand.nextInt(alphabetLen));
+            res[i] = alphabet.charAt(RandomPool.nextInt(alphabetLen));
         }
         return res;
     }
@@ -52,7 +50,7 @@ public static int newRandomInt(int min, int max) throws NoSuchAlgorithmException
         if (min > max) {
             throw new IllegalArgumentException("Min " + min + " > max " + max);
         }
-        return min + SecureRandom.getInstanceStrong().nextInt(max - min + 1);
+        return min + RandomPool.nextInt(max - min + 1);
     }
     
     public static byte[] newRandomBytes(int minLen, int maxLen) throws NoSuchAlgorithmException {
@@ -61,12 +59,12 @@ public static byte[] newRandomBytes(int minLen, int maxLen) throws NoSuchAlgorit
     
     public static byte[] newRandomBytesOfLen(int len) throws NoSuchAlgorithmException {
         byte[] res = new byte[len];
-        SecureRandom.getInstanceStrong().nextBytes(res);
+        RandomPool.nextBytes(res);
         return res;
     }
     
     public static boolean newRandomBoolean() throws NoSuchAlgorithmException {
-        return SecureRandom.getInstanceStrong().nextBoolean();
+        return RandomPool.nextBoolean();
     }
     
 }
@@ -18,6 +18,8 @@
 
 package fr.tigeriodev.tigersafe.utils;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 
@@ -46,6 +48,28 @@ public static final Field getField(Class<?> clazz, String fieldName) {
         }
     }
     
+    /**
+     * The package of clazz must be open to this module.
+     * @param clazz
+     * @param fieldName
+     * @param fieldType
+     * @return a VarHandle of the (private) instance field, or null if not found.
+     */
+    public static VarHandle getVarHandle(Class<?> clazz, String fieldName, Class<?> fieldType) {
+        try {
+            return MethodHandles.privateLookupIn(clazz, MethodHandles.lookup())
+                    .findVarHandle(clazz, fieldName, fieldType);
+        } catch (NoSuchFieldException | IllegalAccessException ex) {
+            log.newChildFromCurMeth()
+                    .error(
+                            () -> "\"" + fieldName + "\" field not accessible in "
+                                    + clazz.getCanonicalName() + ": ",
+                            ex
+                    );
+            return null;
+        }
+    }
+    
     public static Method getMeth(Class<?> clazz, String methName, Class<?>... paramsType) {
         try {
             Method res = clazz.getDeclaredMethod(methName, paramsType);
@@ -0,0 +1,432 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+
+import javax.crypto.SecretKey;
+import javax.security.auth.DestroyFailedException;
+import javax.security.auth.Destroyable;
+
+import fr.tigeriodev.tigersafe.logs.Level;
+import fr.tigeriodev.tigersafe.logs.Logger;
+import fr.tigeriodev.tigersafe.logs.Logs;
+
+/**
+ * Storage of secrets (passwords, keys) outside of the Java heap, in direct memory chunks divided in
+ * blocks of {@link #BLOCK_LEN} bytes.
+ * Unlike heap arrays, the content of a {@link Secret} is never copied by the garbage collector, and it
+ * is wiped from memory as soon as the secret is destroyed, so that only the short-lived scratch arrays
+ * returned by the accessors (which should be cleared by the caller right after use) can leave copies
+ * in the heap.
+ * The secrets can also be compared, duplicated and used as keys (see {@link #newSecretKey(Secret, String)})
+ * without any scratch array.
+ */
+public final class SecretArena {
+    
+    private static final Logger log = Logs.newLogger(SecretArena.class);
+    
+    public static final int BLOCK_LEN = 32;
+    public static final int CHUNK_LEN = 64 * 1024;
+    
+    private static final List<Chunk> chunks = new ArrayList<>();
+    private static int secretsNum = 0;
+    private static long allocatedBytesNum = 0;
+    private static long allocationsNum = 0;
+    
+    private SecretArena() {}
+    
+    private static final class Chunk {
+        
+        final ByteBuffer buf;
+        final int blocksNum;
+        /**
+         * Blocks which are currently used by a secret.
+         */
+        final BitSet usedBlocks;
+        
+        Chunk(int blocksNum) {
+            this.blocksNum = blocksNum;
+            this.buf = ByteBuffer.allocateDirect(blocksNum * BLOCK_LEN);
+            this.usedBlocks = new BitSet(blocksNum);
+        }
+        
+        /**
+         * First-fit allocation.
+         * @param len the number of blocks
+         * @return the index of the first allocated block, or -1 if there are not len contiguous free blocks.
+         */
+        int allocate(int len) {
+            int start = usedBlocks.nextClearBit(0);
+            while (start + len <= blocksNum) {
+                int end = usedBlocks.nextSetBit(start);
+                if (end < 0) {
+                    end = blocksNum;
+                }
+                if (end - start >= len) {
+                    usedBlocks.set(start, start + len);
+                    return start;
+                }
+                start = usedBlocks.nextClearBit(end);
+            }
+            return -1;
+        }
+        
+        void free(int startBlock, int len) {
+            int off = startBlock * BLOCK_LEN;
+            zero(off, off + len * BLOCK_LEN);
+            usedBlocks.clear(startBlock, startBlock + len);
+        }
+        
+        /**
+         * Zeroes all the blocks, without freeing them.
+         */
+        void wipe() {
+            zero(0, buf.capacity());
+        }
+        
+        private void zero(int off, int end) {
+            for (int i = off; i < end; i += Long.BYTES) {
+                buf.putLong(i, 0L);
+            }
+        }
+        
+        boolean isEmpty() {
+            return usedBlocks.isEmpty();
+        }
+        
+    }
+    
+    /**
+     * A secret stored in the arena, which must be destroyed when no longer needed.
+     */
+    public static final class Secret implements Destroyable {
+        
+        private Chunk chunk;
+        private final int startBlock;
+        private final int blocksNum;
+        private final int len;
+        
+        private Secret(Chunk chunk, int startBlock, int blocksNum, int len) {
+            this.chunk = chunk;
+            this.startBlock = startBlock;
+            this.blocksNum = blocksNum;
+            this.len = len;
+        }
+        
+        private int getOffset() {
+            return startBlock * BLOCK_LEN;
+        }
+        
+        /**
+         * @return the length of this secret in bytes.
+         */
+        public int getLength() {
+            return len;
+        }
+        
+        /**
+         * @return a new array containing this secret, which should be cleared after use.
+         */
+        public synchronized byte[] readBytes() {
+            byte[] res = new byte[len];
+            readBytes(res, 0);
+            return res;
+        }
+        
+        /**
+         * Copies this secret into dest at off, which should be cleared after use.
+         * @param dest
+         * @param off
+         */
+        public synchronized void readBytes(byte[] dest, int off) {
+            checkNotDestroyed();
+            Objects.checkFromIndexSize(off, len, dest.length);
+            chunk.buf.get(getOffset(), dest, off, len);
+        }
+        
+        /**
+         * Only for secrets created from chars.
+         * @return a new array containing this secret, which should be cleared after use.
+         */
+        public synchronized char[] readChars() {
+            checkNotDestroyed();
+            char[] res = new char[len / Character.BYTES];
+            int off = getOffset();
+            for (int i = 0; i < res.length; i++) {
+                res[i] = chunk.buf.getChar(off + i * Character.BYTES);
+            }
+            return res;
+        }
+        
+        /**
+         * Only for secrets created from chars.
+         * @return the number of chars of this secret.
+         */
+        public int getCharsNum() {
+            return len / Character.BYTES;
+        }
+        
+        /**
+         * @return a new secret containing a copy of this secret, copied without any scratch array.
+         */
+        public synchronized Secret duplicate() {
+            checkNotDestroyed();
+            Secret res = allocate(len);
+            int off = getOffset();
+            int resOff = res.getOffset();
+            for (int i = 0; i < len; i++) {
+                res.chunk.buf.put(resOff + i, chunk.buf.get(off + i));
+            }
+            return res;
+        }
+        
+        /**
+         * Compares this secret with other without decoding them into scratch arrays, and in a time which
+         * does not depend on the position of the first difference.
+         * @param other
+         * @return true if other has the same content as this secret.
+         */
+        public boolean contentEquals(Secret other) {
+            if (other == this) {
+                return true;
+            }
+            if (other == null || other.len != len) {
+                return false;
+            }
+            // Always locked in the same order, to avoid deadlocks
+            boolean isThisFirst = System.identityHashCode(this) <= System.identityHashCode(other);
+            Secret first = isThisFirst ? this : other;
+            Secret second = isThisFirst ? other : this;
+            synchronized (first) {
+                synchronized (second) {
+                    checkNotDestroyed();
+                    other.checkNotDestroyed();
+                    int off = getOffset();
+                    int otherOff = other.getOffset();
+                    int diff = 0;
+                    for (int i = 0; i < len; i++) {
+                        diff |= chunk.buf.get(off + i) ^ other.chunk.buf.get(otherOff + i);
+                    }
+                    return diff == 0;
+                }
+            }
+        }
+        
+        /**
+         * Compares this secret with chars without decoding it into a scratch array, and in a time which
+         * does not depend on the position of the first difference.
+         * @param chars
+         * @return true if this secret has been created from chars equal to chars.
+         */
+        public synchronized boolean contentEquals(char[] chars) {
+            checkNotDestroyed();
+            if (chars == null || chars.length * Character.BYTES != len) {
+                return false;
+            }
+            int off = getOffset();
+            int diff = 0;
+            for (int i = 0; i < chars.length; i++) {
+                diff |= chunk.buf.getChar(off + i * Character.BYTES) ^ chars[i];
+            }
+            return diff == 0;
+        }
+        
+        private void checkNotDestroyed() {
+            if (chunk == null) {
+                throw new IllegalStateException("This secret has been destroyed.");
+            }
+        }
+        
+        /**
+         * Wipes this secret from memory and frees its blocks.
+         */
+        @Override
+        public synchronized void destroy() throws DestroyFailedException {
+            if (chunk == null) {
+                return;
+            }
+            free(this);
+            chunk = null;
+        }
+        
+        @Override
+        public synchronized boolean isDestroyed() {
+            return chunk == null;
+        }
+        
+    }
+    
+    /**
+     * @param src not modified, it should be cleared by the caller if it is no longer needed
+     * @return a new secret containing a copy of src.
+     */
+    public static Secret newSecret(byte[] src) {
+        Secret res = allocate(src.length);
+        res.chunk.buf.put(res.getOffset(), src, 0, src.length);
+        return res;
+    }
+    
+    /**
+     * @param src not modified, it should be cleared by the caller if it is no longer needed
+     * @return a new secret containing a copy of src.
+     */
+    public static Secret newSecret(char[] src) {
+        Secret res = allocate(src.length * Character.BYTES);
+        int off = res.getOffset();
+        for (int i = 0; i < src.length; i++) {
+            res.chunk.buf.putChar(off + i * Character.BYTES, src[i]);
+        }
+        return res;
+    }
+    
+    /**
+     * The returned key holds its own copy of src, so that it is independent of src, and should be destroyed
+     * after use. Its encoded form (see {@link SecretKey#getEncoded()}) is a new scratch array for each call,
+     * like {@link javax.crypto.spec.SecretKeySpec}, but no copy of the key is kept in the heap.
+     * @param src
+     * @param algorithm
+     * @return a new key whose raw bytes are the content of src.
+     */
+    public static SecretKey newSecretKey(Secret src, String algorithm) {
+        return new ArenaSecretKey(src.duplicate(), algorithm);
+    }
+    
+    private static final class ArenaSecretKey implements SecretKey {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final transient Secret secret;
+        private final String algorithm;
+        
+        ArenaSecretKey(Secret secret, String algorithm) {
+            this.secret = secret;
+            this.algorithm = CheckUtils.notNull(algorithm);
+        }
+        
+        @Override
+        public String getAlgorithm() {
+            return algorithm;
+        }
+        
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+        
+        /**
+         * @throws IllegalStateException if this key has been destroyed.
+         */
+        @Override
+        public byte[] getEncoded() {
+            return secret.readBytes();
+        }
+        
+        @Override
+        public void destroy() throws DestroyFailedException {
+            secret.destroy();
+        }
+        
+        @Override
+        public boolean isDestroyed() {
+            return secret.isDestroyed();
+        }
+        
+    }
+    
+    private static synchronized Secret allocate(int len) {
+        int blocksNum = Math.max(1, (len + BLOCK_LEN - 1) / BLOCK_LEN);
+        for (Chunk chunk : chunks) {
+            int startBlock = chunk.allocate(blocksNum);
+            if (startBlock >= 0) {
+                return onAllocated(new Secret(chunk, startBlock, blocksNum, len));
+            }
+        }
+        Chunk chunk = new Chunk(Math.max(CHUNK_LEN / BLOCK_LEN, blocksNum));
+        chunks.add(chunk);
+        log.newChildFromCurMethIf(Level.DEBUG)
+                .debug(() -> "new chunk of " + chunk.buf.capacity() + " bytes");
+        return onAllocated(new Secret(chunk, chunk.allocate(blocksNum), blocksNum, len));
+    }
+    
+    private static Secret onAllocated(Secret secret) {
+        secretsNum++;
+        allocationsNum++;
+        allocatedBytesNum += secret.blocksNum * BLOCK_LEN;
+        return secret;
+    }
+    
+    /**
+     * Wipes the blocks of secret, and releases its chunk if it is empty and not the first one.
+     * @param secret
+     */
+    private static synchronized void free(Secret secret) {
+        Chunk chunk = secret.chunk;
+        chunk.free(secret.startBlock, secret.blocksNum);
+        secretsNum--;
+        allocatedBytesNum -= secret.blocksNum * BLOCK_LEN;
+        if (chunk.isEmpty() && chunks.indexOf(chunk) > 0) {
+            chunks.remove(chunk);
+        }
+    }
+    
+    /**
+     * Zeroes all the chunks, including the blocks of the secrets which have not been destroyed (e.g. forgotten
+     * ones), which then only contain zeros but must still be destroyed to free their blocks.
+     * Should only be called when no secret is needed anymore, e.g. on shutdown.
+     * @return the number of secrets which had not been destroyed.
+     */
+    public static synchronized int wipeAll() {
+        for (Chunk chunk : chunks) {
+            chunk.wipe();
+        }
+        int liveSecretsNum = secretsNum;
+        log.newChildFromCurMeth()
+                .info(
+                        () -> "wiped " + chunks.size() + " chunks, " + liveSecretsNum
+                                + " secrets were not destroyed"
+                );
+        return liveSecretsNum;
+    }
+    
+    public static synchronized int getSecretsNum() {
+        return secretsNum;
+    }
+    
+    public static synchronized long getAllocatedBytesNum() {
+        return allocatedBytesNum;
+    }
+    
+    public static synchronized long getAllocationsNum() {
+        return allocationsNum;
+    }
+    
+    public static synchronized int getChunksNum() {
+        return chunks.size();
+    }
+    
+    public static synchronized String getStatsDebug() {
+        return "secrets = " + secretsNum + ", allocatedBytes = " + allocatedBytesNum
+                + ", allocations = " + allocationsNum + ", chunks = " + chunks.size();
+    }
+    
+}
@@ -37,7 +37,11 @@
  */
 public final class TOTPUtils {
     
-    private static final byte[] intervalIndBuf = new byte[8];
+    /**
+     * The minimum length of the buffer given to {@link #generateTOTP(Mac, long, int, byte[], char[], int)},
+     * i.e. the longest HMAC length (HmacSHA512).
+     */
+    public static final int HMAC_BUF_LEN = 64;
     
     private TOTPUtils() {}
     
@@ -52,15 +56,31 @@ private TOTPUtils() {}
      * @param crypto: the crypto algorithm (HmacSHA1, HmacSHA256,
      *                             HmacSHA512)
      * @param keyBytes: the bytes to use for the HMAC key
-     * @param text: the message or text to be authenticated
+     * @return the HMAC initialized with keyBytes, which can be reused for several codes.
      */
-    private static byte[] hmac_sha(String crypto, byte[] keyBytes, byte[] text) {
+    public static Mac newHmac(String crypto, byte[] keyBytes) {
+        SecretKeySpec macKey = new SecretKeySpec(keyBytes, "RAW");
         try {
             Mac hmac;
             hmac = Mac.getInstance(crypto);
-            SecretKeySpec macKey = new SecretKeySpec(keyBytes, "RAW");
             hmac.init(macKey);
-            return hmac.doFinal(text);
+            return hmac;
+        } catch (GeneralSecurityException gse) {
+            throw new UndeclaredThrowableException(gse);
+        } finally {
+            MemUtils.tryDestroyKey(macKey);
+        }
+    }
+    
+    /**
+     * Overwrites the key dependent state of hmac (which cannot be cleared directly), by initializing it
+     * with a blank key. hmac must not be used for codes afterwards.
+     * @param hmac
+     */
+    public static void wipeHmac(Mac hmac) {
+        SecretKeySpec blankKey = new SecretKeySpec(new byte[1], "RAW");
+        try {
+            hmac.init(blankKey);
         } catch (GeneralSecurityException gse) {
             throw new UndeclaredThrowableException(gse);
         }
@@ -71,7 +91,6 @@ private static byte[] hmac_sha(String crypto, byte[] keyBytes, byte[] text) {
     };
     
     /**
-     * NB: Not thread safe.
      * @param keyBytes
      * @param intervalInd timeSecondsSinceEpoch / periodSeconds
      * @param codeDigits
@@ -80,16 +99,16 @@ private static byte[] hmac_sha(String crypto, byte[] keyBytes, byte[] text) {
      */
     public static String generateTOTP(byte[] keyBytes, long intervalInd, int codeDigits,
             String crypto) {
-        intervalIndBuf[0] = (byte) (intervalInd >>> 56);
-        intervalIndBuf[1] = (byte) (intervalInd >>> 48);
-        intervalIndBuf[2] = (byte) (intervalInd >>> 40);
-        intervalIndBuf[3] = (byte) (intervalInd >>> 32);
-        intervalIndBuf[4] = (byte) (intervalInd >>> 24);
-        intervalIndBuf[5] = (byte) (intervalInd >>> 16);
-        intervalIndBuf[6] = (byte) (intervalInd >>> 8);
-        intervalIndBuf[7] = (byte) (intervalInd >>> 0);
-        
-        return generateTOTP(keyBytes, intervalIndBuf, codeDigits, crypto);
+        byte[] buf = new byte[HMAC_BUF_LEN];
+        char[] code = new char[codeDigits];
+        Mac hmac = newHmac(crypto, keyBytes);
+        try {
+            generateTOTP(hmac, intervalInd, codeDigits, buf, code, 0);
+            return new String(code);
+        } finally {
+            wipeHmac(hmac);
+            MemUtils.clearCharArray(code);
+        }
     }
     
     /**
@@ -104,22 +123,71 @@ public static String generateTOTP(byte[] keyBytes, long intervalInd, int codeDig
      */
     public static String generateTOTP(byte[] keyBytes, byte[] intervalIndBytes, int codeDigits,
             String crypto) {
-        String result = null;
-        
-        byte[] hash = hmac_sha(crypto, keyBytes, intervalIndBytes);
-        
-        int offset = hash[hash.length - 1] & 0xf;
+        byte[] buf = new byte[HMAC_BUF_LEN];
+        char[] code = new char[codeDigits];
+        Mac hmac = newHmac(crypto, keyBytes);
+        try {
+            hmac.update(intervalIndBytes);
+            hmac.doFinal(buf, 0);
+            writeCode(truncate(buf, hmac.getMacLength(), codeDigits), codeDigits, code, 0);
+            return new String(code);
+        } catch (GeneralSecurityException gse) {
+            throw new UndeclaredThrowableException(gse);
+        } finally {
+            wipeHmac(hmac);
+            MemUtils.clearByteArray(buf);
+            MemUtils.clearCharArray(code);
+        }
+    }
+    
+    /**
+     * Allocation-free generation of a code, with a reused HMAC.
+     * NB: A Mac is not thread-safe, concurrent calls must not use the same hmac nor buf.
+     * @param hmac initialized with the TOTP key, see {@link #newHmac(String, byte[])}.
+     * @param intervalInd timeSecondsSinceEpoch / periodSeconds
+     * @param codeDigits
+     * @param buf at least {@link #HMAC_BUF_LEN} long, cleared before returning.
+     * @param dest where the codeDigits chars of the code are written.
+     * @param destOff
+     */
+    public static void generateTOTP(Mac hmac, long intervalInd, int codeDigits, byte[] buf,
+            char[] dest, int destOff) {
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            buf[i] = (byte) intervalInd;
+            intervalInd >>>= 8;
+        }
+        try {
+            hmac.update(buf, 0, Long.BYTES);
+            hmac.doFinal(buf, 0);
+        } catch (GeneralSecurityException gse) {
+            throw new UndeclaredThrowableException(gse);
+        }
+        int otp = truncate(buf, hmac.getMacLength(), codeDigits);
+        MemUtils.clearByteArray(buf);
+        writeCode(otp, codeDigits, dest, destOff);
+    }
+    
+    /**
+     * This code was derived from IETF RFC 6238.
+     * Please reproduce this note if possible.
+     */
+    private static int truncate(byte[] hash, int hashLen, int codeDigits) {
+        int offset = hash[hashLen - 1] & 0xf;
         
         int binary = ((hash[offset] & 0x7f) << 24) | ((hash[offset + 1] & 0xff) << 16)
                 | ((hash[offset + 2] & 0xff) << 8) | (hash[offset + 3] & 0xff);
         
-        int otp = binary % DIGITS_POWER[codeDigits];
-        
-        result = Integer.toString(otp);
-        while (result.length() < codeDigits) {
-            result = "0" + result;
+        return binary % DIGITS_POWER[codeDigits];
+    }
+    
+    /**
+     * Writes otp left-padded with zeros to codeDigits chars.
+     */
+    private static void writeCode(int otp, int codeDigits, char[] dest, int destOff) {
+        for (int i = destOff + codeDigits - 1; i >= destOff; i--) {
+            dest[i] = (char) ('0' + otp % 10);
+            otp /= 10;
         }
-        return result;
     }
     
 }
@@ -70,9 +70,6 @@
  */
 public final class UTFUtils {
     
-    private static byte[] bytesBuf = null;
-    private static char[] charsBuf = null;
-    
     private UTFUtils() {}
     
     /**
@@ -102,15 +99,12 @@ public static int getUTFLen(char[] chars) throws UTFDataFormatException {
      * @param chars
      * @param utflen of chars (unchecked)
      * @param dataOut
+     * @param ctx which provides the buffer
      * @throws IOException
      */
-    public static void writeChars(char[] chars, int utflen, DataOutput dataOut) throws IOException {
-        if (bytesBuf == null || bytesBuf.length < utflen) {
-            if (bytesBuf != null) {
-                MemUtils.clearByteArray(bytesBuf);
-            }
-            bytesBuf = new byte[Math.min(utflen << 1, 65535)];
-        }
+    public static void writeChars(char[] chars, int utflen, DataOutput dataOut, CodecContext ctx)
+            throws IOException {
+        byte[] bytesBuf = ctx.getUTFBytesBuf(utflen);
         
         int bytesNum = 0;
         int i = 0;
@@ -145,24 +139,16 @@ public static void writeChars(char[] chars, int utflen, DataOutput dataOut) thro
      * Taken from {@link DataInputStream#readUTF(DataInput)} and slightly modified by tigeriodev.
      * @param utflen of chars to read
      * @param dataIn
+     * @param ctx which provides the buffers
      * @return
      * @throws IOException
      * @author Arthur van Hoff
      * @author tigeriodev
      */
-    public static char[] readChars(int utflen, DataInput dataIn) throws IOException {
-        if (bytesBuf == null || bytesBuf.length < utflen) {
-            if (bytesBuf != null) {
-                MemUtils.clearByteArray(bytesBuf);
-            }
-            bytesBuf = new byte[Math.min(utflen << 1, 65535)];
-        }
-        if (charsBuf == null || charsBuf.length < utflen) {
-            if (charsBuf != null) {
-                MemUtils.clearCharArray(charsBuf);
-            }
-            charsBuf = new char[Math.min(utflen << 1, 65535)];
-        }
+    public static char[] readChars(int utflen, DataInput dataIn, CodecContext ctx)
+            throws IOException {
+        byte[] bytesBuf = ctx.getUTFBytesBuf(utflen);
+        char[] charsBuf = ctx.getUTFCharsBuf(utflen);
         
         int c, char2, char3;
         int count = 0;
@@ -220,18 +206,7 @@ public static char[] readChars(int utflen, DataInput dataIn) throws IOException
             }
         }
         
-        return Arrays.copyOf(charsBuf, charsNum); // copy because charsUTFCharsBuf can be cleared
-    }
-    
-    public static void clearBuffers() {
-        if (bytesBuf != null) {
-            MemUtils.clearByteArray(bytesBuf);
-            bytesBuf = null;
-        }
-        if (charsBuf != null) {
-            MemUtils.clearCharArray(charsBuf);
-            charsBuf = null;
-        }
+        return Arrays.copyOf(charsBuf, charsNum); // copy because charsBuf is cleared with ctx
     }
     
 }
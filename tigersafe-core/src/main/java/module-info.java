@@ -18,6 +18,9 @@
 
 module fr.tigeriodev.tigersafe.core {
     
+    requires java.management;
+    requires jdk.management;
+    
     exports fr.tigeriodev.tigersafe;
     exports fr.tigeriodev.tigersafe.ciphers;
     exports fr.tigeriodev.tigersafe.data;
@@ -19,6 +19,7 @@
 package fr.tigeriodev.tigersafe.tests;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -42,6 +43,7 @@
 import fr.tigeriodev.tigersafe.GlobalConfig.ConfigCipher;
 import fr.tigeriodev.tigersafe.ciphers.Cipher;
 import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
 import fr.tigeriodev.tigersafe.tests.utils.TestsStringUtils;
 import fr.tigeriodev.tigersafe.tests.utils.TestsUtils;
 import fr.tigeriodev.tigersafe.ui.UIConfig.KeyboardShortcut;
@@ -86,7 +88,11 @@ void testGetDefaultProperties() throws IOException {
                         GlobalConfig.LAST_SAFE_FILE_KEY,
                         GlobalConfig.PW_GENERATION_CUSTOM_CHARS_KEY,
                         GlobalConfig.PW_GENERATION_MAX_LEN_KEY,
-                        GlobalConfig.PW_GENERATION_MIN_LEN_KEY
+                        GlobalConfig.PW_GENERATION_MIN_LEN_KEY,
+                        GlobalConfig.SAFE_JOURNAL_ENABLED_KEY,
+                        GlobalConfig.SAFE_FILE_DEEP_VERIFICATION_KEY,
+                        GlobalConfig.KEY_DERIVATION_TARGET_MILLIS_KEY,
+                        GlobalConfig.KEY_DERIVATION_MIN_ITERATIONS_KEY
                 )
         );
         for (ConfigCipher confCipher : ConfigCipher.values()) {
@@ -328,6 +334,95 @@ void testSetWriteReadPwGenerationMaxLen() throws IOException {
         assertSamePropsValue(initConf, refreshedConf);
     }
     
+    @Test
+    void testSetWriteReadSafeJournalEnabled() throws IOException {
+        resetConfigFile();
+        
+        GlobalConfig initConf = readConfigFile();
+        assertFalse(initConf.isSafeJournalEnabled());
+        initConf.setSafeJournalEnabled(true);
+        assertTrue(initConf.isSafeJournalEnabled());
+        initConf.updateUserFile();
+        
+        GlobalConfig newConf = readConfigFile();
+        assertTrue(newConf.isSafeJournalEnabled());
+        assertSamePropsValue(initConf, newConf);
+        
+        newConf.setSafeJournalEnabled(false);
+        assertFalse(newConf.isSafeJournalEnabled());
+        // do not updateUserFile
+        
+        GlobalConfig refreshedConf = readConfigFile();
+        assertTrue(refreshedConf.isSafeJournalEnabled());
+        assertSamePropsValue(initConf, refreshedConf);
+    }
+    
+    @Test
+    void testSetWriteReadSafeFileDeepVerification() throws IOException {
+        resetConfigFile();
+        
+        GlobalConfig initConf = readConfigFile();
+        assertFalse(initConf.isSafeFileDeepVerification());
+        initConf.setSafeFileDeepVerification(true);
+        assertTrue(initConf.isSafeFileDeepVerification());
+        initConf.updateUserFile();
+        
+        GlobalConfig newConf = readConfigFile();
+        assertTrue(newConf.isSafeFileDeepVerification());
+        assertSamePropsValue(initConf, newConf);
+        
+        newConf.setSafeFileDeepVerification(false);
+        assertFalse(newConf.isSafeFileDeepVerification());
+        // do not updateUserFile
+        
+        GlobalConfig refreshedConf = readConfigFile();
+        assertTrue(refreshedConf.isSafeFileDeepVerification());
+        assertSamePropsValue(initConf, refreshedConf);
+    }
+    
+    @Test
+    void testSetWriteReadKeyDerivation() throws IOException {
+        resetConfigFile();
+        
+        final int initTargetMillis = 1000;
+        final int newTargetMillis = 250;
+        final int initMinIterationsNum = KeyDerivation.LEGACY_ITERATIONS_NUM;
+        final int newMinIterationsNum = 200000;
+        
+        GlobalConfig initConf = readConfigFile();
+        assertEquals(initTargetMillis, initConf.getKeyDerivationTargetMillis());
+        assertEquals(initMinIterationsNum, initConf.getKeyDerivationMinIterationsNum());
+        initConf.setKeyDerivationTargetMillis(newTargetMillis);
+        initConf.setKeyDerivationMinIterationsNum(newMinIterationsNum);
+        assertEquals(newTargetMillis, initConf.getKeyDerivationTargetMillis());
+        assertEquals(newMinIterationsNum, initConf.getKeyDerivationMinIterationsNum());
+        initConf.updateUserFile();
+        
+        GlobalConfig newConf = readConfigFile();
+        assertEquals(newTargetMillis, newConf.getKeyDerivationTargetMillis());
+        assertEquals(newMinIterationsNum, newConf.getKeyDerivationMinIterationsNum());
+        assertSamePropsValue(initConf, newConf);
+        
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> newConf.setKeyDerivationTargetMillis(
+                        GlobalConfig.KEY_DERIVATION_MIN_TARGET_MILLIS - 1
+                )
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> newConf
+                        .setKeyDerivationMinIterationsNum(KeyDerivation.MIN_ITERATIONS_NUM - 1)
+        );
+        newConf.setKeyDerivationTargetMillis(initTargetMillis);
+        assertEquals(initTargetMillis, newConf.getKeyDerivationTargetMillis());
+        // do not updateUserFile
+        
+        GlobalConfig refreshedConf = readConfigFile();
+        assertEquals(newTargetMillis, refreshedConf.getKeyDerivationTargetMillis());
+        assertSamePropsValue(initConf, refreshedConf);
+    }
+    
     private void resetConfigFile() throws IOException {
         confFile = TestsUtils.newTestFile("global-config-test.properties");
     }
@@ -349,6 +444,19 @@ private static void assertSamePropsValue(GlobalConfig expectedConf, GlobalConfig
         );
         assertEquals(expectedConf.getPwGenerationMinLen(), actualConf.getPwGenerationMinLen());
         assertEquals(expectedConf.getPwGenerationMaxLen(), actualConf.getPwGenerationMaxLen());
+        assertEquals(expectedConf.isSafeJournalEnabled(), actualConf.isSafeJournalEnabled());
+        assertEquals(
+                expectedConf.isSafeFileDeepVerification(),
+                actualConf.isSafeFileDeepVerification()
+        );
+        assertEquals(
+                expectedConf.getKeyDerivationTargetMillis(),
+                actualConf.getKeyDerivationTargetMillis()
+        );
+        assertEquals(
+                expectedConf.getKeyDerivationMinIterationsNum(),
+                actualConf.getKeyDerivationMinIterationsNum()
+        );
         for (GlobalConfig.ConfigCipher confCipher : GlobalConfig.ConfigCipher.values()) {
             assertEquals(expectedConf.getCipher(confCipher), actualConf.getCipher(confCipher));
         }
@@ -22,6 +22,7 @@
 import java.io.IOException;
 
 import fr.tigeriodev.tigersafe.GlobalConfig;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
 import fr.tigeriodev.tigersafe.tests.utils.TestsUtils;
 
 public final class TestsGlobalConfig {
@@ -33,7 +34,11 @@ public static void resetForTest() throws IOException {
     
     public static void initForTest(File userGlobalConfigFile) throws IOException {
         GlobalConfig.initFile(userGlobalConfigFile);
-        GlobalConfig.setInstance(new GlobalConfig(userGlobalConfigFile), false, false);
+        GlobalConfig conf = new GlobalConfig(userGlobalConfigFile);
+        // Fastest key derivation, the calibration itself is tested separately.
+        conf.setKeyDerivationTargetMillis(GlobalConfig.KEY_DERIVATION_MIN_TARGET_MILLIS);
+        conf.setKeyDerivationMinIterationsNum(KeyDerivation.MIN_ITERATIONS_NUM);
+        GlobalConfig.setInstance(conf, false, false);
     }
     
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.tests.ciphers;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.util.Properties;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.CipherSelfTest;
+import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.tests.TestClass;
+import fr.tigeriodev.tigersafe.tests.utils.TestsUtils;
+
+public class CipherSelfTestTest extends TestClass {
+    
+    @Test
+    void testKnownAnswers() throws Exception {
+        for (String cipherName : CiphersManager.getCiphersName()) {
+            Cipher cipher = TestsCiphersManager.getWorkingCipher(cipherName);
+            assertDoesNotThrow(() -> CipherSelfTest.checkKnownAnswers(cipherName, cipher));
+        }
+        Cipher ctrCipher = TestsCiphersManager.getWorkingCipher("AES_CTR");
+        assertThrows(
+                GeneralSecurityException.class,
+                () -> CipherSelfTest.checkKnownAnswers("ChaCha20", ctrCipher)
+        );
+    }
+    
+    @Test
+    void testPasses() throws Exception {
+        Cipher cipher = TestsCiphersManager.getWorkingNotAuthCipher();
+        File initPassesFile = CipherSelfTest.getPassesFile();
+        File initKeyFile = CipherSelfTest.getKeyFile();
+        File passesFile = TestsUtils.newTestFile("cipher-self-test-passes.properties");
+        File keyFile = TestsUtils.newTestFile("cipher-self-test.key");
+        try {
+            CipherSelfTest.setPassesFile(passesFile, keyFile);
+            assertEquals(CipherSelfTest.Mode.FULL, CipherSelfTest.check(cipher.getName(), cipher));
+            assertEquals(
+                    CipherSelfTest.Mode.REDUCED,
+                    CipherSelfTest.check(cipher.getName(), cipher)
+            );
+            assertEquals(32, keyFile.length());
+            
+            Properties passes = new Properties();
+            try (FileInputStream fileIn = new FileInputStream(passesFile)) {
+                passes.load(fileIn);
+            }
+            String passKey = "pass." + cipher.getName();
+            String pass = passes.getProperty(passKey);
+            passes.setProperty(
+                    passKey,
+                    (pass.charAt(0) == '0' ? '1' : '0') + pass.substring(1)
+            );
+            try (FileWriter writer = new FileWriter(passesFile)) {
+                passes.store(writer, null);
+            }
+            assertEquals(CipherSelfTest.Mode.FULL, CipherSelfTest.check(cipher.getName(), cipher));
+            assertEquals(
+                    CipherSelfTest.Mode.REDUCED,
+                    CipherSelfTest.check(cipher.getName(), cipher)
+            );
+            
+            // A foreign key (e.g. passes file copied to another user) invalidates the passes.
+            Files.delete(keyFile.toPath());
+            assertEquals(CipherSelfTest.Mode.FULL, CipherSelfTest.check(cipher.getName(), cipher));
+            assertEquals(
+                    CipherSelfTest.Mode.REDUCED,
+                    CipherSelfTest.check(cipher.getName(), cipher)
+            );
+            
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> CipherSelfTest.setPassesFile(passesFile, null)
+            );
+            CipherSelfTest.setPassesFile(null, null);
+            assertEquals(CipherSelfTest.Mode.FULL, CipherSelfTest.check(cipher.getName(), cipher));
+        } finally {
+            CipherSelfTest.setPassesFile(initPassesFile, initKeyFile);
+        }
+    }
+    
+}
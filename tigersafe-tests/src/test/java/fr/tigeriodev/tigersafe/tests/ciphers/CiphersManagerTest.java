@@ -25,6 +25,7 @@
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
@@ -114,7 +115,7 @@ public byte[] newDerivationSalt() throws NoSuchAlgorithmException {
             }
             
             @Override
-            public SecretKey getDerivatedKeyFrom(char[] password, byte[] salt)
+            public SecretKey getDerivatedKeyFrom(char[] password, byte[] salt, int iterationsNum)
                     throws NoSuchAlgorithmException, InvalidKeySpecException {
                 throw new UnsupportedOperationException(
                         "Unimplemented method 'getDerivatedKeyFrom'"
@@ -133,6 +134,12 @@ public byte[] decryptBytes(byte[] encryptedBytes, SecretKey key, byte[] iv)
                 throw new UnsupportedOperationException("Unimplemented method 'decryptBytes'");
             }
             
+            @Override
+            public int decryptBuffer(ByteBuffer encrypted, SecretKey key, byte[] iv,
+                    ByteBuffer dest) throws GeneralSecurityException {
+                throw new UnsupportedOperationException("Unimplemented method 'decryptBuffer'");
+            }
+            
             @Override
             public OutputStream newEncryptionStream(SecretKey key, byte[] iv, OutputStream out)
                     throws GeneralSecurityException {
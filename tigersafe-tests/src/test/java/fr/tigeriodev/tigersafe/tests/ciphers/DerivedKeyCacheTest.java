@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.tests.ciphers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.DerivedKeyCache;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
+import fr.tigeriodev.tigersafe.tests.TestClass;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+
+public class DerivedKeyCacheTest extends TestClass {
+    
+    @Test
+    void testReuse() throws Exception {
+        Cipher cipher = TestsCiphersManager.getWorkingNotAuthCipher();
+        Cipher otherCipher = TestsCiphersManager.getWorkingAuthCipher();
+        char[] pw = "cachePassword".toCharArray();
+        byte[] salt1 = cipher.newDerivationSalt();
+        byte[] salt2 = cipher.newDerivationSalt();
+        
+        DerivedKeyCache cache = new DerivedKeyCache();
+        SecretKey key1A = cache.getDerivatedKey(cipher, pw, salt1);
+        assertEquals(1, cache.getDerivationsNum());
+        byte[] key1Bytes = key1A.getEncoded();
+        assertArrayEquals(cipher.getDerivatedKeyFrom(pw, salt1).getEncoded(), key1Bytes);
+        
+        assertTrue(MemUtils.tryDestroyKey(key1A));
+        SecretKey key1B = cache.getDerivatedKey(cipher, pw, salt1.clone());
+        assertArrayEquals(key1Bytes, key1B.getEncoded());
+        assertEquals(1, cache.getDerivationsNum());
+        assertEquals(1, cache.getHitsNum());
+        
+        SecretKey key2 = cache.getDerivatedKey(cipher, pw, salt2);
+        assertFalse(Arrays.equals(key1Bytes, key2.getEncoded()));
+        assertEquals(2, cache.getDerivationsNum());
+        
+        cache.getDerivatedKey(otherCipher, pw, salt1);
+        assertEquals(3, cache.getDerivationsNum());
+        assertEquals(3, cache.getEntriesNum());
+        
+        SecretKey key1C =
+                cache.getDerivatedKey(cipher, pw, salt1, KeyDerivation.MIN_ITERATIONS_NUM);
+        assertFalse(Arrays.equals(key1Bytes, key1C.getEncoded()));
+        assertEquals(4, cache.getDerivationsNum());
+        assertEquals(4, cache.getEntriesNum());
+        
+        cache.destroy();
+        assertTrue(cache.isDestroyed());
+        assertEquals(0, cache.getEntriesNum());
+        assertThrows(IllegalStateException.class, () -> cache.getDerivatedKey(cipher, pw, salt1));
+    }
+    
+    @Test
+    void testExpirationAndEviction() throws Exception {
+        Cipher cipher = TestsCiphersManager.getWorkingNotAuthCipher();
+        char[] pw = "cachePassword".toCharArray();
+        byte[] salt = cipher.newDerivationSalt();
+        
+        DerivedKeyCache expiredCache = new DerivedKeyCache(0, 4);
+        expiredCache.getDerivatedKey(cipher, pw, salt);
+        expiredCache.getDerivatedKey(cipher, pw, salt);
+        assertEquals(2, expiredCache.getDerivationsNum());
+        assertEquals(0, expiredCache.getHitsNum());
+        
+        DerivedKeyCache smallCache = new DerivedKeyCache(DerivedKeyCache.DEFAULT_TTL_MILLIS, 1);
+        smallCache.getDerivatedKey(cipher, pw, salt);
+        smallCache.getDerivatedKey(cipher, pw, cipher.newDerivationSalt());
+        assertEquals(1, smallCache.getEntriesNum());
+        smallCache.getDerivatedKey(cipher, pw, salt);
+        assertEquals(3, smallCache.getDerivationsNum());
+    }
+    
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.tests.ciphers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.ciphers.EnginePool;
+import fr.tigeriodev.tigersafe.tests.TestClass;
+import fr.tigeriodev.tigersafe.utils.RandomUtils;
+
+public class EnginePoolTest extends TestClass {
+    
+    @Test
+    void testReusedBytesCiphers() throws Exception {
+        for (String cipherName : CiphersManager.getCiphersName()) {
+            Cipher cipher = TestsCiphersManager.getWorkingCipher(cipherName);
+            SecretKey key1 = cipher.newKey();
+            SecretKey key2 = cipher.newKey();
+            byte[] iv = cipher.newIv();
+            byte[] plainBytes = RandomUtils.newRandomBytesOfLen(100);
+            
+            byte[] encrypted1 = cipher.encryptBytes(plainBytes, key1, iv);
+            long initReusesNum = EnginePool.getReusesNum();
+            for (int i = 0; i < 10; i++) {
+                // same key and IV in a row, refused by a single (not re-inited) AEAD javax cipher
+                assertArrayEquals(encrypted1, cipher.encryptBytes(plainBytes, key1, iv));
+                byte[] encrypted2 = cipher.encryptBytes(plainBytes, key2, iv);
+                assertFalse(Arrays.equals(encrypted1, encrypted2), cipherName);
+                assertArrayEquals(plainBytes, cipher.decryptBytes(encrypted1, key1, iv));
+                assertArrayEquals(plainBytes, cipher.decryptBytes(encrypted2, key2, iv));
+            }
+            assertTrue(
+                    EnginePool.getReusesNum() - initReusesNum >= 40,
+                    () -> cipherName + ": " + EnginePool.getStatsDebug()
+            );
+        }
+    }
+    
+    @Test
+    void testInterleavedStreams() throws Exception {
+        for (String cipherName : CiphersManager.getCiphersName()) {
+            Cipher cipher = TestsCiphersManager.getWorkingCipher(cipherName);
+            SecretKey key1 = cipher.newKey();
+            SecretKey key2 = cipher.newKey();
+            byte[] iv1 = cipher.newIv();
+            byte[] iv2 = cipher.newIv();
+            byte[] plainBytes1 = RandomUtils.newRandomBytesOfLen(1000);
+            byte[] plainBytes2 = RandomUtils.newRandomBytesOfLen(700);
+            
+            ByteArrayOutputStream bytesOut1 = new ByteArrayOutputStream();
+            ByteArrayOutputStream bytesOut2 = new ByteArrayOutputStream();
+            OutputStream encryptionOut1 = cipher.newEncryptionStream(key1, iv1, bytesOut1);
+            OutputStream encryptionOut2 = cipher.newEncryptionStream(key2, iv2, bytesOut2);
+            encryptionOut1.write(plainBytes1, 0, 500);
+            encryptionOut2.write(plainBytes2);
+            // a pooled cipher is used meanwhile
+            cipher.encryptBytes(plainBytes1, key2, iv2);
+            encryptionOut2.close();
+            encryptionOut1.write(plainBytes1, 500, 500);
+            encryptionOut1.close();
+            encryptionOut1.close();
+            
+            assertArrayEquals(
+                    cipher.encryptBytes(plainBytes1, key1, iv1),
+                    bytesOut1.toByteArray(),
+                    cipherName
+            );
+            assertArrayEquals(
+                    cipher.encryptBytes(plainBytes2, key2, iv2),
+                    bytesOut2.toByteArray(),
+                    cipherName
+            );
+            
+            try (
+                    InputStream decryptionIn1 = cipher.newDecryptionStream(
+                            new ByteArrayInputStream(bytesOut1.toByteArray()),
+                            key1,
+                            iv1
+                    );
+                    InputStream decryptionIn2 = cipher.newDecryptionStream(
+                            new ByteArrayInputStream(bytesOut2.toByteArray()),
+                            key2,
+                            iv2
+                    )
+            ) {
+                assertArrayEquals(plainBytes2, decryptionIn2.readAllBytes(), cipherName);
+                assertArrayEquals(plainBytes1, decryptionIn1.readAllBytes(), cipherName);
+            }
+        }
+    }
+    
+}
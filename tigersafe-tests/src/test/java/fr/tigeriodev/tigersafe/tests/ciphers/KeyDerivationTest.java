@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.tests.ciphers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tigeriodev.tigersafe.ciphers.Cipher;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
+import fr.tigeriodev.tigersafe.tests.TestClass;
+
+public class KeyDerivationTest extends TestClass {
+    
+    @Test
+    void testCalibrate() throws Exception {
+        Cipher cipher = TestsCiphersManager.getWorkingNotAuthCipher();
+        KeyDerivation.resetCalibration();
+        
+        int shortIterationsNum =
+                KeyDerivation.calibrate(cipher, 50, KeyDerivation.MIN_ITERATIONS_NUM);
+        int longIterationsNum =
+                KeyDerivation.calibrate(cipher, 5000, KeyDerivation.MIN_ITERATIONS_NUM);
+        assertTrue(KeyDerivation.isValidIterationsNum(shortIterationsNum));
+        assertTrue(KeyDerivation.isValidIterationsNum(longIterationsNum));
+        assertTrue(
+                longIterationsNum > shortIterationsNum,
+                () -> "short = " + shortIterationsNum + ", long = " + longIterationsNum
+        );
+        assertEquals(0, longIterationsNum % KeyDerivation.ITERATIONS_NUM_STEP);
+        
+        assertEquals(
+                KeyDerivation.MAX_ITERATIONS_NUM,
+                KeyDerivation.calibrate(cipher, 1, KeyDerivation.MAX_ITERATIONS_NUM)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> KeyDerivation.calibrate(cipher, 0, KeyDerivation.MIN_ITERATIONS_NUM)
+        );
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> KeyDerivation.calibrate(cipher, 50, KeyDerivation.MIN_ITERATIONS_NUM - 1)
+        );
+    }
+    
+    @Test
+    void testIterationsNum() throws Exception {
+        Cipher cipher = TestsCiphersManager.getWorkingNotAuthCipher();
+        char[] pw = "derivationPassword".toCharArray();
+        byte[] salt = cipher.newDerivationSalt();
+        
+        byte[] legacyKeyBytes = cipher.getDerivatedKeyFrom(pw, salt).getEncoded();
+        assertArrayEquals(
+                legacyKeyBytes,
+                cipher.getDerivatedKeyFrom(pw, salt, KeyDerivation.LEGACY_ITERATIONS_NUM)
+                        .getEncoded()
+        );
+        assertFalse(
+                Arrays.equals(
+                        legacyKeyBytes,
+                        cipher.getDerivatedKeyFrom(pw, salt, KeyDerivation.MIN_ITERATIONS_NUM)
+                                .getEncoded()
+                )
+        );
+    }
+    
+}
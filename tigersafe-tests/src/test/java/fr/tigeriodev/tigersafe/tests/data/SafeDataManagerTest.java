@@ -21,11 +21,22 @@
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 import org.junit.jupiter.api.Test;
 
@@ -262,6 +273,408 @@ void test1() throws Exception {
         TestsPasswordEntry.assertArrEquals(deletedPwEntriesE, dm3.getDeletedPwEntries());
     }
     
+    @Test
+    void testImportSerialized() throws Exception {
+        File safeFile = resetConfigAndSafeFile();
+        SafeDataManager dm = new SafeDataManager(safeFile, "safePassword".toCharArray());
+        dm.updateSafeFile();
+        
+        Cipher serialCipher = GlobalConfig.ConfigCipher.USER_DATA.getCipher();
+        char[] serialPw = "serialPw".toCharArray();
+        int pwEntriesNum = SafeDataManager.IMPORT_BATCH_SIZE + 10;
+        Data[] pwEntriesData = new Data[pwEntriesNum];
+        for (int i = 0; i < pwEntriesNum; i++) {
+            pwEntriesData[i] = new PasswordEntry.Data(
+                    "name" + i,
+                    ("pw" + i).toCharArray(),
+                    Instant.ofEpochSecond(i),
+                    "site" + i,
+                    "info" + i,
+                    i % 2 == 0 ? TestsTOTP.newCommonTOTP1() : null
+            );
+        }
+        File serialFile = TestsUtils.newTestFile("serialized-import.dat");
+        SafeSerializationManager.write(
+                serialFile,
+                serialCipher,
+                serialPw,
+                SafeSerializationManager.MAX_SERIAL_VER,
+                new SafeData(pwEntriesData)
+        );
+        
+        dm.importSerialized(serialFile, serialCipher, serialPw);
+        assertFalse(dm.hasChanges());
+        assertArrayEquals(sortedByName(pwEntriesData), dm.getValidPwEntriesData());
+        
+        SafeDataManager dm2 = new SafeDataManager(safeFile, "safePassword".toCharArray());
+        dm2.loadSafeFile();
+        assertEquals(pwEntriesNum, dm2.getPwEntries().length);
+        
+        // Duplicate in the second batch, after a first valid batch
+        Data[] dupPwEntriesData = new Data[pwEntriesNum];
+        for (int i = 0; i < pwEntriesNum; i++) {
+            dupPwEntriesData[i] = new PasswordEntry.Data(
+                    i == pwEntriesNum - 1 ? "name0" : "newName" + i,
+                    "pw".toCharArray(),
+                    Instant.ofEpochSecond(i),
+                    "",
+                    "",
+                    null
+            );
+        }
+        File dupSerialFile = TestsUtils.newTestFile("serialized-import-dup.dat");
+        SafeSerializationManager.write(
+                dupSerialFile,
+                serialCipher,
+                serialPw,
+                SafeSerializationManager.MAX_SERIAL_VER,
+                new SafeData(dupPwEntriesData)
+        );
+        assertThrows(
+                IllegalStateException.class,
+                () -> dm.importSerialized(dupSerialFile, serialCipher, serialPw)
+        );
+        assertEquals(pwEntriesNum, dm.getPwEntries().length);
+        assertFalse(dm.hasChanges());
+        
+        assertThrows(
+                Exception.class,
+                () -> dm.importSerialized(serialFile, serialCipher, "wrongPw".toCharArray())
+        );
+        assertEquals(pwEntriesNum, dm.getPwEntries().length);
+    }
+    
+    @Test
+    void testSearchPwEntries() throws Exception {
+        File safeFile = resetConfigAndSafeFile();
+        GlobalConfig.getInstance().setSafeJournalEnabled(true);
+        SafeDataManager dm = new SafeDataManager(safeFile, "safePassword".toCharArray());
+        for (int i = 0; i < 50; i++) {
+            NewPasswordEntry pwEntry = dm.addNewPwEntry();
+            pwEntry.setName("Name" + i, dm);
+            pwEntry.setPassword("pw".toCharArray());
+            pwEntry.setSite(i % 2 == 0 ? "https://Example.COM/" + i : "other" + i);
+        }
+        dm.updateSafeFile();
+        dm.loadSafeFile();
+        
+        assertEquals(50, dm.searchPwEntries("", "").size());
+        assertSearch(dm, "name", "");
+        assertSearch(dm, "E1", "");
+        assertSearch(dm, "", "example.com");
+        assertSearch(dm, "ame2", "EXAMPLE");
+        assertSearch(dm, "none", "");
+        assertEquals(25, dm.searchPwEntries("", "example").size());
+        
+        PasswordEntry pwEntry7 = dm.getPwEntryByCurName("Name7");
+        pwEntry7.setSite("www.example.org");
+        pwEntry7.setName("Renamed7", dm);
+        assertSearch(dm, "", "example");
+        assertSearch(dm, "renamed", "");
+        assertEquals(0, dm.searchPwEntries("name7", "").size());
+        
+        PasswordEntry pwEntry8 = dm.getPwEntryByCurName("Name8");
+        dm.deletePwEntry(pwEntry8);
+        assertSearch(dm, "name8", "");
+        assertEquals(0, dm.searchPwEntries("name8", "").size());
+        dm.restorePwEntry((ExistingPasswordEntry) pwEntry8);
+        assertEquals(1, dm.searchPwEntries("name8", "").size());
+        dm.deletePwEntry(pwEntry8);
+        
+        NewPasswordEntry newPwEntry = dm.addNewPwEntry();
+        newPwEntry.setName("Added", dm);
+        newPwEntry.setPassword("pw".toCharArray());
+        newPwEntry.setSite("added.example.net");
+        assertSearch(dm, "add", "example");
+        
+        dm.saveChanges(); // journal, entries are committed without reloading the safe file
+        assertSearch(dm, "", "example");
+        assertSearch(dm, "renamed7", "");
+        assertEquals(0, dm.searchPwEntries("name8", "").size());
+        
+        dm.loadSafeFile();
+        assertSearch(dm, "", "example");
+        assertEquals(50, dm.searchPwEntries("", "").size());
+    }
+    
+    @Test
+    void testChangesTracking() throws Exception {
+        File safeFile = resetConfigAndSafeFile();
+        SafeDataManager dm = new SafeDataManager(safeFile, "safePassword".toCharArray());
+        for (int i = 0; i < 5; i++) {
+            NewPasswordEntry pwEntry = dm.addNewPwEntry();
+            pwEntry.setName("name" + i, dm);
+            pwEntry.setPassword(("pw" + i).toCharArray());
+        }
+        assertChanges(dm, 5);
+        dm.updateSafeFile();
+        dm.loadSafeFile();
+        assertChanges(dm, 0);
+        
+        PasswordEntry pwEntry1 = dm.getPwEntryByCurName("name1");
+        pwEntry1.setInfo("newInfo");
+        assertChanges(dm, 1);
+        pwEntry1.setInfo("");
+        assertChanges(dm, 0);
+        
+        pwEntry1.setName("newName1", dm);
+        pwEntry1.setTOTP(TestsTOTP.newCommonTOTP1());
+        assertChanges(dm, 1);
+        pwEntry1.setName("name1", dm);
+        assertChanges(dm, 1);
+        pwEntry1.setTOTP(null);
+        assertChanges(dm, 0);
+        
+        NewPasswordEntry newPwEntry = dm.addNewPwEntry();
+        assertChanges(dm, 0); // not valid yet
+        newPwEntry.setName("added", dm);
+        assertChanges(dm, 0);
+        newPwEntry.setPassword("pw".toCharArray());
+        assertChanges(dm, 1);
+        dm.deletePwEntry(newPwEntry);
+        assertChanges(dm, 0);
+        
+        PasswordEntry pwEntry2 = dm.getPwEntryByCurName("name2");
+        pwEntry2.setPassword("newPw".toCharArray());
+        dm.deletePwEntry(pwEntry2);
+        assertTrue(dm.hasChanges());
+        assertEquals(0, dm.getChangedPwEntries().length);
+        pwEntry2.setSite("site while deleted");
+        assertEquals(0, dm.getChangedPwEntries().length);
+        dm.restorePwEntry((ExistingPasswordEntry) pwEntry2);
+        assertChanges(dm, 1);
+        
+        dm.saveChanges();
+        assertChanges(dm, 0);
+        dm.getPwEntryByCurName("name3").setSite("site3");
+        assertChanges(dm, 1);
+        dm.loadSafeFile();
+        assertChanges(dm, 0);
+    }
+    
+    /**
+     * Asserts that the tracked changes are the same as the ones found by checking every password entry.
+     */
+    private static void assertChanges(SafeDataManager dm, int expectedChangedNum) {
+        List<PasswordEntry> expected = new ArrayList<>();
+        for (PasswordEntry pwEntry : dm.getPwEntries()) {
+            if (
+                (pwEntry instanceof NewPasswordEntry && pwEntry.isValid())
+                        || (pwEntry instanceof ExistingPasswordEntry
+                                && ((ExistingPasswordEntry) pwEntry).isModified())
+            ) {
+                expected.add(pwEntry);
+            }
+        }
+        assertEquals(expectedChangedNum, expected.size());
+        assertArrayEquals(expected.toArray(new PasswordEntry[0]), dm.getChangedPwEntries());
+        assertEquals(
+                !expected.isEmpty() || dm.getDeletedPwEntries().length > 0,
+                dm.hasChanges()
+        );
+    }
+    
+    /**
+     * Asserts that the result of searchPwEntries is the same as a linear scan.
+     */
+    private static void assertSearch(SafeDataManager dm, String nameFilter, String siteFilter) {
+        List<PasswordEntry> expected = new ArrayList<>();
+        for (PasswordEntry pwEntry : dm.getPwEntries()) {
+            if (
+                pwEntry.getCurrentName().toLowerCase().contains(nameFilter.toLowerCase())
+                        && pwEntry.getCurrentSite().toLowerCase().contains(siteFilter.toLowerCase())
+            ) {
+                expected.add(pwEntry);
+            }
+        }
+        assertEquals(
+                expected,
+                dm.searchPwEntries(nameFilter, siteFilter),
+                () -> "nameFilter = " + nameFilter + ", siteFilter = " + siteFilter
+        );
+    }
+    
+    private static Data[] sortedByName(Data[] pwEntriesData) {
+        Data[] res = pwEntriesData.clone();
+        Arrays.sort(res, Comparator.comparing((Data pwEntryData) -> pwEntryData.name));
+        return res;
+    }
+    
+    @Test
+    void testSafeFileVerification() throws Exception {
+        for (boolean isDeepVerification : new boolean[] {
+                false, true
+        }) {
+            File safeFile = resetConfigAndSafeFile();
+            GlobalConfig.getInstance().setSafeFileDeepVerification(isDeepVerification);
+            SafeDataManager dm = new SafeDataManager(safeFile, "safePassword".toCharArray());
+            dm.updateSafeFile(); // empty
+            
+            NewPasswordEntry newPwEntry1 = dm.addNewPwEntry();
+            newPwEntry1.setName("name1", dm);
+            newPwEntry1.setPassword("pw1".toCharArray());
+            newPwEntry1.setSite("site1");
+            newPwEntry1.setInfo("info1");
+            newPwEntry1.setTOTP(TestsTOTP.newCommonTOTP1());
+            NewPasswordEntry newPwEntry2 = dm.addNewPwEntry();
+            newPwEntry2.setName("name2", dm);
+            newPwEntry2.setPassword("pw2".toCharArray());
+            dm.saveChanges();
+            assertFalse(dm.hasChanges());
+            
+            SafeDataManager dm2 = new SafeDataManager(safeFile, "safePassword".toCharArray());
+            dm2.loadSafeFile();
+            TestsPasswordEntry.assertArrEquals(dm.getPwEntries(), dm2.getPwEntries());
+            
+            // Entries which have only been loaded (still sealed) are verified too.
+            ((ExistingPasswordEntry) dm2.getPwEntryByCurName("name2"))
+                    .setTOTP(TestsTOTP.newCommonTOTP2());
+            dm2.saveChanges();
+            dm.loadSafeFile();
+            TestsPasswordEntry.assertArrEquals(dm2.getPwEntries(), dm.getPwEntries());
+            assertEquals(
+                    TestsTOTP.newCommonTOTP2(),
+                    dm.getPwEntryByCurName("name2").getCurrentTOTP()
+            );
+        }
+    }
+    
+    @Test
+    void testJournal() throws Exception {
+        File safeFile = resetConfigAndSafeFile();
+        GlobalConfig.getInstance().setSafeJournalEnabled(true);
+        SafeDataManager dm = new SafeDataManager(safeFile, "safePassword".toCharArray());
+        File journalFile = dm.getJournalFile();
+        journalFile.delete();
+        
+        dm.saveChanges(); // not loaded yet, so the whole safe file is written
+        assertTrue(safeFile.isFile());
+        assertFalse(journalFile.exists());
+        long safeFileLen = safeFile.length();
+        
+        NewPasswordEntry newPwEntry1 = dm.addNewPwEntry();
+        newPwEntry1.setName("name1", dm);
+        newPwEntry1.setPassword("pw1".toCharArray());
+        newPwEntry1.setSite("site1");
+        newPwEntry1.setInfo("info1");
+        newPwEntry1.setTOTP(TestsTOTP.newCommonTOTP1());
+        dm.saveChanges();
+        assertFalse(dm.hasChanges());
+        assertTrue(newPwEntry1.isDestroyed());
+        assertTrue(journalFile.isFile());
+        assertEquals(safeFileLen, safeFile.length());
+        
+        ExistingPasswordEntry pwEntry1 = (ExistingPasswordEntry) dm.getPwEntryByCurName("name1");
+        assertArrayEquals("pw1".toCharArray(), pwEntry1.getCurrentPassword());
+        assertEquals(TestsTOTP.newCommonTOTP1(), pwEntry1.getCurrentTOTP());
+        pwEntry1.setName("newName1", dm);
+        pwEntry1.setPassword("newPw1".toCharArray());
+        pwEntry1.setTOTP(null);
+        NewPasswordEntry newPwEntry2 = dm.addNewPwEntry();
+        newPwEntry2.setName("name2", dm);
+        newPwEntry2.setPassword("pw2".toCharArray());
+        dm.addNewPwEntry(); // invalid, not saved
+        dm.saveChanges();
+        assertFalse(dm.hasChanges());
+        assertTrue(pwEntry1.isDestroyed());
+        assertEquals(2, dm.getPwEntries().length);
+        
+        dm.deletePwEntry(dm.getPwEntryByCurName("name2"));
+        dm.saveChanges();
+        assertEquals(0, dm.getDeletedPwEntries().length);
+        assertEquals(safeFileLen, safeFile.length());
+        
+        PasswordEntry[] pwEntries = dm.getPwEntries();
+        assertEquals(1, pwEntries.length);
+        assertEquals("newName1", pwEntries[0].getCurrentName());
+        assertArrayEquals("newPw1".toCharArray(), pwEntries[0].getCurrentPassword());
+        assertNull(pwEntries[0].getCurrentTOTP());
+        
+        SafeDataManager dm2 = new SafeDataManager(safeFile, "safePassword".toCharArray());
+        dm2.loadSafeFile();
+        TestsPasswordEntry.assertArrEquals(pwEntries, dm2.getPwEntries());
+        
+        // The records are padded, and cannot be dropped, reordered nor replayed.
+        byte[] journalBytes = Files.readAllBytes(journalFile.toPath());
+        List<byte[]> journalParts = splitJournal(journalBytes);
+        assertEquals(4, journalParts.size());
+        assertEquals(journalParts.get(1).length, journalParts.get(3).length);
+        for (int[] partsOrder : new int[][] {
+                {
+                        0, 2, 3
+                }, {
+                        0, 2, 1, 3
+                }, {
+                        0, 1, 1, 2, 3
+                }
+        }) {
+            writeJournalParts(journalFile, journalParts, partsOrder);
+            assertThrows(GeneralSecurityException.class, () -> dm2.loadSafeFile());
+        }
+        writeJournalParts(journalFile, journalParts, new int[] {
+                0, 1, 2
+        }); // dropping the last records cannot be distinguished from an interrupted append
+        dm2.loadSafeFile();
+        assertEquals(2, dm2.getPwEntries().length);
+        Files.write(journalFile.toPath(), journalBytes);
+        
+        // A journal which is not bound to the current safe file is ignored.
+        dm.updateSafeFile();
+        assertFalse(journalFile.exists());
+        Files.write(journalFile.toPath(), journalBytes);
+        dm2.loadSafeFile();
+        TestsPasswordEntry.assertArrEquals(pwEntries, dm2.getPwEntries());
+        
+        // The journal is compacted into the safe file after too many records.
+        dm.loadSafeFile();
+        for (int i = 0; i < SafeDataManager.JOURNAL_MAX_RECORDS_NUM; i++) {
+            ((ExistingPasswordEntry) dm.getPwEntryByCurName("newName1")).setInfo("info" + i);
+            dm.saveChanges();
+        }
+        assertTrue(journalFile.isFile());
+        dm2.loadSafeFile();
+        TestsPasswordEntry.assertArrEquals(dm.getPwEntries(), dm2.getPwEntries());
+        
+        ((ExistingPasswordEntry) dm.getPwEntryByCurName("newName1")).setInfo("lastInfo");
+        dm.saveChanges();
+        assertFalse(journalFile.exists());
+        dm2.loadSafeFile();
+        assertEquals("lastInfo", dm2.getPwEntryByCurName("newName1").getCurrentInfo());
+        TestsPasswordEntry.assertArrEquals(dm.getPwEntries(), dm2.getPwEntries());
+    }
+    
+    /**
+     * @param journalBytes
+     * @return the header of the journal, then each of its records.
+     * @throws IOException
+     */
+    private static List<byte[]> splitJournal(byte[] journalBytes) throws IOException {
+        List<byte[]> res = new ArrayList<>();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(journalBytes));
+        in.skipBytes(Short.BYTES + 32); // version, base digest
+        Cipher cipher = CiphersManager.getCipherByName(in.readUTF());
+        in.skipBytes(cipher.getDerivationSaltSize());
+        int partStartInd = journalBytes.length - in.available();
+        res.add(Arrays.copyOfRange(journalBytes, 0, partStartInd));
+        while (in.available() > 0) {
+            int encryptedLen = in.readInt();
+            in.skipBytes(cipher.getIvSize() + encryptedLen + 32); // IV, encrypted data, tag
+            int partEndInd = journalBytes.length - in.available();
+            res.add(Arrays.copyOfRange(journalBytes, partStartInd, partEndInd));
+            partStartInd = partEndInd;
+        }
+        return res;
+    }
+    
+    private static void writeJournalParts(File journalFile, List<byte[]> parts, int[] partsOrder)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int partInd : partsOrder) {
+            out.write(parts.get(partInd));
+        }
+        Files.write(journalFile.toPath(), out.toByteArray());
+    }
+    
     public static File resetConfigAndSafeFile() throws IOException {
         TestsGlobalConfig.resetForTest();
         CiphersManager.waitAllWorkingChecks();
@@ -23,6 +23,7 @@
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -45,6 +46,9 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -55,6 +59,8 @@
 import org.opentest4j.AssertionFailedError;
 
 import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.ciphers.DerivedKeyCache;
+import fr.tigeriodev.tigersafe.ciphers.KeyDerivation;
 import fr.tigeriodev.tigersafe.data.PasswordEntry;
 import fr.tigeriodev.tigersafe.data.PasswordEntry.Data;
 import fr.tigeriodev.tigersafe.data.SafeData;
@@ -66,6 +72,7 @@
 import fr.tigeriodev.tigersafe.tests.TestsGlobalConfig;
 import fr.tigeriodev.tigersafe.tests.utils.TestsStringUtils;
 import fr.tigeriodev.tigersafe.tests.utils.TestsUtils;
+import fr.tigeriodev.tigersafe.utils.CodecContext;
 import fr.tigeriodev.tigersafe.utils.NumberRange;
 import fr.tigeriodev.tigersafe.utils.StringUtils;
 
@@ -111,12 +118,15 @@ void testNegative() {
         void testWriteRead(int num, int min) throws NoSuchAlgorithmException, IOException {
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             DataOutputStream dataOut = new DataOutputStream(out);
-            SafeFileManager.writePositiveInt(num, min, dataOut);
-            dataOut.flush();
-            out.flush();
-            ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
-            DataInputStream dataIn = new DataInputStream(in);
-            int read = SafeFileManager.readPositiveInt(dataIn, min);
+            int read;
+            try (CodecContext ctx = CodecContext.acquire()) {
+                SafeFileManager.writePositiveInt(num, min, dataOut, ctx);
+                dataOut.flush();
+                out.flush();
+                ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+                DataInputStream dataIn = new DataInputStream(in);
+                read = SafeFileManager.readPositiveInt(dataIn, min, ctx);
+            }
             testLog.newChildFromCurMethIf(Level.DEBUG)
                     .debug(
                             () -> "num = " + num + ", min = " + min + ", written = "
@@ -142,7 +152,9 @@ void testRandom(int num, int min) throws NoSuchAlgorithmException, IOException {
             for (int i = 0; i < 50; i++) {
                 ByteArrayOutputStream out = new ByteArrayOutputStream();
                 DataOutputStream dataOut = new DataOutputStream(out);
-                SafeFileManager.writePositiveInt(num, min, dataOut);
+                try (CodecContext ctx = CodecContext.acquire()) {
+                    SafeFileManager.writePositiveInt(num, min, dataOut, ctx);
+                }
                 dataOut.flush();
                 out.flush();
                 byte[] newWritten = out.toByteArray();
@@ -394,12 +406,15 @@ void testWriteRead(String str) throws NoSuchAlgorithmException, IOException {
             
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             DataOutputStream dataOut = new DataOutputStream(out);
-            SafeFileManager.writeStr(str, dataOut);
-            dataOut.flush();
-            out.flush();
-            ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
-            DataInputStream dataIn = new DataInputStream(in);
-            String read = SafeFileManager.readStr(dataIn);
+            String read;
+            try (CodecContext ctx = CodecContext.acquire()) {
+                SafeFileManager.writeStr(str, dataOut, ctx);
+                dataOut.flush();
+                out.flush();
+                ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+                DataInputStream dataIn = new DataInputStream(in);
+                read = SafeFileManager.readStr(dataIn, ctx);
+            }
             testLog.newChildFromCurMethIf(Level.DEBUG)
                     .debug(
                             () -> "str = " + str + ", \nwritten = "
@@ -457,12 +472,15 @@ void testWriteRead(char[] chars) throws NoSuchAlgorithmException, IOException {
             
             ByteArrayOutputStream out = new ByteArrayOutputStream();
             DataOutputStream dataOut = new DataOutputStream(out);
-            SafeFileManager.writeChars(chars, dataOut);
-            dataOut.flush();
-            out.flush();
-            ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
-            DataInputStream dataIn = new DataInputStream(in);
-            char[] read = SafeFileManager.readChars(dataIn);
+            char[] read;
+            try (CodecContext ctx = CodecContext.acquire()) {
+                SafeFileManager.writeChars(chars, dataOut, ctx);
+                dataOut.flush();
+                out.flush();
+                ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+                DataInputStream dataIn = new DataInputStream(in);
+                read = SafeFileManager.readChars(dataIn, ctx);
+            }
             testLog.newChildFromCurMethIf(Level.DEBUG)
                     .debug(
                             () -> "chars = " + Arrays.toString(chars) + ", \nwritten = "
@@ -540,6 +558,173 @@ void testWriteRead(Data[] pwEntriesData)
             );
         }
         
+        @Test
+        void testAllFileVers() throws IOException, GeneralSecurityException, DestroyFailedException {
+            File safeFile = resetConfigAndSafeFile();
+            char[] safePw = TestsStringUtils.newRandomPw();
+            PasswordEntry.Data[] pwEntriesData = new PasswordEntry.Data[] {
+                    TestsPasswordEntry.Data.newCommonChars(true),
+                    TestsPasswordEntry.Data.newCommonChars(false),
+                    TestsPasswordEntry.Data.newCommonChars(true),
+            };
+            for (short fileVer = 1; fileVer <= SafeFileManager.MAX_FILE_VER; fileVer++) {
+                safeFile.delete();
+                SafeFileManager.write(safeFile, safePw, new SafeData(pwEntriesData), null, fileVer);
+                Data[] readPwEntriesData =
+                        SafeFileManager.read(safeFile, safePw).getPwEntriesData();
+                final short curFileVer = fileVer;
+                assertArrayEquals(
+                        pwEntriesData,
+                        readPwEntriesData,
+                        () -> "fileVer = " + curFileVer + ", safePw = " + Arrays.toString(safePw)
+                );
+            }
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> SafeFileManager.write(
+                            safeFile,
+                            safePw,
+                            new SafeData(pwEntriesData),
+                            null,
+                            (short) (SafeFileManager.MAX_FILE_VER + 1)
+                    )
+            );
+        }
+        
+        @Test
+        void testDerivationIterationsNum()
+                throws IOException, GeneralSecurityException, DestroyFailedException {
+            File safeFile = resetConfigAndSafeFile();
+            char[] safePw = TestsStringUtils.newRandomPw();
+            PasswordEntry.Data[] pwEntriesData = new PasswordEntry.Data[] {
+                    TestsPasswordEntry.Data.newCommonChars(true)
+            };
+            int iterationsNum = KeyDerivation.MIN_ITERATIONS_NUM + 1000;
+            DerivedKeyCache keyCache = new DerivedKeyCache();
+            SafeFileManager.write(
+                    safeFile,
+                    safePw,
+                    new SafeData(pwEntriesData),
+                    keyCache,
+                    SafeFileManager.MAX_FILE_VER,
+                    iterationsNum
+            );
+            Data[] readPwEntriesData =
+                    SafeFileManager.read(safeFile, safePw, keyCache).getPwEntriesData();
+            assertArrayEquals(pwEntriesData, readPwEntriesData);
+            assertEquals(1, keyCache.getDerivationsNum()); // the stored iterations number is used
+            assertEquals(1, keyCache.getHitsNum());
+            
+            safeFile.delete();
+            assertThrows(
+                    IllegalArgumentException.class,
+                    () -> SafeFileManager.write(
+                            safeFile,
+                            safePw,
+                            new SafeData(pwEntriesData),
+                            null,
+                            (short) 2,
+                            iterationsNum
+                    )
+            );
+        }
+        
+        @Test
+        void testMappedReadMode()
+                throws IOException, GeneralSecurityException, DestroyFailedException {
+            File safeFile = resetConfigAndSafeFile();
+            char[] safePw = TestsStringUtils.newRandomPw();
+            PasswordEntry.Data[] pwEntriesData = new PasswordEntry.Data[] {
+                    TestsPasswordEntry.Data.newCommonChars(true),
+                    TestsPasswordEntry.Data.newCommonChars(false),
+            };
+            for (short fileVer = 1; fileVer <= SafeFileManager.MAX_FILE_VER; fileVer++) {
+                safeFile.delete();
+                SafeFileManager.write(safeFile, safePw, new SafeData(pwEntriesData), null, fileVer);
+                Data[] streamPwEntriesData = SafeFileManager
+                        .read(safeFile, safePw, null, SafeFileManager.ReadMode.STREAM)
+                        .getPwEntriesData();
+                Data[] mappedPwEntriesData = SafeFileManager
+                        .read(safeFile, safePw, null, SafeFileManager.ReadMode.MAPPED)
+                        .getPwEntriesData();
+                final short curFileVer = fileVer;
+                assertArrayEquals(
+                        pwEntriesData,
+                        streamPwEntriesData,
+                        () -> "fileVer = " + curFileVer
+                );
+                assertArrayEquals(
+                        pwEntriesData,
+                        mappedPwEntriesData,
+                        () -> "fileVer = " + curFileVer
+                );
+            }
+        }
+        
+        @Test
+        void testLazySecrets() throws IOException, GeneralSecurityException, DestroyFailedException {
+            File safeFile = resetConfigAndSafeFile();
+            char[] safePw = TestsStringUtils.newRandomPw();
+            PasswordEntry.Data[] pwEntriesData = new PasswordEntry.Data[] {
+                    TestsPasswordEntry.Data.newCommonChars(true),
+                    TestsPasswordEntry.Data.newCommonChars(false),
+            };
+            SafeFileManager.write(safeFile, safePw, new SafeData(pwEntriesData));
+            SafeData readSafeData = SafeFileManager.read(safeFile, safePw);
+            Data[] readPwEntriesData = readSafeData.getPwEntriesData();
+            
+            assertTrue(readPwEntriesData[0].isPasswordSealed());
+            assertTrue(readPwEntriesData[1].isPasswordSealed());
+            assertTrue(readPwEntriesData[0].hasTOTP());
+            assertFalse(readPwEntriesData[1].hasTOTP());
+            
+            assertArrayEquals(pwEntriesData[1].getPassword(), readPwEntriesData[1].getPassword());
+            assertFalse(readPwEntriesData[1].isPasswordSealed());
+            assertTrue(readPwEntriesData[0].isPasswordSealed());
+            assertEquals(pwEntriesData[0].getTOTP(), readPwEntriesData[0].getTOTP());
+            assertTrue(readPwEntriesData[0].isPasswordSealed());
+            assertNull(readPwEntriesData[1].getTOTP());
+            
+            readSafeData.destroy();
+            assertTrue(readPwEntriesData[0].isDestroyed());
+            assertTrue(readPwEntriesData[1].isDestroyed());
+            assertNull(readPwEntriesData[0].getPassword());
+        }
+        
+        @Test
+        void testSealedSecretsRewrite()
+                throws IOException, GeneralSecurityException, DestroyFailedException {
+            File safeFile = resetConfigAndSafeFile();
+            char[] safePw = TestsStringUtils.newRandomPw();
+            PasswordEntry.Data[] pwEntriesData = new PasswordEntry.Data[] {
+                    TestsPasswordEntry.Data.newCommonChars(true),
+                    TestsPasswordEntry.Data.newCommonChars(false),
+            };
+            SafeFileManager.write(safeFile, safePw, new SafeData(pwEntriesData));
+            SafeData readSafeData = SafeFileManager.read(safeFile, safePw);
+            Data[] readPwEntriesData = readSafeData.getPwEntriesData();
+            
+            assertArrayEquals(pwEntriesData, readPwEntriesData);
+            assertTrue(readPwEntriesData[0].isPasswordSealed());
+            assertTrue(readPwEntriesData[1].isPasswordSealed());
+            
+            for (short fileVer = 1; fileVer <= SafeFileManager.MAX_FILE_VER; fileVer++) {
+                File rewrittenFile = TestsUtils.newTestFile("rewritten-safe-" + fileVer + ".dat");
+                SafeFileManager.write(rewrittenFile, safePw, readSafeData, null, fileVer);
+                assertTrue(readPwEntriesData[0].isPasswordSealed());
+                assertTrue(readPwEntriesData[1].isPasswordSealed());
+                
+                SafeData rewrittenSafeData = SafeFileManager.read(rewrittenFile, safePw);
+                Data[] rewrittenPwEntriesData = rewrittenSafeData.getPwEntriesData();
+                assertArrayEquals(readPwEntriesData, rewrittenPwEntriesData);
+                assertTrue(readPwEntriesData[0].isPasswordSealed());
+                assertEquals(fileVer >= 2, rewrittenPwEntriesData[0].isPasswordSealed());
+                assertArrayEquals(pwEntriesData, rewrittenPwEntriesData);
+                rewrittenSafeData.destroy();
+            }
+            readSafeData.destroy();
+        }
+        
         @Test
         void testRandom() throws IOException, GeneralSecurityException, DestroyFailedException {
             char[] safePw = TestsStringUtils.newRandomPw();
@@ -588,6 +773,37 @@ void testRandom() throws IOException, GeneralSecurityException, DestroyFailedExc
             }
         }
         
+        @Test
+        void testConcurrent() throws Exception {
+            resetConfigAndSafeFile();
+            int threadsNum = 4;
+            ExecutorService executor = Executors.newFixedThreadPool(threadsNum);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < threadsNum; i++) {
+                    File safeFile = TestsUtils.newTestFile("safeConcurrent" + i + ".dat");
+                    futures.add(executor.submit(() -> {
+                        char[] safePw = TestsStringUtils.newRandomPw();
+                        PasswordEntry.Data[] pwEntriesData = new PasswordEntry.Data[200];
+                        for (int j = 0; j < pwEntriesData.length; j++) {
+                            pwEntriesData[j] = TestsPasswordEntry.Data.newCommonChars(j % 2 == 0);
+                        }
+                        SafeFileManager.write(safeFile, safePw, new SafeData(pwEntriesData));
+                        assertArrayEquals(
+                                pwEntriesData,
+                                SafeFileManager.read(safeFile, safePw).getPwEntriesData()
+                        );
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+        
         public static File resetConfigAndSafeFile() throws IOException {
             TestsGlobalConfig.resetForTest();
             CiphersManager.waitAllWorkingChecks();
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.tests.data;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
+import fr.tigeriodev.tigersafe.data.NewPasswordEntry;
+import fr.tigeriodev.tigersafe.data.SafeDataManager;
+import fr.tigeriodev.tigersafe.data.SafeOperation;
+import fr.tigeriodev.tigersafe.data.SafeOperation.Step;
+import fr.tigeriodev.tigersafe.tests.TestClass;
+import fr.tigeriodev.tigersafe.tests.TestsGlobalConfig;
+import fr.tigeriodev.tigersafe.tests.utils.TestsUtils;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
+
+public class SafeOperationTest extends TestClass {
+    
+    @Test
+    void testUpdateAndLoad() throws Exception {
+        File safeFile = resetConfigAndSafeFile();
+        SafeDataManager dm = new SafeDataManager(safeFile, "safePassword".toCharArray());
+        NewPasswordEntry newPwEntry = dm.addNewPwEntry();
+        newPwEntry.setName("name1", dm);
+        newPwEntry.setPassword("pw1".toCharArray());
+        
+        List<Step> steps = new CopyOnWriteArrayList<>();
+        AtomicReference<Throwable> doneThrown = new AtomicReference<>();
+        CountDownLatch doneLatch = new CountDownLatch(1);
+        SafeOperation<Void> updateOp = SafeOperation.update(dm);
+        updateOp.setProgressListener(steps::add).start(Runnable::run, (res, thrown) -> {
+            doneThrown.set(thrown);
+            doneLatch.countDown();
+        });
+        updateOp.await();
+        doneLatch.await();
+        assertNull(doneThrown.get());
+        assertTrue(updateOp.isDone());
+        assertFalse(updateOp.cancel());
+        assertEquals(List.of(Step.WRITING, Step.VERIFYING, Step.REPLACING, Step.DONE), steps);
+        assertTrue(safeFile.isFile());
+        
+        SafeDataManager dm2 = new SafeDataManager(safeFile, "safePassword".toCharArray());
+        SafeOperation.load(dm2).start(Runnable::run, (res, thrown) -> {}).await();
+        assertEquals(1, dm2.getPwEntries().length);
+        assertEquals("name1", dm2.getPwEntries()[0].getCurrentName());
+        assertArrayEquals("pw1".toCharArray(), dm2.getPwEntries()[0].getCurrentPassword());
+        
+        dm.destroy();
+        dm2.destroy();
+    }
+    
+    @Test
+    void testCancel() throws Exception {
+        File safeFile = resetConfigAndSafeFile();
+        SafeDataManager dm = new SafeDataManager(safeFile, "safePassword".toCharArray());
+        
+        CountDownLatch blockerLatch = new CountDownLatch(1);
+        SafeOperation<Void> blockerOp = new SafeOperation<>("blocker", () -> {
+            blockerLatch.await();
+            return null;
+        });
+        blockerOp.start(Runnable::run, (res, thrown) -> {});
+        
+        AtomicReference<Throwable> doneThrown = new AtomicReference<>();
+        CountDownLatch doneLatch = new CountDownLatch(1);
+        SafeOperation<Void> updateOp = SafeOperation.update(dm);
+        updateOp.start(Runnable::run, (res, thrown) -> {
+            doneThrown.set(thrown);
+            doneLatch.countDown();
+        });
+        assertTrue(updateOp.cancel());
+        assertTrue(updateOp.isCancelRequested());
+        blockerLatch.countDown();
+        
+        assertThrows(CancellationException.class, () -> updateOp.await());
+        doneLatch.await();
+        assertInstanceOf(CancellationException.class, doneThrown.get());
+        assertEquals(Step.DONE, updateOp.getStep());
+        assertFalse(safeFile.exists());
+        assertFalse(
+                safeFile.toPath().resolveSibling("_temp_-" + safeFile.getName()).toFile().exists()
+        );
+        
+        SafeOperation.update(dm).start(Runnable::run, (res, thrown) -> {}).await();
+        assertTrue(safeFile.isFile());
+        dm.destroy();
+    }
+    
+    @Test
+    void testOwnedSecretDestroyedWhenCancelledBeforeStart() throws Exception {
+        File safeFile = resetConfigAndSafeFile();
+        SafeDataManager dm = new SafeDataManager(safeFile, "safePassword".toCharArray());
+        int initSecretsNum = SecretArena.getSecretsNum();
+        
+        CountDownLatch blockerLatch = new CountDownLatch(1);
+        SafeOperation<Void> blockerOp = new SafeOperation<>("blocker", () -> {
+            blockerLatch.await();
+            return null;
+        });
+        blockerOp.start(Runnable::run, (res, thrown) -> {});
+        
+        SafeOperation<Void> changeOp =
+                SafeOperation.changeSafePw(dm, "newSafePassword".toCharArray());
+        assertEquals(initSecretsNum + 1, SecretArena.getSecretsNum());
+        changeOp.start(Runnable::run, (res, thrown) -> {});
+        SafeOperation.cancelAll();
+        assertTrue(changeOp.isCancelRequested());
+        blockerLatch.countDown();
+        
+        assertThrows(CancellationException.class, () -> changeOp.await());
+        assertEquals(initSecretsNum, SecretArena.getSecretsNum());
+        assertTrue(dm.isSafePw("safePassword".toCharArray()));
+        
+        SafeOperation<Void> discardedOp =
+                SafeOperation.changeSafePw(dm, "newSafePassword".toCharArray());
+        assertEquals(initSecretsNum + 1, SecretArena.getSecretsNum());
+        discardedOp.discard();
+        assertEquals(initSecretsNum, SecretArena.getSecretsNum());
+        assertTrue(discardedOp.isDone());
+        assertThrows(CancellationException.class, () -> discardedOp.await());
+        assertThrows(
+                IllegalStateException.class,
+                () -> discardedOp.start(Runnable::run, (res, thrown) -> {})
+        );
+        dm.destroy();
+    }
+    
+    @Test
+    void testAwaitAll() throws Exception {
+        CountDownLatch blockerLatch = new CountDownLatch(1);
+        SafeOperation<Void> blockerOp = new SafeOperation<>("blocker", () -> {
+            blockerLatch.await();
+            return null;
+        });
+        blockerOp.start(Runnable::run, (res, thrown) -> {});
+        assertFalse(SafeOperation.awaitAll(50));
+        
+        blockerLatch.countDown();
+        assertTrue(SafeOperation.awaitAll(5000));
+        assertTrue(blockerOp.isDone());
+    }
+    
+    private static File resetConfigAndSafeFile() throws IOException {
+        TestsGlobalConfig.resetForTest();
+        CiphersManager.waitAllWorkingChecks();
+        return TestsUtils.newTestFile("safe5.dat");
+    }
+    
+}
@@ -19,13 +19,18 @@
 package fr.tigeriodev.tigersafe.tests.data;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.NoSuchElementException;
 
 import javax.security.auth.DestroyFailedException;
 
@@ -80,6 +85,75 @@ void testBig() throws FileNotFoundException, IOException, GeneralSecurityExcepti
             testWriteRead(pwEntriesData);
         }
         
+        @Test
+        void testLongStrings() throws FileNotFoundException, IOException,
+                GeneralSecurityException, DestroyFailedException {
+            StringBuilder longInfo = new StringBuilder();
+            for (int i = 0; i < 8000; i++) { // 64000 UTF bytes, close to the limit of an entry string
+                longInfo.append("a\u00e9\u20ac\u0000");
+            }
+            testWriteRead(
+                    new PasswordEntry.Data[] {
+                            new PasswordEntry.Data(
+                                    "long\u00e9",
+                                    "\u20acpassword\u0000".toCharArray(),
+                                    Instant.ofEpochSecond(4L),
+                                    "",
+                                    longInfo.toString(),
+                                    TestsTOTP.newCommonTOTP1()
+                            )
+                    }
+            );
+        }
+        
+        @Test
+        void testEntriesReader() throws Exception {
+            Data[] pwEntriesData = TestsPasswordEntry.Data.newSimpleArr(true);
+            for (Cipher cipher : new Cipher[] {
+                    TestsCiphersManager.getWorkingNotAuthCipher(),
+                    TestsCiphersManager.getWorkingAuthCipher()
+            }) {
+                char[] serialPw = TestsStringUtils.newRandomPw();
+                File serialFile = TestsUtils.newTestFile("serial-reader.dat");
+                SafeSerializationManager.write(
+                        serialFile,
+                        cipher,
+                        serialPw,
+                        SafeSerializationManager.MAX_SERIAL_VER,
+                        new SafeData(pwEntriesData)
+                );
+                
+                try (
+                        SafeSerializationManager.EntriesReader reader =
+                                SafeSerializationManager
+                                        .openEntriesReader(serialFile, cipher, serialPw)
+                ) {
+                    assertEquals(SafeSerializationManager.MAX_SERIAL_VER, reader.getSerialVer());
+                    assertEquals(pwEntriesData.length, reader.getEntriesNum());
+                    for (Data pwEntryData : pwEntriesData) {
+                        assertTrue(reader.hasNext());
+                        assertEquals(pwEntryData, reader.next());
+                    }
+                    assertFalse(reader.hasNext());
+                    assertThrows(NoSuchElementException.class, () -> reader.next());
+                }
+                
+                SafeSerializationManager.EntriesReader partialReader =
+                        SafeSerializationManager.openEntriesReader(serialFile, cipher, serialPw);
+                assertEquals(pwEntriesData[0], partialReader.next());
+                partialReader.close();
+                assertFalse(partialReader.hasNext());
+                assertThrows(IllegalStateException.class, () -> partialReader.next());
+                
+                char[] wrongPw = TestsStringUtils.newWrongPw(serialPw);
+                assertThrows(
+                        Exception.class,
+                        () -> SafeSerializationManager.read(serialFile, cipher, wrongPw),
+                        () -> "cipher = " + cipher.getName()
+                );
+            }
+        }
+        
         void testWriteRead(Data[] pwEntriesData)
                 throws IOException, GeneralSecurityException, DestroyFailedException {
             Cipher cipher = TestsCiphersManager.getWorkingAuthCipher();
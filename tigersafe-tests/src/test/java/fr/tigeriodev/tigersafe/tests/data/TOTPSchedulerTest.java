@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.tests.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tigeriodev.tigersafe.data.TOTP;
+import fr.tigeriodev.tigersafe.data.TOTPScheduler;
+import fr.tigeriodev.tigersafe.tests.TestClass;
+
+public class TOTPSchedulerTest extends TestClass {
+    
+    @Test
+    void testSharedTimer() throws InterruptedException {
+        TOTPScheduler scheduler = TOTPScheduler.getInstance();
+        int initSubscriptionsNum = scheduler.getSubscriptionsNum();
+        int totpsNum = 3;
+        int intervalsNum = 2;
+        CountDownLatch latch = new CountDownLatch(totpsNum * intervalsNum);
+        AtomicInteger updatesNum = new AtomicInteger();
+        AtomicInteger invalidCodesNum = new AtomicInteger();
+        List<TOTPScheduler.Subscription> subs = new ArrayList<>();
+        
+        long initWakeUpsNum = scheduler.getWakeUpsNum();
+        for (int i = 0; i < totpsNum; i++) {
+            TOTP totp = new TOTP(new byte[] {
+                    (byte) (i + 1)
+            }, "", "", TOTP.Algorithm.SHA1, 6, 1);
+            subs.add(scheduler.subscribe(totp, false, (updatedTOTP, curTime, isNewInterval) -> {
+                if (
+                    !isNewInterval
+                            || !updatedTOTP.newCode(updatedTOTP.getIntervalInd(curTime))
+                                    .equals(updatedTOTP.getCurCode())
+                ) {
+                    invalidCodesNum.incrementAndGet();
+                }
+                updatesNum.incrementAndGet();
+                latch.countDown();
+            }));
+        }
+        assertEquals(initSubscriptionsNum + totpsNum, scheduler.getSubscriptionsNum());
+        
+        assertTrue(latch.await(intervalsNum + 3, TimeUnit.SECONDS));
+        assertEquals(0, invalidCodesNum.get());
+        // A single wake up per interval for all the TOTPs of the same period.
+        assertTrue(scheduler.getWakeUpsNum() - initWakeUpsNum < updatesNum.get());
+        
+        for (TOTPScheduler.Subscription sub : subs) {
+            sub.close();
+            sub.close();
+        }
+        assertEquals(initSubscriptionsNum, scheduler.getSubscriptionsNum());
+        int closedUpdatesNum = updatesNum.get();
+        Thread.sleep(1500);
+        assertEquals(closedUpdatesNum, updatesNum.get());
+    }
+    
+    @Test
+    void testTicks() throws InterruptedException {
+        TOTPScheduler scheduler = TOTPScheduler.getInstance();
+        TOTP totp = TestsTOTP.newCommonTOTP1(); // 30 seconds period
+        CountDownLatch latch = new CountDownLatch(2);
+        AtomicInteger newIntervalsNum = new AtomicInteger();
+        try (TOTPScheduler.Subscription sub =
+                scheduler.subscribe(totp, true, (updatedTOTP, curTime, isNewInterval) -> {
+                    if (isNewInterval) {
+                        newIntervalsNum.incrementAndGet();
+                    }
+                    latch.countDown();
+                })) {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        }
+        assertTrue(newIntervalsNum.get() <= 1);
+    }
+    
+}
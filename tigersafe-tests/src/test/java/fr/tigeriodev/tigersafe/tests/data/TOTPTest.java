@@ -26,7 +26,12 @@
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -34,6 +39,7 @@
 import fr.tigeriodev.tigersafe.data.TOTP;
 import fr.tigeriodev.tigersafe.tests.TestClass;
 import fr.tigeriodev.tigersafe.utils.StringUtils;
+import fr.tigeriodev.tigersafe.utils.TOTPUtils;
 
 public class TOTPTest extends TestClass {
     
@@ -55,6 +61,25 @@ void testCommon() {
         assertEquals("610045", totp.getNextCode());
     }
     
+    @Test
+    void testPrecomputeCode() {
+        TOTP totp = TestsTOTP.newCommonTOTP1();
+        assertFalse(totp.precomputeCode());
+        
+        Instant initTime = Instant.ofEpochSecond(417L);
+        totp.updateCurTime(initTime);
+        assertTrue(totp.precomputeCode());
+        assertFalse(totp.precomputeCode());
+        
+        assertTrue(totp.updateCurTime(initTime.plusSeconds(30)));
+        assertEquals("369327", totp.getCurCode());
+        assertEquals("809365", totp.getNextCode());
+        
+        assertTrue(totp.precomputeCode());
+        assertTrue(totp.updateCurTime(initTime.plusSeconds(90)));
+        assertEquals("610045", totp.getCurCode());
+    }
+    
     @Test
     void testNewCode() {
         byte[][] keys = new byte[][] {
@@ -97,6 +122,69 @@ void testNewCode() {
         }
     }
     
+    @Test
+    void testWriteCodeAndBatchUpdate() throws Exception {
+        TOTP totp1 = TestsTOTP.newCommonTOTP1();
+        TOTP totp2 = TestsTOTP.newCommonTOTP2();
+        
+        char[] dest = new char[totp1.digitsNum];
+        totp1.writeCode(13L, dest, 0);
+        assertEquals("605961", new String(dest));
+        assertEquals(
+                TOTPUtils.generateTOTP(
+                        totp2.getKeyBytes(),
+                        14L,
+                        totp2.digitsNum,
+                        "Hmac" + totp2.algo.name()
+                ),
+                totp2.newCode(14L)
+        );
+        
+        Instant initTime = Instant.ofEpochSecond(417L);
+        assertEquals(2, TOTP.updateCurTime(List.of(totp1, totp2), initTime));
+        assertEquals(0, TOTP.updateCurTime(List.of(totp1, totp2), initTime.plusSeconds(1)));
+        assertEquals("605961", totp1.getCurCode());
+        assertEquals(totp2.newCode(totp2.getIntervalInd(initTime)), totp2.getCurCode());
+        
+        totp1.destroy();
+        assertThrowsExactly(IllegalStateException.class, () -> totp1.newCode(14L));
+    }
+    
+    @Test
+    void testConcurrentCodes() throws Exception {
+        TOTP totp = TestsTOTP.newCommonTOTP1();
+        String[] expectedCodes = new String[64];
+        for (int i = 0; i < expectedCodes.length; i++) {
+            expectedCodes[i] = TOTPUtils.generateTOTP(
+                    totp.getKeyBytes(),
+                    i,
+                    totp.digitsNum,
+                    "Hmac" + totp.algo.name()
+            );
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    boolean res = true;
+                    for (int n = 0; n < 50; n++) {
+                        for (int i = 0; i < expectedCodes.length; i++) {
+                            res = expectedCodes[i].equals(totp.newCode(i)) && res;
+                        }
+                    }
+                    return res;
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+    
     @Nested
     class FromURI {
         
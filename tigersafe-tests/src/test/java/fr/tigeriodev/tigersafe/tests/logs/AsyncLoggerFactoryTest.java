@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.tests.logs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tigeriodev.tigersafe.logs.AsyncLoggerFactory;
+import fr.tigeriodev.tigersafe.logs.Level;
+import fr.tigeriodev.tigersafe.logs.LogRecord;
+import fr.tigeriodev.tigersafe.logs.LogSink;
+import fr.tigeriodev.tigersafe.logs.Logger;
+import fr.tigeriodev.tigersafe.logs.RotatingFileLogSink;
+import fr.tigeriodev.tigersafe.tests.TestClass;
+import fr.tigeriodev.tigersafe.tests.utils.TestsUtils;
+
+public class AsyncLoggerFactoryTest extends TestClass {
+    
+    /**
+     * Sink which waits for its release before writing each record.
+     */
+    static class BlockedSink implements LogSink {
+        
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<LogRecord> records = Collections.synchronizedList(new ArrayList<>());
+        
+        @Override
+        public void write(LogRecord record) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            records.add(record);
+        }
+        
+        @Override
+        public void flush() {}
+        
+        @Override
+        public void close() {}
+        
+    }
+    
+    @Test
+    void testWriteAndFlush() throws IOException, InterruptedException {
+        File file = TestsUtils.newTestFile("asyncLogs.log");
+        AsyncLoggerFactory factory = new AsyncLoggerFactory(new RotatingFileLogSink(file));
+        Logger asyncLog = factory.newLogger("AsyncTest", Level.INFO);
+        
+        Thread otherThread = new Thread(() -> {
+            for (int i = 0; i < 50; i++) {
+                int fi = i;
+                asyncLog.info(() -> "other " + fi);
+            }
+        }, "asyncTestThread");
+        otherThread.start();
+        for (int i = 0; i < 50; i++) {
+            int fi = i;
+            asyncLog.info(() -> "main " + fi);
+            asyncLog.debug(() -> "not loggable");
+        }
+        otherThread.join();
+        assertTrue(factory.flush(5000));
+        
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(100, lines.size());
+        assertEquals(100, factory.getWrittenNum());
+        int otherThreadLinesNum = 0;
+        for (String line : lines) {
+            String[] fields = line.split(" \\| ");
+            assertEquals(6, fields.length, line);
+            assertEquals(Level.INFO.id, fields[1]);
+            assertEquals("AsyncTest", fields[3]);
+            Long.parseLong(fields[4]);
+            if ("asyncTestThread".equals(fields[2])) {
+                otherThreadLinesNum++;
+                assertTrue(fields[5].startsWith("other "), line);
+            }
+        }
+        assertEquals(50, otherThreadLinesNum);
+        
+        factory.close();
+        assertTrue(factory.isClosed());
+        assertEquals(0, factory.getDroppedNum());
+        if (file.toPath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            assertEquals(
+                    PosixFilePermissions.fromString("rw-------"),
+                    Files.getPosixFilePermissions(file.toPath())
+            );
+        }
+    }
+    
+    @Test
+    void testRotation() throws IOException {
+        File file = TestsUtils.newTestFile("rotatedLogs.log");
+        RotatingFileLogSink sink = new RotatingFileLogSink(file, 1000, 3);
+        for (int i = 0; i < 4; i++) {
+            Files.deleteIfExists(sink.getFile(i));
+        }
+        AsyncLoggerFactory factory = new AsyncLoggerFactory(sink);
+        Logger asyncLog = factory.newLogger("RotationTest", Level.INFO);
+        for (int i = 0; i < 100; i++) {
+            asyncLog.info(() -> "some message to fill the logs file");
+        }
+        factory.close();
+        
+        assertTrue(sink.getRotationsNum() > 2);
+        for (int i = 0; i < 3; i++) {
+            File rotatedFile = sink.getFile(i).toFile();
+            assertTrue(rotatedFile.exists());
+            assertTrue(rotatedFile.length() <= 1000);
+            rotatedFile.delete();
+        }
+        assertFalse(sink.getFile(3).toFile().exists());
+    }
+    
+    @Test
+    void testDropPolicy() throws InterruptedException {
+        BlockedSink sink = new BlockedSink();
+        AsyncLoggerFactory factory =
+                new AsyncLoggerFactory(sink, 4, AsyncLoggerFactory.OverflowPolicy.DROP);
+        Logger asyncLog = factory.newLogger("DropTest", Level.INFO);
+        for (int i = 0; i < 20; i++) {
+            asyncLog.info(() -> "dropped or not");
+        }
+        assertTrue(factory.getDroppedNum() > 0);
+        
+        sink.release.countDown();
+        assertTrue(factory.flush(5000));
+        factory.close();
+        assertEquals(20 - factory.getDroppedNum() + 1, sink.records.size());
+        LogRecord lastRecord = sink.records.get(sink.records.size() - 1);
+        assertEquals(Level.WARN, lastRecord.level);
+        assertTrue(lastRecord.msg.contains(factory.getDroppedNum() + " log records dropped"));
+    }
+    
+    @Test
+    void testBlockPolicy() throws InterruptedException {
+        BlockedSink sink = new BlockedSink();
+        AsyncLoggerFactory factory =
+                new AsyncLoggerFactory(sink, 4, AsyncLoggerFactory.OverflowPolicy.BLOCK);
+        Logger asyncLog = factory.newLogger("BlockTest", Level.INFO);
+        CountDownLatch loggedAll = new CountDownLatch(1);
+        Thread loggingThread = new Thread(() -> {
+            for (int i = 0; i < 20; i++) {
+                asyncLog.info(() -> "blocked until written");
+            }
+            loggedAll.countDown();
+        });
+        loggingThread.start();
+        assertFalse(loggedAll.await(200, TimeUnit.MILLISECONDS));
+        
+        sink.release.countDown();
+        loggingThread.join();
+        assertTrue(factory.flush(5000));
+        factory.close();
+        assertEquals(0, factory.getDroppedNum());
+        assertEquals(20, sink.records.size());
+    }
+    
+}
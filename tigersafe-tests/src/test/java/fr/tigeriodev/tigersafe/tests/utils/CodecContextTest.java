@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.tests.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tigeriodev.tigersafe.tests.TestClass;
+import fr.tigeriodev.tigersafe.utils.CodecContext;
+import fr.tigeriodev.tigersafe.utils.UTFUtils;
+
+public class CodecContextTest extends TestClass {
+    
+    @Test
+    void testPoolAndDestroy() throws Exception {
+        CodecContext ctx1 = CodecContext.acquire();
+        CodecContext ctx2 = CodecContext.acquire();
+        assertNotSame(ctx1, ctx2);
+        
+        byte[] intBuf = ctx1.getIntBuf();
+        Arrays.fill(intBuf, (byte) 7);
+        byte[] utfBytesBuf = ctx1.getUTFBytesBuf(10);
+        assertTrue(utfBytesBuf.length >= 10);
+        Arrays.fill(utfBytesBuf, (byte) 7);
+        char[] utfCharsBuf = ctx1.getUTFCharsBuf(70000);
+        assertTrue(utfCharsBuf.length >= 70000);
+        Arrays.fill(utfCharsBuf, 'a');
+        assertFalse(ctx1.isDestroyed());
+        
+        ctx1.close();
+        assertTrue(ctx1.isDestroyed());
+        assertArrayEquals(new byte[intBuf.length], intBuf);
+        assertArrayEquals(new byte[utfBytesBuf.length], utfBytesBuf);
+        assertArrayEquals(new char[utfCharsBuf.length], utfCharsBuf);
+        assertThrows(IllegalStateException.class, () -> ctx1.getIntBuf());
+        assertThrows(IllegalStateException.class, () -> ctx1.close());
+        
+        CodecContext ctx3 = CodecContext.acquire();
+        assertSame(ctx1, ctx3);
+        ctx3.close();
+        ctx2.close();
+    }
+    
+    @Test
+    void testUTFChars() throws Exception {
+        char[] chars = "abé€\u0000z".toCharArray();
+        int utflen = UTFUtils.getUTFLen(chars);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CodecContext ctx = CodecContext.acquire()) {
+            UTFUtils.writeChars(chars, utflen, new DataOutputStream(out), ctx);
+            DataInputStream dataIn =
+                    new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+            assertArrayEquals(chars, UTFUtils.readChars(utflen, dataIn, ctx));
+        }
+    }
+    
+}
@@ -20,12 +20,20 @@
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import javax.security.auth.Destroyable;
 
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
 import fr.tigeriodev.tigersafe.tests.TestClass;
+import fr.tigeriodev.tigersafe.tests.logs.TestsLogs;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.MutableString;
 
 public class MemUtilsTest extends TestClass {
     
@@ -127,6 +135,36 @@ void testDeeply2() {
             assertCleared(testInnerObjArr[1]);
         }
         
+        static class FinalFieldsObj {
+            
+            final int i = Integer.parseInt("1"); // not a compile-time constant
+            final char[][] charMatrix = new char[][] {
+                    {
+                            '1', '2'
+                    }, null, {
+                            '3'
+                    }
+            };
+            final Object[] objArr = new Object[] {
+                    new TestObj(), null
+            };
+            final Integer boxedInt = Integer.valueOf(1);
+            
+        }
+        
+        @Test
+        void testFinalFieldsAndNestedArrays() {
+            final FinalFieldsObj obj = new FinalFieldsObj();
+            
+            assertTrue(MemUtils.tryClearPrimitives(obj, true));
+            
+            assertEquals(0, obj.i);
+            assertArrayEquals(new char[2], obj.charMatrix[0]);
+            assertArrayEquals(new char[1], obj.charMatrix[2]);
+            assertCleared((TestObj) obj.objArr[0]);
+            assertEquals(1, obj.boxedInt); // shared boxed value not cleared
+        }
+        
         void assertCleared(TestObj obj) {
             assertEquals(false, obj.bool);
             assertEquals(0L, obj.l);
@@ -165,4 +203,65 @@ void assertCleared(TestObj obj) {
         
     }
     
+    @Test
+    void testTryClearStrings() {
+        String str1 = new String("secret1".toCharArray());
+        String str2 = new String("secret€2".toCharArray());
+        assertTrue(MemUtils.tryClearStrings(str1, null, "", str2));
+        assertEquals("\0\0\0\0\0\0\0", str1);
+        assertArrayEquals(new char[8], str2.toCharArray()); // UTF-16 coder kept
+    }
+    
+    @Test
+    void testTryDestroyAll() {
+        MutableString str1 = new MutableString.Simple("secret1".toCharArray());
+        MutableString str2 = new MutableString.Simple("secret2".toCharArray());
+        assertTrue(MemUtils.tryDestroyAll(Arrays.asList(str1, null, str2)));
+        assertTrue(str1.isDestroyed());
+        assertTrue(str2.isDestroyed());
+        
+        MutableString str3 = new MutableString.Simple("secret3".toCharArray());
+        assertTrue(MemUtils.tryDestroyAll(new Destroyable[] {
+                str3
+        }));
+        assertTrue(str3.isDestroyed());
+    }
+    
+    @Nested
+    class ClearHeap {
+        
+        @Test
+        void testBytesBudget() {
+            long maxBytes = 8 * 1024 * 1024;
+            MemUtils.ClearHeapReport report = MemUtils.clearHeap(0, maxBytes, 60000);
+            int chunkLen = MemUtils.getClearHeapChunkLen();
+            assertTrue(report.getTargetBytesNum() <= maxBytes, () -> report.toString());
+            assertTrue(report.getTargetBytesNum() > maxBytes - chunkLen, () -> report.toString());
+            assertTrue(report.isComplete(), () -> report.toString());
+            assertFalse(report.isBudgetExceeded());
+            assertEquals(report.getTargetBytesNum(), report.getScrubbedBytesNum());
+            assertEquals(report.getTargetBytesNum() / chunkLen, report.getChunksNum());
+            assertTrue(report.getGCsNum() != 0, () -> report.toString());
+            assertTrue(report.getElapsedNanos() > 0);
+        }
+        
+        @Test
+        void testTimeBudget() {
+            MemUtils.ClearHeapReport report = MemUtils.clearHeap(0, Long.MAX_VALUE, 0);
+            assertTrue(report.getTargetBytesNum() > 0);
+            assertTrue(report.isBudgetExceeded(), () -> report.toString());
+            assertFalse(report.isComplete());
+            assertEquals(0, report.getScrubbedBytesNum());
+            assertTrue(TestsLogs.resetWarnOrHigherPrinted());
+        }
+        
+        @Test
+        void testMarginAboveFreeMemory() {
+            MemUtils.ClearHeapReport report = MemUtils.clearHeap(Long.MAX_VALUE);
+            assertEquals(0, report.getTargetBytesNum());
+            assertTrue(report.isComplete());
+        }
+        
+    }
+    
 }
@@ -19,6 +19,9 @@
 package fr.tigeriodev.tigersafe.tests.utils;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.function.Consumer;
 
@@ -27,6 +30,7 @@
 import fr.tigeriodev.tigersafe.data.SafeDataManager;
 import fr.tigeriodev.tigersafe.tests.TestClass;
 import fr.tigeriodev.tigersafe.utils.MutableString;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
 
 public class MutableStringTest extends TestClass {
     
@@ -58,6 +62,7 @@ void test1() {
             
             mutStr.remChars(3, 7);
             assertArrayEquals("ab fg".toCharArray(), mutStr.getVal());
+            assertEquals(5, mutStr.length());
             
             mutStr.insertChars(3, "cde ".toCharArray());
             assertArrayEquals("ab cde fg".toCharArray(), mutStr.getVal());
@@ -108,17 +113,44 @@ void test1() {
             
             mutStr.addChar('M');
             assertArrayEquals(("m".repeat(maxLen) + "M").toCharArray(), mutStr.getVal());
+            assertEquals(maxLen + 1, mutStr.length());
             
             mutStr.clear();
             assertArrayEquals("".toCharArray(), mutStr.getVal());
+            assertEquals(0, mutStr.length());
         });
     }
     
+    @Test
+    void testSecuredSecrets() throws Exception {
+        int initSecretsNum = SecretArena.getSecretsNum();
+        MutableString mutStr = new MutableString.Secured();
+        assertEquals(initSecretsNum, SecretArena.getSecretsNum());
+        
+        mutStr.setChars("secured");
+        mutStr.addChars(" value");
+        assertArrayEquals("secured value".toCharArray(), mutStr.getVal());
+        assertEquals(initSecretsNum + 1, SecretArena.getSecretsNum());
+        MutableString same = new MutableString.Secured("secured value".toCharArray());
+        MutableString other = new MutableString.Secured("secured valuE".toCharArray());
+        assertTrue(mutStr.hasSameVal(same));
+        assertTrue(mutStr.hasSameVal(new MutableString.Simple("secured value")));
+        assertFalse(mutStr.hasSameVal(other));
+        assertFalse(mutStr.hasSameVal(new MutableString.Secured()));
+        same.destroy();
+        other.destroy();
+        
+        mutStr.destroy();
+        assertEquals(0, mutStr.length());
+        assertEquals(initSecretsNum, SecretArena.getSecretsNum());
+    }
+    
     void testAllMutableStrings(Consumer<MutableString> test) {
         for (MutableString mutStr : new MutableString[] {
                 SafeDataManager.newSafePwHolder(),
                 new MutableString.Simple(),
-                new MutableString.Advanced(0, SafeDataManager.EXPECTED_PW_MAX_LEN >>> 1)
+                new MutableString.Advanced(0, SafeDataManager.EXPECTED_PW_MAX_LEN >>> 1),
+                new MutableString.Advanced(1, SafeDataManager.EXPECTED_PW_MAX_LEN)
         }) {
             testLog.debug(() -> "Start " + mutStr);
             test.accept(mutStr);
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package fr.tigeriodev.tigersafe.tests.utils;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tigeriodev.tigersafe.tests.TestClass;
+import fr.tigeriodev.tigersafe.utils.RandomPool;
+
+public class RandomPoolTest extends TestClass {
+    
+    @Test
+    void testNextInt() throws NoSuchAlgorithmException {
+        for (int bound : new int[] {
+                1, 2, 3, 7, 8, 100, 1024, Integer.MAX_VALUE
+        }) {
+            for (int i = 0; i < 500; i++) {
+                int val = RandomPool.nextInt(bound);
+                assertTrue(val >= 0 && val < bound, () -> "bound = " + bound + ", val = " + val);
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> RandomPool.nextInt(0));
+        assertThrows(IllegalArgumentException.class, () -> RandomPool.nextInt(-1));
+    }
+    
+    @Test
+    void testNextIntDistribution() throws NoSuchAlgorithmException {
+        int[] counts = new int[6];
+        int draws = 60000;
+        for (int i = 0; i < draws; i++) {
+            counts[RandomPool.nextInt(counts.length)]++;
+        }
+        int expected = draws / counts.length;
+        for (int count : counts) {
+            assertTrue(
+                    Math.abs(count - expected) < expected / 10,
+                    () -> "counts = " + Arrays.toString(counts)
+            );
+        }
+    }
+    
+    @Test
+    void testNextBytes() throws NoSuchAlgorithmException {
+        for (int len : new int[] {
+                0, 1, 12, 32, RandomPool.BATCH_SIZE - 1, RandomPool.BATCH_SIZE,
+                RandomPool.BATCH_SIZE + 1, 5000
+        }) {
+            byte[] bytes1 = new byte[len];
+            byte[] bytes2 = new byte[len];
+            RandomPool.nextBytes(bytes1);
+            RandomPool.nextBytes(bytes2);
+            if (len >= 12) {
+                assertFalse(Arrays.equals(bytes1, bytes2), () -> "len = " + len);
+                assertFalse(Arrays.equals(new byte[len], bytes1), () -> "len = " + len);
+            }
+        }
+        
+        byte[] dest = new byte[40];
+        RandomPool.nextBytes(dest, 10, 20);
+        assertTrue(Arrays.equals(new byte[10], Arrays.copyOfRange(dest, 0, 10)));
+        assertTrue(Arrays.equals(new byte[10], Arrays.copyOfRange(dest, 30, 40)));
+        assertFalse(Arrays.equals(new byte[20], Arrays.copyOfRange(dest, 10, 30)));
+        
+        assertThrows(IndexOutOfBoundsException.class, () -> RandomPool.nextBytes(dest, 30, 20));
+    }
+    
+    @Test
+    void testNextBoolean() throws NoSuchAlgorithmException {
+        int trueNum = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (RandomPool.nextBoolean()) {
+                trueNum++;
+            }
+        }
+        assertTrue(trueNum > 350 && trueNum < 650, "trueNum = " + trueNum);
+    }
+    
+    @Test
+    void testPerThreadSecureRandom() throws NoSuchAlgorithmException, InterruptedException {
+        SecureRandom rand = RandomPool.getSecureRandom();
+        assertSame(rand, RandomPool.getSecureRandom());
+        
+        AtomicReference<SecureRandom> otherThreadRand = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                otherThreadRand.set(RandomPool.getSecureRandom());
+            } catch (NoSuchAlgorithmException ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotSame(rand, otherThreadRand.get());
+    }
+    
+    @Test
+    void testStats() throws NoSuchAlgorithmException {
+        long initCallsNum = RandomPool.getCallsNum();
+        long initBytesNum = RandomPool.getBytesNum();
+        for (int i = 0; i < 10; i++) {
+            RandomPool.nextBytes(new byte[3]);
+        }
+        assertTrue(RandomPool.getCallsNum() - initCallsNum >= 10);
+        assertTrue(RandomPool.getBytesNum() - initBytesNum >= 30);
+        
+        long initRefillsNum = RandomPool.getBatchRefillsNum();
+        RandomPool.clearBuffers();
+        RandomPool.nextBytes(new byte[1]);
+        assertTrue(RandomPool.getBatchRefillsNum() > initRefillsNum);
+    }
+    
+    @Test
+    void testClearBuffersOfOtherThreads() throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        AtomicLong otherThreadRefillsNum = new AtomicLong();
+        Thread thread = new Thread(() -> {
+            try {
+                RandomPool.nextBoolean(); // fills the batch of this thread
+                barrier.await();
+                barrier.await(); // cleared by the main thread
+                long initRefillsNum = RandomPool.getBatchRefillsNum();
+                RandomPool.nextBoolean();
+                otherThreadRefillsNum.set(RandomPool.getBatchRefillsNum() - initRefillsNum);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        });
+        thread.start();
+        barrier.await();
+        RandomPool.clearBuffers();
+        barrier.await();
+        thread.join();
+        assertTrue(otherThreadRefillsNum.get() >= 1);
+    }
+    
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2024-2025 tigeriodev (tigeriodev@tutamail.com)
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+package fr.tigeriodev.tigersafe.tests.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.Test;
+
+import fr.tigeriodev.tigersafe.tests.TestClass;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
+
+public class SecretArenaTest extends TestClass {
+    
+    @Test
+    void testReadAndDestroy() throws Exception {
+        byte[] bytes = new byte[] {
+                1, -2, 3, 0, 127, -128
+        };
+        SecretArena.Secret bytesSecret = SecretArena.newSecret(bytes);
+        assertEquals(bytes.length, bytesSecret.getLength());
+        assertArrayEquals(bytes, bytesSecret.readBytes());
+        byte[] dest = new byte[bytes.length + 4];
+        bytesSecret.readBytes(dest, 2);
+        assertArrayEquals(bytes, Arrays.copyOfRange(dest, 2, 2 + bytes.length));
+        assertThrows(IndexOutOfBoundsException.class, () -> bytesSecret.readBytes(dest, 5));
+        
+        char[] chars = "pâssword€\u0000é".toCharArray();
+        SecretArena.Secret charsSecret = SecretArena.newSecret(chars);
+        assertArrayEquals(chars, charsSecret.readChars());
+        assertTrue(charsSecret.contentEquals(chars));
+        assertFalse(charsSecret.contentEquals("pâssword€\u0000è".toCharArray()));
+        assertFalse(charsSecret.contentEquals("pâssword".toCharArray()));
+        assertFalse(charsSecret.contentEquals((char[]) null));
+        
+        SecretArena.Secret emptySecret = SecretArena.newSecret(new char[0]);
+        assertEquals(0, emptySecret.readChars().length);
+        assertTrue(emptySecret.contentEquals(new char[0]));
+        
+        for (SecretArena.Secret secret : List.of(bytesSecret, charsSecret, emptySecret)) {
+            assertTrue(MemUtils.tryDestroy(secret));
+            assertTrue(secret.isDestroyed());
+            assertTrue(MemUtils.tryDestroy(secret));
+            assertThrows(IllegalStateException.class, () -> secret.readBytes());
+            assertThrows(IllegalStateException.class, () -> secret.readChars());
+        }
+    }
+    
+    @Test
+    void testDuplicateAndKey() throws Exception {
+        char[] chars = "duplicatedPassword".toCharArray();
+        SecretArena.Secret secret = SecretArena.newSecret(chars);
+        SecretArena.Secret copy = secret.duplicate();
+        assertEquals(chars.length, copy.getCharsNum());
+        assertArrayEquals(chars, copy.readChars());
+        assertTrue(secret.contentEquals(copy));
+        assertTrue(copy.contentEquals(secret));
+        SecretArena.Secret other = SecretArena.newSecret("duplicatedPassworD".toCharArray());
+        assertFalse(secret.contentEquals(other));
+        assertFalse(secret.contentEquals((SecretArena.Secret) null));
+        
+        SecretKey key = SecretArena.newSecretKey(secret, "AES");
+        assertEquals("AES", key.getAlgorithm());
+        assertEquals("RAW", key.getFormat());
+        assertArrayEquals(secret.readBytes(), key.getEncoded());
+        
+        secret.destroy();
+        assertArrayEquals(chars, copy.readChars());
+        assertFalse(key.isDestroyed());
+        assertThrows(IllegalStateException.class, () -> secret.duplicate());
+        assertThrows(IllegalStateException.class, () -> copy.contentEquals(secret));
+        assertTrue(MemUtils.tryDestroyKey(key));
+        assertTrue(MemUtils.isKeyDestroyed(key));
+        assertThrows(IllegalStateException.class, () -> key.getEncoded());
+        copy.destroy();
+        other.destroy();
+    }
+    
+    @Test
+    void testWipeAll() throws Exception {
+        int initSecretsNum = SecretArena.getSecretsNum();
+        SecretArena.Secret secret = SecretArena.newSecret("forgottenPassword".toCharArray());
+        
+        assertEquals(initSecretsNum + 1, SecretArena.wipeAll());
+        assertArrayEquals(new byte[secret.getLength()], secret.readBytes());
+        assertEquals(initSecretsNum + 1, SecretArena.getSecretsNum());
+        
+        secret.destroy();
+        assertEquals(initSecretsNum, SecretArena.getSecretsNum());
+    }
+    
+    @Test
+    void testAllocation() throws Exception {
+        int initSecretsNum = SecretArena.getSecretsNum();
+        long initAllocatedBytesNum = SecretArena.getAllocatedBytesNum();
+        
+        List<SecretArena.Secret> secrets = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        int len = 0;
+        long allocatedBytesNum = 0;
+        while (allocatedBytesNum <= 2 * SecretArena.CHUNK_LEN) {
+            len = (len + 7) % (3 * SecretArena.BLOCK_LEN);
+            byte[] content = new byte[len];
+            for (int i = 0; i < len; i++) {
+                content[i] = (byte) (secrets.size() + i);
+            }
+            secrets.add(SecretArena.newSecret(content));
+            contents.add(content);
+            allocatedBytesNum +=
+                    Math.max(1, (len + SecretArena.BLOCK_LEN - 1) / SecretArena.BLOCK_LEN)
+                            * SecretArena.BLOCK_LEN;
+        }
+        SecretArena.Secret bigSecret = SecretArena.newSecret(new byte[SecretArena.CHUNK_LEN + 1]);
+        assertEquals(SecretArena.CHUNK_LEN + 1, bigSecret.readBytes().length);
+        assertTrue(SecretArena.getChunksNum() >= 4);
+        assertEquals(initSecretsNum + secrets.size() + 1, SecretArena.getSecretsNum());
+        
+        // Free every other secret, then reuse the freed blocks
+        for (int i = 0; i < secrets.size(); i += 2) {
+            secrets.get(i).destroy();
+        }
+        for (int i = 0; i < secrets.size(); i += 2) {
+            secrets.set(i, SecretArena.newSecret(contents.get(i)));
+        }
+        for (int i = 0; i < secrets.size(); i++) {
+            assertArrayEquals(contents.get(i), secrets.get(i).readBytes());
+        }
+        
+        bigSecret.destroy();
+        for (SecretArena.Secret secret : secrets) {
+            secret.destroy();
+        }
+        assertEquals(initSecretsNum, SecretArena.getSecretsNum());
+        assertEquals(initAllocatedBytesNum, SecretArena.getAllocatedBytesNum());
+    }
+    
+}
@@ -18,8 +18,11 @@
 
 package fr.tigeriodev.tigersafe.tests.utils;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import javax.crypto.Mac;
+
 import org.junit.jupiter.api.Test;
 
 import fr.tigeriodev.tigersafe.tests.TestClass;
@@ -213,4 +216,27 @@ void testGenerateTOTP() {
         );
     }
     
+    @Test
+    void testGenerateTOTPWithReusedHmac() {
+        byte[] sha1Key = StringUtils
+                .hexStrToBytes("31 32 33 34 35 36 37 38 39 30 31 32 33 34 35 36 37 38 39 30");
+        long[] times = new long[] {
+                59L, 1111111109L, 1111111111L, 1234567890L, 2000000000L, 20000000000L
+        };
+        String[] expectedCodes = new String[] {
+                "94287082", "07081804", "14050471", "89005924", "69279037", "65353130"
+        };
+        
+        Mac hmac = TOTPUtils.newHmac("HmacSHA1", sha1Key);
+        byte[] buf = new byte[TOTPUtils.HMAC_BUF_LEN];
+        char[] dest = new char[10];
+        for (int i = 0; i < times.length; i++) {
+            TOTPUtils.generateTOTP(hmac, times[i] / 30L, 8, buf, dest, 1);
+            assertEquals(expectedCodes[i], new String(dest, 1, 8));
+            assertEquals(0, dest[0]);
+            assertEquals(0, dest[9]);
+            assertArrayEquals(new byte[TOTPUtils.HMAC_BUF_LEN], buf);
+        }
+    }
+    
 }
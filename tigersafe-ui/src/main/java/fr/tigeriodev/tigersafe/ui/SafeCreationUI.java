@@ -19,18 +19,18 @@
 package fr.tigeriodev.tigersafe.ui;
 
 import java.io.File;
-import java.io.IOException;
-import java.security.GeneralSecurityException;
 
 import javax.security.auth.DestroyFailedException;
 
 import fr.tigeriodev.tigersafe.GlobalConfig;
 import fr.tigeriodev.tigersafe.Lang;
 import fr.tigeriodev.tigersafe.data.SafeDataManager;
+import fr.tigeriodev.tigersafe.data.SafeOperation;
 import fr.tigeriodev.tigersafe.ui.fields.DirectoryField;
 import fr.tigeriodev.tigersafe.ui.fields.FieldValidityIndication;
 import fr.tigeriodev.tigersafe.ui.fields.ViewableUnclearField;
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
@@ -145,7 +145,7 @@ public SafeCreationUI() {
         });
         
         safePwField.valChangeNotifier.addListener(() -> {
-            safePwField.setValidity(SafeDataManager.isValidSafePw(safePwField.getVal()));
+            safePwField.setValidity(SafeDataManager.isValidSafePw(safePwField.getValHolder()));
             updateCreateSafeBtnAvailability();
         });
         
@@ -169,7 +169,7 @@ public SafeCreationUI() {
                 updateCreateSafeBtnAvailability();
                 return;
             }
-            if (!SafeDataManager.isValidSafePw(safePwField.getVal())) {
+            if (!SafeDataManager.isValidSafePw(safePwField.getValHolder())) {
                 safePwField.setValidity(false);
                 updateCreateSafeBtnAvailability();
                 return;
@@ -182,29 +182,43 @@ public SafeCreationUI() {
                 return;
             }
             
-            SafeDataManager dm = new SafeDataManager(safeFile, safePwField.getVal());
-            createSafeBtn.setDisable(true);
+            char[] safePw = safePwField.copyVal();
+            SafeDataManager dm;
             try {
-                dm.updateSafeFile();
-                
-                GlobalConfig globalConfig = GlobalConfig.getInstance();
-                globalConfig.setLastSafeFile(safeFile);
-                globalConfig.updateUserFile();
-                
-                Alert successPopup = new Alert(
-                        AlertType.INFORMATION,
-                        Lang.get(CREATE_LANG_BASE + ".success.popup", safeFile.getAbsolutePath()),
-                        ButtonType.OK
-                );
-                UIUtils.showDialogAndWait(successPopup);
-                
-                UIApp.getInstance().showSafeSelection();
-            } catch (IOException | GeneralSecurityException | DestroyFailedException ex) {
-                UIApp.getInstance().showError(ex);
-                updateCreateSafeBtnAvailability();
+                dm = new SafeDataManager(safeFile, safePw);
             } finally {
-                UIUtils.tryDestroy(dm);
+                MemUtils.clearCharArray(safePw);
             }
+            createSafeBtn.setDisable(true);
+            SafeOperation<Void> updateOp = SafeOperation.update(dm);
+            UIUtils.startOperation(createSafeBtn.getScene(), updateOp, (res, thrown) -> {
+                try {
+                    if (thrown != null) {
+                        throw thrown;
+                    }
+                    
+                    GlobalConfig globalConfig = GlobalConfig.getInstance();
+                    globalConfig.setLastSafeFile(safeFile);
+                    globalConfig.updateUserFile();
+                    
+                    Alert successPopup = new Alert(
+                            AlertType.INFORMATION,
+                            Lang.get(
+                                    CREATE_LANG_BASE + ".success.popup",
+                                    safeFile.getAbsolutePath()
+                            ),
+                            ButtonType.OK
+                    );
+                    UIUtils.showDialogAndWait(successPopup);
+                    
+                    UIApp.getInstance().showSafeSelection();
+                } catch (Throwable ex) {
+                    UIApp.getInstance().showError(ex);
+                    updateCreateSafeBtnAvailability();
+                } finally {
+                    UIUtils.tryDestroy(dm);
+                }
+            });
         });
         
         scene = new Scene(rootGrid);
@@ -219,7 +233,7 @@ private void updateCreateSafeBtnAvailability() {
         File safeDir = safeDirField.getVal();
         boolean validInputs = DirectoryField.isValidDir(safeDir)
                 && isValidSafeFileName(safeFileNameField.getText(), safeDir)
-                && SafeDataManager.isValidSafePw(safePwField.getVal());
+                && SafeDataManager.isValidSafePw(safePwField.getValHolder());
         createSafeBtn.setDisable(!validInputs);
     }
     
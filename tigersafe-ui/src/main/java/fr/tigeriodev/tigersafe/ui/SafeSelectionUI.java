@@ -27,8 +27,10 @@
 import fr.tigeriodev.tigersafe.GlobalConfig;
 import fr.tigeriodev.tigersafe.Lang;
 import fr.tigeriodev.tigersafe.data.SafeDataManager;
+import fr.tigeriodev.tigersafe.data.SafeOperation;
 import fr.tigeriodev.tigersafe.ui.fields.FileField;
 import fr.tigeriodev.tigersafe.ui.fields.SecureUnclearField;
+import fr.tigeriodev.tigersafe.utils.MemUtils;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.input.KeyCode;
@@ -156,24 +158,37 @@ public SafeSelectionUI() {
         openSafeBtn.setOnAction((e) -> {
             openSafeBtn.setDisable(true);
             File safeFile = safeFileField.getVal();
-            SafeDataManager dm = null;
+            SafeDataManager dm;
+            char[] pw = pwField.copyVal();
             try {
-                dm = new SafeDataManager(safeFile, pwField.getVal());
+                dm = new SafeDataManager(safeFile, pw);
                 // pwField should not be cleared here, to be properly destroyed (with simulateUserTyping) when this UI will be closed
-                dm.loadSafeFile();
-                
-                GlobalConfig globalConfig = GlobalConfig.getInstance();
-                globalConfig.setLastSafeFile(safeFile);
-                globalConfig.updateUserFile();
-                
-                UIApp.getInstance().showSafeContents(dm);
             } catch (Exception ex) {
                 UIApp.getInstance().showError(Lang.get(OPEN_LANG_BASE + ".error.title"), ex);
-                if (dm != null) {
-                    UIUtils.tryDestroy(dm);
-                }
                 openSafeBtn.setDisable(false);
+                return;
+            } finally {
+                MemUtils.clearCharArray(pw);
             }
+            
+            SafeOperation<Void> loadOp = SafeOperation.load(dm);
+            UIUtils.startOperation(openSafeBtn.getScene(), loadOp, (res, thrown) -> {
+                try {
+                    if (thrown != null) {
+                        throw thrown;
+                    }
+                    
+                    GlobalConfig globalConfig = GlobalConfig.getInstance();
+                    globalConfig.setLastSafeFile(safeFile);
+                    globalConfig.updateUserFile();
+                    
+                    UIApp.getInstance().showSafeContents(dm);
+                } catch (Throwable ex) {
+                    UIApp.getInstance().showError(Lang.get(OPEN_LANG_BASE + ".error.title"), ex);
+                    UIUtils.tryDestroy(dm);
+                    openSafeBtn.setDisable(false);
+                }
+            });
         });
         
         pwField.setOnKeyPressed((ev) -> {
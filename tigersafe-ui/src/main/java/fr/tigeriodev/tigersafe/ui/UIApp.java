@@ -36,14 +36,19 @@
 import fr.tigeriodev.tigersafe.GlobalConfig.InvalidConfigPropertyValueException;
 import fr.tigeriodev.tigersafe.Lang;
 import fr.tigeriodev.tigersafe.MonitoringManager;
+import fr.tigeriodev.tigersafe.ciphers.CipherSelfTest;
 import fr.tigeriodev.tigersafe.data.SafeDataManager;
 import fr.tigeriodev.tigersafe.data.SafeFileManager;
+import fr.tigeriodev.tigersafe.data.SafeOperation;
+import fr.tigeriodev.tigersafe.logs.AsyncLoggerFactory;
 import fr.tigeriodev.tigersafe.logs.ConsoleLogger;
 import fr.tigeriodev.tigersafe.logs.Level;
 import fr.tigeriodev.tigersafe.logs.Logger;
 import fr.tigeriodev.tigersafe.logs.Logs;
+import fr.tigeriodev.tigersafe.logs.RotatingFileLogSink;
 import fr.tigeriodev.tigersafe.ui.contents.SafeContentsUI;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.SecretArena;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.scene.control.Alert;
@@ -53,10 +58,23 @@
 
 public final class UIApp extends Application {
     
+    /**
+     * Set if the logs are written to files (option tigersafe.logsFile) instead of the console.
+     */
+    private static final AsyncLoggerFactory asyncLoggerFactory = newAsyncLoggerFactory();
+    
     static {
-        Logs.setLoggerFactory(
-                (displayName, initLevel) -> new ConsoleLogger(displayName, initLevel)
-        );
+        if (asyncLoggerFactory != null) {
+            Logs.setLoggerFactory(asyncLoggerFactory);
+            Runtime.getRuntime()
+                    .addShutdownHook(
+                            new Thread(asyncLoggerFactory::close, "tigersafe-logs-shutdown")
+                    );
+        } else {
+            Logs.setLoggerFactory(
+                    (displayName, initLevel) -> new ConsoleLogger(displayName, initLevel)
+            );
+        }
     }
     
     private static final Logger log = Logs.newLogger(UIApp.class);
@@ -66,8 +84,13 @@ public final class UIApp extends Application {
             Integer.getInteger("tigersafe.clearHeapMarginBytes", 5000000);
     public static final int LAST_CLEAR_HEAP_DELAY_MS =
             Integer.getInteger("tigersafe.lastClearHeapDelayMs", 1000);
-    public static final int AFTER_LAST_CLEAR_HEAP_DELAY_MS =
-            Integer.getInteger("tigersafe.afterLastClearHeapDelayMs", 0);
+    public static final int CLEAR_HEAP_BUDGET_MS = Integer.getInteger(
+            "tigersafe.clearHeapBudgetMs",
+            (int) MemUtils.CLEAR_HEAP_DEFAULT_BUDGET_MILLIS
+    );
+    
+    public static final int LOGS_FLUSH_TIMEOUT_MS = 2000;
+    public static final int OPERATIONS_AWAIT_TIMEOUT_MS = 30000;
     
     private static UIApp instance = null;
     private Stage primaryStage;
@@ -91,6 +114,13 @@ public static void main(String[] args) {
             );
         }
         File userGlobalConfigFile = new File(globalConfigPath);
+        CipherSelfTest.setPassesFile(
+                new File(
+                        userGlobalConfigFile.getAbsoluteFile().getParentFile(),
+                        CipherSelfTest.PASSES_FILE_NAME
+                ),
+                new File(System.getProperty("user.home"), CipherSelfTest.KEY_FILE_NAME)
+        );
         
         try (Scanner scanner = new Scanner(new FilterInputStream(System.in) {
             
@@ -132,6 +162,45 @@ public void close() throws IOException {
         }
     }
     
+    private static AsyncLoggerFactory newAsyncLoggerFactory() {
+        String logsFilePath = System.getProperty("tigersafe.logsFile");
+        if (logsFilePath == null || logsFilePath.isEmpty()) {
+            return null;
+        }
+        if (Logs.ALLOW_UNSAFE_LOGGERS) {
+            throw new IllegalStateException(
+                    "A logs file cannot be used with unsafe loggers, which log sensitive data."
+            );
+        }
+        try {
+            return new AsyncLoggerFactory(
+                    new RotatingFileLogSink(
+                            new File(logsFilePath),
+                            Long.getLong(
+                                    "tigersafe.logsFileMaxBytes",
+                                    RotatingFileLogSink.DEFAULT_MAX_FILE_BYTES
+                            ),
+                            Integer.getInteger(
+                                    "tigersafe.logsFilesNum",
+                                    RotatingFileLogSink.DEFAULT_MAX_FILES_NUM
+                            )
+                    ),
+                    Integer.getInteger(
+                            "tigersafe.logsBufferCapacity",
+                            AsyncLoggerFactory.DEFAULT_CAPACITY
+                    ),
+                    AsyncLoggerFactory.OverflowPolicy.valueOf(
+                            System.getProperty(
+                                    "tigersafe.logsOverflowPolicy",
+                                    AsyncLoggerFactory.OverflowPolicy.BLOCK_WARN_OR_HIGHER.name()
+                            )
+                    )
+            );
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to open the logs file.", ex);
+        }
+    }
+    
     private static void askInvalidConfigPropOption(String propKey, File userGlobalConfigFile,
             Scanner scanner) {
         String propDefVal;
@@ -260,6 +329,14 @@ public void start(Stage primaryStage) throws Exception {
             );
         }
         
+        int minClearHeapBudgetMs = 1000;
+        if (CLEAR_HEAP_BUDGET_MS < minClearHeapBudgetMs && !ALLOW_UNSAFE_HEAP) {
+            throw new GeneralSecurityException(
+                    "tigersafe.clearHeapBudgetMs option should be at least "
+                            + minClearHeapBudgetMs + "."
+            );
+        }
+        
         this.primaryStage = primaryStage;
         befShutdownExecutor = Executors.newSingleThreadScheduledExecutor();
         
@@ -277,7 +354,7 @@ public void start(Stage primaryStage) throws Exception {
         primaryStage.setTitle("TigerSafe");
         UIUtils.setAppIcon(primaryStage);
         showSafeSelection();
-        if (ALLOW_UNSAFE_HEAP || AFTER_LAST_CLEAR_HEAP_DELAY_MS > 0 || Logs.ALLOW_UNSAFE_LOGGERS) {
+        if (ALLOW_UNSAFE_HEAP || Logs.ALLOW_UNSAFE_LOGGERS) {
             Alert unsafeWarnPopup = new Alert(
                     AlertType.WARNING,
                     "You are executing TigerSafe in unsafe mode.\nUnsafe parameters should only be used for debugging, not for a real use of TigerSafe.\nIf you want to safely use TigerSafe to store sensitive data, you should stop the program now, remove the unsafe parameters from your executing environment, then restart the program.",
@@ -349,8 +426,18 @@ private void onShutdown(boolean triggerUIShutdown) {
         Logger methLog = log.newChildFromCurMethIf(Level.DEBUG);
         methLog.debug(() -> "triggerUIShutdown = " + triggerUIShutdown);
         
+        SafeOperation.cancelAll();
+        try { // the operations which were not cancellable must not write while the heap is cleared
+            if (!SafeOperation.awaitAll(OPERATIONS_AWAIT_TIMEOUT_MS)) {
+                log.error(() -> "Safe operations still running after the shutdown timeout.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
         UIUtils.clearClipboardIfUsed();
         SafeFileManager.clearBuffers();
+        // the secrets which have not been destroyed (e.g. forgotten ones) cannot be reached by clearHeap()
+        SecretArena.wipeAll();
         if (monitoringManager != null) {
             monitoringManager.stop();
         }
@@ -384,7 +471,7 @@ private void onShutdown(boolean triggerUIShutdown) {
         }
         
         methLog.debug(() -> MemUtils.getMemDebug() + ", first clearHeap()");
-        MemUtils.clearHeap(CLEAR_HEAP_MARGIN_BYTES);
+        clearHeap();
         methLog.debug(() -> "first clearHeap() done, " + MemUtils.getMemDebug());
         
         befShutdownExecutor.schedule(() -> {
@@ -399,22 +486,29 @@ private void beforeShutdown() {
         hasLastClearHeapStarted.set(true);
         Logger methLog = log.newChildFromCurMethIf(Level.DEBUG);
         methLog.debug(() -> "start, last clearHeap()");
-        MemUtils.clearHeap(CLEAR_HEAP_MARGIN_BYTES);
+        flushLogs();
+        clearHeap();
         methLog.debug(() -> "last clearHeap() done, " + MemUtils.getMemDebug());
-        
-        if (befShutdownExecutor.isShutdown() && AFTER_LAST_CLEAR_HEAP_DELAY_MS > 0) {
-            methLog.debug(
-                    () -> "clearHeap() finished, program maintened alive for AFTER_CLEAR_HEAP_DELAY_MS"
-            );
-            try {
-                Thread.sleep(AFTER_LAST_CLEAR_HEAP_DELAY_MS);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        }
         methLog.debug(() -> "end");
     }
     
+    /**
+     * Writes the pending logs, if they are written to files, so that the memory used to write them is
+     * scrubbed by the last clearHeap().
+     */
+    private static void flushLogs() {
+        if (asyncLoggerFactory != null && !asyncLoggerFactory.flush(LOGS_FLUSH_TIMEOUT_MS)) {
+            System.err.println("Failed to flush logs in time.");
+        }
+    }
+    
+    /**
+     * Scrubs the free heap memory with the budget of the options.
+     */
+    public static void clearHeap() {
+        MemUtils.clearHeap(CLEAR_HEAP_MARGIN_BYTES, Long.MAX_VALUE, CLEAR_HEAP_BUDGET_MS);
+    }
+    
     public boolean isShutdown() {
         return isShutdown.get();
     }
@@ -22,6 +22,7 @@
 import java.io.InputStream;
 import java.lang.reflect.Field;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
@@ -33,7 +34,9 @@
 
 import fr.tigeriodev.tigersafe.GlobalConfig;
 import fr.tigeriodev.tigersafe.Lang;
+import fr.tigeriodev.tigersafe.data.SafeOperation;
 import fr.tigeriodev.tigersafe.data.TOTP;
+import fr.tigeriodev.tigersafe.logs.Level;
 import fr.tigeriodev.tigersafe.logs.Logger;
 import fr.tigeriodev.tigersafe.logs.Logs;
 import fr.tigeriodev.tigersafe.ui.fields.DestroyableTextArea;
@@ -44,8 +47,10 @@
 import fr.tigeriodev.tigersafe.utils.MemUtils;
 import fr.tigeriodev.tigersafe.utils.ReflectionUtils;
 import fr.tigeriodev.tigersafe.utils.StringUtils;
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
+import javafx.scene.Cursor;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -183,6 +188,30 @@ public void changed(ObservableValue<? extends T> observable, T oldValue, T newVa
         observed.addListener(singleTimeListener);
     }
     
+    /**
+     * Starts op off the JavaFX Application thread, the content of scene being disabled until op is done.
+     * Must be called on the JavaFX Application thread, onDone is also called on it.
+     * @param scene
+     * @param op
+     * @param onDone
+     * @return op
+     */
+    public static <T> SafeOperation<T> startOperation(Scene scene, SafeOperation<T> op,
+            BiConsumer<T, Throwable> onDone) {
+        Logger methLog = log.newChildFromCurMethIf(Level.DEBUG);
+        Node root = scene.getRoot();
+        boolean wasDisabled = root.isDisable();
+        Cursor prevCursor = scene.getCursor();
+        root.setDisable(true);
+        scene.setCursor(Cursor.WAIT);
+        op.setProgressListener((step) -> methLog.debug(() -> op.getName() + ": " + step));
+        return op.start(Platform::runLater, (res, thrown) -> {
+            root.setDisable(wasDisabled);
+            scene.setCursor(prevCursor);
+            onDone.accept(res, thrown);
+        });
+    }
+    
     /**
      * Must be called on the JavaFX Application thread.
      * @param dialog
@@ -255,7 +284,14 @@ public static Button newCopyBtn(TextField targetField, String langKeyBase) {
     }
     
     public static Button newCopyBtn(ViewableUnclearField targetField, String langKeyBase) {
-        return newCopyBtn(() -> new String(targetField.getVal()), langKeyBase);
+        return newCopyBtn(() -> {
+            char[] val = targetField.copyVal();
+            try {
+                return new String(val);
+            } finally {
+                MemUtils.clearCharArray(val);
+            }
+        }, langKeyBase);
     }
     
     public static Button newCopyBtn(Supplier<String> contentSupplier, String langKeyBase) {
@@ -301,6 +337,10 @@ public static Button newBtn(String langKeyBase, String iconName, boolean withTex
         return res;
     }
     
+    /**
+     * @param totp
+     * @return a new array (the URI of totp, which contains its key), which should be cleared after use.
+     */
     public static char[] totpToFieldVal(TOTP totp) {
         return totp != null ? totp.getURI() : new char[0];
     }
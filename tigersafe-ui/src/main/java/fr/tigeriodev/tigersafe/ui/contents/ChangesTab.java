@@ -97,7 +97,7 @@ class ContentHolder implements Destroyable {
             VBox changesVBox = new VBox();
             changesVBox.getStyleClass().add("changes-vbox");
             
-            for (PasswordEntry pwEntry : dm.getPwEntries()) {
+            for (PasswordEntry pwEntry : dm.getChangedPwEntries()) {
                 if (
                     pwEntry instanceof ExistingPasswordEntry
                             && ((ExistingPasswordEntry) pwEntry).isModified()
@@ -256,17 +256,17 @@ private Node newPasswordEntryWithoutFieldsChangeNode(PasswordEntry pwEntry) {
             
             fieldsGrid.add(newDestroyTextField(pwEntry.getCurrentName()), 1, 0);
             
-            fieldsGrid.add(newViewableUnclearField(pwEntry.getCurrentPassword()), 1, 1);
+            char[] pw = pwEntry.getCurrentPassword();
+            fieldsGrid.add(newViewableUnclearField(pw), 1, 1);
+            MemUtils.clearCharArray(pw);
             
             fieldsGrid.add(newDestroyTextField(pwEntry.getCurrentSite()), 1, 2);
             
             fieldsGrid.add(newTextArea(pwEntry.getCurrentInfo()), 1, 3);
             
-            fieldsGrid.add(
-                    newViewableUnclearField(UIUtils.totpToFieldVal(pwEntry.getCurrentTOTP())),
-                    1,
-                    4
-            );
+            char[] totpURI = UIUtils.totpToFieldVal(pwEntry.getCurrentTOTP());
+            fieldsGrid.add(newViewableUnclearField(totpURI), 1, 4);
+            MemUtils.clearCharArray(totpURI);
             
             return fieldsGrid;
         }
@@ -310,7 +310,12 @@ private Node newPasswordEntryWithFieldsChangeNode(ExistingPasswordEntry pwEntry,
                     pwEntry.originalData.getPassword(),
                     pwEntry.getCurrentPassword(),
                     () -> {
-                        pwEntry.setPassword(pwEntry.originalData.getPassword());
+                        char[] originalPw = pwEntry.originalData.getPassword();
+                        try {
+                            pwEntry.setPassword(originalPw);
+                        } finally {
+                            MemUtils.clearCharArray(originalPw);
+                        }
                         if (!pwEntry.isModified()) {
                             isNoLongerModified.run();
                         }
@@ -352,10 +357,10 @@ private Node newPasswordEntryWithFieldsChangeNode(ExistingPasswordEntry pwEntry,
                     fieldsGrid,
                     4,
                     this::newViewableUnclearField,
-                    UIUtils.totpToFieldVal(pwEntry.originalData.totp),
+                    UIUtils.totpToFieldVal(pwEntry.originalData.getTOTP()),
                     UIUtils.totpToFieldVal(pwEntry.getCurrentTOTP()),
                     () -> {
-                        pwEntry.setTOTP(pwEntry.originalData.totp);
+                        pwEntry.setTOTP(pwEntry.originalData.getTOTP());
                         if (!pwEntry.isModified()) {
                             isNoLongerModified.run();
                         }
@@ -394,6 +399,9 @@ private TextArea newTextArea(String valSrc) {
             return res;
         }
         
+        /**
+         * NB: char[] values are considered as scratch copies, they are cleared by this method.
+         */
         private <T> void addFieldToChangesGrid(GridPane changesGrid, int rowInd,
                 Function<T, Node> fieldMakerByVal, T originalVal, T currentVal,
                 BooleanSupplier rollbackExecutor) {
@@ -426,6 +434,11 @@ private <T> void addFieldToChangesGrid(GridPane changesGrid, int rowInd,
                     }
                 });
             }
+            
+            if (originalVal instanceof char[]) {
+                MemUtils.clearCharArray((char[]) originalVal);
+                MemUtils.clearCharArray((char[]) currentVal);
+            }
         }
         
         @Override
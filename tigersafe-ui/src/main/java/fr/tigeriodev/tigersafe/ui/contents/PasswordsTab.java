@@ -20,12 +20,12 @@
 
 import java.time.Instant;
 import java.time.Period;
-import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.security.auth.DestroyFailedException;
 import javax.security.auth.Destroyable;
@@ -34,6 +34,7 @@
 import fr.tigeriodev.tigersafe.data.NewPasswordEntry;
 import fr.tigeriodev.tigersafe.data.PasswordEntry;
 import fr.tigeriodev.tigersafe.data.TOTP;
+import fr.tigeriodev.tigersafe.data.TOTPScheduler;
 import fr.tigeriodev.tigersafe.logs.Logger;
 import fr.tigeriodev.tigersafe.logs.Logs;
 import fr.tigeriodev.tigersafe.ui.UIConfig;
@@ -44,10 +45,9 @@
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
 import fr.tigeriodev.tigersafe.utils.DatetimeUtils;
 import fr.tigeriodev.tigersafe.utils.MemUtils;
+import fr.tigeriodev.tigersafe.utils.MutableString;
 import fr.tigeriodev.tigersafe.utils.StringUtils;
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
@@ -74,7 +74,6 @@
 import javafx.scene.layout.TilePane;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
-import javafx.util.Duration;
 
 public class PasswordsTab extends SafeContentsUI.Tab {
     
@@ -276,46 +275,12 @@ class ContentHolder implements Destroyable {
         
         private void updatePasswordsList(boolean refresh) {
             ObservableList<PasswordEntry> items = pwsListV.getItems();
-            Set<PasswordEntry> pwEntriesToAddOrKeep = new LinkedHashSet<PasswordEntry>();
-            String filterName = StringUtils.nullToEmpty(filterNameField.getVal());
-            String filterNameLow = filterName.toLowerCase();
-            String filterSite = StringUtils.nullToEmpty(filterSiteField.getVal());
-            String filterSiteLow = filterSite.toLowerCase();
-            for (PasswordEntry pwEntry : dm.getPwEntries()) {
-                boolean nameMatch = filterNameLow.isEmpty();
-                if (!nameMatch) {
-                    String pwEntryName = pwEntry.getCurrentName();
-                    String pwEntryNameLow = pwEntryName.toLowerCase();
-                    nameMatch = pwEntryNameLow.contains(filterNameLow);
-                    if (pwEntryNameLow != pwEntryName) {
-                        MemUtils.tryClearString(pwEntryNameLow);
-                    }
-                }
-                
-                if (!nameMatch) {
-                    continue;
-                }
-                
-                boolean siteMatch = filterSiteLow.isEmpty();
-                if (!siteMatch) {
-                    String pwEntrySite = pwEntry.getCurrentSite();
-                    String pwEntrySiteLow = pwEntrySite.toLowerCase();
-                    siteMatch = pwEntrySiteLow.contains(filterSiteLow);
-                    if (pwEntrySiteLow != pwEntrySite) {
-                        MemUtils.tryClearString(pwEntrySiteLow);
-                    }
-                }
-                
-                if (siteMatch) { // nameMatch = true
-                    pwEntriesToAddOrKeep.add(pwEntry);
-                }
-            }
-            if (filterNameLow != filterName) {
-                MemUtils.tryClearString(filterNameLow);
-            }
-            if (filterSiteLow != filterSite) {
-                MemUtils.tryClearString(filterSiteLow);
-            }
+            Set<PasswordEntry> pwEntriesToAddOrKeep = new LinkedHashSet<PasswordEntry>(
+                    dm.searchPwEntries(
+                            StringUtils.nullToEmpty(filterNameField.getVal()),
+                            StringUtils.nullToEmpty(filterSiteField.getVal())
+                    )
+            );
             
             if (items == null || (items.isEmpty() && pwEntriesToAddOrKeep.size() > 0)) {
                 pwsListV.setItems(FXCollections.observableArrayList(pwEntriesToAddOrKeep));
@@ -378,7 +343,7 @@ class PasswordPaneHolder implements Destroyable {
             final DestroyableTextField siteField;
             final DestroyableTextArea infoField;
             ViewableUnclearField uriField;
-            Timeline totpTimeline;
+            TOTPScheduler.Subscription totpSubscription;
             GeneratePasswordPopup genPwPopup;
             
             PasswordPaneHolder(PasswordEntry pwEntry) {
@@ -412,10 +377,12 @@ class PasswordPaneHolder implements Destroyable {
                 HBox pwHBox = new HBox();
                 pwHBox.setAlignment(Pos.CENTER_LEFT);
                 
-                pwField = new ViewableUnclearField(pwEntry.getCurrentPassword());
+                char[] pw = pwEntry.getCurrentPassword();
+                pwField = new ViewableUnclearField(new MutableString.Secured(pw));
+                MemUtils.clearCharArray(pw);
                 pwField.setupValidIndic(
                         Lang.get("SafeContentsUI.passwordEntry.password.invalid"),
-                        pwEntry.getCurrentPassword().length > 0
+                        !pwField.getValHolder().isEmpty()
                 );
                 
                 TilePane pwBtnsTileP = new TilePane();
@@ -524,14 +491,17 @@ class PasswordPaneHolder implements Destroyable {
                 pwField.disabledVisibF.editableProperty().bind(editModeCheckbox.selectedProperty());
                 pwField.enabledVisibF.editableProperty().bind(editModeCheckbox.selectedProperty());
                 pwField.valChangeNotifier.addListener(() -> {
+                    char[] newPw = pwField.copyVal();
                     try {
-                        pwEntry.setPassword(pwField.getVal());
+                        pwEntry.setPassword(newPw);
                         pwField.setValidity(true);
                         updateLastChangeTimeText(pwLastChangeTimeText, pwEntry);
                         ui.updateUnsavedFooterDisplay();
                         updateAddBtnAvailability();
                     } catch (IllegalArgumentException ex) {
                         pwField.setValidity(false);
+                    } finally {
+                        MemUtils.clearCharArray(newPw);
                     }
                 });
                 
@@ -610,9 +580,7 @@ class PasswordPaneHolder implements Destroyable {
                 );
                 
                 totpConfigBtn.selectedProperty().addListener((ov, oldSelected, newSelected) -> {
-                    if (totpTimeline != null) {
-                        totpTimeline.stop();
-                    }
+                    closeTOTPSubscription();
                     TOTP totp = pwEntry.getCurrentTOTP();
                     if (totp == null && !newSelected) {
                         totpConfigBtn.setText(
@@ -684,14 +652,12 @@ private Node newTOTPCodesPane(TOTP totp) {
                 
                 // Dynamic
                 
-                if (totpTimeline != null) {
-                    totpTimeline.stop();
-                }
+                closeTOTPSubscription();
                 
-                Runnable totpUpdater = () -> {
-                    Instant curTime = Instant.now();
+                Consumer<Instant> totpUpdater = (curTime) -> {
                     unsafePwPaneLog.debug(() -> "totpUpdater update: " + curTime);
-                    if (totp.updateCurTime(curTime) || curCodeField.getText().isEmpty()) {
+                    totp.updateCurTime(curTime); // usually already done by the scheduler
+                    if (!totp.getCurCode().equals(curCodeField.getText())) {
                         curCodeField.setText(totp.getCurCode());
                         nextCodeField.setText(totp.getNextCode());
                     }
@@ -708,21 +674,20 @@ private Node newTOTPCodesPane(TOTP totp) {
                             )
                     );
                 };
-                totpUpdater.run();
-                totpTimeline = new Timeline(new KeyFrame(Duration.seconds(1), (e) -> {
-                    totpUpdater.run();
-                }));
-                totpTimeline.setCycleCount(Animation.INDEFINITE);
-                
-                // Avoid issues of timeline execution delay lower than 1 second which can induce 2 executions for the same UTC second, inducing the progress bar to be visually updated every 2 seconds instead of 1
-                int curTimeMs = Instant.now().atZone(ZoneOffset.UTC).getNano() / 1000000;
-                if (curTimeMs < 400) {
-                    totpTimeline.setDelay(Duration.millis(500 - curTimeMs));
-                } else if (curTimeMs > 600) {
-                    totpTimeline.setDelay(Duration.millis(1000 - curTimeMs + 500));
-                }
-                
-                totpTimeline.play();
+                totpUpdater.accept(Instant.now());
+                // Ticks are needed for the remaining time, the codes are refreshed by the shared scheduler.
+                totpSubscription = TOTPScheduler.getInstance()
+                        .subscribe(
+                                totp,
+                                true,
+                                (updatedTOTP, curTime, isNewInterval) -> Platform.runLater(() -> {
+                                    // Can be queued before the subscription is closed and the TOTP destroyed.
+                                    if (totpSubscription == null || totp.isDestroyed()) {
+                                        return;
+                                    }
+                                    totpUpdater.accept(curTime);
+                                })
+                        );
                 
                 UIUtils.setButtonShortcut(
                         ui.getScene(),
@@ -738,6 +703,13 @@ private Node newTOTPCodesPane(TOTP totp) {
                 return res;
             }
             
+            private void closeTOTPSubscription() {
+                if (totpSubscription != null) {
+                    totpSubscription.close();
+                    totpSubscription = null;
+                }
+            }
+            
             private static TextField newTOTPCodeField(TOTP totp) {
                 TextField res = new TextField();
                 res.setEditable(false);
@@ -753,8 +725,9 @@ private Node newTOTPConfigPane(PasswordEntry pwEntry, CheckBox editModeCheckbox)
                 if (uriField != null) {
                     MemUtils.tryDestroy(uriField);
                 }
-                uriField =
-                        new ViewableUnclearField(UIUtils.totpToFieldVal(pwEntry.getCurrentTOTP()));
+                char[] totpURI = UIUtils.totpToFieldVal(pwEntry.getCurrentTOTP());
+                uriField = new ViewableUnclearField(new MutableString.Secured(totpURI));
+                MemUtils.clearCharArray(totpURI);
                 String uriPlaceholder =
                         Lang.get("SafeContentsUI.passwordEntry.totp.config.uri.placeholder");
                 uriField.enabledVisibF.setPromptText(uriPlaceholder);
@@ -785,8 +758,9 @@ private Node newTOTPConfigPane(PasswordEntry pwEntry, CheckBox editModeCheckbox)
                         true
                 );
                 uriField.valChangeNotifier.addListener(() -> {
+                    char[] uri = uriField.copyVal();
                     try {
-                        TOTP totp = UIUtils.totpFromURI(uriField.getVal());
+                        TOTP totp = UIUtils.totpFromURI(uri);
                         pwEntry.setTOTP(totp);
                         if (totp != null) {
                             UIUtils.tryDestroy(totp);
@@ -795,6 +769,8 @@ private Node newTOTPConfigPane(PasswordEntry pwEntry, CheckBox editModeCheckbox)
                         ui.updateUnsavedFooterDisplay();
                     } catch (IllegalArgumentException ex) {
                         uriField.setValidity(false);
+                    } finally {
+                        MemUtils.clearCharArray(uri);
                     }
                 });
                 
@@ -805,9 +781,7 @@ private Node newTOTPConfigPane(PasswordEntry pwEntry, CheckBox editModeCheckbox)
             public void destroy() throws DestroyFailedException {
                 boolean success = true;
                 success = MemUtils.tryDestroy(pwField) && success;
-                if (totpTimeline != null) {
-                    totpTimeline.stop();
-                }
+                closeTOTPSubscription();
                 if (uriField != null) {
                     success = MemUtils.tryDestroy(uriField) && success;
                 }
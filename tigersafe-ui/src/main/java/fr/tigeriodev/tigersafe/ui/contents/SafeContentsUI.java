@@ -26,13 +26,13 @@
 import fr.tigeriodev.tigersafe.Lang;
 import fr.tigeriodev.tigersafe.data.SafeDataManager;
 import fr.tigeriodev.tigersafe.data.SafeFileManager;
+import fr.tigeriodev.tigersafe.data.SafeOperation;
 import fr.tigeriodev.tigersafe.ui.UI;
 import fr.tigeriodev.tigersafe.ui.UIApp;
 import fr.tigeriodev.tigersafe.ui.UIConfig;
 import fr.tigeriodev.tigersafe.ui.UIUtils;
 import fr.tigeriodev.tigersafe.ui.contents.config.ConfigTab;
 import fr.tigeriodev.tigersafe.utils.CheckUtils;
-import fr.tigeriodev.tigersafe.utils.MemUtils;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
@@ -245,14 +245,14 @@ void showSaveChangesConfirmPopup() {
         );
         UIUtils.showDialogAndWait(confirmPopup).ifPresent((clickedBtn) -> {
             if (clickedBtn == ButtonType.YES) {
-                try {
-                    dm.updateSafeFile();
-                    dm.loadSafeFile(); // Reset unsaved changes
+                UIUtils.startOperation(scene, SafeOperation.save(dm), (res, thrown) -> {
+                    if (thrown != null) {
+                        UIApp.getInstance().showError(thrown);
+                        return;
+                    }
                     selectTab(curTab, true);
                     updateUnsavedFooterDisplay();
-                } catch (Exception ex) {
-                    UIApp.getInstance().showError(ex);
-                }
+                });
             }
         });
     }
@@ -269,7 +269,7 @@ public boolean onIncorrectSafePwTyped() {
             SafeFileManager.clearBuffers();
             
             UIApp.getInstance().showSafeSelection();
-            MemUtils.clearHeap(UIApp.CLEAR_HEAP_MARGIN_BYTES);
+            UIApp.clearHeap();
             
             Alert alert = new Alert(
                     AlertType.ERROR,
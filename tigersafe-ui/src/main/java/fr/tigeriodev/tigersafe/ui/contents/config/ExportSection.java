@@ -27,6 +27,7 @@
 import fr.tigeriodev.tigersafe.Lang;
 import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
 import fr.tigeriodev.tigersafe.data.SafeDataManager;
+import fr.tigeriodev.tigersafe.data.SafeOperation;
 import fr.tigeriodev.tigersafe.data.SafeSerializationManager;
 import fr.tigeriodev.tigersafe.ui.UIApp;
 import fr.tigeriodev.tigersafe.ui.UIUtils;
@@ -164,7 +165,8 @@ private static File getFile(File dir, String fileName) {
         });
         
         serialPwField.valChangeNotifier.addListener(() -> {
-            serialPwField.setValidity(SafeDataManager.isValidSafePw(serialPwField.getVal()));
+            serialPwField
+                    .setValidity(SafeDataManager.isValidSafePw(serialPwField.getValHolder()));
             updateExportBtnAvailability();
         });
         
@@ -202,13 +204,13 @@ private static File getFile(File dir, String fileName) {
                 updateExportBtnAvailability();
                 return;
             }
-            if (!SafeDataManager.isValidSafePw(serialPwField.getVal())) {
+            if (!SafeDataManager.isValidSafePw(serialPwField.getValHolder())) {
                 serialPwField.setValidity(false);
                 updateExportBtnAvailability();
                 return;
             }
             
-            if (!dm.isSafePw(safePwField.getVal())) {
+            if (!dm.isSafePw(safePwField.getValHolder())) {
                 if (ui.onIncorrectSafePwTyped()) {
                     safePwValidIndic.setValidity(false);
                     updateExportBtnAvailability();
@@ -217,34 +219,42 @@ private static File getFile(File dir, String fileName) {
             }
             
             exportBtn.setDisable(true);
-            try {
-                dm.exportDataTo(
-                        serialFile,
-                        CiphersManager.getCipherByName(serialCipherBox.getValue()),
-                        serialPwField.getVal(),
-                        (short) serialVerField.getVal()
-                );
-                
-                safePwField.getValHolder().clear();
-                serialPwField.getValHolder().clear();
-                
-                safePwField.refresh();
-                serialPwField.refresh();
-                
-                Alert successPopup = new Alert(
-                        AlertType.INFORMATION,
-                        Lang.get(
-                                SECTION_LANG_BASE + ".success.popup",
-                                serialFile.getAbsolutePath()
-                        ),
-                        ButtonType.OK
-                );
-                UIUtils.showDialogAndWait(successPopup);
-            } catch (Exception ex) {
-                UIApp.getInstance().showError(ex);
-            } finally {
-                updateExportBtnAvailability();
-            }
+            char[] serialPw = serialPwField.copyVal();
+            SafeOperation<Void> op = SafeOperation.exportDataTo(
+                    dm,
+                    serialFile,
+                    CiphersManager.getCipherByName(serialCipherBox.getValue()),
+                    serialPw,
+                    (short) serialVerField.getVal()
+            );
+            MemUtils.clearCharArray(serialPw);
+            UIUtils.startOperation(ui.getScene(), op, (res, thrown) -> {
+                try {
+                    if (thrown != null) {
+                        throw thrown;
+                    }
+                    
+                    safePwField.getValHolder().clear();
+                    serialPwField.getValHolder().clear();
+                    
+                    safePwField.refresh();
+                    serialPwField.refresh();
+                    
+                    Alert successPopup = new Alert(
+                            AlertType.INFORMATION,
+                            Lang.get(
+                                    SECTION_LANG_BASE + ".success.popup",
+                                    serialFile.getAbsolutePath()
+                            ),
+                            ButtonType.OK
+                    );
+                    UIUtils.showDialogAndWait(successPopup);
+                } catch (Throwable ex) {
+                    UIApp.getInstance().showError(ex);
+                } finally {
+                    updateExportBtnAvailability();
+                }
+            });
         });
         
         updateExportBtnAvailability();
@@ -255,7 +265,7 @@ private void updateExportBtnAvailability() {
                 !safePwValidIndic.isValid()
                         || !DirectoryField.isValidDir(serialDirField.getVal())
                         || !isValidFileName(serialFileNameField.getText(), serialDirField.getVal())
-                        || !SafeDataManager.isValidSafePw(serialPwField.getVal())
+                        || !SafeDataManager.isValidSafePw(serialPwField.getValHolder())
         );
     }
     
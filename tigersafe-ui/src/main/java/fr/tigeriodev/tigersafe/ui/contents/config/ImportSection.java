@@ -33,7 +33,7 @@
 import fr.tigeriodev.tigersafe.data.PasswordEntry;
 import fr.tigeriodev.tigersafe.data.SafeData;
 import fr.tigeriodev.tigersafe.data.SafeDataManager;
-import fr.tigeriodev.tigersafe.data.SafeSerializationManager;
+import fr.tigeriodev.tigersafe.data.SafeOperation;
 import fr.tigeriodev.tigersafe.data.TOTP;
 import fr.tigeriodev.tigersafe.ui.UIApp;
 import fr.tigeriodev.tigersafe.ui.UIUtils;
@@ -56,6 +56,7 @@
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.TitledPane;
@@ -76,6 +77,7 @@ class ImportSection extends Section implements Destroyable {
     final ViewableUnclearField serialPwField;
     final SecureUnclearField safePwField;
     final FieldValidityIndication safePwValidIndic;
+    final CheckBox reviewCheckB;
     final Button importBtn;
     
     ImportSection(ConfigTab tab) {
@@ -129,6 +131,10 @@ class ImportSection extends Section implements Destroyable {
                 true
         );
         
+        reviewCheckB = new CheckBox();
+        reviewCheckB.setSelected(false);
+        UIUtils.addFieldToGrid(grid, 4, SECTION_LANG_BASE + ".review", reviewCheckB, true);
+        
         importBtn = UIUtils.newBtn(SECTION_LANG_BASE + ".button", null, true, false);
         
         contentVBox.getChildren().addAll(grid, importBtn);
@@ -140,7 +146,7 @@ class ImportSection extends Section implements Destroyable {
         });
         
         serialPwField.valChangeNotifier.addListener(() -> {
-            serialPwField.setValidity(serialPwField.getVal().length > 0);
+            serialPwField.setValidity(!serialPwField.getValHolder().isEmpty());
             updateImportBtnAvailability();
         });
         
@@ -163,13 +169,13 @@ class ImportSection extends Section implements Destroyable {
                 return;
             }
             
-            if (serialPwField.getVal().length == 0) {
+            if (serialPwField.getValHolder().isEmpty()) {
                 serialPwField.setValidity(false);
                 updateImportBtnAvailability();
                 return;
             }
             
-            if (!dm.isSafePw(safePwField.getVal())) {
+            if (!dm.isSafePw(safePwField.getValHolder())) {
                 if (ui.onIncorrectSafePwTyped()) {
                     safePwValidIndic.setValidity(false);
                     updateImportBtnAvailability();
@@ -178,12 +184,64 @@ class ImportSection extends Section implements Destroyable {
             }
             
             importBtn.setDisable(true);
+            if (!reviewCheckB.isSelected()) {
+                importSerialized(serialFile);
+                return;
+            }
+            char[] serialPw = serialPwField.copyVal();
+            SafeOperation<SafeData> op = SafeOperation.readSerialized(
+                    serialFile,
+                    CiphersManager.getCipherByName(serialCipherBox.getValue()),
+                    serialPw
+            );
+            MemUtils.clearCharArray(serialPw);
+            UIUtils.startOperation(ui.getScene(), op, (deserializedSafeData, thrown) -> {
+                try {
+                    if (thrown != null) {
+                        throw thrown;
+                    }
+                    
+                    safePwField.getValHolder().clear();
+                    serialPwField.getValHolder().clear();
+                    
+                    safePwField.refresh();
+                    serialPwField.refresh();
+                    
+                    ReviewPopup reviewPopup = new ReviewPopup(deserializedSafeData);
+                    deserializedSafeData.destroy();
+                    reviewPopup.showAndWait();
+                } catch (Throwable ex) {
+                    if (deserializedSafeData != null) {
+                        MemUtils.tryDestroy(deserializedSafeData);
+                    }
+                    UIApp.getInstance().showError(ex);
+                } finally {
+                    updateImportBtnAvailability();
+                }
+            });
+        });
+        
+        updateImportBtnAvailability();
+    }
+    
+    /**
+     * Imports the password entries of serialFile without review, and without reading them all at once.
+     * @param serialFile
+     */
+    private void importSerialized(File serialFile) {
+        char[] serialPw = serialPwField.copyVal();
+        SafeOperation<Void> op = SafeOperation.importSerialized(
+                dm,
+                serialFile,
+                CiphersManager.getCipherByName(serialCipherBox.getValue()),
+                serialPw
+        );
+        MemUtils.clearCharArray(serialPw);
+        UIUtils.startOperation(ui.getScene(), op, (res, thrown) -> {
             try {
-                SafeData deserializedSafeData = SafeSerializationManager.read(
-                        serialFile,
-                        CiphersManager.getCipherByName(serialCipherBox.getValue()),
-                        serialPwField.getVal()
-                );
+                if (thrown != null) {
+                    throw thrown;
+                }
                 
                 safePwField.getValHolder().clear();
                 serialPwField.getValHolder().clear();
@@ -191,24 +249,25 @@ class ImportSection extends Section implements Destroyable {
                 safePwField.refresh();
                 serialPwField.refresh();
                 
-                ReviewPopup reviewPopup = new ReviewPopup(deserializedSafeData);
-                deserializedSafeData.destroy();
-                reviewPopup.showAndWait();
-            } catch (Exception ex) {
+                Alert successPopup = new Alert(
+                        AlertType.INFORMATION,
+                        Lang.get(SECTION_LANG_BASE + ".success.popup"),
+                        ButtonType.OK
+                );
+                UIUtils.showDialogAndWait(successPopup);
+            } catch (Throwable ex) {
                 UIApp.getInstance().showError(ex);
             } finally {
                 updateImportBtnAvailability();
             }
         });
-        
-        updateImportBtnAvailability();
     }
     
     private void updateImportBtnAvailability() {
         importBtn.setDisable(
                 !safePwValidIndic.isValid()
                         || !serialFileField.validIndic.isValid() // not checkValid() to make the field "valid" when never filled
-                        || serialPwField.getVal().length == 0
+                        || serialPwField.getValHolder().isEmpty()
         );
     }
     
@@ -309,26 +368,29 @@ private ReviewPopup(SafeData deserializedSafeData) {
                 }
                 
                 validateBtn.setDisable(true);
-                try {
-                    SafeData validSafeData = new SafeData(pwEntriesData);
-                    dm.importData(validSafeData);
-                    validSafeData.dispose();
-                    
-                    Alert successPopup = new Alert(
-                            AlertType.INFORMATION,
-                            Lang.get(POPUP_LANG_BASE + ".validate.success.popup"),
-                            ButtonType.OK
-                    );
-                    UIUtils.showDialogAndWait(successPopup);
-                    
-                    stage.close();
-                } catch (Exception ex) {
-                    for (PasswordEntry.Data pwEntryData : pwEntriesData) {
-                        MemUtils.tryDestroy(pwEntryData);
+                SafeData validSafeData = new SafeData(pwEntriesData);
+                SafeOperation<Void> op = SafeOperation.importData(dm, validSafeData);
+                UIUtils.startOperation(scene, op, (res, thrown) -> {
+                    try {
+                        if (thrown != null) {
+                            throw thrown;
+                        }
+                        validSafeData.dispose();
+                        
+                        Alert successPopup = new Alert(
+                                AlertType.INFORMATION,
+                                Lang.get(POPUP_LANG_BASE + ".validate.success.popup"),
+                                ButtonType.OK
+                        );
+                        UIUtils.showDialogAndWait(successPopup);
+                        
+                        stage.close();
+                    } catch (Throwable ex) {
+                        MemUtils.tryDestroy(validSafeData); // destroys pwEntriesData if not imported (not disposed)
+                        UIApp.getInstance().showError(ex);
+                        updateValidateBtnAvailability();
                     }
-                    UIApp.getInstance().showError(ex);
-                    updateValidateBtnAvailability();
-                }
+                });
             });
             
             cancelBtn.setOnAction((e) -> {
@@ -379,7 +441,7 @@ private PasswordEntryElement(PasswordEntry.Data pwEntryData, ReviewPopup popup)
                                 .isNotIllegal(() -> PasswordEntry.Data.checkName(pwEntryData.name))
                 ); // will be updated with first updatePwEntryNameAvailability() call when all PasswordEntryElements are setup
                 
-                initPw = pwEntryData.getPassword().clone();
+                initPw = pwEntryData.getPassword();
                 
                 pwField = new ViewableUnclearField(new MutableString.Simple());
                 UIUtils.addViewableUnclearFieldToGrid(
@@ -488,10 +550,12 @@ private PasswordEntryElement(PasswordEntry.Data pwEntryData, ReviewPopup popup)
                 });
                 
                 // nameField is initialized differently because init validity depends on all PasswordEntryElements
-                pwField.setVal(pwEntryData.getPassword());
+                pwField.setVal(initPw);
                 siteField.setVal(pwEntryData.site);
                 infoField.setVal(pwEntryData.info);
-                totpField.setVal(UIUtils.totpToFieldVal(pwEntryData.totp));
+                char[] totpURI = UIUtils.totpToFieldVal(pwEntryData.getTOTP());
+                totpField.setVal(totpURI);
+                MemUtils.clearCharArray(totpURI);
             }
             
             boolean isValid() {
@@ -506,7 +570,7 @@ PasswordEntry.Data getData() {
                 try {
                     return new PasswordEntry.Data(
                             nameField.getValClone(),
-                            pwField.getVal().clone(),
+                            pwField.getVal(),
                             Arrays.equals(pwField.getVal(), initPw)
                                     ? lastPasswordChangeTime
                                     : DatetimeUtils.nowWithoutNanos(),
@@ -25,6 +25,7 @@
 import fr.tigeriodev.tigersafe.Lang;
 import fr.tigeriodev.tigersafe.ciphers.CiphersManager;
 import fr.tigeriodev.tigersafe.data.SafeDataManager;
+import fr.tigeriodev.tigersafe.data.SafeOperation;
 import fr.tigeriodev.tigersafe.ui.UIApp;
 import fr.tigeriodev.tigersafe.ui.UIUtils;
 import fr.tigeriodev.tigersafe.ui.contents.config.ConfigTab.ContentHolder.Section;
@@ -106,7 +107,7 @@ class SafeCiphersSection extends Section implements Destroyable {
                 ConfigTab.showUnsavedChangesPopup();
                 return;
             }
-            if (!dm.isSafePw(safePwField.getVal())) {
+            if (!dm.isSafePw(safePwField.getValHolder())) {
                 if (ui.onIncorrectSafePwTyped()) {
                     safePwValidIndic.setValidity(false);
                     updateSaveBtnAvailability();
@@ -119,23 +120,29 @@ class SafeCiphersSection extends Section implements Destroyable {
             }
             
             saveBtn.setDisable(true);
-            try {
-                dm.changeSafeCiphers(internalDataBox.getValue(), userDataBox.getValue());
-                
-                safePwField.getValHolder().clear();
-                safePwField.refresh();
-                
-                Alert successPopup = new Alert(
-                        AlertType.INFORMATION,
-                        Lang.get(SECTION_LANG_BASE + ".save.success.popup"),
-                        ButtonType.OK
-                );
-                UIUtils.showDialogAndWait(successPopup);
-            } catch (Exception ex) {
-                UIApp.getInstance().showError(ex);
-            } finally {
-                updateSaveBtnAvailability();
-            }
+            SafeOperation<Void> op = SafeOperation
+                    .changeSafeCiphers(dm, internalDataBox.getValue(), userDataBox.getValue());
+            UIUtils.startOperation(ui.getScene(), op, (res, thrown) -> {
+                try {
+                    if (thrown != null) {
+                        throw thrown;
+                    }
+                    
+                    safePwField.getValHolder().clear();
+                    safePwField.refresh();
+                    
+                    Alert successPopup = new Alert(
+                            AlertType.INFORMATION,
+                            Lang.get(SECTION_LANG_BASE + ".save.success.popup"),
+                            ButtonType.OK
+                    );
+                    UIUtils.showDialogAndWait(successPopup);
+                } catch (Throwable ex) {
+                    UIApp.getInstance().showError(ex);
+                } finally {
+                    updateSaveBtnAvailability();
+                }
+            });
         });
         
         updateSaveBtnAvailability();
@@ -18,13 +18,12 @@
 
 package fr.tigeriodev.tigersafe.ui.contents.config;
 
-import java.util.Arrays;
-
 import javax.security.auth.DestroyFailedException;
 import javax.security.auth.Destroyable;
 
 import fr.tigeriodev.tigersafe.Lang;
 import fr.tigeriodev.tigersafe.data.SafeDataManager;
+import fr.tigeriodev.tigersafe.data.SafeOperation;
 import fr.tigeriodev.tigersafe.ui.UIApp;
 import fr.tigeriodev.tigersafe.ui.UIUtils;
 import fr.tigeriodev.tigersafe.ui.contents.config.ConfigTab.ContentHolder.Section;
@@ -98,10 +97,10 @@ class SafePasswordSection extends Section implements Destroyable {
         // Dynamic
         
         Runnable onNewSafePwChange = () -> {
-            boolean validNewPw = SafeDataManager.isValidSafePw(newSafePwField.getVal());
+            boolean validNewPw = SafeDataManager.isValidSafePw(newSafePwField.getValHolder());
             newSafePwField.setValidity(validNewPw);
-            boolean sameConfirm =
-                    Arrays.equals(newSafePwField.getVal(), newSafePwConfirmField.getVal());
+            boolean sameConfirm = newSafePwField.getValHolder()
+                    .hasSameVal(newSafePwConfirmField.getValHolder());
             newSafePwConfirmField.setValidity(sameConfirm);
             updateSaveBtnAvailability();
         };
@@ -119,17 +118,19 @@ class SafePasswordSection extends Section implements Destroyable {
                 ConfigTab.showUnsavedChangesPopup();
                 return;
             }
-            if (!SafeDataManager.isValidSafePw(newSafePwField.getVal())) {
+            if (!SafeDataManager.isValidSafePw(newSafePwField.getValHolder())) {
                 newSafePwField.setValidity(false);
                 updateSaveBtnAvailability();
                 return;
             }
-            if (!Arrays.equals(newSafePwField.getVal(), newSafePwConfirmField.getVal())) {
+            if (
+                !newSafePwField.getValHolder().hasSameVal(newSafePwConfirmField.getValHolder())
+            ) {
                 newSafePwConfirmField.setValidity(false);
                 updateSaveBtnAvailability();
                 return;
             }
-            if (!dm.isSafePw(curSafePwField.getVal())) {
+            if (!dm.isSafePw(curSafePwField.getValHolder())) {
                 if (ui.onIncorrectSafePwTyped()) {
                     curSafePwValidIndic.setValidity(false);
                     updateSaveBtnAvailability();
@@ -138,28 +139,35 @@ class SafePasswordSection extends Section implements Destroyable {
             }
             
             saveBtn.setDisable(true);
-            try {
-                dm.changeSafePw(newSafePwField.getVal());
-                
-                newSafePwField.getValHolder().clear();
-                newSafePwConfirmField.getValHolder().clear();
-                curSafePwField.getValHolder().clear();
-                
-                newSafePwField.refresh();
-                newSafePwConfirmField.refresh();
-                curSafePwField.refresh();
-                
-                Alert successPopup = new Alert(
-                        AlertType.INFORMATION,
-                        Lang.get(SECTION_LANG_BASE + ".save.success.popup"),
-                        ButtonType.OK
-                );
-                UIUtils.showDialogAndWait(successPopup);
-            } catch (Exception ex) {
-                UIApp.getInstance().showError(ex);
-            } finally {
-                updateSaveBtnAvailability();
-            }
+            char[] newSafePw = newSafePwField.copyVal();
+            SafeOperation<Void> op = SafeOperation.changeSafePw(dm, newSafePw);
+            MemUtils.clearCharArray(newSafePw);
+            UIUtils.startOperation(ui.getScene(), op, (res, thrown) -> {
+                try {
+                    if (thrown != null) {
+                        throw thrown;
+                    }
+                    
+                    newSafePwField.getValHolder().clear();
+                    newSafePwConfirmField.getValHolder().clear();
+                    curSafePwField.getValHolder().clear();
+                    
+                    newSafePwField.refresh();
+                    newSafePwConfirmField.refresh();
+                    curSafePwField.refresh();
+                    
+                    Alert successPopup = new Alert(
+                            AlertType.INFORMATION,
+                            Lang.get(SECTION_LANG_BASE + ".save.success.popup"),
+                            ButtonType.OK
+                    );
+                    UIUtils.showDialogAndWait(successPopup);
+                } catch (Throwable ex) {
+                    UIApp.getInstance().showError(ex);
+                } finally {
+                    updateSaveBtnAvailability();
+                }
+            });
         });
         
         updateSaveBtnAvailability();
@@ -87,7 +87,7 @@ private DestroyableContent(Content defaultContent) {
         }
         
         private void updateCurVal() {
-            Logger unsafeMethLog = unsafeInstLog.newChildFromCurMethIf(Level.DEBUG);
+            Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "updateCurVal");
             if (prevVal != null) {
                 unsafeMethLog.debug(() -> "clear prevVal = " + StringUtils.quote(prevVal));
                 MemUtils.tryClearString(prevVal);
@@ -110,7 +110,8 @@ private void updateCurVal() {
         
         private void updateDefContentHelper() {
             // Fields are not cached because this method will rarely or only once be called.
-            Logger unsafeMethLog = unsafeInstLog.newChildFromCurMeth();
+            Logger unsafeMethLog =
+                    unsafeInstLog.newChildForMethIf(Level.WARN, "updateDefContentHelper");
             unsafeMethLog.debug(() -> "start");
             try {
                 Field helperF = defContent.getClass().getSuperclass().getDeclaredField("helper");
@@ -153,7 +154,7 @@ private void setLongTextToInsert(String newVal) {
         
         @Override
         public String get(int start, int end) {
-            Logger unsafeMethLog = unsafeInstLog.newChildFromCurMethIf(Level.DEBUG);
+            Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "get");
             if (isDestroyed()) {
                 unsafeMethLog.debug(() -> "is destroyed");
                 return "";
@@ -181,7 +182,7 @@ public void insert(int index, String text, boolean notifyListeners) {
             
             char[] textToInsert = UIUtils.getValidChars(text, false);
             
-            Logger unsafeMethLog = unsafeInstLog.newChildFromCurMethIf(Level.DEBUG);
+            Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "insert");
             unsafeMethLog.debug(
                     () -> "text = " + StringUtils.quote(text) + ", textToInsert = "
                             + Arrays.toString(textToInsert)
@@ -215,7 +216,7 @@ public void insert(int index, String text, boolean notifyListeners) {
         
         @Override
         public void delete(int start, int end, boolean notifyListeners) {
-            Logger unsafeMethLog = unsafeInstLog.newChildFromCurMethIf(Level.DEBUG);
+            Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "delete");
             unsafeMethLog.debug(
                     () -> "start = " + start + ", end = " + end + ", notifyListeners = "
                             + notifyListeners
@@ -236,7 +237,7 @@ public void delete(int start, int end, boolean notifyListeners) {
         @Override
         public int length() {
             if (isDestroyed()) {
-                unsafeInstLog.newChildFromCurMethIf(Level.DEBUG).debug(() -> "is destroyed");
+                unsafeInstLog.newChildForMethIf(Level.DEBUG, "length").debug(() -> "is destroyed");
                 return 0;
             }
             return curVal.length();
@@ -245,7 +246,7 @@ public int length() {
         @Override
         public String get() {
             if (isDestroyed()) {
-                unsafeInstLog.newChildFromCurMethIf(Level.DEBUG).debug(() -> "is destroyed");
+                unsafeInstLog.newChildForMethIf(Level.DEBUG, "get").debug(() -> "is destroyed");
                 return "";
             }
             return curVal;
@@ -266,7 +267,7 @@ private void notifyListeners() {
         
         @Override
         public void addListener(ChangeListener<? super String> changeListener) {
-            Logger unsafeMethLog = unsafeInstLog.newChildFromCurMethIf(Level.DEBUG);
+            Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "addListener");
             if (isDestroyed()) {
                 unsafeMethLog.debug(() -> "is destroyed");
                 return;
@@ -278,7 +279,7 @@ public void addListener(ChangeListener<? super String> changeListener) {
         
         @Override
         public void removeListener(ChangeListener<? super String> changeListener) {
-            unsafeInstLog.newChildFromCurMethIf(Level.DEBUG)
+            unsafeInstLog.newChildForMethIf(Level.DEBUG, "removeListener")
                     .debug(() -> "changeListener = " + changeListener);
             defContent.removeListener(changeListener);
             updateDefContentHelper();
@@ -286,7 +287,7 @@ public void removeListener(ChangeListener<? super String> changeListener) {
         
         @Override
         public void addListener(InvalidationListener listener) {
-            Logger unsafeMethLog = unsafeInstLog.newChildFromCurMethIf(Level.DEBUG);
+            Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "addListener");
             if (isDestroyed()) {
                 unsafeMethLog.debug(() -> "is destroyed");
                 return;
@@ -298,14 +299,15 @@ public void addListener(InvalidationListener listener) {
         
         @Override
         public void removeListener(InvalidationListener listener) {
-            unsafeInstLog.newChildFromCurMethIf(Level.DEBUG).debug(() -> "listener = " + listener);
+            unsafeInstLog.newChildForMethIf(Level.DEBUG, "removeListener")
+                    .debug(() -> "listener = " + listener);
             defContent.removeListener(listener);
             updateDefContentHelper();
         }
         
         @Override
         public void destroy() throws DestroyFailedException {
-            Logger unsafeMethLog = unsafeInstLog.newChildFromCurMethIf(Level.DEBUG);
+            Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "destroy");
             unsafeMethLog.debug(() -> "start");
             boolean success = true;
             if (valBuilder != null) {
@@ -122,7 +122,7 @@ public void paste() {
     }
     
     public void replaceText(final int start, final int end, final String text) {
-        unsafeInstLog.newChildFromCurMethIf(Level.DEBUG)
+        unsafeInstLog.newChildForMethIf(Level.DEBUG, "replaceText")
                 .debug(
                         () -> "start = " + start + ", end = " + end + ", text = "
                                 + StringUtils.quote(text)
@@ -184,7 +184,7 @@ public void replaceText(final int start, final int end, final String text) {
     }
     
     public void clear() {
-        Logger unsafeMethLog = unsafeInstLog.newChildFromCurMethIf(Level.DEBUG);
+        Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "clear");
         unsafeMethLog.debug(() -> "start");
         notifyValChanges = false;
         setVal(SecureUnclearField.FAKE_CHAR.repeat(inputC.getLength()));
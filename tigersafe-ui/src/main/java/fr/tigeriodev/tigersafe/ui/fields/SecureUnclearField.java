@@ -90,7 +90,7 @@ public SecureUnclearField(MutableString valHolder) {
         });
         
         // Simulate the user typed the initial characters of the field
-        simulateUserTyping(valHolder.getVal().length);
+        simulateUserTyping(valHolder.length());
     }
     
     /**
@@ -98,7 +98,7 @@ public SecureUnclearField(MutableString valHolder) {
      * @param targetFieldLen the displayed fake text length to reach at the end of the simulation
      */
     private void simulateUserTyping(int targetFieldLen) {
-        Logger unsafeMethLog = unsafeInstLog.newChildFromCurMeth();
+        Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "simulateUserTyping");
         unsafeMethLog.debug(() -> "targetFieldLen = " + targetFieldLen);
         MutableString initValH = valHolder;
         
@@ -113,13 +113,22 @@ private void simulateUserTyping(int targetFieldLen) {
     }
     
     /**
-     * @return the real value (not a duplicate)
+     * @return the real value (not a duplicate), or a scratch copy to clear after use if the value holder
+     * is a {@link MutableString.Secured}.
      * @NotNull
      */
     public char[] getVal() {
         return getValHolder().getVal();
     }
     
+    /**
+     * @return a copy of the value, which should be cleared after use.
+     * @NotNull
+     */
+    public char[] copyVal() {
+        return getValHolder().copyVal();
+    }
+    
     public MutableString getValHolder() {
         return valHolder;
     }
@@ -138,9 +147,8 @@ private boolean updateCurFakeText() {
     }
     
     private boolean isCurValFakeText(String text) {
-        char[] curVal = valHolder.getVal();
         int len = text.length();
-        if (curVal.length != len) {
+        if (valHolder.length() != len) {
             return false;
         }
         char fakeChar = FAKE_CHAR.charAt(0);
@@ -154,8 +162,8 @@ private boolean isCurValFakeText(String text) {
     
     private String getCurFakeText() {
         if (curFakeText == null) {
-            curFakeText = FAKE_CHAR.repeat(valHolder.getVal().length);
-            unsafeInstLog.newChildFromCurMethIf(Level.DEBUG)
+            curFakeText = FAKE_CHAR.repeat(valHolder.length());
+            unsafeInstLog.newChildForMethIf(Level.DEBUG, "getCurFakeText")
                     .debug(() -> "curFakeText := " + StringUtils.quote(curFakeText));
         }
         return curFakeText;
@@ -178,7 +186,7 @@ public void selectRange(int anchor, int caretPosition) {
     @Override
     public void replaceText(int start, int end, String text) {
         final String fText = text;
-        Logger unsafeMethLog = unsafeInstLog.newChildFromCurMethIf(Level.DEBUG);
+        Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "replaceText");
         unsafeMethLog.debug(
                 () -> "start = " + start + ", end = " + end + ", text = " + StringUtils.quote(fText)
         );
@@ -280,7 +288,7 @@ public void refresh() {
     }
     
     public void setFakeText(String newVal) {
-        unsafeInstLog.newChildFromCurMethIf(Level.DEBUG)
+        unsafeInstLog.newChildForMethIf(Level.DEBUG, "setFakeText")
                 .debug(() -> "curFakeText := " + StringUtils.quote(newVal));
         curFakeText = newVal;
         setText(newVal);
@@ -296,7 +304,7 @@ public void clear() {
     
     @Override
     public void destroy() throws DestroyFailedException {
-        Logger unsafeMethLog = unsafeInstLog.newChildFromCurMethIf(Level.DEBUG);
+        Logger unsafeMethLog = unsafeInstLog.newChildForMethIf(Level.DEBUG, "destroy");
         unsafeMethLog.debug(() -> "start");
         
         boolean success = true;
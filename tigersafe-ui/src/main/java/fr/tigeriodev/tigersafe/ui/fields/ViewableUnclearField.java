@@ -111,11 +111,14 @@ public boolean isVisibilityEnabled() {
     }
     
     public void setVisibilityEnabled(boolean newVal) {
-        unsafeInstLog.newChildFromCurMethIf(Level.DEBUG).debug(() -> "newVal = " + newVal);
+        unsafeInstLog.newChildForMethIf(Level.DEBUG, "setVisibilityEnabled")
+                .debug(() -> "newVal = " + newVal);
         visibWillChange = true;
         
         if (newVal) {
-            enabledVisibF.setVal(getVal());
+            char[] val = copyVal();
+            enabledVisibF.setVal(val);
+            MemUtils.clearCharArray(val);
             disabledVisibF.setFakeText("");
         } else {
             enabledVisibF.clear();
@@ -172,20 +175,29 @@ public void setTooltip(Tooltip tooltip) {
     }
     
     /**
-     * @return the real value (not a duplicate)
+     * @return the real value (not a duplicate), or a scratch copy to clear after use if the value holder
+     * is a {@link MutableString.Secured}.
      * @NotNull
      */
     public char[] getVal() {
         return getValHolder().getVal();
     }
     
+    /**
+     * @return a copy of the value, which should be cleared after use.
+     * @NotNull
+     */
+    public char[] copyVal() {
+        return getValHolder().copyVal();
+    }
+    
     public MutableString getValHolder() {
         return disabledVisibF.getValHolder();
     }
     
     @Override
     public void destroy() throws DestroyFailedException {
-        unsafeInstLog.newChildFromCurMethIf(Level.DEBUG).debug(() -> "start");
+        unsafeInstLog.newChildForMethIf(Level.DEBUG, "destroy").debug(() -> "start");
         boolean success = true;
         valChangeNotifier.remAllListeners();
         success = MemUtils.tryDestroy(enabledVisibF) && success;